@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.csstudio.alarm.beast.SeverityLevel;
+import org.csstudio.apputil.time.BenchmarkTimer;
+import org.junit.Test;
+
+/** Benchmark of alarm tree updates during an alarm storm
+ *
+ *  <p>Records a sequence of PV transitions for a synthetic tree
+ *  with 60000 PVs, most of them in a few systems that go in and out of alarm,
+ *  then replays them from several threads
+ *  like PV updates arriving in the alarm server.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class AlarmStormDemo
+{
+    private static final int THREADS = 4;
+    private static final int TRANSITIONS = 1000000;
+
+    @Test
+    public void testAlarmStorm() throws Exception
+    {
+        final List<AlarmPV> pvs = new ArrayList<>();
+        final ServerTreeItem root = ServerTreeItemUnitTest.createTree(10, 60, 100, pvs);
+        System.out.println("Alarm tree with " + pvs.size() + " PVs");
+
+        // Record transitions: 90% in the 1000 PVs of 10 systems
+        final Random random = new Random(42);
+        final SeverityLevel[] received = { SeverityLevel.OK, SeverityLevel.MINOR, SeverityLevel.MAJOR, SeverityLevel.INVALID };
+        final AlarmPV[] transition_pv = new AlarmPV[TRANSITIONS];
+        final AlarmState[] transition_state = new AlarmState[TRANSITIONS];
+        final Instant now = Instant.now();
+        for (int i=0; i<TRANSITIONS; ++i)
+        {
+            final int index = random.nextInt(10) < 9
+                            ? random.nextInt(1000) * (pvs.size() / 1000)
+                            : random.nextInt(pvs.size());
+            transition_pv[i] = pvs.get(index);
+            transition_state[i] = new AlarmState(received[random.nextInt(received.length)], "Storm", "1", now);
+        }
+
+        // Replay, each thread handling a share of the PVs
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        final BenchmarkTimer timer = new BenchmarkTimer();
+        final List<Future<?>> done = new ArrayList<>();
+        for (int t=0; t<THREADS; ++t)
+        {
+            final int thread = t;
+            done.add(pool.submit(() ->
+            {
+                for (int i=0; i<TRANSITIONS; ++i)
+                {
+                    final AlarmPV pv = transition_pv[i];
+                    if (pv.getID() % THREADS != thread)
+                        continue;
+                    final AlarmLogic logic = pv.getAlarmLogic();
+                    logic.computeNewState(transition_state[i]);
+                    // Operators acknowledge some of the alarms
+                    if (i % 10 == 0)
+                        logic.acknowledge(true);
+                }
+            }));
+        }
+        for (Future<?> future : done)
+            future.get();
+        timer.stop();
+        pool.shutdown();
+
+        System.out.format("%d transitions in %.2f seconds: %.0f transitions/sec\n",
+                          TRANSITIONS, timer.getSeconds(), TRANSITIONS / timer.getSeconds());
+        System.out.println("Alarm tree severity: " + root.getSeverity());
+        ServerTreeItemUnitTest.checkSeverities(root);
+    }
+}
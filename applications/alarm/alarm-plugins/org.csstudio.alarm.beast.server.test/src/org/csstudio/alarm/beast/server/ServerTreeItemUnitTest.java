@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.csstudio.alarm.beast.SeverityLevel;
+import org.csstudio.alarm.beast.TreeItem;
+import org.junit.Test;
+
+/** JUnit test of the severity counts in the {@link ServerTreeItem}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ServerTreeItemUnitTest
+{
+    /** Create synthetic alarm tree
+     *  @param areas Number of areas below the root
+     *  @param systems Number of systems in each area
+     *  @param pvs_per_system Number of PVs in each system
+     *  @param pvs List to which the PVs are added
+     *  @return Root of the tree
+     *  @throws Exception on error
+     */
+    static ServerTreeItem createTree(final int areas, final int systems, final int pvs_per_system,
+                                     final List<AlarmPV> pvs) throws Exception
+    {
+        Logger.getLogger(Activator.ID).setLevel(Level.WARNING);
+        int id = 0;
+        final Instant now = Instant.now();
+        final ServerTreeItem root = new ServerTreeItem(null, "Test", id++, null);
+        for (int a=0; a<areas; ++a)
+        {
+            final ServerTreeItem area = new ServerTreeItem(root, "Area" + a, id++, null);
+            for (int s=0; s<systems; ++s)
+            {
+                final ServerTreeItem system = new ServerTreeItem(area, "System" + s, id++, null);
+                for (int p=0; p<pvs_per_system; ++p)
+                    pvs.add(new AlarmPV(null, system, id++, "pv" + a + "_" + s + "_" + p, "Test PV",
+                                        true, true, false, 0, 0, 0, null,
+                                        SeverityLevel.OK, "OK", SeverityLevel.OK, "OK", "0", now));
+            }
+        }
+        // As in AlarmPV.start(), count each PV once
+        for (AlarmPV pv : pvs)
+            pv.getParent().updateSeverity(pv);
+        return root;
+    }
+
+    /** Check severities of tree against a complete scan
+     *  @param item Tree item
+     *  @return Maximum alarm and current severity below item
+     */
+    static SeverityLevel[] checkSeverities(final TreeItem item)
+    {
+        if (item instanceof AlarmPV)
+        {
+            final AlarmLogic logic = ((AlarmPV) item).getAlarmLogic();
+            if (! logic.isEnabled())
+                return new SeverityLevel[] { SeverityLevel.OK, SeverityLevel.OK };
+            return new SeverityLevel[] { logic.getAlarmState().getSeverity(), logic.getCurrentState().getSeverity() };
+        }
+        final SeverityLevel[] max = { SeverityLevel.OK, SeverityLevel.OK };
+        for (int i=0; i<item.getChildCount(); ++i)
+        {
+            final SeverityLevel[] child = checkSeverities(item.getChild(i));
+            for (int s=0; s<max.length; ++s)
+                if (child[s].ordinal() > max[s].ordinal())
+                    max[s] = child[s];
+        }
+        final ServerTreeItem node = (ServerTreeItem) item;
+        assertThat(item.getPathName(), node.getSeverity(), equalTo(max[0]));
+        assertThat(item.getPathName(), node.getCurrentSeverity(), equalTo(max[1]));
+        return max;
+    }
+
+    @Test
+    public void testSeverityCounts() throws Exception
+    {
+        final List<AlarmPV> pvs = new ArrayList<>();
+        final ServerTreeItem root = createTree(3, 4, 10, pvs);
+        assertThat(root.getSeverity(), equalTo(SeverityLevel.OK));
+        checkSeverities(root);
+
+        final SeverityLevel[] received = { SeverityLevel.OK, SeverityLevel.MINOR, SeverityLevel.MAJOR,
+                                           SeverityLevel.INVALID, SeverityLevel.UNDEFINED };
+        final Random random = new Random(42);
+        for (int i=0; i<5000; ++i)
+        {
+            final AlarmPV pv = pvs.get(random.nextInt(pvs.size()));
+            final AlarmLogic logic = pv.getAlarmLogic();
+            final int action = random.nextInt(10);
+            if (action == 0)
+                logic.acknowledge(true);
+            else if (action == 1)
+                logic.acknowledge(false);
+            else if (action == 2)
+                logic.setEnabled(! logic.isEnabled());
+            else
+                logic.computeNewState(new AlarmState(received[random.nextInt(received.length)], "Test", "1", Instant.now()));
+            checkSeverities(root);
+        }
+    }
+
+    @Test
+    public void testUnusedNode() throws Exception
+    {
+        final List<AlarmPV> pvs = new ArrayList<>();
+        final ServerTreeItem root = createTree(1, 1, 1, pvs);
+        // Node without PVs remains undefined, as does its parent
+        final ServerTreeItem empty = new ServerTreeItem(root, "Empty", 1000, null);
+        pvs.get(0).getAlarmLogic().computeNewState(new AlarmState(SeverityLevel.MAJOR, "Test", "1", Instant.now()));
+        assertThat(empty.getSeverity(), equalTo(SeverityLevel.UNDEFINED));
+        assertThat(root.getSeverity(), equalTo(SeverityLevel.UNDEFINED));
+        assertThat(((ServerTreeItem)root.getChild(0)).getSeverity(), equalTo(SeverityLevel.MAJOR));
+    }
+}
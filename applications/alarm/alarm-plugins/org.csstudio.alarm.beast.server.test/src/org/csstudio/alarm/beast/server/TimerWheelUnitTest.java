@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.apputil.time.BenchmarkTimer;
+import org.junit.Test;
+
+/** JUnit test and benchmark of the {@link TimerWheel}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class TimerWheelUnitTest
+{
+    final private StringBuilder buf = new StringBuilder();
+
+    private Runnable check(final String name)
+    {
+        return () ->
+        {
+            synchronized (buf)
+            {
+                buf.append(name).append(" done\n");
+            }
+        };
+    }
+
+    @Test
+    public void testScheduleCancel() throws Exception
+    {
+        final TimerWheel wheel = new TimerWheel("Test", 10, 8, 1);
+
+        // Delays that are longer than one revolution of the wheel
+        wheel.schedule(check("0.5"), 500, TimeUnit.MILLISECONDS);
+        wheel.schedule(check("0.1"), 100, TimeUnit.MILLISECONDS);
+        final TimerWheel.Timeout last = wheel.schedule(check("0.7"), 700, TimeUnit.MILLISECONDS);
+        assertThat(wheel.getPendingCount(), equalTo(3));
+
+        Thread.sleep(600);
+        assertThat(last.cancel(), equalTo(true));
+        assertThat(last.cancel(), equalTo(false));
+        Thread.sleep(300);
+
+        synchronized (buf)
+        {
+            assertThat(buf.toString(), equalTo("0.1 done\n0.5 done\n"));
+        }
+        assertThat(last.isCancelled(), equalTo(true));
+        assertThat(wheel.getPendingCount(), equalTo(0));
+        assertThat(wheel.getExpiredCount(), equalTo(2L));
+        assertThat(wheel.getCancelledCount(), equalTo(1L));
+        System.out.println(wheel);
+        // Expired no earlier than requested, and at most about one tick late
+        assertTrue(wheel.getAverageLateness() >= 0.0);
+        assertTrue(wheel.getAverageLateness() < 50.0);
+
+        // Error in command doesn't prevent later commands
+        wheel.schedule(() -> { throw new Error("Simulated crash"); }, 0, TimeUnit.MILLISECONDS);
+        final CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(done::countDown, 50, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+
+        wheel.stop();
+    }
+
+    /** Schedule a million delays, cancel most of them */
+    @Test
+    public void benchmarkScheduleCancel() throws Exception
+    {
+        final int N = 1000000;
+        final TimerWheel wheel = new TimerWheel("Benchmark", TimerWheel.TICK_MS, TimerWheel.BUCKETS, TimerWheel.WORKERS);
+        final AtomicInteger expired = new AtomicInteger();
+        final Runnable command = expired::incrementAndGet;
+
+        BenchmarkTimer timer = new BenchmarkTimer();
+        int cancelled = 0;
+        for (int i=0; i<N; ++i)
+        {
+            final TimerWheel.Timeout timeout = wheel.schedule(command, 1 + i % 1000, TimeUnit.MILLISECONDS);
+            // Like alarm delays that clear in time, keep only every 1000th.
+            // On a busy machine, a few might expire before they're cancelled.
+            if (i % 1000 != 0  &&  timeout.cancel())
+                ++cancelled;
+        }
+        timer.stop();
+        System.out.format("TimerWheel: Scheduled and cancelled %d delays in %.2f seconds: %.0f per second\n",
+                          N, timer.getSeconds(), N / timer.getSeconds());
+        for (int wait=0; expired.get() < N - cancelled  &&  wait < 100; ++wait)
+            Thread.sleep(100);
+        System.out.println(wheel);
+        assertThat(expired.get(), equalTo(N - cancelled));
+        assertThat(wheel.getScheduledCount(), equalTo((long)N));
+        assertThat(wheel.getCancelledCount(), equalTo((long)cancelled));
+        assertThat(wheel.getPendingCount(), equalTo(0));
+        wheel.stop();
+
+        // Compare with java.util.Timer
+        final Timer util_timer = new Timer("Benchmark", true);
+        final CountDownLatch util_expired = new CountDownLatch(N / 1000);
+        timer = new BenchmarkTimer();
+        for (int i=0; i<N; ++i)
+        {
+            final TimerTask task = new TimerTask()
+            {
+                @Override
+                public void run()
+                {
+                    util_expired.countDown();
+                }
+            };
+            util_timer.schedule(task, 1 + i % 1000);
+            if (i % 1000 != 0)
+                task.cancel();
+        }
+        timer.stop();
+        System.out.format("java.util.Timer: Scheduled and cancelled %d delays in %.2f seconds: %.0f per second\n",
+                          N, timer.getSeconds(), N / timer.getSeconds());
+        assertTrue(util_expired.await(10, TimeUnit.SECONDS));
+        util_timer.cancel();
+    }
+}
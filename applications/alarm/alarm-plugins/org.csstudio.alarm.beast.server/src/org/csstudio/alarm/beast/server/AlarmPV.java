@@ -59,6 +59,13 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
      */
     private volatile transient Filter filter;
 
+    /** Alarm and current severity as counted by the parent,
+     *  <code>null</code> if not counted.
+     *  <p>SYNC on parent
+     *  @see ServerTreeItem#updateSeverity(AlarmPV)
+     */
+    transient SeverityLevel counted_severity = null, counted_current = null;
+
     /** Initialize alarm PV
      *  @param server Alarm server that handles this PV. Within JUnit tests, this may be <code>null</code>.
      *  @param id RDB ID
@@ -196,7 +203,7 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
         else
             logger.log(Level.INFO, "Skipping disabled {0}", getPathName());
 
-        getParent().maximizeSeverity();
+        getParent().updateSeverity(this);
     }
 
     /** Disconnect from control system */
@@ -270,8 +277,6 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
                 Messages.AlarmMessageDisconnected, "", Instant.now());
         logic.computeNewState(received);
         logger.log(Level.INFO, () -> getPathName() + " disconnected -> " + logic);
-
-        getParent().maximizeSeverity();
     }
 
     /** @see PVListener */
@@ -284,23 +289,16 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
         final AlarmState received = new AlarmState(new_severity, new_message,
                 VTypeHelper.toString(value),
                 VTypeHelper.getTimestamp(value));
-
-        final SeverityLevel old_severity = logic.getAlarmState().getSeverity();
         logic.computeNewState(received);
         logger.log(Level.FINE, () -> getPathName() + " received " + value + " -> " + logic);
-
-        if (logic.getAlarmState().getSeverity().equals(old_severity))
-            return;
-
-        // Whenever logic computes new state, maximize up parent tree
-        getParent().maximizeSeverity();
     }
 
     /** AlarmLogicListener: {@inheritDoc} */
     @Override
     public void alarmEnablementChanged(final boolean is_enabled)
     {
-        server.sendEnablementUpdate(this, is_enabled);
+        if (server != null)
+            server.sendEnablementUpdate(this, is_enabled);
     }
 
     /** AlarmLogicListener: {@inheritDoc} */
@@ -308,6 +306,8 @@ public class AlarmPV extends TreeItem implements AlarmLogicListener, FilterListe
     public void alarmStateChanged(final AlarmState current, final AlarmState alarm)
     {
         logger.log(Level.FINE, () -> getPathName() + " changes to " + current + ", " + alarm);
+        // Whenever logic computes new state, update counts up the parent tree
+        getParent().updateSeverity(this);
         if (server != null)
             server.sendStateUpdate(this,
                     current.getSeverity(), current.getMessage(),
@@ -12,13 +12,16 @@ import static org.csstudio.alarm.beast.server.Activator.logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
+import org.csstudio.alarm.beast.AlarmItemRow;
 import org.csstudio.alarm.beast.SQL;
 import org.csstudio.alarm.beast.SeverityLevel;
 import org.csstudio.alarm.beast.TimestampHelper;
@@ -45,6 +48,10 @@ public class AlarmRDB
     /** RDB SQL statements */
     final private SQL sql;
 
+    // The work queue of the server may be executed by several threads,
+    // but they all share the one RDB connection and its statements.
+    // Public methods are thus synchronized.
+
     /** RDB connection. Used to check if the RDB reconnected */
     private Connection connection;
 
@@ -88,7 +95,7 @@ public class AlarmRDB
      *  @return Root element of the alarm tree hierarchy
      *  @throws Exception on error
      */
-    public ServerTreeItem readConfiguration() throws Exception
+    public synchronized ServerTreeItem readConfiguration() throws Exception
     {
         final Connection conn = rdb.getConnection();
         // Disabling the auto-reconnect is about 15% faster, and we don't
@@ -115,17 +122,10 @@ public class AlarmRDB
             statement.close();
         }
 
-        // Fetch children
-        final PreparedStatement sel_items_by_parent =
-            conn.prepareStatement(sql.sel_items_by_parent);
-        try
-        {
-            readChildren(root, sel_items_by_parent);
-        }
-        finally
-        {
-            sel_items_by_parent.close();
-        }
+        // Fetch all items, then assemble the tree
+        final Map<Integer, String> severity_pvs = readSeverityPVs(conn);
+        final Map<Integer, List<AlarmItemRow>> children = AlarmItemRow.readChildrenByParent(conn, sql);
+        addChildren(root, children, severity_pvs);
 
         // In transactional mode (Connection.setAutoCommit(false)),
         // even SELECTs needed a commit() to end the transaction.
@@ -147,139 +147,110 @@ public class AlarmRDB
         return root;
     }
 
-    /** Read alarm tree hierarchy
-     *  @param parent Parent entry
-     *  @param sel_items_by_parent Prepared statement for fetching child elements
+    /** Read severity PVs of all components
+     *
+     *  <p>Components can have an automated action 'sevrpv:'
+     *  to write their severity to a PV.
+     *
+     *  @param conn RDB connection
+     *  @return Severity PV names by component ID
      *  @throws Exception on error
      */
-    private void readChildren(final ServerTreeItem parent, final PreparedStatement sel_items_by_parent) throws Exception
+    private Map<Integer, String> readSeverityPVs(final Connection conn) throws Exception
     {
-        final PreparedStatement sel_actions = connection.prepareStatement(sql.sel_auto_actions_by_id);
-        final List<ServerTreeItem> recurse_items = new ArrayList<>();
-
-        sel_items_by_parent.setInt(1, parent.getID());
-        final ResultSet result = sel_items_by_parent.executeQuery();
+        final Map<Integer, String> severity_pvs = new HashMap<>();
         try
+        (
+            final Statement statement = conn.createStatement();
+            final ResultSet result = statement.executeQuery(sql.sel_all_auto_actions);
+        )
         {
             while (result.next())
             {
+                final String action = result.getString(3);
+                if (action == null  ||  !action.startsWith(SEVRPV))
+                    continue;
                 final int id = result.getInt(1);
-                if (result.wasNull())
-                    throw new Exception("NULL component ID");
-                final String name = result.getString(17);
-                if (result.wasNull())
-                    throw new Exception("NULL component Name");
-                // Ignoring config. time from result.getTimestamp(2)
-
-                // Check PV's ID. If null, this is a component, not PV
-                final int pv_id = result.getInt(3);
-                if (result.wasNull())
-                {
-                    // Check automated action 'sevrpv:' ...
-                    String severity_pv = null;
-                    sel_actions.setInt(1, id);
-                    try
-                    (
-                        final ResultSet act_res = sel_actions.executeQuery();
-                    )
-                    {
-                        while (act_res.next())
-                        {
-                            final String action = act_res.getString(2);
-                            if (action.startsWith(SEVRPV))
-                            {
-                                final String pv_name = action.substring(SEVRPV.length());
-                                if (severity_pv != null)
-                                    logger.log(Level.WARNING, "Multiple severity PVs for '" + name + "', '" +
-                                               severity_pv + "' as well as '" + pv_name + "'");
-                                severity_pv = pv_name;
-                            }
-                        }
-                    }
-
-                    final ServerTreeItem child = new ServerTreeItem(parent, name, id, severity_pv);
-                    recurse_items.add(child);
-                }
-                else
-                {   // Handle PV
-                    if (id != pv_id)
-                        throw new Exception("Internal RDB error: Item '" + name + "' as ID " + id + " but also PV ID " + pv_id);
-                    // Easy results
-                    String description = result.getString(4);
-                    // Description should not be empty
-                    if (result.wasNull() || description == null || description.length() <= 0)
-                        description = name;
-                    // Default to most features turned 'on'
-                    boolean enabled = result.getBoolean(5);
-                    if (result.wasNull())
-                        enabled = true;
-                    boolean annunciate = result.getBoolean(6);
-                    if (result.wasNull())
-                        annunciate = true;
-                    boolean latch = result.getBoolean(7);
-                    if (result.wasNull())
-                        latch = true;
-                    // 0/null/empty disables these features
-                    final int min_alarm_delay = result.getInt(8);
-                    final int count = result.getInt(9);
-                    final String filter = result.getString(10);
-
-                    // Decode current severity/status IDs, handling NULL as "Ok"
-                    int severity_id = result.getInt(11);
-                    final SeverityLevel current_severity = result.wasNull()
-                        ? SeverityLevel.OK
-                        : severity_mapping.getSeverityLevel(severity_id);
-
-                    int status_id = result.getInt(12);
-                    final String current_status = result.wasNull()
-                        ? ""
-                        : message_mapping.findMessageById(status_id);
-
-                    // Alarm severity/status
-                    severity_id = result.getInt(13);
-                    final SeverityLevel severity = result.wasNull()
-                        ? SeverityLevel.OK
-                        : severity_mapping.getSeverityLevel(severity_id);
-
-                    status_id = result.getInt(14);
-                    final String status = result.wasNull()
-                        ? ""
-                        : message_mapping.findMessageById(status_id);
-
-                    // Alarm value, time
-                    final String value = result.getString(15);
-
-                    final Timestamp time = result.getTimestamp(16);
-                    final Instant timestamp = result.wasNull()
-                        ? Instant.now()
-                        : TimestampHelper.toEPICSTime(time);
-
-                    final int global_delay = AlarmServerPreferences.getGlobalAlarmDelay();
-
-                    new AlarmPV(server, parent, id, name, description,
-                            enabled, latch, annunciate, min_alarm_delay, count, global_delay, filter,
-                            current_severity, current_status, severity, status, value, timestamp);
-                }
+                final String pv_name = action.substring(SEVRPV.length());
+                final String previous = severity_pvs.put(id, pv_name);
+                if (previous != null)
+                    logger.log(Level.WARNING, "Multiple severity PVs for component " + id + ", '" +
+                               previous + "' as well as '" + pv_name + "'");
             }
         }
-        finally
+        return severity_pvs;
+    }
+
+    /** Add alarm tree hierarchy
+     *  @param parent Parent entry
+     *  @param children Items by parent ID
+     *  @param severity_pvs Severity PV names by component ID
+     *  @throws Exception on error
+     */
+    private void addChildren(final ServerTreeItem parent, final Map<Integer, List<AlarmItemRow>> children,
+                             final Map<Integer, String> severity_pvs) throws Exception
+    {
+        final List<AlarmItemRow> rows = children.get(parent.getID());
+        if (rows == null)
+            return;
+        final int global_delay = AlarmServerPreferences.getGlobalAlarmDelay();
+        for (AlarmItemRow row : rows)
         {
-            result.close();
-            sel_actions.close();
-        }
+            final String name = row.name;
+            // Ignoring config. time
+            if (! row.is_pv)
+            {
+                final ServerTreeItem child = new ServerTreeItem(parent, name, row.id, severity_pvs.get(row.id));
+                addChildren(child, children, severity_pvs);
+                continue;
+            }
 
-        // Recurse to children
-        // Cannot do that inside the above while() because that would reuse
-        // the statement of the current ResultSet
-        for (ServerTreeItem child : recurse_items)
-            readChildren(child, sel_items_by_parent);
+            // Handle PV
+            String description = row.description;
+            // Description should not be empty
+            if (description == null || description.length() <= 0)
+                description = name;
+            // Default to most features turned 'on'
+            final boolean enabled = row.enabled == null ? true : row.enabled;
+            final boolean annunciate = row.annunciate == null ? true : row.annunciate;
+            final boolean latch = row.latch == null ? true : row.latch;
+            // 0/null/empty disables these features
+            final int min_alarm_delay = row.delay;
+            final int count = row.count;
+            final String filter = row.filter;
+
+            // Decode current severity/status IDs, handling NULL as "Ok"
+            final SeverityLevel current_severity = row.current_severity_id == null
+                ? SeverityLevel.OK
+                : severity_mapping.getSeverityLevel(row.current_severity_id);
+            final String current_status = row.current_status_id == null
+                ? ""
+                : message_mapping.findMessageById(row.current_status_id);
+
+            // Alarm severity/status
+            final SeverityLevel severity = row.severity_id == null
+                ? SeverityLevel.OK
+                : severity_mapping.getSeverityLevel(row.severity_id);
+            final String status = row.status_id == null
+                ? ""
+                : message_mapping.findMessageById(row.status_id);
+
+            // Alarm time
+            final Instant timestamp = row.alarm_time == null
+                ? Instant.now()
+                : TimestampHelper.toEPICSTime(row.alarm_time);
+
+            new AlarmPV(server, parent, row.id, name, description,
+                    enabled, latch, annunciate, min_alarm_delay, count, global_delay, filter,
+                    current_severity, current_status, severity, status, row.value, timestamp);
+        }
     }
 
     /** Read configuration for PV, update it from RDB
      *  @param pv AlarmPV to update
      *  @throws Exception on error
      */
-    public void readConfigurationUpdate(final AlarmPV pv) throws Exception
+    public synchronized void readConfigurationUpdate(final AlarmPV pv) throws Exception
     {
         final PreparedStatement statement =
             rdb.getConnection().prepareStatement(sql.sel_pv_by_id);
@@ -395,7 +366,7 @@ public class AlarmRDB
      *
      *  @throws Exception
      */
-    public void persistAllStates(final Update[] updates, final int batchSize) throws Exception
+    public synchronized void persistAllStates(final Update[] updates, final int batchSize) throws Exception
     {
         final Connection actual_connection = rdb.getConnection();
         actual_connection.setAutoCommit(false);
@@ -459,7 +430,7 @@ public class AlarmRDB
      *
      *  @throws Exception
      */
-    public void persistGlobalUpdates(final Update[] updates, final int batchSize) throws Exception
+    public synchronized void persistGlobalUpdates(final Update[] updates, final int batchSize) throws Exception
     {
         final Connection actual_connection = rdb.getConnection();
         actual_connection.setAutoCommit(false);
@@ -522,7 +493,7 @@ public class AlarmRDB
      *  @param enabled Enabled or not?
      *  @throws Exception on error
      */
-    public void writeEnablementUpdate(final AlarmPV pv, final boolean enabled) throws Exception
+    public synchronized void writeEnablementUpdate(final AlarmPV pv, final boolean enabled) throws Exception
     {
         final Connection actual_connection = rdb.getConnection();
 
@@ -563,7 +534,7 @@ public class AlarmRDB
     }
 
     /** Must be called to release resources */
-    public void close()
+    public synchronized void close()
     {
         // Does not specifically close all prepared statements,
         // leaves that to overall rdb.close()
@@ -134,6 +134,12 @@ public class AlarmServer implements Runnable
     /** RDB for configuration/state */
     final private AlarmRDB rdb;
 
+    /** Serializes configuration updates.
+     *  The work queue may be executed by several threads,
+     *  while configuration updates stop, re-read and start PVs.
+     */
+    final private Object config_lock = new Object();
+
     /** Messenger to communicate with clients */
     final private ServerCommunicator messenger;
 
@@ -229,7 +235,14 @@ public class AlarmServer implements Runnable
             alarm_tree.dump(out);
         }
 
-        out.println("Work queue size: " + work_queue.size());
+        out.format("Work queue: %d queued (max %d), %d executed, %d coalesced, latency avg. %.1f ms, max %.1f ms\n",
+                   work_queue.size(), work_queue.getMaxSize(),
+                   work_queue.getExecutedCount(), work_queue.getCoalescedCount(),
+                   work_queue.getAverageLatency(), work_queue.getMaxLatency());
+        work_queue.resetStatistics();
+        final TimerWheel timer = TimerWheel.getShared();
+        out.println(timer);
+        timer.resetStatistics();
 
         // Log memory usage in MB
         final double free = Runtime.getRuntime().freeMemory() / (1024.0*1024.0);
@@ -493,27 +506,32 @@ public class AlarmServer implements Runnable
     void updateConfig(final String path_name) throws Exception
     {
         resetNagTimer();
-        AlarmPV pv = null;
-        if (path_name != null)
+        // Locate PV while holding the lock, so a concurrent
+        // re-load of the whole configuration can't replace it
+        synchronized (config_lock)
         {
-            final String[] path = AlarmTreePath.splitPath(path_name);
-            // Is this a PV under a different alarm tree root?
-            if (! root_name.equals(path[0]))
+            AlarmPV pv = null;
+            if (path_name != null)
+            {
+                final String[] path = AlarmTreePath.splitPath(path_name);
+                // Is this a PV under a different alarm tree root?
+                if (! root_name.equals(path[0]))
+                    return;
+                // Locate PV, assuming last path element is PV
+                pv = findPV(path[path.length-1]);
+            }
+            if (pv == null)
+            {   // Unknown PV, so this must be a new PV, or an area/system/subsys. Read whole config again
+                stopPVs();
+                readConfiguration();
+                startPVs();
                 return;
-            // Locate PV, assuming last path element is PV
-            pv = findPV(path[path.length-1]);
-        }
-        if (pv == null)
-        {   // Unknown PV, so this must be a new PV, or an area/system/subsys. Read whole config again
-            stopPVs();
-            readConfiguration();
-            startPVs();
-            return;
+            }
+            // Known PV
+            pv.stop();
+            rdb.readConfigurationUpdate(pv);
+            pv.start();
         }
-        // Known PV
-        pv.stop();
-        rdb.readConfigurationUpdate(pv);
-        pv.start();
     }
 
     /** (Un-)acknowledge alarm.
@@ -526,10 +544,8 @@ public class AlarmServer implements Runnable
         final AlarmPV pv = findPV(pv_name);
         if (pv != null)
         {
+            // Changed state is counted up the parent tree via AlarmPV.alarmStateChanged
             pv.getAlarmLogic().acknowledge(acknowledge);
-
-            // Likely changed the state, maximize up parent tree
-            pv.getParent().maximizeSeverity();
         }
     }
 
@@ -602,8 +618,9 @@ public class AlarmServer implements Runnable
     public void sendEnablementUpdate(final AlarmPV pv, final boolean enabled)
     {
         messenger.sendEnablementUpdate(pv, enabled);
-        // Handle in separate queue & thread
-        work_queue.execute(new Runnable()
+        // Handle in separate queue & thread.
+        // Only the latest enablement of a PV needs to be written
+        work_queue.execute(pv.getName(), new Runnable()
         {
             @Override
             public void run()
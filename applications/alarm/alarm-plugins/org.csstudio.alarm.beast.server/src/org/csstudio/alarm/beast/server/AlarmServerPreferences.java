@@ -24,6 +24,8 @@ public class AlarmServerPreferences
 {
     final public static String GLOBAL_ALARM_DELAY = "global_alarm_delay";
     final public static String NAG_PERIOD = "nag_period";
+    final public static String WORK_QUEUE_THREADS = "work_queue_threads";
+    final public static String STATE_BATCH_WINDOW = "state_batch_window";
 
     /** @return Period for repeated 'There are .. active alarms' annunciations [seconds]
      *  @throws Exception on error in period specification
@@ -45,4 +47,22 @@ public class AlarmServerPreferences
             return 0;
         return service.getInt(Activator.ID, GLOBAL_ALARM_DELAY, 0, null);
     }
+
+    /** @return Number of threads that execute the work queue */
+    public static int getWorkQueueThreads()
+    {
+        final IPreferencesService service = Platform.getPreferencesService();
+        if (service == null)
+            return 1;
+        return Math.max(1, service.getInt(Activator.ID, WORK_QUEUE_THREADS, 1, null));
+    }
+
+    /** @return Window for combining state updates into one message [seconds], 0 to send each update */
+    public static double getStateBatchWindow()
+    {
+        final IPreferencesService service = Platform.getPreferencesService();
+        if (service == null)
+            return 0.0;
+        return service.getDouble(Activator.ID, STATE_BATCH_WINDOW, 0.0, null);
+    }
 }
@@ -42,7 +42,7 @@ import org.osgi.framework.BundleContext;
 public class Application implements IApplication
 {
     final public static String APPLICATION_NAME = "AlarmServer";
-    private boolean run = true;
+    private volatile boolean run = true;
 
     /** {@inheritDoc} */
     @Override
@@ -118,7 +118,8 @@ public class Application implements IApplication
         System.out.println("JMS Talk Topic:     " + Preferences.getJMS_TalkTopic(config_name.get()));
         System.out.println("JMS Global Topic:   " + Preferences.getJMS_GlobalServerTopic());
 
-        final WorkQueue work_queue = new WorkQueue();
+        final int threads = AlarmServerPreferences.getWorkQueueThreads();
+        final WorkQueue work_queue = new WorkQueue(threads);
         try
         {
             SeverityPVHandler.initialize();
@@ -131,6 +132,18 @@ public class Application implements IApplication
             final BundleContext bundle_context = context.getBrandingBundle().getBundleContext();
             bundle_context.registerService(CommandProvider.class.getName(), commands, null);
 
+            // Additional consumers of the work queue
+            for (int i=1; i<threads; ++i)
+            {
+                final Thread consumer = new Thread(() ->
+                {
+                    while (run)
+                        work_queue.performQueuedCommands(500);
+                }, "WorkQueue" + i);
+                consumer.setDaemon(true);
+                consumer.start();
+            }
+
             // "Main Loop"
             alarm_server.start();
             while (run)
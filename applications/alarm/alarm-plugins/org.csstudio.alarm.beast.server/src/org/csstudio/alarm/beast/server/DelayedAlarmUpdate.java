@@ -7,8 +7,7 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.server;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /** Helper for checking alarms after a delay.
@@ -25,16 +24,17 @@ import java.util.logging.Level;
 @SuppressWarnings("nls")
 public class DelayedAlarmUpdate
 {
-    final private static Timer timer = new Timer("DelayedAlarmUpdate", true);
-
     /** Listener to notify when delay expires */
     final private DelayedAlarmListener listener;
 
+    /** Command for the timer. Same for every delay to avoid allocations */
+    final private Runnable expire = this::expire;
+
     /** Alarm state to which we would update after the delay, unless it clears in time */
     private AlarmState state;
 
-    /** Timer task used to perform the delay */
-    private TimerTask scheduled_task = null;
+    /** Timeout used to perform the delay */
+    private TimerWheel.Timeout scheduled_timeout = null;
 
     /** Initialize
      *  @param listener Listener to notify when delay expires
@@ -59,47 +59,47 @@ public class DelayedAlarmUpdate
             new NullPointerException("DelayedAlarmUpdate with null").printStackTrace();
             return;
         }
-        final TimerTask new_task;
         synchronized (this)
         {
             this.state = new_state;
             // Already scheduled?
-            if (scheduled_task != null)
+            if (scheduled_timeout != null)
                 return;
             // Schedule in timer
-            new_task = new TimerTask()
-            {
-                @Override
-                public void run()
-                {
-                    final AlarmState the_state;
-                    synchronized (DelayedAlarmUpdate.this)
-                    {
-                        // Save state for call to listener, reset everything
-                        the_state = state;
-                        scheduled_task = null;
-                        state = null;
-                    }
-                    if (the_state == null)
-                    {
-                        // Don't run because update was cancelled
-                        return;
-                    }
-                    //  Re-evaluate alarm logic with the delayed state,
-                    //  not allowing any further delays.
-                    try
-                    {
-                        listener.delayedStateUpdate(the_state);
-                    }
-                    catch (Throwable ex)
-                    {
-                        Activator.getLogger().log(Level.SEVERE, "Error in delayed alarm update", ex);
-                    }
-                }
-            };
-            scheduled_task = new_task;
+            scheduled_timeout = TimerWheel.getShared().schedule(expire, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Invoked by timer when delay expires */
+    private void expire()
+    {
+        final AlarmState the_state;
+        synchronized (this)
+        {
+            // Ignore a timeout that expired while it was being cancelled,
+            // which might also have been replaced by a new, still pending timeout
+            if (scheduled_timeout == null  ||  ! scheduled_timeout.isExpired())
+                return;
+            // Save state for call to listener, reset everything
+            the_state = state;
+            scheduled_timeout = null;
+            state = null;
+        }
+        if (the_state == null)
+        {
+            // Don't run because update was cancelled
+            return;
+        }
+        //  Re-evaluate alarm logic with the delayed state,
+        //  not allowing any further delays.
+        try
+        {
+            listener.delayedStateUpdate(the_state);
+        }
+        catch (Throwable ex)
+        {
+            Activator.getLogger().log(Level.SEVERE, "Error in delayed alarm update", ex);
         }
-        timer.schedule(new_task, seconds * 1000L);
     }
 
     /** @return Alarm state to which we'll go after the delay expires */
@@ -113,14 +113,14 @@ public class DelayedAlarmUpdate
      */
     public void cancel()
     {
-        final TimerTask task;
+        final TimerWheel.Timeout timeout;
         synchronized (this)
         {
             state = null;
-            task = scheduled_task;
-            scheduled_task = null;
+            timeout = scheduled_timeout;
+            scheduled_timeout = null;
         }
-        if (task != null)
-            task.cancel();
+        if (timeout != null)
+            timeout.cancel();
     }
 }
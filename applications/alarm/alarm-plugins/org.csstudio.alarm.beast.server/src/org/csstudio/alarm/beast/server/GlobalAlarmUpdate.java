@@ -7,8 +7,7 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.server;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 
 /** Helper for sending global alarm updates after a delay.
  *
@@ -18,13 +17,14 @@ import java.util.TimerTask;
  */
 public class GlobalAlarmUpdate
 {
-    final private static Timer timer = new Timer("GlobalAlarmUpdate", true); //$NON-NLS-1$
-
     /** Listener to notify when delay expires */
     final private GlobalAlarmListener listener;
 
-    /** Timer task used to perform the delay */
-    private TimerTask scheduled_task = null;
+    /** Command for the timer. Same for every delay to avoid allocations */
+    final private Runnable expire = this::expire;
+
+    /** Timeout used to perform the delay */
+    private TimerWheel.Timeout scheduled_timeout = null;
 
     /** Initialize
      *  @param listener Listener to notify when delay expires
@@ -42,30 +42,29 @@ public class GlobalAlarmUpdate
      */
     void schedule_update(final int seconds)
     {
-        final TimerTask new_task;
         synchronized (this)
         {
             // Already scheduled?
-            if (scheduled_task != null)
+            if (scheduled_timeout != null)
                 return;
             // Schedule in timer
-            new_task = new TimerTask()
-            {
-                @Override
-                public void run()
-                {
-                    synchronized (GlobalAlarmUpdate.this)
-                    {
-                        scheduled_task = null;
-                    }
-                    //  Re-evaluate alarm logic with the delayed state,
-                    //  not allowing any further delays.
-                    listener.updateGlobalState();
-                }
-            };
-            scheduled_task = new_task;
+            scheduled_timeout = TimerWheel.getShared().schedule(expire, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Invoked by timer when delay expires */
+    private void expire()
+    {
+        synchronized (this)
+        {
+            // Ignore a timeout that expired while it was being cancelled
+            if (scheduled_timeout == null  ||  ! scheduled_timeout.isExpired())
+                return;
+            scheduled_timeout = null;
         }
-        timer.schedule(new_task, seconds * 1000L);
+        //  Re-evaluate alarm logic with the delayed state,
+        //  not allowing any further delays.
+        listener.updateGlobalState();
     }
 
     /** Cancel delayed alarm check because control system PV cleared.
@@ -73,13 +72,13 @@ public class GlobalAlarmUpdate
      */
     public void cancel()
     {
-        final TimerTask task;
+        final TimerWheel.Timeout timeout;
         synchronized (this)
         {
-            task = scheduled_task;
-            scheduled_task = null;
+            timeout = scheduled_timeout;
+            scheduled_timeout = null;
         }
-        if (task != null)
-            task.cancel();
+        if (timeout != null)
+            timeout.cancel();
     }
 }
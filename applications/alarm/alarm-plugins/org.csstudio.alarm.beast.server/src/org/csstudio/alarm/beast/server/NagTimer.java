@@ -7,30 +7,73 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.server;
 
-import org.csstudio.alarm.beast.TimeoutTimer;
+import java.util.concurrent.TimeUnit;
 
 /** Timer that 'nags' when there are active alarms
  *  @author Kay Kasemir
  */
-@SuppressWarnings("nls")
-public class NagTimer extends TimeoutTimer
+public class NagTimer
 {
+    /** Period between nags in milliseconds */
+    final private long period_ms;
+
     final private NagTimerHandler listener;
 
+    /** Command for the timer */
+    final private Runnable expire = this::timeout;
+
+    /** Running, i.e. started and not cancelled? SYNC on this */
+    private boolean running = false;
+
+    /** Pending timeout. SYNC on this */
+    private TimerWheel.Timeout scheduled_timeout = null;
+
     /** Initialize
      *  @param period_ms Period between nags in milliseconds
      *  @param listener Who to notify
      */
     public NagTimer(final long period_ms, final NagTimerHandler listener)
     {
-        super("Nag Timer", period_ms);
+        this.period_ms = period_ms;
         this.listener = listener;
     }
 
+    /** Start the timer */
+    public synchronized void start()
+    {
+        running = true;
+        reset();
+    }
+
+    /** Reset the timer, i.e. re-start the period until the next nag */
+    public synchronized void reset()
+    {
+        if (! running)
+            return;
+        if (scheduled_timeout != null)
+            scheduled_timeout.cancel();
+        scheduled_timeout = TimerWheel.getShared().schedule(expire, period_ms, TimeUnit.MILLISECONDS);
+    }
+
+    /** Cancel the timer */
+    public synchronized void cancel()
+    {
+        running = false;
+        if (scheduled_timeout != null)
+            scheduled_timeout.cancel();
+        scheduled_timeout = null;
+    }
+
     /** Check for active alarms, issue 'nag' */
-    @Override
-    protected void timeout()
+    private void timeout()
     {
+        synchronized (this)
+        {
+            // Ignore a timeout that expired while being reset or cancelled
+            if (scheduled_timeout == null  ||  ! scheduled_timeout.isExpired())
+                return;
+            scheduled_timeout = null;
+        }
         final int active = listener.getActiveAlarmCount();
         if (active > 0)
             listener.nagAboutActiveAlarms(active);
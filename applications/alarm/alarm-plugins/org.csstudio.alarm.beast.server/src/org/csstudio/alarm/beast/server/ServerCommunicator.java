@@ -9,6 +9,9 @@ package org.csstudio.alarm.beast.server;
 
 import java.net.InetAddress;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.jms.MapMessage;
@@ -35,6 +38,9 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     /** TYPE identifier used for talk messages */
     private static final String TYPE_TALK = "talk";
 
+    /** Maximum number of states in one TEXT_STATES message */
+    private static final int MAX_BATCH_SIZE = 1000;
+
     /** Server for which we communicate */
     final private AlarmServer server;
 
@@ -47,6 +53,17 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     /** Timer for sending idle messages */
     final private TimeoutTimer idle_timer;
 
+    /** Window for combining state updates [ms], 0 to send each update */
+    final private long batch_window_ms;
+
+    /** State updates to send as one batch, latest update by PV name.
+     *  SYNC on batched_states
+     */
+    final private Map<String, AlarmServer.Update> batched_states = new LinkedHashMap<>();
+
+    /** Queues sending of the batched states when the batch window expires */
+    final private Runnable queue_batch = () -> execute(this::sendBatchedStates);
+
     /** Host for messages */
     final private String host = InetAddress.getLocalHost().getHostName();
 
@@ -84,6 +101,7 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
         this.server = server;
         this.work_queue = work_queue;
         this.root_name = root_name;
+        batch_window_ms = Math.round(AlarmServerPreferences.getStateBatchWindow() * 1000);
         idle_timer = new TimeoutTimer(Preferences.getJMS_IdleTimeout()*1000)
         {
             @Override
@@ -254,6 +272,11 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
     }
 
     /** Notify clients of new alarm state.
+     *
+     *  <p>When using a batch window, the update is combined
+     *  with other updates into one message.
+     *  Only the latest update of a PV within the window is sent.
+     *
      *  @param pv PV that changes alarm state
      *  @param current_severity Current severity of the PV
      *  @param current_message Current message of the PV
@@ -269,6 +292,21 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
             final String value,
             final Instant timestamp)
     {
+        if (batch_window_ms > 0)
+        {
+            final boolean first;
+            synchronized (batched_states)
+            {
+                first = batched_states.isEmpty();
+                batched_states.put(pv.getName(), new AlarmServer.Update(pv, current_severity, current_message,
+                                                                         alarm_severity, alarm_message, value, timestamp));
+            }
+            // First update in the window schedules sending the batch
+            if (first)
+                TimerWheel.getShared().schedule(queue_batch, batch_window_ms, TimeUnit.MILLISECONDS);
+            idle_timer.reset();
+            return;
+        }
         execute(new Runnable()
         {
             @Override
@@ -280,15 +318,8 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
                             AlarmLogic.getMaintenanceMode()
                             ? JMSAlarmMessage.TEXT_STATE_MAINTENANCE
                             : JMSAlarmMessage.TEXT_STATE);
-                    map.setString(JMSLogMessage.NAME, pv.getName());
-                    map.setString(JMSAlarmMessage.CONFIG, pv.getPathName());
-                    map.setString(JMSLogMessage.SEVERITY, alarm_severity.name());
-                    map.setString(JMSAlarmMessage.STATUS,  alarm_message);
-                    if (value != null)
-                        map.setString(JMSAlarmMessage.VALUE, value);
-                    map.setString(JMSAlarmMessage.EVENTTIME, JMSAlarmMessage.formatTime(timestamp));
-                    map.setString(JMSAlarmMessage.CURRENT_SEVERITY, current_severity.name());
-                    map.setString(JMSAlarmMessage.CURRENT_STATUS, current_message);
+                    setState(map, -1, pv, current_severity, current_message,
+                             alarm_severity, alarm_message, value, timestamp);
                     server_producer.send(map);
                 }
                 catch (Exception ex)
@@ -300,6 +331,64 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
         idle_timer.reset();
     }
 
+    /** Send batched state updates, invoked on communicator thread */
+    private void sendBatchedStates()
+    {
+        final AlarmServer.Update[] updates;
+        synchronized (batched_states)
+        {
+            updates = batched_states.values().toArray(new AlarmServer.Update[batched_states.size()]);
+            batched_states.clear();
+        }
+        try
+        {
+            final String text = AlarmLogic.getMaintenanceMode()
+                              ? JMSAlarmMessage.TEXT_STATES_MAINTENANCE
+                              : JMSAlarmMessage.TEXT_STATES;
+            for (int start=0; start<updates.length; start += MAX_BATCH_SIZE)
+            {
+                final int count = Math.min(MAX_BATCH_SIZE, updates.length - start);
+                final MapMessage map = createAlarmMessage(text);
+                map.setInt(JMSAlarmMessage.COUNT, count);
+                for (int i=0; i<count; ++i)
+                {
+                    final AlarmServer.Update u = updates[start + i];
+                    setState(map, i, u.pv, u.currentSeverity, u.currentMessage,
+                             u.alarmSeverity, u.alarmMessage, u.value, u.timestamp);
+                }
+                server_producer.send(map);
+            }
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Cannot send state update batch", ex);
+        }
+    }
+
+    /** Add state of a PV to message
+     *  @param map Message
+     *  @param index Index of state in batch, -1 for message with single state
+     *  @see JMSAlarmMessage#batchProperty(String, int)
+     */
+    private void setState(final MapMessage map, final int index,
+            final AlarmPV pv,
+            final SeverityLevel current_severity,
+            final String current_message,
+            final SeverityLevel alarm_severity, final String alarm_message,
+            final String value,
+            final Instant timestamp) throws Exception
+    {
+        map.setString(JMSAlarmMessage.batchProperty(JMSLogMessage.NAME, index), pv.getName());
+        map.setString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.CONFIG, index), pv.getPathName());
+        map.setString(JMSAlarmMessage.batchProperty(JMSLogMessage.SEVERITY, index), alarm_severity.name());
+        map.setString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.STATUS, index),  alarm_message);
+        if (value != null)
+            map.setString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.VALUE, index), value);
+        map.setString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.EVENTTIME, index), JMSAlarmMessage.formatTime(timestamp));
+        map.setString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.CURRENT_SEVERITY, index), current_severity.name());
+        map.setString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.CURRENT_STATUS, index), current_message);
+    }
+
     /** Notify 'global' clients of new alarm state.
      *  @param pv PV that changes alarm state
      *  @param alarm_severity Alarm severity
@@ -423,7 +512,7 @@ public class ServerCommunicator extends JMSCommunicationWorkQueueThread
             else if (JMSAlarmMessage.TEXT_UNACKNOWLEDGE.equals(text))
                 server.acknowledge(name, false);
             else if (JMSAlarmMessage.TEXT_CONFIG.equals(text))
-                work_queue.execute(new Runnable()
+                work_queue.execute(name, new Runnable()
                 {
                     @Override
                     public void run()
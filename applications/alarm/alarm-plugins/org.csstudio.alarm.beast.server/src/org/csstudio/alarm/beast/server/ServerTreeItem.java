@@ -12,71 +12,149 @@ import org.csstudio.alarm.beast.TreeItem;
 
 /** Node in the alarm tree as used by the server
  *
- *  <p>Tracks the alarm severity at this level in the hierarchy
+ *  <p>Tracks the alarm severity at this level in the hierarchy.
+ *
+ *  <p>Instead of scanning all child elements whenever one of them changes,
+ *  each node counts its child elements by severity level,
+ *  both for the alarm (latched) and the current severity.
+ *  A change of a child updates these counts,
+ *  and only if that changes the maximum severity of the node
+ *  is the change passed on to the parent.
+ *
  *  @author Kay Kasemir
  */
 public class ServerTreeItem extends TreeItem
 {
     private static final long serialVersionUID = -2991781205177465014L;
 
+    private static final SeverityLevel[] LEVELS = SeverityLevel.values();
+
+    /** Maximum alarm severity of child elements */
     protected volatile SeverityLevel severity = SeverityLevel.UNDEFINED;
 
+    /** Maximum current severity of child elements */
+    private volatile SeverityLevel current_severity = SeverityLevel.UNDEFINED;
+
+    /** Number of child elements by alarm severity, index is ordinal.
+     *  <p>SYNC on this
+     */
+    private final int[] severity_count = new int[LEVELS.length];
+
+    /** Number of child elements by current severity, index is ordinal.
+     *  <p>SYNC on this
+     */
+    private final int[] current_count = new int[LEVELS.length];
+
     private final String severity_pv_name;
 
     public ServerTreeItem(final ServerTreeItem parent, final String name, final int id, final String severity_pv)
     {
         super(parent, name, id);
         this.severity_pv_name = severity_pv;
+        // Count new item in parent with its initial severity
+        if (parent != null)
+            parent.updateCounts(null, null, severity, current_severity);
     }
 
-    /** Set severity of this item by maximizing over its child severities.
-     *  Recursively updates parent items.
-     */
-    public void maximizeSeverity()
+    /** @return Maximum alarm severity of child elements */
+    public SeverityLevel getSeverity()
     {
-        boolean changed = false;
+        return severity;
+    }
 
-        SeverityLevel new_severity = SeverityLevel.OK;
+    /** @return Maximum current severity of child elements */
+    public SeverityLevel getCurrentSeverity()
+    {
+        return current_severity;
+    }
 
+    /** Update severity of this item for a change of a child PV.
+     *  Recursively updates parent items.
+     *  @param pv Child PV that might have changed its alarm state or enablement
+     */
+    public void updateSeverity(final AlarmPV pv)
+    {
+        final SeverityLevel old_severity, old_current, new_severity, new_current;
         synchronized (this)
         {
-            final int n = getChildCount();
-            for (int i=0; i<n; ++i)
+            final AlarmLogic logic = pv.getAlarmLogic();
+            if (logic.isEnabled())
             {
-                // Maximize severity of all child elements
-                final TreeItem child = getChild(i);
-                final SeverityLevel child_severity;
-                if (child instanceof AlarmPV)
-                {
-                    final AlarmPV pv = (AlarmPV) child;
-                    if (! pv.getAlarmLogic().isEnabled())
-                        continue;
-                    child_severity = pv.getAlarmLogic().getAlarmState().getSeverity();
-                }
-                else
-                    child_severity = ((ServerTreeItem) child).severity;
-
-                if (child_severity.ordinal() > new_severity.ordinal())
-                    new_severity = child_severity;
+                new_severity = logic.getAlarmState().getSeverity();
+                new_current = logic.getCurrentState().getSeverity();
             }
+            else
+                new_severity = new_current = SeverityLevel.OK;
+            old_severity = pv.counted_severity;
+            old_current = pv.counted_current;
+            pv.counted_severity = new_severity;
+            pv.counted_current = new_current;
         }
+        updateChild(old_severity, old_current, new_severity, new_current);
+    }
 
-        if (new_severity != severity)
+    /** Update counts and severity of this item for a change of a child element.
+     *  Recursively updates parent items.
+     *  @param old_severity Previous alarm severity of the child, <code>null</code> if not counted
+     *  @param old_current Previous current severity of the child, <code>null</code> if not counted
+     *  @param new_severity New alarm severity of the child
+     *  @param new_current New current severity of the child
+     */
+    private void updateChild(final SeverityLevel old_severity, final SeverityLevel old_current,
+                             final SeverityLevel new_severity, final SeverityLevel new_current)
+    {
+        final SeverityLevel previous, previous_current, updated, updated_current;
+        synchronized (this)
         {
-            severity = new_severity;
-            changed = true;
+            updateCounts(old_severity, old_current, new_severity, new_current);
+            previous = severity;
+            previous_current = current_severity;
+            severity = updated = getMaximum(severity_count);
+            current_severity = updated_current = getMaximum(current_count);
         }
+        if (updated == previous  &&  updated_current == previous_current)
+            return;
 
         // Percolate changes towards root
         final TreeItem parent = getParent();
         if (parent instanceof ServerTreeItem)
-            ((ServerTreeItem)parent).maximizeSeverity();
+            ((ServerTreeItem)parent).updateChild(previous, previous_current, updated, updated_current);
 
         // If _this_ node changed its severity, update optional severity PV
-        if (changed)
+        if (updated != previous)
             updateSeverityPV();
     }
 
+    /** Update counts of child elements by severity
+     *  @param old_severity Previous alarm severity of a child, <code>null</code> if not counted
+     *  @param old_current Previous current severity of a child, <code>null</code> if not counted
+     *  @param new_severity New alarm severity of the child
+     *  @param new_current New current severity of the child
+     */
+    private synchronized void updateCounts(final SeverityLevel old_severity, final SeverityLevel old_current,
+                                           final SeverityLevel new_severity, final SeverityLevel new_current)
+    {
+        if (old_severity != null)
+            --severity_count[old_severity.ordinal()];
+        ++severity_count[new_severity.ordinal()];
+        if (old_current != null)
+            --current_count[old_current.ordinal()];
+        ++current_count[new_current.ordinal()];
+    }
+
+    /** @param counts Number of child elements by severity
+     *  @return Highest severity of any child element, OK if there are none
+     */
+    private static SeverityLevel getMaximum(final int[] counts)
+    {
+        // Updates of child elements may be applied out of order,
+        // so counts can temporarily be negative
+        for (int i=counts.length-1; i>0; --i)
+            if (counts[i] > 0)
+                return LEVELS[i];
+        return SeverityLevel.OK;
+    }
+
     /** Write to optional severity PV */
     void updateSeverityPV()
     {
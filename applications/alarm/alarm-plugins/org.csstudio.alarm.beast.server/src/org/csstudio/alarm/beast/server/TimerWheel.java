@@ -0,0 +1,402 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/** Hashed timing wheel
+ *
+ *  <p>Executes commands after a delay.
+ *  Meant for many delays that are mostly cancelled before they expire,
+ *  like alarm delays of PVs that briefly enter and leave an alarm state.
+ *
+ *  <p>A {@link java.util.Timer} keeps its tasks in a heap,
+ *  where cancelled tasks linger until they expire or the timer is purged.
+ *  The wheel keeps timeouts in a ring of buckets, one per 'tick'.
+ *  Scheduling adds a timeout to a queue that the wheel's thread
+ *  moves into the bucket for the expiration tick.
+ *  Cancelling marks the timeout, which the wheel's thread then
+ *  removes from its bucket.
+ *  Both are O(1).
+ *
+ *  <p>On each tick, the wheel's thread checks one bucket.
+ *  Timeouts are thus executed up to one tick late.
+ *  Expired commands are handed to a fixed number of worker threads,
+ *  so a slow command does not delay the wheel.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class TimerWheel
+{
+    /** Timer wheel shared by the alarm server */
+    private static volatile TimerWheel shared = null;
+
+    /** Duration of one tick [ms] */
+    final public static long TICK_MS = 10;
+
+    /** Number of buckets, i.e. ticks per revolution of the wheel */
+    final public static int BUCKETS = 512;
+
+    /** Number of worker threads for the shared wheel */
+    final public static int WORKERS = 2;
+
+    /** Handle to a scheduled command */
+    public static class Timeout implements Runnable
+    {
+        private static final int PENDING = 0, CANCELLED = 1, EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        final private TimerWheel wheel;
+        final private Runnable command;
+
+        /** Time of expiration, nanoseconds since start of wheel */
+        final private long deadline;
+
+        private volatile int state = PENDING;
+
+        // Only accessed by the wheel's thread
+        private long rounds;
+        private Bucket bucket;
+        private Timeout previous, next;
+
+        private Timeout(final TimerWheel wheel, final Runnable command, final long deadline)
+        {
+            this.wheel = wheel;
+            this.command = command;
+            this.deadline = deadline;
+        }
+
+        /** Cancel the timeout
+         *  @return <code>true</code> if cancelled,
+         *          <code>false</code> if it already expired or was cancelled
+         */
+        public boolean cancel()
+        {
+            if (! STATE.compareAndSet(this, PENDING, CANCELLED))
+                return false;
+            wheel.pending.decrementAndGet();
+            wheel.cancelled_count.increment();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        /** @return <code>true</code> if the timeout was cancelled */
+        public boolean isCancelled()
+        {
+            return state == CANCELLED;
+        }
+
+        /** @return <code>true</code> if the timeout expired, i.e. the command is about to execute or has executed */
+        public boolean isExpired()
+        {
+            return state == EXPIRED;
+        }
+
+        /** Invoked by worker thread */
+        @Override
+        public void run()
+        {
+            final long late = wheel.now() - deadline;
+            wheel.total_lateness.add(late);
+            wheel.max_lateness.accumulateAndGet(late, Math::max);
+            try
+            {
+                command.run();
+            }
+            catch (Throwable ex)
+            {
+                Activator.getLogger().log(Level.SEVERE, "Error in timer command " + command, ex);
+            }
+        }
+    }
+
+    /** Bucket of the wheel, a doubly linked list of timeouts.
+     *  Only accessed by the wheel's thread.
+     */
+    private static class Bucket
+    {
+        private Timeout head, tail;
+
+        void add(final Timeout timeout)
+        {
+            timeout.bucket = this;
+            if (head == null)
+                head = tail = timeout;
+            else
+            {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        /** @return Next timeout in bucket */
+        Timeout remove(final Timeout timeout)
+        {
+            final Timeout next = timeout.next;
+            if (timeout.previous != null)
+                timeout.previous.next = next;
+            if (next != null)
+                next.previous = timeout.previous;
+            if (timeout == head)
+                head = next;
+            if (timeout == tail)
+                tail = timeout.previous;
+            timeout.previous = timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    final private long tick_ns;
+    final private Bucket[] buckets;
+    final private int mask;
+
+    /** Start of the wheel, basis for all deadlines [ns] */
+    final private long start = System.nanoTime();
+
+    /** Timeouts that still need to be placed in their bucket */
+    final private Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+
+    /** Timeouts that still need to be removed from their bucket */
+    final private Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /** Threads that execute expired commands */
+    final private ExecutorService workers;
+
+    final private Thread thread;
+
+    private volatile boolean run = true;
+
+    // Statistics
+    final private AtomicInteger pending = new AtomicInteger();
+    final private LongAdder scheduled_count = new LongAdder();
+    final private LongAdder cancelled_count = new LongAdder();
+    final private LongAdder expired_count = new LongAdder();
+    final private LongAdder total_lateness = new LongAdder();
+    final private AtomicLong max_lateness = new AtomicLong();
+
+    /** @return Timer wheel shared by the alarm server */
+    public static TimerWheel getShared()
+    {
+        TimerWheel wheel = shared;
+        if (wheel == null)
+        {
+            synchronized (TimerWheel.class)
+            {
+                wheel = shared;
+                if (wheel == null)
+                    shared = wheel = new TimerWheel("AlarmTimer", TICK_MS, BUCKETS, WORKERS);
+            }
+        }
+        return wheel;
+    }
+
+    /** Create and start timer wheel
+     *  @param name Name of the wheel's thread
+     *  @param tick_ms Duration of one tick [ms]
+     *  @param buckets Number of buckets, will be rounded up to a power of 2
+     *  @param workers Number of worker threads
+     */
+    public TimerWheel(final String name, final long tick_ms, final int buckets, final int workers)
+    {
+        tick_ns = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tick_ms));
+        int size = 1;
+        while (size < buckets)
+            size <<= 1;
+        this.buckets = new Bucket[size];
+        for (int i=0; i<size; ++i)
+            this.buckets[i] = new Bucket();
+        mask = size - 1;
+
+        final AtomicInteger worker_number = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workers), runnable ->
+        {
+            final Thread worker = new Thread(runnable, name + " Worker " + worker_number.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+
+        thread = new Thread(this::turn, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @return Current time relative to start of wheel [ns] */
+    private long now()
+    {
+        return System.nanoTime() - start;
+    }
+
+    /** Schedule a command
+     *  @param command Command to execute
+     *  @param delay Delay
+     *  @param unit Unit of delay
+     *  @return {@link Timeout} that can be used to cancel the command
+     */
+    public Timeout schedule(final Runnable command, final long delay, final TimeUnit unit)
+    {
+        final Timeout timeout = new Timeout(this, command, now() + unit.toNanos(Math.max(0, delay)));
+        pending.incrementAndGet();
+        scheduled_count.increment();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /** Wheel's thread */
+    private void turn()
+    {
+        long tick = 0;
+        while (run)
+        {
+            // Wait for end of current tick
+            final long end = (tick + 1) * tick_ns;
+            long wait = end - now();
+            while (wait > 0)
+            {
+                LockSupport.parkNanos(this, wait);
+                if (! run)
+                    return;
+                wait = end - now();
+            }
+            removeCancelled();
+            addScheduled(tick);
+            expire(buckets[(int) (tick & mask)]);
+            ++tick;
+        }
+    }
+
+    /** Remove cancelled timeouts from their bucket */
+    private void removeCancelled()
+    {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null)
+            // Cancelled before it was placed in bucket?
+            if (timeout.bucket != null)
+                timeout.bucket.remove(timeout);
+    }
+
+    /** Place scheduled timeouts into buckets
+     *  @param tick Current tick
+     */
+    private void addScheduled(final long tick)
+    {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null)
+        {
+            if (timeout.state != Timeout.PENDING)
+                continue;
+            // Tick at the end of which the timeout expires,
+            // but at least the current tick if it's already overdue
+            final long expiration = Math.max(timeout.deadline / tick_ns, tick);
+            timeout.rounds = (expiration - tick) / buckets.length;
+            buckets[(int) (expiration & mask)].add(timeout);
+        }
+    }
+
+    /** Expire timeouts of one bucket
+     *  @param bucket Bucket for the current tick
+     */
+    private void expire(final Bucket bucket)
+    {
+        Timeout timeout = bucket.head;
+        while (timeout != null)
+        {
+            if (timeout.rounds > 0)
+            {
+                --timeout.rounds;
+                timeout = timeout.next;
+            }
+            else
+            {
+                final Timeout expired = timeout;
+                timeout = bucket.remove(expired);
+                if (Timeout.STATE.compareAndSet(expired, Timeout.PENDING, Timeout.EXPIRED))
+                {
+                    pending.decrementAndGet();
+                    expired_count.increment();
+                    workers.execute(expired);
+                }
+            }
+        }
+    }
+
+    /** @return Number of scheduled commands that have not expired nor been cancelled */
+    public int getPendingCount()
+    {
+        return pending.get();
+    }
+
+    /** @return Number of scheduled commands */
+    public long getScheduledCount()
+    {
+        return scheduled_count.sum();
+    }
+
+    /** @return Number of cancelled commands */
+    public long getCancelledCount()
+    {
+        return cancelled_count.sum();
+    }
+
+    /** @return Number of expired commands */
+    public long getExpiredCount()
+    {
+        return expired_count.sum();
+    }
+
+    /** @return Average time that expired commands executed after their deadline [ms] */
+    public double getAverageLateness()
+    {
+        final long count = expired_count.sum();
+        return count > 0 ? total_lateness.sum() / 1e6 / count : 0.0;
+    }
+
+    /** @return Maximum time that expired commands executed after their deadline [ms] */
+    public double getMaxLateness()
+    {
+        return max_lateness.get() / 1e6;
+    }
+
+    /** Reset maximum lateness */
+    public void resetStatistics()
+    {
+        max_lateness.set(0);
+    }
+
+    /** Stop the wheel and its workers.
+     *  Pending commands will not be executed.
+     */
+    public void stop()
+    {
+        run = false;
+        LockSupport.unpark(thread);
+        workers.shutdown();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: %d pending, %d scheduled, %d cancelled, %d expired, lateness avg. %.1f ms, max %.1f ms",
+                             thread.getName(), getPendingCount(), getScheduledCount(), getCancelledCount(), getExpiredCount(),
+                             getAverageLateness(), getMaxLateness());
+    }
+}
@@ -11,6 +11,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -100,6 +103,95 @@ public class WorkQueueUnitTest
         assertEquals(0.0, seconds, 0.01);
     }
 
+    @Test
+    public void testKeyedCommands() throws Exception
+    {
+        final WorkQueue queue = new WorkQueue();
+        for (int i=0; i<5; ++i)
+        {
+            final int value = i;
+            queue.execute("pv1", () -> result += "pv1=" + value + " ");
+            queue.execute("pv2", () -> result += "pv2=" + value + " ");
+        }
+        queue.execute(() -> result += "other");
+        // Only the latest command per key remains, in original order
+        assertEquals(3, queue.size());
+        queue.performQueuedCommands();
+        System.out.println(result);
+        assertEquals("pv1=4 pv2=4 other", result);
+        assertEquals(3, queue.getExecutedCount());
+        assertEquals(8, queue.getCoalescedCount());
+        assertEquals(3, queue.getMaxSize());
+
+        // Command for key that's currently executing is queued again
+        result = "";
+        queue.execute("pv1", () ->
+        {
+            result += "first ";
+            queue.execute("pv1", () -> result += "second");
+        });
+        queue.performQueuedCommands();
+        assertEquals("first second", result);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testConsumers() throws Exception
+    {
+        final int consumers = 4, keys = 10, commands = 100000;
+        final WorkQueue queue = new WorkQueue(consumers);
+        final AtomicInteger[] active = new AtomicInteger[keys];
+        final AtomicInteger[] latest = new AtomicInteger[keys];
+        for (int k=0; k<keys; ++k)
+        {
+            active[k] = new AtomicInteger();
+            latest[k] = new AtomicInteger(-1);
+        }
+        final AtomicBoolean concurrent = new AtomicBoolean();
+
+        final AtomicBoolean run = new AtomicBoolean(true);
+        final Thread[] threads = new Thread[consumers];
+        for (int t=0; t<consumers; ++t)
+        {
+            threads[t] = new Thread(() ->
+            {
+                while (run.get())
+                    queue.performQueuedCommands(10);
+            }, "Consumer" + t);
+            threads[t].start();
+        }
+
+        for (int i=0; i<commands; ++i)
+        {
+            final int key = i % keys, value = i;
+            queue.execute(key, () ->
+            {
+                if (active[key].incrementAndGet() != 1)
+                    concurrent.set(true);
+                latest[key].set(value);
+                active[key].decrementAndGet();
+            });
+        }
+
+        // Wait for queue to drain
+        while (queue.size() > 0)
+            Thread.sleep(10);
+        Thread.sleep(100);
+        run.set(false);
+        for (Thread thread : threads)
+            thread.join();
+
+        System.out.format("Executed %d, coalesced %d, max. queue size %d, latency avg. %.3f ms, max %.3f ms\n",
+                          queue.getExecutedCount(), queue.getCoalescedCount(), queue.getMaxSize(),
+                          queue.getAverageLatency(), queue.getMaxLatency());
+        assertTrue("Commands for same key executed concurrently", ! concurrent.get());
+        assertEquals(commands, queue.getExecutedCount() + queue.getCoalescedCount());
+        // Last command for each key was executed
+        for (int k=0; k<keys; ++k)
+            assertEquals(commands - keys + k, latest[k].get());
+        assertTrue(queue.getMaxSize() <= keys);
+    }
+
     // Meant to run in JProfiler, used to
     // determine queue performance
     @Ignore
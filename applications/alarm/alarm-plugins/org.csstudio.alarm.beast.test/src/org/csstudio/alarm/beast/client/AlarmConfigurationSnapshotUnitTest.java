@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.client;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link AlarmConfigurationSnapshot}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class AlarmConfigurationSnapshotUnitTest
+{
+    private static String dump(final AlarmTreeItem item)
+    {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(buf);
+        item.dump(out);
+        out.close();
+        return buf.toString();
+    }
+
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        final AlarmTreeRoot root = new AlarmTreeRoot("Test", 1);
+        root.setGuidance(new GDCDataStructure[] { new GDCDataStructure("Root", "Guidance for the root") });
+        final AlarmTreeItem area = new AlarmTreeItem(root, "Area", 2);
+        area.setConfigTime(Instant.ofEpochSecond(1000, 42));
+        area.setDisplays(new GDCDataStructure[] { new GDCDataStructure("Overview", "/displays/overview.opi") });
+        area.setAutomatedActions(new AADataStructure[] { new AADataStructure("Severity", "sevrpv:Area:Severity", 0) });
+        final AlarmTreePV pv = new AlarmTreePV(area, "pv1", 3);
+        pv.setDescription("Test PV");
+        pv.setAnnunciating(true);
+        pv.setLatching(false);
+        pv.setDelay(5);
+        pv.setCount(2);
+        pv.setFilter("pv2 > 1");
+        pv.setCommands(new GDCDataStructure[] { new GDCDataStructure("Reset", "caput pv1 0") });
+        final AlarmTreePV disabled = new AlarmTreePV(root, "pv2", 4);
+        disabled.setEnabled(false);
+
+        final File file = File.createTempFile("alarm", ".snapshot");
+        file.deleteOnExit();
+        AlarmConfigurationSnapshot.write(file, "v1", root);
+
+        // Reading other version or configuration is ignored
+        final Map<String, AlarmTreePV> pvs = new HashMap<>();
+        assertThat(AlarmConfigurationSnapshot.read(file, "v2", new AlarmTreeRoot("Test", 1), pvs), equalTo(false));
+        assertThat(AlarmConfigurationSnapshot.read(file, "v1", new AlarmTreeRoot("Other", 1), pvs), equalTo(false));
+        assertThat(pvs.size(), equalTo(0));
+
+        final AlarmTreeRoot copy = new AlarmTreeRoot("Test", 1);
+        assertThat(AlarmConfigurationSnapshot.read(file, "v1", copy, pvs), equalTo(true));
+        assertThat(dump(copy), equalTo(dump(root)));
+        assertThat(pvs.size(), equalTo(2));
+
+        final AlarmTreePV pv_copy = pvs.get("pv1");
+        assertThat(pv_copy.getPathName(), equalTo(pv.getPathName()));
+        assertThat(pv_copy.getDescription(), equalTo("Test PV"));
+        assertThat(pv_copy.isAnnunciating(), equalTo(true));
+        assertThat(pv_copy.isLatching(), equalTo(false));
+        assertThat(pv_copy.getDelay(), equalTo(5));
+        assertThat(pv_copy.getCount(), equalTo(2));
+        assertThat(pv_copy.getFilter(), equalTo("pv2 > 1"));
+        assertThat(pv_copy.getCommands()[0], equalTo(pv.getCommands()[0]));
+        assertThat(pvs.get("pv2").isEnabled(), equalTo(false));
+
+        final AlarmTreeItem area_copy = copy.getChild("Area");
+        assertThat(area_copy.getConfigTimestamp(), equalTo(area.getConfigTimestamp()));
+        assertThat(area_copy.getDisplays()[0], equalTo(area.getDisplays()[0]));
+        assertThat(area_copy.getAutomatedActions()[0], equalTo(area.getAutomatedActions()[0]));
+        assertThat(copy.getGuidance()[0], equalTo(root.getGuidance()[0]));
+    }
+}
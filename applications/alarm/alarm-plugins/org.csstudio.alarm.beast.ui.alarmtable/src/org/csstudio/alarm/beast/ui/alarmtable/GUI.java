@@ -932,6 +932,14 @@ public class GUI extends Composite implements AlarmClientModelListener
         }
     }
 
+    // @see AlarmClientModelListener
+    @Override
+    public void newAlarmStates(final AlarmClientModel model, final List<AlarmTreePV> pvs, final boolean parent_changed)
+    {
+        // Table is updated from the model's alarm lists, not the individual PVs
+        newAlarmState(model, null, parent_changed);
+    }
+
     private AlarmTreePV[] filter(AlarmTreePV[] alarms)
     {
         if (filter_item_parent == null || filter_item_parent instanceof AlarmTreeRoot || alarms.length == 0)
@@ -493,6 +493,16 @@ public class GUI implements AlarmClientModelListener
         }
     }
 
+    /** Alarm state of several PVs changed, refresh the display once
+     *  @see AlarmClientModelListener
+     */
+    @Override
+    public void newAlarmStates(final AlarmClientModel model,
+            final List<AlarmTreePV> pvs, final boolean parent_changed)
+    {
+        throttle.trigger();
+    }
+
     /** Acknowledge currently selected alarms */
     @SuppressWarnings("unchecked")
     public void acknowledgeSelectedAlarms()
@@ -106,6 +106,16 @@ public class AreaAlarmModel implements AlarmClientModelListener
         listener.alarmsChanged();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void newAlarmStates(final AlarmClientModel model, final List<AlarmTreePV> pvs,
+            final boolean parent_changed)
+    {
+        // Check all items once for the complete batch
+        if (parent_changed)
+            listener.alarmsChanged();
+    }
+
     /** Must be called when model no longer used to release resources */
     public void close()
     {
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Component or PV of the alarm configuration as read from the RDB
+ *
+ *  <p>Instead of querying the child elements of each node,
+ *  the alarm server and clients read all items with one query
+ *  and then assemble the alarm tree in memory.
+ *
+ *  <p>Severity and status are kept as RDB IDs,
+ *  to be decoded by the caller's severity and message mapping.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class AlarmItemRow
+{
+    /** RDB ID of the item */
+    final public int id;
+
+    /** RDB ID of the parent item */
+    final public int parent_id;
+
+    /** Name of the item */
+    final public String name;
+
+    /** Time of last configuration change or <code>null</code> */
+    final public Timestamp config_time;
+
+    /** <code>true</code> for PV, <code>false</code> for component */
+    final public boolean is_pv;
+
+    // PV configuration, only used for PVs.
+    // Boolean and Integer are <code>null</code> for NULL in RDB.
+    final public String description;
+    final public Boolean enabled;
+    final public Boolean annunciate;
+    final public Boolean latch;
+    final public int delay;
+    final public int count;
+    final public String filter;
+
+    // PV alarm state, only used for PVs
+    final public Integer current_severity_id;
+    final public Integer current_status_id;
+    final public Integer severity_id;
+    final public Integer status_id;
+    final public String value;
+    final public Timestamp alarm_time;
+
+    /** Initialize from current row of sel_all_items
+     *  @param result {@link ResultSet}
+     *  @throws Exception on error
+     */
+    private AlarmItemRow(final ResultSet result) throws Exception
+    {
+        id = result.getInt(1);
+        if (result.wasNull())
+            throw new Exception("NULL component ID");
+        config_time = result.getTimestamp(2);
+        name = result.getString(17);
+        if (result.wasNull())
+            throw new Exception("NULL component Name");
+        parent_id = result.getInt(18);
+
+        // Check PV's ID. If null, this is a component, not PV
+        final int pv_id = result.getInt(3);
+        is_pv = ! result.wasNull();
+        if (is_pv  &&  pv_id != id)
+            throw new Exception("Internal RDB error: Item '" + name + "' as ID " + id + " but also PV ID " + pv_id);
+        description = result.getString(4);
+        enabled = getBoolean(result, 5);
+        annunciate = getBoolean(result, 6);
+        latch = getBoolean(result, 7);
+        delay = result.getInt(8);
+        count = result.getInt(9);
+        filter = result.getString(10);
+        current_severity_id = getInteger(result, 11);
+        current_status_id = getInteger(result, 12);
+        severity_id = getInteger(result, 13);
+        status_id = getInteger(result, 14);
+        value = result.getString(15);
+        alarm_time = result.getTimestamp(16);
+    }
+
+    private static Boolean getBoolean(final ResultSet result, final int column) throws Exception
+    {
+        final boolean value = result.getBoolean(column);
+        return result.wasNull() ? null : value;
+    }
+
+    /** @param result {@link ResultSet}
+     *  @param column Column index
+     *  @return Integer or <code>null</code> for NULL
+     *  @throws Exception on error
+     */
+    public static Integer getInteger(final ResultSet result, final int column) throws Exception
+    {
+        final int value = result.getInt(column);
+        return result.wasNull() ? null : value;
+    }
+
+    /** Read all components and PVs
+     *
+     *  <p>Reads the items of all configurations in one query.
+     *  Items that are not below the desired root are simply
+     *  never reached when assembling the tree from the root.
+     *
+     *  @param connection RDB connection
+     *  @param sql {@link SQL}
+     *  @return Items by ID of their parent, each list ordered by ID
+     *  @throws Exception on error
+     */
+    public static Map<Integer, List<AlarmItemRow>> readChildrenByParent(final Connection connection, final SQL sql) throws Exception
+    {
+        final Map<Integer, List<AlarmItemRow>> children = new HashMap<>();
+        try
+        (
+            final Statement statement = connection.createStatement();
+            final ResultSet result = statement.executeQuery(sql.sel_all_items);
+        )
+        {
+            while (result.next())
+            {
+                final AlarmItemRow row = new AlarmItemRow(result);
+                children.computeIfAbsent(row.parent_id, parent -> new ArrayList<>()).add(row);
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public String toString()
+    {
+        return (is_pv ? "PV " : "Component ") + name + " (" + id + ")";
+    }
+}
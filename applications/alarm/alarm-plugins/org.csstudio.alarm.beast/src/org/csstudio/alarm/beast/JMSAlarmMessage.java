@@ -65,6 +65,19 @@ public class JMSAlarmMessage
      */
     final public static String TEXT_STATE_MAINTENANCE = "STATE_MAINTENANCE";
 
+    /** Value for TEXT that indicates a batch of state changes.
+     *  COUNT holds the number of states.
+     *  The state properties of each PV, like NAME, SEVERITY, ...,
+     *  are suffixed with the index of the state
+     *  @see #batchProperty(String, int)
+     */
+    final public static String TEXT_STATES = "STATES";
+
+    /** Value for TEXT that indicates a batch of state changes while in maintenance mode
+     *  @see #TEXT_STATES
+     */
+    final public static String TEXT_STATES_MAINTENANCE = "STATES_MAINTENANCE";
+
     /** Value for TEXT that indicates a configuration change.
      *  NAME will contain path to item that was added, removed,
      *  reconfigured, or null for an overall change.
@@ -106,6 +119,18 @@ public class JMSAlarmMessage
     /** Value that caused the severity/message update */
     final public static String VALUE = "VALUE";
 
+    /** Number of states in a TEXT_STATES message */
+    final public static String COUNT = "COUNT";
+
+    /** @param property Property of a state, for example NAME
+     *  @param index Index of the state in a TEXT_STATES message,
+     *               or -1 for a TEXT_STATE message
+     *  @return Property for that state in the message
+     */
+    public static String batchProperty(final String property, final int index)
+    {
+        return index < 0 ? property : property + "_" + index;
+    }
 
     /** @param timestamp Time of alarm event
      *  @return Time stamp formatted as used in JMS alarm messages
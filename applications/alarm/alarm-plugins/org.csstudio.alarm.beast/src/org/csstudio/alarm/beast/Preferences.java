@@ -58,6 +58,7 @@ public class Preferences
     final public static String GUI_UPDATE_INITIAL_MILLIS = "gui_update_initial_millis";
     final public static String BATCH_UPDATE_PERIOD = "batch_update_period";
     final public static String BATCH_SIZE = "batch_size";
+    final public static String CONFIG_SNAPSHOT_DIRECTORY = "config_snapshot_directory";
 
     final private static String SERVER_SUFFIX = "_SERVER";
     final private static String CLIENT_SUFFIX = "_CLIENT";
@@ -233,6 +234,23 @@ public class Preferences
         }
     }
 
+    /** @return Directory for local configuration snapshots, <code>null</code> to not use snapshots */
+    public static String getConfigSnapshotDirectory()
+    {
+        final String directory = getString(CONFIG_SNAPSHOT_DIRECTORY, "");
+        if (directory == null  ||  directory.isEmpty())
+            return null;
+        try
+        {
+            return replaceProperties(directory);
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Error in config_snapshot_directory preference setting", ex);
+            return null;
+        }
+    }
+
     /** @return Time in seconds to wait for OK or error from command */
     public static int getCommandCheckTime()
     {
@@ -29,6 +29,13 @@ public class SQL
     final public String sel_commands_by_id;
     final public String sel_auto_actions_by_id;
     final public String sel_items_by_parent;
+    final public String sel_all_items;
+    final public String sel_all_guidance;
+    final public String sel_all_displays;
+    final public String sel_all_commands;
+    final public String sel_all_auto_actions;
+    final public String sel_all_pv_states;
+    final public String sel_configuration_version;
     final public String sel_item_by_parent_and_name;
     final public String sel_last_item_id;
     final public String insert_item;
@@ -119,6 +126,47 @@ public class SQL
             " LEFT JOIN " + schema_prefix + "PV p ON p.COMPONENT_ID = t.COMPONENT_ID" +
             " WHERE t.PARENT_CMPNT_ID=? ORDER BY t.COMPONENT_ID";
 
+        // Selects all components and PVs of all configurations, i.e. with a parent,
+        // for assembling the alarm tree in memory instead of one query per node.
+        // Columns 1-17 must match sel_items_by_parent
+        sel_all_items =
+            //        1               2
+            "SELECT t.COMPONENT_ID, t.CONFIG_TIME," +
+            //  3               4        5              6
+            " p.COMPONENT_ID, p.DESCR, p.ENABLED_IND, p.ANNUNCIATE_IND," +
+            //  7            8        9              10        11
+            " p.LATCH_IND, p.DELAY, p.DELAY_COUNT, p.FILTER, p.CUR_SEVERITY_ID," +
+            //  12               13             14           15          16
+            " p.CUR_STATUS_ID, p.SEVERITY_ID, p.STATUS_ID, p.PV_VALUE, p.ALARM_TIME," +
+            //  17      18
+            " t.NAME, t.PARENT_CMPNT_ID" +
+            " FROM " + schema_prefix + "ALARM_TREE t" +
+            " LEFT JOIN " + schema_prefix + "PV p ON p.COMPONENT_ID = t.COMPONENT_ID" +
+            " WHERE t.PARENT_CMPNT_ID IS NOT NULL ORDER BY t.COMPONENT_ID";
+
+        // Guidance, displays, commands, automated actions of all items
+        sel_all_guidance =
+            "select COMPONENT_ID, TITLE, DETAIL FROM " + schema_prefix + "GUIDANCE ORDER BY COMPONENT_ID, GUIDANCE_ORDER";
+        sel_all_displays =
+            "select COMPONENT_ID, TITLE, DETAIL FROM " + schema_prefix + "DISPLAY ORDER BY COMPONENT_ID, DISPLAY_ORDER";
+        sel_all_commands =
+            "select COMPONENT_ID, TITLE, DETAIL FROM " + schema_prefix + "COMMAND ORDER BY COMPONENT_ID, COMMAND_ORDER";
+        sel_all_auto_actions =
+            "select COMPONENT_ID, TITLE, DETAIL, DELAY FROM " + schema_prefix + "AUTOMATED_ACTION ORDER BY COMPONENT_ID, AUTO_ACTION_ORDER";
+
+        // Alarm state of all PVs
+        sel_all_pv_states =
+            //        1             2            3                4
+            "SELECT COMPONENT_ID, ENABLED_IND, CUR_SEVERITY_ID, CUR_STATUS_ID," +
+            //  5            6          7         8
+            " SEVERITY_ID, STATUS_ID, PV_VALUE, ALARM_TIME" +
+            " FROM " + schema_prefix + "PV";
+
+        // Changes to the configuration add or remove items
+        // or update their CONFIG_TIME, which also changes this result
+        sel_configuration_version =
+            "SELECT COUNT(*), MAX(COMPONENT_ID), SUM(PARENT_CMPNT_ID), MAX(CONFIG_TIME) FROM " + schema_prefix + "ALARM_TREE";
+
         // Selects component or PV by parent ID and name. For PV, all the p.* columns are null.
         // Columns must match sel_items_by_parent except for the t.NAME that's not in here!
         sel_item_by_parent_and_name =
@@ -7,9 +7,18 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 /** Queue that receives {@link Runnable}s and executes them.
@@ -21,6 +30,12 @@ import java.util.logging.Level;
  *  For example used to re-direct execution of commands to a 'main'
  *  thread, to assert that all interactions with a certain resource
  *  happen on the same thread.
+ *  <p>
+ *  Commands can be queued with a key, for example the name of a PV.
+ *  While a command for that key is pending, a new command for the same key
+ *  replaces it, keeping its position in the queue.
+ *  Commands for the same key are never executed concurrently,
+ *  even when the queue is configured for several consumer threads.
  *
  *  @author Kay Kasemir
  *  @author Jaka Bobnar - RDB batching
@@ -28,47 +43,121 @@ import java.util.logging.Level;
 @SuppressWarnings("nls")
 public class WorkQueue implements Executor
 {
-    /** Task queue */
-    final Queue<Runnable> tasks = new LinkedList<Runnable>();
+    /** Entry in the queue */
+    private static class Task
+    {
+        /** Key or <code>null</code> */
+        final Object key;
 
-    // Compared these data structures for 'tasks':
-    //
-    // final Queue<Runnable> tasks = new LinkedList<Runnable>();
-    // final LinkedHashMap<Object, Runnable> tasks = new LinkedHashMap<Object, Runnable>();
-    //
-    // Considered LinkedHashSet, but didn't work:
-    // Inserting a 'new' ReplacableRunnable would simply keep
-    // an older entry, not update it.
+        /** Command to execute next, <code>null</code> while none is pending */
+        final AtomicReference<Runnable> command;
 
-    // JProfile results for 100 tasks, replaced 4 times:
-    //
-    //                     LinkedList  LinkedHashMap
-    // execute                 4us         10us
-    // executeReplacable      44us         10us
-    // getOldestRunnable       1us         12us
-    //
-    // Linked list is obviously slower when asked to replaced an existing
-    // runnable for the same object because of the linear lookup.
-    // But how long is the list going to be?
-    // Usually only a few noisy PVs, so maybe just 2 or 3 entries
-    // that keep getting replaced.
-    // If the test is run with only 10 tasks in the queue,
-    // executeReplacable for the LinkedList takes only 11us,
-    // i.e. similar to LinkedHashMap
+        /** Time when entry was added to the queue [ns] */
+        volatile long queued;
+
+        Task(final Object key, final Runnable command)
+        {
+            this.key = key;
+            this.command = new AtomicReference<>(command);
+        }
+    }
+
+    // Earlier implementations used a LinkedList, which needs a linear
+    // lookup to replace commands for the same key.
+    // That is fine for a few noisy PVs, but during alarm floods
+    // there can be tens of thousands of queued commands.
     //
-    // -> Simple linked list is probably good enough for the
-    // common use case, plus uses less memory.
+    // Tasks are now held in a non-blocking queue.
+    // Tasks with a key are also in a map while they are queued or executing,
+    // so a command for the same key can be replaced in O(1).
+    // Updates of the map for a key are atomic (compute),
+    // which is what orders a producer that replaces the command of a task
+    // against the consumer that completes it.
 
-    /** Thread that executes the queue. Set on first access */
-    private Thread thread;
+    /** Task queue */
+    final private Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+    /** Tasks with key that are queued or executing */
+    final private ConcurrentHashMap<Object, Task> keyed_tasks = new ConcurrentHashMap<>();
+
+    /** Signals consumers that tasks were queued */
+    final private Semaphore queued = new Semaphore(0);
+
+    /** Number of queued tasks, also the queue depth */
+    final private AtomicInteger size = new AtomicInteger();
+
+    // Statistics
+    final private AtomicInteger max_size = new AtomicInteger();
+    final private LongAdder executed = new LongAdder();
+    final private LongAdder coalesced = new LongAdder();
+    final private LongAdder total_latency = new LongAdder();
+    final private AtomicLong max_latency = new AtomicLong();
+
+    /** Maximum number of threads that execute the queue */
+    final private int consumers;
+
+    /** Threads that execute the queue. Set on first access. SYNC on this */
+    final private List<Thread> threads = new ArrayList<>();
+
+    /** Create queue executed by one thread */
+    public WorkQueue()
+    {
+        this(1);
+    }
+
+    /** Create queue executed by several threads
+     *
+     *  <p>Commands queued without key may then execute concurrently.
+     *
+     *  @param consumers Maximum number of threads that execute the queue
+     */
+    public WorkQueue(final int consumers)
+    {
+        this.consumers = Math.max(1, consumers);
+    }
 
     /** @return Number of currently queued commands on the work queue */
     public int size()
     {
-        synchronized (tasks)
-        {
-            return tasks.size();
-        }
+        return size.get();
+    }
+
+    /** @return Maximum number of queued commands */
+    public int getMaxSize()
+    {
+        return max_size.get();
+    }
+
+    /** @return Number of executed commands */
+    public long getExecutedCount()
+    {
+        return executed.sum();
+    }
+
+    /** @return Number of commands that were replaced by a newer command for the same key */
+    public long getCoalescedCount()
+    {
+        return coalesced.sum();
+    }
+
+    /** @return Average time that executed commands were queued [ms] */
+    public double getAverageLatency()
+    {
+        final long count = executed.sum();
+        return count > 0 ? total_latency.sum() / 1e6 / count : 0.0;
+    }
+
+    /** @return Maximum time that executed commands were queued [ms] */
+    public double getMaxLatency()
+    {
+        return max_latency.get() / 1e6;
+    }
+
+    /** Reset maximum size and latency */
+    public void resetStatistics()
+    {
+        max_size.set(size.get());
+        max_latency.set(0);
     }
 
     /** Add a command to the queue
@@ -78,16 +167,38 @@ public class WorkQueue implements Executor
     @Override
     public void execute(final Runnable command)
     {
-        synchronized (tasks)
-        {
-            // Hash: Use dummy key to add a new element
-            // tasks.put(new Object(), command);
-
-            // Queue:
-            tasks.add(command);
+        enqueue(new Task(null, command));
+    }
 
-            tasks.notifyAll();
+    /** Add a command to the queue, replacing a pending command for the same key.
+     *
+     *  <p>If a command for the key is queued, it is replaced by the new command,
+     *  which then executes in the place of the previous command.
+     *  If the command for the key is currently executing, the new command
+     *  is queued to execute once that's done.
+     *
+     *  @param key Key, for example name of PV, or <code>null</code> to simply queue the command
+     *  @param command the command to be added to the queue
+     */
+    public void execute(final Object key, final Runnable command)
+    {
+        if (key == null)
+        {
+            execute(command);
+            return;
         }
+        keyed_tasks.compute(key, (k, task) ->
+        {
+            if (task == null)
+            {
+                task = new Task(key, command);
+                enqueue(task);
+            }
+            else if (task.command.getAndSet(command) != null)
+                coalesced.increment();
+            // else: Task is executing and will re-queue itself for the new command
+            return task;
+        });
     }
 
     /** Add a command to the queue but only if that same command is not already in the queue.
@@ -97,34 +208,56 @@ public class WorkQueue implements Executor
      */
     public void executeIfNotPending(final Runnable command)
     {
-        synchronized (tasks)
-        {
-            if (!tasks.contains(command))
-            {
-                tasks.add(command);
-                tasks.notifyAll();
-            }
-        }
+        execute(command, command);
+    }
+
+    /** @param task Task to add to queue */
+    private void enqueue(final Task task)
+    {
+        task.queued = System.nanoTime();
+        tasks.add(task);
+        max_size.accumulateAndGet(size.incrementAndGet(), Math::max);
+        queued.release();
     }
 
-    /** @return Oldest runnable in the queue or <code>null</code> */
-    private Runnable getOldestRunnable()
+    /** @return Oldest task in the queue or <code>null</code> */
+    private Task getOldestTask()
     {
-        synchronized (tasks)
+        final Task task = tasks.poll();
+        if (task != null)
+            size.decrementAndGet();
+        return task;
+    }
+
+    /** @param task Task to execute */
+    private void perform(final Task task)
+    {
+        final Runnable command = task.command.getAndSet(null);
+        if (command != null)
         {
-            // Hash: Need iterator to get oldest
-            //final Iterator<Runnable> iter = tasks.values().iterator();
-            //if (iter.hasNext())
-            //{
-            //    final Runnable result = iter.next();
-            //    iter.remove();
-            //    return result;
-            //}
-            //return null;
-
-            // Queue was designed for this
-            return tasks.poll();
+            final long latency = System.nanoTime() - task.queued;
+            total_latency.add(latency);
+            max_latency.accumulateAndGet(latency, Math::max);
+            executed.increment();
+            try
+            {
+                command.run();
+            }
+            catch (Throwable ex)
+            {
+                Activator.getLogger().log(Level.SEVERE, "Work Queue Exception", ex);
+            }
         }
+        if (task.key == null)
+            return;
+        // Release the key unless a new command arrived while executing
+        keyed_tasks.compute(task.key, (key, current) ->
+        {
+            if (task.command.get() == null)
+                return null;
+            enqueue(task);
+            return task;
+        });
     }
 
     /** Perform queued commands, return when done.
@@ -133,23 +266,17 @@ public class WorkQueue implements Executor
     public void performQueuedCommands()
     {
         // Execute all tasks on queue
-        Runnable task = getOldestRunnable();
+        Task task = getOldestTask();
         while (task != null)
         {
-            try
-            {
-                task.run();
-            }
-            catch (Throwable ex)
-            {
-                Activator.getLogger().log(Level.SEVERE, "Work Queue Exception", ex);
-            }
-            task = getOldestRunnable();
+            perform(task);
+            task = getOldestTask();
         }
     }
 
     /** Perform queued commands. If there are none, wait a little, then check again.
      *  Meant to be called in a 'main' loop, i.e. always from the same thread,
+     *  or from one of the consumer threads,
      *  using the delay to keep the loop from using all CPU, yet also not waiting indefinitely
      *  to allow termination checks.
      *
@@ -158,53 +285,50 @@ public class WorkQueue implements Executor
     public void performQueuedCommands(final int millisecs)
     {
         assertOnThread();
-        Runnable task;
-        // Wait in case there aren't any tasks in the queue
-        // Do this while sync'ed to not miss
-        // a notify.
-        synchronized (tasks)
+        Task task = getOldestTask();
+        // Wait in case there aren't any tasks in the queue.
+        // Each queued task releases a permit, so a task
+        // that's added after the check will end the wait.
+        if (task == null)
         {
-            task = getOldestRunnable();
-            if (task == null)
+            try
             {
-                try
-                {
-                    tasks.wait(millisecs);
-                }
-                catch (InterruptedException ex)
-                {
+                if (! queued.tryAcquire(millisecs, TimeUnit.MILLISECONDS))
                     return;
-                }
-                task = getOldestRunnable();
             }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+            task = getOldestTask();
         }
         // Execute all tasks on queue
         while (task != null)
         {
-            try
-            {
-                task.run();
-            }
-            catch (Throwable ex)
-            {
-                Activator.getLogger().log(Level.SEVERE, "Work Queue Exception", ex);
-            }
-            task = getOldestRunnable();
+            // Permits only need to be available for waiting consumers
+            queued.drainPermits();
+            perform(task);
+            task = getOldestTask();
         }
     }
 
-    /** Assert that the work queue is executed by the same original thread
-     *  @throws Error if called from thread other than the initial work queue thread
+    /** Assert that the work queue is executed by the same original thread,
+     *  or one of the consumer threads
+     *  @throws Error if called from thread other than the initial work queue thread(s)
      */
     public synchronized void assertOnThread()
     {
-        if (thread == null)
+        final Thread current = Thread.currentThread();
+        if (threads.contains(current))
+            return;
+        if (threads.size() < consumers)
         {
-            thread = Thread.currentThread();
+            threads.add(current);
             return;
         }
-        if (thread != Thread.currentThread())
+        if (consumers == 1)
             throw new Error("Work queue thread changed from " +
-                    thread.getName() + " to " + Thread.currentThread().getName());
+                    threads.get(0).getName() + " to " + current.getName());
+        throw new Error("Work queue executed by " + consumers + " threads, not also by " + current.getName());
     }
 }
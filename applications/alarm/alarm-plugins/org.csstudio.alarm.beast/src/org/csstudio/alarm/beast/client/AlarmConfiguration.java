@@ -7,6 +7,7 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.client;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -18,10 +19,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.csstudio.alarm.beast.Activator;
+import org.csstudio.alarm.beast.AlarmItemRow;
 import org.csstudio.alarm.beast.AlarmTreePath;
 import org.csstudio.alarm.beast.Messages;
 import org.csstudio.alarm.beast.SQL;
@@ -73,7 +76,13 @@ public class AlarmConfiguration
     private HashMap<String, AlarmTreePV> pvs = new HashMap<String, AlarmTreePV>();
 
     /** Re-used statements */
-    private PreparedStatement sel_items_by_parent_statement, sel_pv_by_id_statement;
+    private PreparedStatement sel_pv_by_id_statement;
+
+    /** RDB URL, part of the snapshot version */
+    final private String url;
+
+    /** Directory for configuration snapshots, <code>null</code> to not use snapshots */
+    private volatile File snapshot_directory = null;
 
 
     /** Initialize
@@ -89,6 +98,7 @@ public class AlarmConfiguration
     {
         // Allow auto-reconnect?
         this.auto_reconnect = auto_reconnect;
+        this.url = url;
         try
         {
             rdb = RDBUtil.connect(url, user, password, auto_reconnect);
@@ -126,6 +136,20 @@ public class AlarmConfiguration
     }
 
 
+    /** Use local snapshots of the configuration
+     *
+     *  <p>When reading a configuration, a snapshot in this directory
+     *  is used if the configuration in the RDB has not changed.
+     *  Otherwise the configuration is read from the RDB
+     *  and a new snapshot is written.
+     *
+     *  @param directory Directory for snapshot files, <code>null</code> to not use snapshots
+     */
+    public void setSnapshotDirectory(final File directory)
+    {
+        snapshot_directory = directory;
+    }
+
     /** List all configuration 'root' element names
      *  @return Array of 'root' elements
      *  @throws Exception on error
@@ -245,9 +269,47 @@ public class AlarmConfiguration
                 return (AlarmTreeRoot) addRootOrComponent(null, root_name);
             }
             final int id = result.getInt(1);
+
+            // Use snapshot for unchanged configuration
+            final File directory = snapshot_directory;
+            final File snapshot = directory == null ? null : new File(directory, root_name + ".snapshot");
+            String version = null;
+            if (snapshot != null)
+            {
+                version = url + " " + config_reader.readConfigurationVersion();
+                final AlarmTreeRoot root = createAlarmTreeRoot(id, root_name);
+                try
+                {
+                    if (AlarmConfigurationSnapshot.read(snapshot, version, root, pvs))
+                    {
+                        readPVStates();
+                        return root;
+                    }
+                }
+                catch (Exception ex)
+                {
+                    Activator.getLogger().log(Level.WARNING, "Cannot read configuration snapshot " + snapshot, ex);
+                    pvs.clear();
+                }
+            }
+
             final AlarmTreeRoot root = createAlarmTreeRoot(id, root_name);
+            config_reader.prefetchGuidanceDisplaysCommands();
             config_reader.readGuidanceDisplaysCommands(root);
-            readChildren(root, monitor, monitor_update_delay);
+            final Map<Integer, List<AlarmItemRow>> children = AlarmItemRow.readChildrenByParent(connection, sql);
+            addChildren(root, children, monitor, monitor_update_delay);
+
+            if (snapshot != null  &&  !monitor.isCanceled())
+            {
+                try
+                {
+                    AlarmConfigurationSnapshot.write(snapshot, version, root);
+                }
+                catch (Exception ex)
+                {
+                    Activator.getLogger().log(Level.WARNING, "Cannot write configuration snapshot " + snapshot, ex);
+                }
+            }
             return root;
         }
         finally
@@ -257,60 +319,78 @@ public class AlarmConfiguration
         }
     }
 
-    /** Read configuration for child elements
+    /** Add configuration for child elements
      *  @param parent Parent node. Children get added to it.
+     *  @param children Items by parent ID
      *  @param monitor Progress monitor
      *  @param monitor_update_delay Delay for updates to monitor
      *  @throws Exception on error
      */
-    private void readChildren(final AlarmTreeItem parent,
+    private void addChildren(final AlarmTreeItem parent, final Map<Integer, List<AlarmItemRow>> children,
             final IProgressMonitor monitor, final DelayCheck monitor_update_delay) throws Exception
     {
-        if (sel_items_by_parent_statement == null)
-            sel_items_by_parent_statement =
-                rdb.getConnection().prepareStatement(sql.sel_items_by_parent);
-        sel_items_by_parent_statement.setInt(1, parent.getID());
-        final ResultSet result = sel_items_by_parent_statement.executeQuery();
-
-        final List<AlarmTreeItem> recurse_items = new ArrayList<AlarmTreeItem>();
-        while (result.next()  &&  !monitor.isCanceled())
+        final List<AlarmItemRow> rows = children.get(parent.getID());
+        if (rows == null)
+            return;
+        for (AlarmItemRow row : rows)
         {
-            final int id = result.getInt(1);
-            final String name = result.getString(17);
-            final Timestamp config_time = result.getTimestamp(2);
+            if (monitor.isCanceled())
+                return;
             final AlarmTreeItem item;
-            // Check PV's ID. If null, this is a component, not PV
-            result.getInt(3);
-            if (result.wasNull())
-            {   // Component (area, system), not a PV
-                item = new AlarmTreeItem(parent, name, id);
-                recurse_items.add(item);
-            }
-            else
+            if (row.is_pv)
             {
-                final AlarmTreePV pv = new AlarmTreePV(parent, name, id);
-                pvs.put(name, pv);
+                final AlarmTreePV pv = new AlarmTreePV(parent, row.name, row.id);
+                pvs.put(row.name, pv);
                 // Periodically update progress monitor
                 if (monitor_update_delay.expired())
                 {
                     final int count = pvs.size();
                     monitor.subTask(NLS.bind(Messages.ReadConfigProgressFmt, count));
                 }
-                config_reader.configurePVfromResult(pv, result, severity_mapping, message_mapping);
+                config_reader.configurePVfromRow(pv, row, severity_mapping, message_mapping);
                 item = pv;
             }
-            if (config_time != null)
-                item.setConfigTime(TimestampHelper.toEPICSTime(config_time));
+            else
+                item = new AlarmTreeItem(parent, row.name, row.id);
+            if (row.config_time != null)
+                item.setConfigTime(TimestampHelper.toEPICSTime(row.config_time));
             config_reader.readGuidanceDisplaysCommands(item);
+            if (! row.is_pv)
+                addChildren(item, children, monitor, monitor_update_delay);
         }
-        result.close();
+    }
 
-        // Recurse to children
-        // Cannot do that inside the above while() because that would reuse
-        // the statement of the current ResultSet
-        for (AlarmTreeItem item : recurse_items)
-            readChildren(item, monitor, monitor_update_delay);
-        recurse_items.clear();
+    /** Read alarm state of all PVs
+     *
+     *  <p>Used after loading the configuration from a snapshot,
+     *  which does not include the alarm state.
+     *
+     *  @throws Exception on error
+     */
+    private void readPVStates() throws Exception
+    {
+        final Map<Integer, AlarmTreePV> pvs_by_id = new HashMap<>();
+        for (AlarmTreePV pv : pvs.values())
+            pvs_by_id.put(pv.getID(), pv);
+        try
+        (
+            final Statement statement = rdb.getConnection().createStatement();
+            final ResultSet result = statement.executeQuery(sql.sel_all_pv_states);
+        )
+        {
+            while (result.next())
+            {
+                final AlarmTreePV pv = pvs_by_id.get(result.getInt(1));
+                if (pv == null)
+                    continue;
+                pv.setEnabled(result.getBoolean(2));
+                config_reader.setAlarmState(pv,
+                        AlarmItemRow.getInteger(result, 3), AlarmItemRow.getInteger(result, 4),
+                        AlarmItemRow.getInteger(result, 5), AlarmItemRow.getInteger(result, 6),
+                        result.getString(7), result.getTimestamp(8),
+                        severity_mapping, message_mapping);
+            }
+        }
     }
 
     /** Add a component to the model and RDB
@@ -646,6 +726,7 @@ public class AlarmConfiguration
             statement.setString(1, new_name);
             statement.setInt(2, item.getID());
             statement.executeUpdate();
+            updateConfigTime(item);
             rdb.getConnection().commit();
         }
         catch (SQLException ex)
@@ -686,6 +767,7 @@ public class AlarmConfiguration
             statement.setInt(1, parent.getID());
             statement.setInt(2, item.getID());
             statement.executeUpdate();
+            updateConfigTime(item);
             rdb.getConnection().commit();
         }
         catch (SQLException ex)
@@ -700,6 +782,29 @@ public class AlarmConfiguration
         }
     }
 
+    /** Update configuration time of item without commit
+     *
+     *  <p>Changes the configuration version,
+     *  so clients will not use an outdated snapshot.
+     *
+     *  @param item Item that was changed
+     *  @throws Exception on error
+     */
+    private void updateConfigTime(final AlarmTreeItem item) throws Exception
+    {
+        try
+        (
+            final PreparedStatement statement = rdb.getConnection().prepareStatement(sql.update_item_config_time);
+        )
+        {
+            final Timestamp config_time = new Timestamp(new Date().getTime());
+            statement.setTimestamp(1, config_time);
+            statement.setInt(2, item.getID());
+            statement.executeUpdate();
+            item.setConfigTime(TimestampHelper.toEPICSTime(config_time));
+        }
+    }
+
     /** Remove all items from configuration.
      *  (The root element that identifies the configuration remains)
      *  @throws Exception on error
@@ -954,11 +1059,6 @@ public class AlarmConfiguration
     {
         try
         {
-            if (sel_items_by_parent_statement != null)
-            {
-                sel_items_by_parent_statement.close();
-                sel_items_by_parent_statement = null;
-            }
             if (sel_pv_by_id_statement != null)
             {
                 sel_pv_by_id_statement.close();
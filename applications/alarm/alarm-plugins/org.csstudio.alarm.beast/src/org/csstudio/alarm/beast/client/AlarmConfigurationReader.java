@@ -10,13 +10,17 @@ package org.csstudio.alarm.beast.client;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.csstudio.alarm.beast.Activator;
+import org.csstudio.alarm.beast.AlarmItemRow;
 import org.csstudio.alarm.beast.AlarmTreePath;
 import org.csstudio.alarm.beast.SQL;
 import org.csstudio.alarm.beast.SeverityLevel;
@@ -38,6 +42,12 @@ public class AlarmConfigurationReader
     /** Re-used statements */
     private PreparedStatement sel_item_by_parent_and_name_statement, sel_guidance_statement, sel_displays_statement, sel_commands_statement, sel_auto_actions_statement;
 
+    /** Guidance, displays, commands, automated actions of all items by ID,
+     *  <code>null</code> unless pre-fetched
+     */
+    private Map<Integer, List<GDCDataStructure>> all_guidance, all_displays, all_commands;
+    private Map<Integer, List<AADataStructure>> all_auto_actions;
+
     /** Initialize
      *  @param rdb RDB connection
      */
@@ -53,6 +63,8 @@ public class AlarmConfigurationReader
      */
     public void closeStatements()
     {
+        all_guidance = all_displays = all_commands = null;
+        all_auto_actions = null;
         try
         {
             if (sel_item_by_parent_and_name_statement != null)
@@ -204,6 +216,91 @@ public class AlarmConfigurationReader
         return aaList.toArray(new AADataStructure[aaList.size()]);
     }
 
+    /** Pre-fetch GUI info (guidance, displays, commands) of all items.
+     *
+     *  <p>Reads the info of all items in one query per table.
+     *  Until {@link #closeStatements()} is called,
+     *  {@link #readGuidanceDisplaysCommands(AlarmTreeItem)}
+     *  will then use the pre-fetched info.
+     *
+     *  @throws Exception on error
+     */
+    public void prefetchGuidanceDisplaysCommands() throws Exception
+    {
+        all_guidance = readAllGDC(sql.sel_all_guidance);
+        all_displays = readAllGDC(sql.sel_all_displays);
+        all_commands = readAllGDC(sql.sel_all_commands);
+        final Map<Integer, List<AADataStructure>> actions = new HashMap<>();
+        try
+        (
+            final Statement statement = rdb.getConnection().createStatement();
+            final ResultSet result = statement.executeQuery(sql.sel_all_auto_actions);
+        )
+        {
+            while (result.next())
+                actions.computeIfAbsent(result.getInt(1), id -> new ArrayList<>())
+                       .add(new AADataStructure(result.getString(2), result.getString(3), result.getInt(4)));
+        }
+        all_auto_actions = actions;
+    }
+
+    /** @param statement_sql SQL for guidance, displays or commands of all items
+     *  @return Info by item ID
+     *  @throws Exception on error
+     */
+    private Map<Integer, List<GDCDataStructure>> readAllGDC(final String statement_sql) throws Exception
+    {
+        final Map<Integer, List<GDCDataStructure>> gdc = new HashMap<>();
+        try
+        (
+            final Statement statement = rdb.getConnection().createStatement();
+            final ResultSet result = statement.executeQuery(statement_sql);
+        )
+        {
+            while (result.next())
+                gdc.computeIfAbsent(result.getInt(1), id -> new ArrayList<>())
+                   .add(new GDCDataStructure(result.getString(2), result.getString(3)));
+        }
+        return gdc;
+    }
+
+    /** @param all Pre-fetched GDC info
+     *  @param id Item ID
+     *  @return GDC info of that item
+     */
+    private static GDCDataStructure[] getGDC(final Map<Integer, List<GDCDataStructure>> all, final int id)
+    {
+        final List<GDCDataStructure> gdc = all.get(id);
+        if (gdc == null)
+            return new GDCDataStructure[0];
+        return gdc.toArray(new GDCDataStructure[gdc.size()]);
+    }
+
+    /** Read RDB 'version' of all configurations
+     *
+     *  <p>Changes to any configuration add or remove items
+     *  or update their configuration time,
+     *  resulting in a different version.
+     *
+     *  @return Configuration version
+     *  @throws Exception on error
+     */
+    public String readConfigurationVersion() throws Exception
+    {
+        try
+        (
+            final Statement statement = rdb.getConnection().createStatement();
+            final ResultSet result = statement.executeQuery(sql.sel_configuration_version);
+        )
+        {
+            if (! result.next())
+                throw new Exception("Cannot read configuration version");
+            final Timestamp config_time = result.getTimestamp(4);
+            return result.getLong(1) + "/" + result.getLong(2) + "/" + result.getLong(3) + "/" +
+                   (config_time == null ? 0 : config_time.getTime());
+        }
+    }
+
     /** Read GUI info (guidance, displays, commands)
      *  @param item Item to update with GUI info
      *  @throws Exception on error
@@ -211,6 +308,17 @@ public class AlarmConfigurationReader
     public void readGuidanceDisplaysCommands(final AlarmTreeItem item) throws Exception
     {
         final int id = item.getID();
+        if (all_auto_actions != null)
+        {   // Use pre-fetched info
+            item.setGuidance(getGDC(all_guidance, id));
+            item.setDisplays(getGDC(all_displays, id));
+            item.setCommands(getGDC(all_commands, id));
+            final List<AADataStructure> actions = all_auto_actions.get(id);
+            item.setAutomatedActions(actions == null
+                                     ? new AADataStructure[0]
+                                     : actions.toArray(new AADataStructure[actions.size()]));
+            return;
+        }
         item.setGuidance(readGuidance(id));
         item.setDisplays(readDisplays(id));
         item.setCommands(readCommands(id));
@@ -329,6 +437,66 @@ public class AlarmConfigurationReader
         readGuidanceDisplaysCommands(item);
     }
 
+    /** Configure a PV from RDB row
+     *  @param pv PV to configure
+     *  @param row Row with PV info
+     *  @param severity_mapping
+     *  @param message_mapping
+     *  @throws Exception on error
+     */
+    public void configurePVfromRow(final AlarmTreePV pv,
+            final AlarmItemRow row, final SeverityReader severity_mapping,
+            final MessageReader message_mapping) throws Exception
+    {
+        pv.setDescription(row.description);
+        pv.setEnabled(Boolean.TRUE.equals(row.enabled));
+        pv.setAnnunciating(Boolean.TRUE.equals(row.annunciate));
+        pv.setLatching(Boolean.TRUE.equals(row.latch));
+        pv.setDelay(row.delay);
+        pv.setCount(row.count);
+        pv.setFilter(row.filter);
+        setAlarmState(pv, row.current_severity_id, row.current_status_id,
+                      row.severity_id, row.status_id, row.value, row.alarm_time,
+                      severity_mapping, message_mapping);
+    }
+
+    /** Set alarm state of PV from RDB IDs
+     *  @param pv PV to update
+     *  @param current_severity_id Current severity ID or <code>null</code>
+     *  @param current_status_id Current status ID or <code>null</code>
+     *  @param severity_id Alarm severity ID or <code>null</code>
+     *  @param status_id Alarm status ID or <code>null</code>
+     *  @param value Alarm value
+     *  @param sql_time Alarm time. If <code>null</code>, PV remains "OK" as it was initialized
+     *  @param severity_mapping
+     *  @param message_mapping
+     *  @throws Exception on error
+     */
+    void setAlarmState(final AlarmTreePV pv,
+            final Integer current_severity_id, final Integer current_status_id,
+            final Integer severity_id, final Integer status_id,
+            final String value, final Timestamp sql_time,
+            final SeverityReader severity_mapping,
+            final MessageReader message_mapping) throws Exception
+    {
+        if (sql_time == null)
+            return;
+        final SeverityLevel current_severity = current_severity_id == null
+            ? SeverityLevel.OK
+            : severity_mapping.getSeverity(current_severity_id);
+        final String current_message = current_status_id == null
+            ? ""
+            : message_mapping.getMessage(current_status_id);
+        final SeverityLevel severity = severity_id == null
+            ? SeverityLevel.OK
+            : severity_mapping.getSeverity(severity_id);
+        final String message = status_id == null
+            ? ""
+            : message_mapping.getMessage(status_id);
+        pv.setAlarmState(current_severity, current_message, severity, message, value,
+                         TimestampHelper.toEPICSTime(sql_time));
+    }
+
     /** Configure a PV from RDB columns
      *  @param pv PV to configure
      *  @param result ResultSet with PV info
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Oak Ridge National Laboratory.
+ *  All rights reserved. This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License v1.0
+ *  which accompanies this distribution, and is available at
+ *  http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.alarm.beast.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+
+/** Local binary snapshot of an alarm configuration
+ *
+ *  <p>Holds the configuration of the alarm tree,
+ *  i.e. components and PVs with their settings,
+ *  guidance, displays, commands and automated actions,
+ *  but not the alarm state of the PVs.
+ *
+ *  <p>The snapshot is tagged with the version of the
+ *  configuration in the RDB.
+ *  When that version has not changed, a client can
+ *  load the snapshot instead of reading the complete configuration
+ *  from the RDB.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class AlarmConfigurationSnapshot
+{
+    /** Start of snapshot file, "BEAS" */
+    final private static int MAGIC = 0x42454153;
+
+    /** Version of the file format */
+    final private static int FORMAT = 1;
+
+    final private static byte COMPONENT = 0, PV = 1;
+
+    /** Write snapshot
+     *
+     *  <p>Writes to a temporary file which then replaces
+     *  an existing snapshot, so concurrent readers
+     *  never see a partial snapshot.
+     *
+     *  @param file Snapshot file
+     *  @param version Version of the configuration in the RDB
+     *  @param root Root of the alarm tree
+     *  @throws Exception on error
+     */
+    public static void write(final File file, final String version, final AlarmTreeRoot root) throws Exception
+    {
+        file.getParentFile().mkdirs();
+        final File tmp = new File(file.getPath() + ".tmp");
+        try
+        (
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        )
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            writeString(out, version);
+            writeString(out, root.getName());
+            out.writeInt(root.getID());
+            writeInfo(out, root);
+            writeChildren(out, root);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeChildren(final DataOutputStream out, final AlarmTreeItem item) throws Exception
+    {
+        final int N = item.getChildCount();
+        out.writeInt(N);
+        for (int i=0; i<N; ++i)
+        {
+            final AlarmTreeItem child = item.getChild(i);
+            out.writeInt(child.getID());
+            writeString(out, child.getName());
+            if (child instanceof AlarmTreePV)
+            {
+                final AlarmTreePV pv = (AlarmTreePV) child;
+                out.writeByte(PV);
+                writeString(out, pv.getDescription());
+                out.writeBoolean(pv.isEnabled());
+                out.writeBoolean(pv.isAnnunciating());
+                out.writeBoolean(pv.isLatching());
+                out.writeInt(pv.getDelay());
+                out.writeInt(pv.getCount());
+                writeString(out, pv.getFilter());
+                writeInfo(out, pv);
+            }
+            else
+            {
+                out.writeByte(COMPONENT);
+                writeInfo(out, child);
+                writeChildren(out, child);
+            }
+        }
+    }
+
+    /** Write configuration time, guidance, displays, commands, automated actions */
+    private static void writeInfo(final DataOutputStream out, final AlarmTreeItem item) throws Exception
+    {
+        final Instant config_time = item.getConfigTimestamp();
+        out.writeBoolean(config_time != null);
+        if (config_time != null)
+        {
+            out.writeLong(config_time.getEpochSecond());
+            out.writeInt(config_time.getNano());
+        }
+        writeGDC(out, item.getGuidance());
+        writeGDC(out, item.getDisplays());
+        writeGDC(out, item.getCommands());
+        final AADataStructure[] actions = item.getAutomatedActions();
+        out.writeInt(actions.length);
+        for (AADataStructure action : actions)
+        {
+            writeString(out, action.getTitle());
+            writeString(out, action.getDetails());
+            out.writeInt(action.getDelay());
+        }
+    }
+
+    private static void writeGDC(final DataOutputStream out, final GDCDataStructure[] gdc) throws Exception
+    {
+        out.writeInt(gdc.length);
+        for (GDCDataStructure entry : gdc)
+        {
+            writeString(out, entry.getTitle());
+            writeString(out, entry.getDetails());
+        }
+    }
+
+    /** Write string that may be <code>null</code> or longer than supported by writeUTF */
+    private static void writeString(final DataOutputStream out, final String text) throws Exception
+    {
+        if (text == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Read snapshot
+     *
+     *  <p>Adds the items of the snapshot to a root element
+     *  that was created for the configuration.
+     *  PVs are left in their initial "OK" state.
+     *
+     *  @param file Snapshot file
+     *  @param version Current version of the configuration in the RDB
+     *  @param root Root of the alarm tree, without any child elements
+     *  @param pvs Map to which PVs are added by name
+     *  @return <code>false</code> if there is no snapshot for that version of the configuration
+     *  @throws Exception on error reading a snapshot with the correct version
+     */
+    public static boolean read(final File file, final String version, final AlarmTreeRoot root,
+                               final Map<String, AlarmTreePV> pvs) throws Exception
+    {
+        if (! file.canRead())
+            return false;
+        try
+        (
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        )
+        {
+            if (in.readInt() != MAGIC  ||  in.readInt() != FORMAT  ||
+                ! version.equals(readString(in))  ||
+                ! root.getName().equals(readString(in))  ||
+                in.readInt() != root.getID())
+                return false;
+            readInfo(in, root);
+            readChildren(in, root, pvs);
+        }
+        return true;
+    }
+
+    private static void readChildren(final DataInputStream in, final AlarmTreeItem parent,
+                                     final Map<String, AlarmTreePV> pvs) throws Exception
+    {
+        final int N = in.readInt();
+        for (int i=0; i<N; ++i)
+        {
+            final int id = in.readInt();
+            final String name = readString(in);
+            final byte type = in.readByte();
+            if (type == PV)
+            {
+                final AlarmTreePV pv = new AlarmTreePV(parent, name, id);
+                pv.setDescription(readString(in));
+                pv.setEnabled(in.readBoolean());
+                pv.setAnnunciating(in.readBoolean());
+                pv.setLatching(in.readBoolean());
+                pv.setDelay(in.readInt());
+                pv.setCount(in.readInt());
+                pv.setFilter(readString(in));
+                readInfo(in, pv);
+                pvs.put(name, pv);
+            }
+            else if (type == COMPONENT)
+            {
+                final AlarmTreeItem item = new AlarmTreeItem(parent, name, id);
+                readInfo(in, item);
+                readChildren(in, item, pvs);
+            }
+            else
+                throw new IOException("Invalid item type " + type + " for " + name);
+        }
+    }
+
+    private static void readInfo(final DataInputStream in, final AlarmTreeItem item) throws Exception
+    {
+        if (in.readBoolean())
+        {
+            final long seconds = in.readLong();
+            item.setConfigTime(Instant.ofEpochSecond(seconds, in.readInt()));
+        }
+        item.setGuidance(readGDC(in));
+        item.setDisplays(readGDC(in));
+        item.setCommands(readGDC(in));
+        final AADataStructure[] actions = new AADataStructure[in.readInt()];
+        for (int i=0; i<actions.length; ++i)
+        {
+            final String title = readString(in);
+            final String details = readString(in);
+            actions[i] = new AADataStructure(title, details, in.readInt());
+        }
+        item.setAutomatedActions(actions);
+    }
+
+    private static GDCDataStructure[] readGDC(final DataInputStream in) throws Exception
+    {
+        final GDCDataStructure[] gdc = new GDCDataStructure[in.readInt()];
+        for (int i=0; i<gdc.length; ++i)
+        {
+            final String title = readString(in);
+            gdc[i] = new GDCDataStructure(title, readString(in));
+        }
+        return gdc;
+    }
+
+    private static String readString(final DataInputStream in) throws Exception
+    {
+        final int length = in.readInt();
+        if (length < 0)
+            return null;
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
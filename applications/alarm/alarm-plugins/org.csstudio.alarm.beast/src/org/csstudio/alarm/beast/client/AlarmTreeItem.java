@@ -226,6 +226,12 @@ public class AlarmTreeItem extends TreeItem
         return TimestampHelper.format(save_copy);
     }
 
+    /** @return Time of last configuration change or <code>null</code> */
+    Instant getConfigTimestamp()
+    {
+        return config_time;
+    }
+
     /** @param config_time Time of last configuration change */
     void setConfigTime(final Instant config_time)
     {
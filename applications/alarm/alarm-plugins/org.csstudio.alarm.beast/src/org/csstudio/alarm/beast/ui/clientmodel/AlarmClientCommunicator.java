@@ -12,6 +12,7 @@ import java.sql.Date;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.List;
 import java.util.logging.Level;
 
 import javax.jms.MapMessage;
@@ -77,6 +78,29 @@ class AlarmClientCommunicator extends JMSCommunicationWorkQueueThread
         }
     }
 
+    /** Action to update the state of several PVs */
+    private class BatchUpdateAction implements Runnable
+    {
+        final private List<AlarmUpdateInfo> infos;
+
+        public BatchUpdateAction(final List<AlarmUpdateInfo> infos)
+        {
+            this.infos = infos;
+        }
+
+        @Override
+        public void run()
+        {
+            model.updatePVs(infos);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Update " + infos.size() + " PVs";
+        }
+    }
+
     /** Action to enable/disable a PV */
     private class EnableAction implements Runnable
     {
@@ -380,6 +404,18 @@ class AlarmClientCommunicator extends JMSCommunicationWorkQueueThread
                 action = new UpdateAction(AlarmUpdateInfo.fromMapMessage(message,date_format));
                 model.updateServerState(true);
             }
+            else if (JMSAlarmMessage.TEXT_STATES.equals(text))
+            {
+                timeout_timer.reset();
+                action = new BatchUpdateAction(AlarmUpdateInfo.fromBatchMessage(message, date_format));
+                model.updateServerState(false);
+            }
+            else if (JMSAlarmMessage.TEXT_STATES_MAINTENANCE.equals(text))
+            {
+                timeout_timer.reset();
+                action = new BatchUpdateAction(AlarmUpdateInfo.fromBatchMessage(message, date_format));
+                model.updateServerState(true);
+            }
             // Idle messages in absence of 'real' traffic?
             else if (JMSAlarmMessage.TEXT_IDLE.equals(text))
             {
@@ -7,8 +7,11 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.ui.clientmodel;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -125,6 +128,17 @@ public class AlarmClientModel
     /** Send events? */
     private boolean notify_listeners = true;
 
+    /** PVs updated by a batch of updates,
+     *  <code>null</code> while not handling a batch.
+     *  <br><b>SYNC:</b> Access needs to synchronize on <code>this</code>
+     */
+    private List<AlarmTreePV> batch_pvs = null;
+
+    /** Did a batch of updates change a parent item?
+     *  <br><b>SYNC:</b> Access needs to synchronize on <code>this</code>
+     */
+    private boolean batch_parent_changed;
+
     /** @return <code>true</code> for read-only model */
     final private boolean allow_write = ! Preferences.isReadOnly();
 
@@ -409,6 +423,10 @@ public class AlarmClientModel
                 }
             };
 
+            final String snapshot_directory = Preferences.getConfigSnapshotDirectory();
+            if (snapshot_directory != null)
+                new_config.setSnapshotDirectory(new File(snapshot_directory));
+
             // Read names of available configurations
             final String new_root_names[] = new_config.listConfigurations();
             synchronized (this)
@@ -999,6 +1017,40 @@ public class AlarmClientModel
             "Received update for unknown PV {0}", name);
     }
 
+    /** Update the state of several PVs in model.
+     *  <p>
+     *  Applies all updates while holding the model lock,
+     *  then sends a single notification to listeners.
+     *  <p>
+     *  Called by AlarmUpdateCommunicator, i.e. from JMS thread.
+     *
+     *  @param infos Alarm update infos
+     */
+    void updatePVs(final List<AlarmUpdateInfo> infos)
+    {
+        final List<AlarmTreePV> pvs = new ArrayList<>(infos.size());
+        final boolean parent_changed;
+        synchronized (this)
+        {
+            // fireNewAlarmState() collects the PVs instead of notifying listeners
+            batch_pvs = pvs;
+            batch_parent_changed = false;
+            try
+            {
+                for (AlarmUpdateInfo info : infos)
+                    updatePV(info);
+            }
+            finally
+            {
+                batch_pvs = null;
+            }
+            parent_changed = batch_parent_changed;
+            if (! notify_listeners  ||  pvs.isEmpty())
+                return;
+        }
+        fireNewAlarmStates(pvs, parent_changed);
+    }
+
     /** Locate PV by name
      *  @param name Name of PV to locate. May be <code>null</code>.
      *  @return PV or <code>null</code> when not found
@@ -1132,6 +1184,12 @@ public class AlarmClientModel
                     active_alarms.remove(pv);
                     acknowledged_alarms.remove(pv);
                 }
+                if (batch_pvs != null)
+                {
+                    batch_pvs.add(pv);
+                    batch_parent_changed |= parent_changed;
+                    return;
+                }
                 if (!notify_listeners )
                     return;
             }
@@ -1150,6 +1208,26 @@ public class AlarmClientModel
         }
     }
 
+    /** Inform listeners about change in alarm state of several PVs
+     *  @param pvs PVs that might have changed the alarm state
+     *  @param parent_changed true if a parent item was updated as well
+     */
+    private void fireNewAlarmStates(final List<AlarmTreePV> pvs, final boolean parent_changed)
+    {
+        for (AlarmClientModelListener listener : listeners)
+        {
+            try
+            {
+                listener.newAlarmStates(this, pvs, parent_changed);
+            }
+            catch (Throwable ex)
+            {
+                Activator.getLogger().log(Level.WARNING,
+                    "Alarm update notification error", ex);
+            }
+        }
+    }
+
     /** @return Debug string */
     @Override
     public String toString()
@@ -7,6 +7,8 @@
  ******************************************************************************/
 package org.csstudio.alarm.beast.ui.clientmodel;
 
+import java.util.List;
+
 import org.csstudio.alarm.beast.client.AlarmTreePV;
 
 /** Listener to the AlarmClientModel.
@@ -47,4 +49,24 @@ public interface AlarmClientModelListener extends AlarmClientModelConfigListener
      *  @param parent_changed true if a parent item was updated as well
      */
     void newAlarmState(AlarmClientModel model, AlarmTreePV pv, boolean parent_changed);
+
+    /** Notification which indicates change in alarm state of several PVs.
+     *  No items were added or removed.
+     *  <p>
+     *  Invoked once for a batch of updates received from the server.
+     *  By default, calls {@link #newAlarmState(AlarmClientModel, AlarmTreePV, boolean)}
+     *  for each PV. Listeners that refresh their complete display
+     *  may prefer to do that just once.
+     *  <p>
+     *  May originate from non-UI thread
+     *
+     *  @param model Model
+     *  @param pvs   PVs that changed state
+     *  @param parent_changed true if a parent item was updated as well
+     */
+    default void newAlarmStates(final AlarmClientModel model, final List<AlarmTreePV> pvs, final boolean parent_changed)
+    {
+        for (AlarmTreePV pv : pvs)
+            newAlarmState(model, pv, parent_changed);
+    }
 }
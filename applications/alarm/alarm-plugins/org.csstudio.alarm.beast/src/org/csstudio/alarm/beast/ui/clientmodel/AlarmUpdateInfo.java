@@ -10,6 +10,8 @@ package org.csstudio.alarm.beast.ui.clientmodel;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 
 import javax.jms.MapMessage;
@@ -51,15 +53,44 @@ public class AlarmUpdateInfo
     public static AlarmUpdateInfo fromMapMessage(final MapMessage message, DateFormat date_format)
             throws Exception
     {
-        final String name = message.getString(JMSLogMessage.NAME);
+        return fromMapMessage(message, date_format, -1);
+    }
+
+    /** Initialize from JMS MapMessage with a batch of updates
+     *  @param message Message that must contain a batch of alarm info
+     *  @param date_format the date format used for parsing the received time stamp
+     *  @return {@link AlarmUpdateInfo}s
+     *  @throws Exception on error in JMS access or parsing of received data
+     *  @see JMSAlarmMessage#TEXT_STATES
+     */
+    public static List<AlarmUpdateInfo> fromBatchMessage(final MapMessage message, DateFormat date_format)
+            throws Exception
+    {
+        final int count = message.getInt(JMSAlarmMessage.COUNT);
+        final List<AlarmUpdateInfo> infos = new ArrayList<>(count);
+        for (int i=0; i<count; ++i)
+            infos.add(fromMapMessage(message, date_format, i));
+        return infos;
+    }
+
+    /** @param message Message that contains alarm info
+     *  @param date_format the date format used for parsing the received time stamp
+     *  @param index Index of update in batch, or -1 for message with single update
+     *  @return {@link AlarmUpdateInfo}
+     *  @throws Exception on error in JMS access or parsing of received data
+     */
+    private static AlarmUpdateInfo fromMapMessage(final MapMessage message, final DateFormat date_format,
+                                                  final int index) throws Exception
+    {
+        final String name = message.getString(JMSAlarmMessage.batchProperty(JMSLogMessage.NAME, index));
         final SeverityLevel severity = SeverityLevel.parse(
-                message.getString(JMSLogMessage.SEVERITY));
-        final String status = message.getString(JMSAlarmMessage.STATUS);
+                message.getString(JMSAlarmMessage.batchProperty(JMSLogMessage.SEVERITY, index)));
+        final String status = message.getString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.STATUS, index));
         final SeverityLevel current_severity = SeverityLevel.parse(
-                message.getString(JMSAlarmMessage.CURRENT_SEVERITY));
-        final String current_message = message.getString(JMSAlarmMessage.CURRENT_STATUS);
-        final String value = message.getString(JMSAlarmMessage.VALUE);
-        final String timetext = message.getString(JMSAlarmMessage.EVENTTIME);
+                message.getString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.CURRENT_SEVERITY, index)));
+        final String current_message = message.getString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.CURRENT_STATUS, index));
+        final String value = message.getString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.VALUE, index));
+        final String timetext = message.getString(JMSAlarmMessage.batchProperty(JMSAlarmMessage.EVENTTIME, index));
         Instant timestamp;
         try
         {
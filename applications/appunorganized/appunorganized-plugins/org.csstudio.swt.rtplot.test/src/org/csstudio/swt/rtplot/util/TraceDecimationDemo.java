@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.util;
+
+import org.csstudio.swt.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+import org.csstudio.swt.rtplot.internal.util.IntList;
+import org.csstudio.swt.rtplot.internal.util.LinearScreenTransform;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
+import org.junit.Test;
+
+/** JUnit-based benchmark of {@link TraceDecimation}
+ *
+ *  <p>Not a test, prints the time spent to prepare the
+ *  poly line of a trace versus the number of samples,
+ *  with and without decimation, and for adding live samples.
+ *  Uses the same steps as the TracePainter for each sample,
+ *  but without the SWT drawPolyline() call, which is
+ *  about proportional to the number of points.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class TraceDecimationDemo
+{
+    final private static int WIDTH = 1000, HEIGHT = 500;
+    final private static int RUNS = 5;
+    final private static int LIVE = 100;
+
+    /** Screen coordinates for each sample as done by the TracePainter
+     *  @return Number of points in poly line
+     */
+    private static int computePolyLine(final PlotDataProvider<Double> data, final LinearScreenTransform x_transform,
+                                       final LinearScreenTransform y_transform)
+    {
+        final IntList poly = new IntList(2048);
+        final int N = data.size();
+        int last_x = -1, last_y = -1;
+        for (int i=0; i<N; ++i)
+        {
+            final PlotDataItem<Double> item = data.get(i);
+            final int x = (int) Math.round(x_transform.transform(item.getPosition()));
+            final int y = (int) Math.round(y_transform.transform(item.getValue()));
+            if (x == last_x  &&  y == last_y)
+                continue;
+            poly.add(x);
+            poly.add(y);
+            last_x = x;
+            last_y = y;
+        }
+        return poly.toArray().length / 2;
+    }
+
+    @Test
+    public void benchmark()
+    {
+        final LinearScreenTransform y_transform = new LinearScreenTransform();
+        y_transform.config(-1.0, 1.0, HEIGHT, 0);
+        System.out.println("   Samples   Raw [ms]  Points  Decimated [ms]  Points  Live update [ms]");
+        for (int N = 1000;  N <= 4000000;  N *= 4)
+        {
+            final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+            for (int i=0; i<N; ++i)
+                data.add(new SimpleDataItem<Double>((double) i, Math.sin(i * 0.001) * Math.cos(i * 0.3)));
+            final LinearScreenTransform x_transform = new LinearScreenTransform();
+            x_transform.config(0.0, N + 10.0*LIVE*RUNS, 0, WIDTH);
+
+            double raw = Double.MAX_VALUE, decimated = Double.MAX_VALUE, live = Double.MAX_VALUE;
+            int raw_points = 0, dec_points = 0;
+            for (int run=0; run<RUNS; ++run)
+            {
+                long start = System.nanoTime();
+                raw_points = computePolyLine(data, x_transform, y_transform);
+                raw = Math.min(raw, (System.nanoTime() - start) / 1e6);
+
+                final TraceDecimation<Double> decimation = new TraceDecimation<>();
+                start = System.nanoTime();
+                decimation.update(data, x_transform, 0, WIDTH);
+                dec_points = computePolyLine(decimation, x_transform, y_transform);
+                decimated = Math.min(decimated, (System.nanoTime() - start) / 1e6);
+
+                final int end = data.size();
+                for (int i=end; i<end+LIVE; ++i)
+                    data.add(new SimpleDataItem<Double>((double) i, 0.0));
+                start = System.nanoTime();
+                decimation.update(data, x_transform, 0, WIDTH);
+                computePolyLine(decimation, x_transform, y_transform);
+                live = Math.min(live, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.format("%10d %10.3f %7d %15.3f %7d %17.3f\n", N, raw, raw_points, decimated, dec_points, live);
+        }
+    }
+}
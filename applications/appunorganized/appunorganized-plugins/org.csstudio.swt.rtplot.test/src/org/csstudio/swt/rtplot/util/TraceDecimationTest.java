@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.swt.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+import org.csstudio.swt.rtplot.internal.util.LinearScreenTransform;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
+import org.junit.Test;
+
+/** JUnit test of {@link TraceDecimation}
+ *  @author Kay Kasemir
+ */
+public class TraceDecimationTest
+{
+    final private static int WIDTH = 100;
+
+    private static ArrayPlotDataProvider<Double> createData(final int N)
+    {
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        for (int i=0; i<N; ++i)
+            data.add(new SimpleDataItem<Double>((double) i, Math.sin(i * 0.01) + Math.cos(i * 0.7)));
+        return data;
+    }
+
+    private static LinearScreenTransform createTransform(final double x1, final double x2)
+    {
+        final LinearScreenTransform transform = new LinearScreenTransform();
+        transform.config(x1, x2, 0, WIDTH);
+        return transform;
+    }
+
+    /** Check that decimated data keeps first, last, min, max of each pixel column */
+    private static void checkColumns(final PlotDataProvider<Double> data, final LinearScreenTransform transform,
+                                     final PlotDataProvider<Double> decimated)
+    {
+        final int columns = WIDTH + 1;
+        final double[] min = new double[columns], max = new double[columns],
+                       dec_min = new double[columns], dec_max = new double[columns];
+        for (int x=0; x<columns; ++x)
+        {
+            min[x] = dec_min[x] = Double.POSITIVE_INFINITY;
+            max[x] = dec_max[x] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i=0; i<data.size(); ++i)
+        {
+            final int x = (int) Math.round(transform.transform(data.get(i).getPosition()));
+            min[x] = Math.min(min[x], data.get(i).getValue());
+            max[x] = Math.max(max[x], data.get(i).getValue());
+        }
+        for (int i=0; i<decimated.size(); ++i)
+        {
+            final int x = (int) Math.round(transform.transform(decimated.get(i).getPosition()));
+            dec_min[x] = Math.min(dec_min[x], decimated.get(i).getValue());
+            dec_max[x] = Math.max(dec_max[x], decimated.get(i).getValue());
+            if (i > 0)
+                assertTrue(decimated.get(i-1).getPosition() < decimated.get(i).getPosition());
+        }
+        assertThat(dec_min, equalTo(min));
+        assertThat(dec_max, equalTo(max));
+        assertThat(decimated.get(0), equalTo(data.get(0)));
+        assertThat(decimated.get(decimated.size()-1), equalTo(data.get(data.size()-1)));
+    }
+
+    @Test
+    public void testDecimation()
+    {
+        final ArrayPlotDataProvider<Double> data = createData(100000);
+        final LinearScreenTransform transform = createTransform(0, 100000);
+        final TraceDecimation<Double> decimation = new TraceDecimation<>();
+        assertThat(decimation.update(data, transform, 0, WIDTH), equalTo(100000));
+        System.out.println("Decimated " + data.size() + " samples to " + decimation.size());
+        assertTrue(decimation.size() <= 4 * (WIDTH+1));
+        checkColumns(data, transform, decimation);
+    }
+
+    @Test
+    public void testGaps()
+    {
+        final ArrayPlotDataProvider<Double> data = createData(1000);
+        data.add(new SimpleDataItem<Double>(1000.0, Double.NaN));
+        data.add(new SimpleDataItem<Double>(1001.0, Double.NaN));
+        data.add(new SimpleDataItem<Double>(1002.0, 3.0));
+        final TraceDecimation<Double> decimation = new TraceDecimation<>();
+        decimation.update(data, createTransform(0, 10), 0, WIDTH);
+        // Everything beyond x=10 is clipped into the last pixel column,
+        // but the gap and the following sample remain
+        final int N = decimation.size();
+        assertTrue(N < 100);
+        assertThat(decimation.get(N-1).getValue(), equalTo(3.0));
+        assertThat(Double.isNaN(decimation.get(N-2).getValue()), equalTo(true));
+    }
+
+    @Test
+    public void testIncrementalUpdate()
+    {
+        final ArrayPlotDataProvider<Double> data = createData(10000);
+        final LinearScreenTransform transform = createTransform(0, 20000);
+        final TraceDecimation<Double> decimation = new TraceDecimation<>();
+        assertThat(decimation.update(data, transform, 0, WIDTH), equalTo(10000));
+
+        // Adding samples only processes the last pixel column and new samples
+        for (int i=10000; i<10500; ++i)
+            data.add(new SimpleDataItem<Double>((double) i, Math.sin(i * 0.01)));
+        final int processed = decimation.update(data, transform, 0, WIDTH);
+        assertTrue(processed <= 500 + 200);
+        checkColumns(data, transform, decimation);
+
+        final TraceDecimation<Double> full = new TraceDecimation<>();
+        full.update(data, transform, 0, WIDTH);
+        assertThat(decimation.size(), equalTo(full.size()));
+        for (int i=0; i<full.size(); ++i)
+            assertThat(decimation.get(i), equalTo(full.get(i)));
+
+        // Nothing new: Only the last column
+        assertTrue(decimation.update(data, transform, 0, WIDTH) <= 200);
+
+        // Zoom requires complete update
+        final LinearScreenTransform zoomed = createTransform(0, 15000);
+        assertThat(decimation.update(data, zoomed, 0, WIDTH), equalTo(10500));
+        checkColumns(data, zoomed, decimation);
+    }
+
+    /** Check that decimation matches a complete decimation of the data */
+    private static void checkFull(final PlotDataProvider<Double> data, final LinearScreenTransform transform,
+                                  final TraceDecimation<Double> decimation)
+    {
+        checkColumns(data, transform, decimation);
+        final TraceDecimation<Double> full = new TraceDecimation<>();
+        full.update(data, transform, 0, WIDTH);
+        assertThat(decimation.size(), equalTo(full.size()));
+        for (int i=0; i<full.size(); ++i)
+            assertThat(decimation.get(i), equalTo(full.get(i)));
+    }
+
+    @Test
+    public void testChangedValues()
+    {
+        // Data with revision, values are replaced at the same positions
+        final List<PlotDataItem<Double>> items = new ArrayList<>();
+        final AtomicInteger revision = new AtomicInteger();
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<Double>(items)
+        {
+            @Override
+            public int getRevision()
+            {
+                return revision.get();
+            }
+        };
+        for (int i=0; i<10000; ++i)
+            items.add(new SimpleDataItem<Double>((double) i, Math.sin(i * 0.01)));
+        final LinearScreenTransform transform = createTransform(0, 20000);
+        final TraceDecimation<Double> decimation = new TraceDecimation<>();
+        assertThat(decimation.update(data, transform, 0, WIDTH), equalTo(10000));
+
+        // New revision: Values changed, complete update
+        for (int i=0; i<10000; ++i)
+            items.set(i, new SimpleDataItem<Double>((double) i, Math.cos(i * 0.7)));
+        revision.incrementAndGet();
+        assertThat(decimation.update(data, transform, 0, WIDTH), equalTo(10000));
+        checkFull(data, transform, decimation);
+
+        // Same revision, but first sample has a different value
+        for (int i=0; i<10000; ++i)
+            items.set(i, new SimpleDataItem<Double>((double) i, 2.0 + Math.sin(i * 0.03)));
+        assertThat(decimation.update(data, transform, 0, WIDTH), equalTo(10000));
+        checkFull(data, transform, decimation);
+
+        // Same positions and values: Only the last column
+        assertTrue(decimation.update(data, transform, 0, WIDTH) <= 200);
+    }
+}
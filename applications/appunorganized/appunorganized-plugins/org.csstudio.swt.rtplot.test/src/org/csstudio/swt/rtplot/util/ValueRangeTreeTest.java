@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+import org.csstudio.swt.rtplot.data.ValueRange;
+import org.csstudio.swt.rtplot.internal.util.ValueRangeTree;
+import org.junit.Test;
+
+/** JUnit test of {@link ValueRangeTree}
+ *  @author Kay Kasemir
+ */
+public class ValueRangeTreeTest
+{
+    /** Data that allows removing samples from the start, like a ring buffer */
+    private static class Data implements PlotDataProvider<Double>
+    {
+        final private Lock lock = new ReentrantLock();
+        final private List<PlotDataItem<Double>> items = new ArrayList<>();
+        private int next = 0;
+        private int revision = 0;
+
+        void add(final double value)
+        {
+            items.add(new SimpleDataItem<Double>((double) next++, value));
+        }
+
+        void remove(final int count)
+        {
+            items.subList(0, count).clear();
+        }
+
+        @Override
+        public Lock getLock()
+        {
+            return lock;
+        }
+
+        @Override
+        public int size()
+        {
+            return items.size();
+        }
+
+        @Override
+        public PlotDataItem<Double> get(final int index)
+        {
+            return items.get(index);
+        }
+
+        @Override
+        public int getRevision()
+        {
+            return revision;
+        }
+    }
+
+    /** Compare tree with range determined by checking all samples */
+    private static void checkRanges(final Data data, final ValueRangeTree<Double> tree, final Random random)
+    {
+        tree.update(data);
+        final int N = data.size();
+        for (int check=0; check<100; ++check)
+        {
+            final int start = random.nextInt(N), stop = start + random.nextInt(N - start);
+            double low = Double.MAX_VALUE, high = -Double.MAX_VALUE;
+            for (int i=start; i<=stop; ++i)
+            {
+                final double value = data.get(i).getValue();
+                if (Double.isFinite(value))
+                {
+                    low = Math.min(low, value);
+                    high = Math.max(high, value);
+                }
+            }
+            final ValueRange range = tree.getValueRange(data, start, stop);
+            assertThat(range.getLow(), equalTo(low));
+            assertThat(range.getHigh(), equalTo(high));
+        }
+    }
+
+    @Test
+    public void testValueRange()
+    {
+        final Random random = new Random(42);
+        final Data data = new Data();
+        for (int i=0; i<10000; ++i)
+            data.add(i % 100 == 0 ? Double.NaN : random.nextGaussian());
+        final ValueRangeTree<Double> tree = new ValueRangeTree<>();
+        assertThat(tree.update(data), equalTo(data.size() - 1));
+        checkRanges(data, tree, random);
+
+        // Unchanged data: Nothing added
+        assertThat(tree.update(data), equalTo(0));
+
+        // Add samples: Only those are added
+        for (int i=0; i<10; ++i)
+            data.add(random.nextGaussian());
+        assertThat(tree.update(data), equalTo(10));
+        checkRanges(data, tree, random);
+    }
+
+    @Test
+    public void testRingBuffer()
+    {
+        final Random random = new Random(42);
+        final Data data = new Data();
+        for (int i=0; i<1000; ++i)
+            data.add(random.nextGaussian());
+        final ValueRangeTree<Double> tree = new ValueRangeTree<>();
+        tree.update(data);
+
+        // Remove samples at the start while adding new ones.
+        // Tree is occasionally rebuilt, but mostly only adds new samples
+        int added = 0;
+        for (int run=0; run<200; ++run)
+        {
+            data.remove(37);
+            for (int i=0; i<37; ++i)
+                data.add(random.nextGaussian() * (run + 1));
+            added += tree.update(data);
+            checkRanges(data, tree, random);
+        }
+        assertTrue(added < 200 * 37 * 2);
+    }
+
+    @Test
+    public void testChangedData()
+    {
+        final Random random = new Random(42);
+        final Data data = new Data();
+        for (int i=0; i<1000; ++i)
+            data.add(i);
+        final ValueRangeTree<Double> tree = new ValueRangeTree<>();
+        tree.update(data);
+        assertThat(tree.getValueRange(data, 0, 999), equalTo(new ValueRange(0, 999)));
+
+        // Replace data with different values for the same positions
+        data.remove(1000);
+        data.next = 0;
+        for (int i=0; i<1000; ++i)
+            data.add(-i);
+        assertThat(tree.update(data), equalTo(999));
+        assertThat(tree.getValueRange(data, 0, 999), equalTo(new ValueRange(-999, 0)));
+        checkRanges(data, tree, random);
+    }
+
+    @Test
+    public void testReplacedHistory()
+    {
+        final Random random = new Random(42);
+        final Data data = new Data();
+        for (int i=0; i<1000; ++i)
+            data.add(i < 900 ? 1000 + i : i);
+        final ValueRangeTree<Double> tree = new ValueRangeTree<>();
+        tree.update(data);
+        assertThat(tree.getValueRange(data, 0, 999), equalTo(new ValueRange(900, 1899)));
+
+        // Like 'live' samples that hide the end of the 'history':
+        // Samples in front of an unchanged last sample are removed,
+        // while the first sample stays the same
+        data.items.subList(1, 900).clear();
+        assertThat(tree.update(data), equalTo(data.size() - 1));
+        assertThat(tree.getValueRange(data, 0, data.size()-1), equalTo(new ValueRange(900, 1000)));
+        checkRanges(data, tree, random);
+
+        // Like merged archive data: Samples in front of an unchanged
+        // last sample are replaced, keeping the same count, first and last sample.
+        // Only detected via the revision.
+        for (int i=1; i<50; ++i)
+            data.items.set(i, new SimpleDataItem<Double>(data.items.get(i).getPosition(), -1.0));
+        ++data.revision;
+        assertThat(tree.update(data), equalTo(data.size() - 1));
+        assertThat(tree.getValueRange(data, 0, data.size()-1), equalTo(new ValueRange(-1, 1000)));
+        checkRanges(data, tree, random);
+    }
+}
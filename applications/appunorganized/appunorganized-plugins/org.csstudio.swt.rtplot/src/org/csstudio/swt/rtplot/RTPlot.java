@@ -26,6 +26,7 @@ import org.csstudio.swt.rtplot.internal.ToolbarHandler;
 import org.csstudio.swt.rtplot.internal.TraceImpl;
 import org.csstudio.swt.rtplot.internal.YAxisImpl;
 import org.csstudio.swt.rtplot.undo.UndoableActionManager;
+import org.csstudio.swt.rtplot.util.TimingStatistics;
 import org.eclipse.jface.action.Action;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.FontData;
@@ -164,6 +165,12 @@ public class RTPlot<XTYPE extends Comparable<XTYPE>> extends Composite
         return plot.getImage();
     }
 
+    /** @return Timing statistics for drawing frames and processing the plot */
+    public List<TimingStatistics> getFrameStatistics()
+    {
+        return plot.getFrameStatistics();
+    }
+
     /** @return <code>true</code> if legend is visible */
     public boolean isLegendVisible()
     {
@@ -55,4 +55,20 @@ public interface PlotDataProvider<XTYPE extends Comparable<XTYPE>>
      *  @return The Sample of given index.
      */
     public PlotDataItem<XTYPE> get(int index);
+
+    /** Revision of the samples
+     *
+     *  <p>Allows the plot to update information about the samples
+     *  incrementally.
+     *  Providers that replace or remove samples, other than
+     *  removing the oldest samples as in a ring buffer,
+     *  should change the revision.
+     *  Adding samples at the end need not change the revision.
+     *
+     *  @return Revision of the samples
+     */
+    public default int getRevision()
+    {
+        return 0;
+    }
 }
@@ -17,8 +17,10 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Stack;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.csstudio.swt.rtplot.Activator;
@@ -34,6 +36,7 @@ import org.csstudio.swt.rtplot.internal.util.ScreenTransform;
 import org.csstudio.swt.rtplot.undo.ChangeAxisRanges;
 import org.csstudio.swt.rtplot.undo.UndoableActionManager;
 import org.csstudio.swt.rtplot.undo.UpdateAnnotationAction;
+import org.csstudio.swt.rtplot.util.TimingStatistics;
 import org.csstudio.swt.rtplot.util.UpdateThrottle;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -121,6 +124,26 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
      */
     private volatile Optional<Image> plot_image = Optional.empty();
 
+    /** Image of the static layer: Background, title, legend, axes.
+     *
+     *  <p>Re-drawn when the state returned by getStaticState() changes,
+     *  for example because the range of an axis changed.
+     *  Plot image is created by copying this image and painting traces on top.
+     *  Only accessed by updateImageBuffer() and on disposal.
+     */
+    private Image static_image = null;
+
+    /** State used for the current static_image */
+    private List<Object> static_state = null;
+
+    /** Incremented whenever a plot part requests a layout or refresh */
+    final private AtomicLong static_changes = new AtomicLong();
+
+    final private TimingStatistics frame_timing = new TimingStatistics("Frame"),
+                                   static_timing = new TimingStatistics("Static layer"),
+                                   trace_prepare_timing = new TimingStatistics("Trace preparation"),
+                                   trace_paint_timing = new TimingStatistics("Trace layer");
+
     final private UpdateThrottle update_throttle;
 
     final private TitlePart title_part;
@@ -172,11 +195,13 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
         public void layoutPlotPart(final PlotPart plotPart)
         {
             need_layout.set(true);
+            static_changes.incrementAndGet();
         }
 
         @Override
         public void refreshPlotPart(final PlotPart plotPart)
         {
+            static_changes.incrementAndGet();
             updateCursor();
             requestUpdate();
         }
@@ -188,11 +213,13 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
         public void layoutPlotPart(final PlotPart plotPart)
         {
             need_layout.set(true);
+            static_changes.incrementAndGet();
         }
 
         @Override
         public void refreshPlotPart(final PlotPart plotPart)
         {
+            static_changes.incrementAndGet();
             requestUpdate();
         }
     };
@@ -475,6 +502,18 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
         return new Image(display, 10, 10);
     }
 
+    /** @return Timing statistics for the stages of drawing a frame and processing the plot */
+    public List<TimingStatistics> getFrameStatistics()
+    {
+        final List<TimingStatistics> stats = new ArrayList<>();
+        stats.add(frame_timing);
+        stats.add(static_timing);
+        stats.add(trace_prepare_timing);
+        stats.add(trace_paint_timing);
+        stats.addAll(plot_processor.getTimingStatistics());
+        return stats;
+    }
+
     /** Update the dormant time between updates
      *  @param dormant_time How long throttle remains dormant after a trigger
      *  @param unit Units for the dormant period
@@ -662,18 +701,44 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
         plot_area.setBounds(total_left_axes_width, title_height, plot_width, y_axis_height);
     }
 
-    /** Draw all components into image buffer */
-    private void updateImageBuffer()
+    /** @param area Area of the plot
+     *  @return State that determines the static layer
+     */
+    private List<Object> getStaticState(final Rectangle area)
     {
-        final Rectangle area_copy = area;
-        if (area_copy.width <= 0  ||  area_copy.height <= 0)
-            return;
-
-        final Image image = new Image(display, area_copy);
-        final GC gc = new GC(image);
+        final List<Object> state = new ArrayList<>();
+        state.add(area);
+        state.add(plot_area.getBounds());
+        state.add(legend.isVisible());
+        state.add(static_changes.get());
+        state.add(background);
+        state.add(title_font);
+        state.add(label_font);
+        state.add(scale_font);
+        state.add(legend_font);
+        state.add(x_axis.getValueRange());
+        // Future area moves with time even if the range is unchanged
+        if (x_axis instanceof TimeAxis)
+            state.add(((TimeAxis)x_axis).getScreenCoord(Instant.now()));
+        for (YAxisImpl<XTYPE> y_axis : y_axes)
+            state.add(y_axis.getValueRange());
+        // Legend and axis labels use the trace names and colors
+        for (Trace<XTYPE> trace : traces)
+        {
+            state.add(trace.getName());
+            state.add(trace.getLabel());
+            state.add(trace.getColor());
+            state.add(trace.getYAxis());
+        }
+        return state;
+    }
 
-        if (need_layout.getAndSet(false))
-            computeLayout(gc, area_copy);
+    /** Draw static layer into static_image
+     *  @param area_copy Area of the plot
+     */
+    private void updateStaticLayer(final Rectangle area_copy)
+    {
+        final GC gc = new GC(static_image);
 
         final Rectangle plot_bounds = plot_area.getBounds();
 
@@ -698,13 +763,9 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
             shade.dispose();
         }
 
-        // Fetch x_axis transformation and use that to paint all traces,
-        // because X Axis tends to change from scrolling
-        // while we're painting traces
 //        x_axis.setLabelFont(label_font);
 //        x_axis.setScaleFont(scale_font);
         x_axis.paint(gc, media, plot_bounds);
-        final ScreenTransform<XTYPE> x_transform = x_axis.getScreenTransform();
         for (YAxisImpl<XTYPE> y_axis : y_axes)
         {
 //            y_axis.setLabelFont(label_font);
@@ -715,9 +776,83 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
         gc.setClipping(plot_bounds);
         plot_area.paint(gc, media);
 
+        gc.dispose();
+    }
+
+    /** Draw all components into image buffer
+     *
+     *  <p>Called by the UpdateThrottle, i.e. not on the UI thread.
+     *  The static layer is only re-drawn when necessary.
+     *  Traces are prepared in parallel, then painted onto a copy of the static layer.
+     */
+    private void updateImageBuffer()
+    {
+        final Rectangle area_copy = area;
+        if (area_copy.width <= 0  ||  area_copy.height <= 0)
+            return;
+        final long frame_start = System.nanoTime();
+
+        // Static layer
+        final boolean layout = need_layout.getAndSet(false);
+        if (static_image == null  ||  ! static_image.getBounds().equals(area_copy))
+        {
+            if (static_image != null)
+                static_image.dispose();
+            static_image = new Image(display, area_copy);
+            static_state = null;
+        }
+        if (layout)
+        {
+            final GC gc = new GC(static_image);
+            computeLayout(gc, area_copy);
+            gc.dispose();
+            // New layout always requires a new static layer
+            static_state = null;
+        }
+        final List<Object> state = getStaticState(area_copy);
+        if (! state.equals(static_state))
+        {
+            final long start = System.nanoTime();
+            updateStaticLayer(area_copy);
+            static_state = state;
+            static_timing.add(start);
+        }
+
+        // Fetch x_axis transformation and use that to paint all traces,
+        // because X Axis tends to change from scrolling
+        // while we're painting traces
+        final ScreenTransform<XTYPE> x_transform = x_axis.getScreenTransform();
+        final Rectangle plot_bounds = plot_area.getBounds();
+
+        // Prepare traces in parallel
+        long start = System.nanoTime();
+        final List<Future<?>> prepared = new ArrayList<>();
         for (YAxisImpl<XTYPE> y_axis : y_axes)
-            for (Trace<XTYPE> trace : y_axis.getTraces())
-                trace_painter.paint(gc, media, plot_area.getBounds(), opacity, x_transform, y_axis, trace);
+            for (TraceImpl<XTYPE> trace : y_axis.getTraces())
+                prepared.add(plot_processor.prepareTrace(trace, plot_bounds, x_transform));
+        for (Future<?> done : prepared)
+        {
+            try
+            {
+                done.get();
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Cannot prepare trace", ex);
+            }
+        }
+        trace_prepare_timing.add(start);
+
+        // Paint traces on top of static layer
+        start = System.nanoTime();
+        final Image image = new Image(display, area_copy);
+        final GC gc = new GC(image);
+        gc.drawImage(static_image, 0, 0);
+        gc.setClipping(plot_bounds);
+
+        for (YAxisImpl<XTYPE> y_axis : y_axes)
+            for (TraceImpl<XTYPE> trace : y_axis.getTraces())
+                trace_painter.paint(gc, media, plot_bounds, opacity, x_transform, y_axis, trace);
 
         // Annotations use label font
         gc.setFont(label_font);
@@ -725,6 +860,7 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
             annotation.paint(gc, media, x_axis, y_axes.get(annotation.getTrace().getYAxis()));
 
         gc.dispose();
+        trace_paint_timing.add(start);
 
         // Update image
         final Image old_image = plot_image.orElse(null);
@@ -736,6 +872,7 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
                 old_image.dispose();
             }
         }
+        frame_timing.add(frame_start);
     }
 
     /** PaintListener: {@inheritDoc} */
@@ -892,6 +1029,11 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
         x_axis.dispose();
         plot_area.dispose();
 
+        if (static_image != null)
+        {
+            static_image.dispose();
+            static_image = null;
+        }
         final Image old_image = plot_image.orElse(null);
         plot_image = Optional.empty();
         if (old_image != null)
@@ -27,12 +27,21 @@ import org.csstudio.swt.rtplot.data.PlotDataProvider;
 import org.csstudio.swt.rtplot.data.PlotDataSearch;
 import org.csstudio.swt.rtplot.data.ValueRange;
 import org.csstudio.swt.rtplot.internal.util.Log10;
+import org.csstudio.swt.rtplot.internal.util.ScreenTransform;
+import org.csstudio.swt.rtplot.internal.util.ValueRangeTree;
 import org.csstudio.swt.rtplot.undo.AddAnnotationAction;
 import org.csstudio.swt.rtplot.undo.ChangeAxisRanges;
+import org.csstudio.swt.rtplot.util.TimingStatistics;
 import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
 
 /** Helper for processing traces of a plot
  *  in a thread pool to avoid blocking UI thread.
+ *
+ *  <p>The value range of traces is determined via their {@link ValueRangeTree},
+ *  which is updated incrementally as samples are added.
+ *  The time spent in each stage is tracked in {@link TimingStatistics}.
+ *
  *  @param <XTYPE> Data type of horizontal {@link Axis}
  *  @author Kay Kasemir
  */
@@ -41,30 +50,49 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
 {
     final private static ExecutorService thread_pool = Executors.newWorkStealingPool();
 
+    /** Number of autoscale calls between logging the timing statistics */
+    final private static int LOG_TIMING_CALLS = 1000;
+
     final private Plot<XTYPE> plot;
 
+    final private TimingStatistics range_timing = new TimingStatistics("Trace value range"),
+                                   autoscale_timing = new TimingStatistics("Autoscale"),
+                                   cursor_timing = new TimingStatistics("Cursor markers");
+
     /** @param plot Plot on which this processor operates */
     public PlotProcessor(final Plot<XTYPE> plot)
     {
         this.plot = plot;
     }
 
+    /** @return Timing statistics for the stages of processing */
+    public List<TimingStatistics> getTimingStatistics()
+    {
+        final List<TimingStatistics> stats = new ArrayList<>();
+        stats.add(range_timing);
+        stats.add(autoscale_timing);
+        stats.add(cursor_timing);
+        return stats;
+    }
+
     /** Submit background job to determine value range for y axis for values within the
      * specified x axis.
-     *  @param data {@link PlotDataProvider} with values
+     *  @param trace {@link TraceImpl} with values
      *  @param x_range {@link AxisRange} covering visible part of plot
      *  @return {@link Future} to {@link ValueRange}
      */
-    public Future<ValueRange> determineValueRange(final PlotDataProvider<XTYPE> data, final AxisRange<XTYPE> x_range)
+    public Future<ValueRange> determineValueRange(final TraceImpl<XTYPE> trace, final AxisRange<XTYPE> x_range)
     {
         return thread_pool.submit(new Callable<ValueRange>()
         {
             @Override
             public ValueRange call() throws Exception
             {
-                double low = Double.MAX_VALUE;
-                double high = -Double.MAX_VALUE;
+                final long start_ns = System.nanoTime();
+                ValueRange range = new ValueRange(Double.MAX_VALUE, -Double.MAX_VALUE);
                 final PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
+                final PlotDataProvider<XTYPE> data = trace.getData();
+                final ValueRangeTree<XTYPE> tree = trace.getValueRangeTree();
                 data.getLock().lock();
                 try
                 {
@@ -80,16 +108,10 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                         // If data is completely outside the x_range,
                         // we end up using just data[0]
                         // Check [start .. stop], including stop
-                        for (int i=start; i<=stop; ++i)
+                        synchronized (tree)
                         {
-                            final PlotDataItem<XTYPE> item = data.get(i);
-                            final double value = item.getValue();
-                            if (! Double.isFinite(value))
-                                continue;
-                            if (value < low)
-                                low = value;
-                            if (value > high)
-                                high = value;
+                            tree.update(data);
+                            range = tree.getValueRange(data, start, stop);
                         }
                     }
                 }
@@ -97,7 +119,8 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                 {
                     data.getLock().unlock();
                 }
-                return new ValueRange(low, high);
+                range_timing.add(start_ns);
+                return range;
             }
         });
     }
@@ -116,8 +139,8 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
             {
                 // In parallel, determine range of all traces in this axis
                 final List<Future<ValueRange>> ranges = new ArrayList<Future<ValueRange>>();
-                for (Trace<XTYPE> trace : axis.getTraces())
-                    ranges.add(determineValueRange(trace.getData(), x_axis.getValueRange()));
+                for (TraceImpl<XTYPE> trace : axis.getTraces())
+                    ranges.add(determineValueRange(trace, x_axis.getValueRange()));
 
                 // Merge the trace ranges into overall axis range
                 double low = Double.MAX_VALUE;
@@ -135,6 +158,18 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
         });
     }
 
+    /** Submit background job to prepare painting a trace
+     *  @param trace Trace to prepare
+     *  @param bounds Bounds of the plot area
+     *  @param x_transform Coordinate transform used by the x axis
+     *  @return {@link Future} that completes when trace has been prepared
+     */
+    public Future<?> prepareTrace(final TraceImpl<XTYPE> trace, final Rectangle bounds,
+                                  final ScreenTransform<XTYPE> x_transform)
+    {
+        return thread_pool.submit(() -> TracePainter.prepare(bounds, x_transform, trace));
+    }
+
     /** Round value range up/down to add a little room above & below the exact range.
      *  This results in "locking" to a nice looking range for a while
      *  until a new sample outside of the rounded range is added.
@@ -263,6 +298,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
         // Run in thread
         thread_pool.execute(() ->
         {
+            final long start_ns = System.nanoTime();
             final List<CursorMarker> markers = new ArrayList<>();
             final PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
             for (YAxisImpl<XTYPE> axis : plot.getYAxes())
@@ -294,6 +330,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                     }
                 }
             Collections.sort(markers);
+            cursor_timing.add(start_ns);
             callback.accept(markers);
         });
     }
@@ -367,6 +404,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
      */
     public void autoscale()
     {
+        final long start_ns = System.nanoTime();
         // Determine range of each axes' traces in parallel
         final List<YAxisImpl<XTYPE>> y_axes = new ArrayList<>();
         final List<Future<ValueRange>> ranges = new ArrayList<Future<ValueRange>>();
@@ -430,5 +468,10 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                 Activator.getLogger().log(Level.WARNING, "Axis autorange error for " + axis, ex);
             }
         }
+        autoscale_timing.add(start_ns);
+        if (autoscale_timing.getCount() % LOG_TIMING_CALLS == 0  &&
+            Activator.getLogger().isLoggable(Level.FINE))
+            for (TimingStatistics stats : getTimingStatistics())
+                Activator.getLogger().log(Level.FINE, stats.toString());
     }
 }
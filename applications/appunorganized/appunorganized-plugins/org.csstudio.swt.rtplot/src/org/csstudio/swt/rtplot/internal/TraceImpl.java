@@ -16,6 +16,8 @@ import org.csstudio.swt.rtplot.Trace;
 import org.csstudio.swt.rtplot.TraceType;
 import org.csstudio.swt.rtplot.data.PlotDataItem;
 import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
+import org.csstudio.swt.rtplot.internal.util.ValueRangeTree;
 import org.eclipse.swt.graphics.RGB;
 
 /** Trace, i.e. data to be displayed on an axis.
@@ -27,6 +29,12 @@ public class TraceImpl<XTYPE extends Comparable<XTYPE>> implements Trace<XTYPE>
 {
     final private PlotDataProvider<XTYPE> data;
 
+    /** Decimated data, cached between paint calls */
+    final private TraceDecimation<XTYPE> decimation = new TraceDecimation<>();
+
+    /** Summary of value range, updated as data changes */
+    final private ValueRangeTree<XTYPE> value_range = new ValueRangeTree<>();
+
     private volatile String name;
 
     private volatile String units;
@@ -100,6 +108,18 @@ public class TraceImpl<XTYPE extends Comparable<XTYPE>> implements Trace<XTYPE>
         return data;
     }
 
+    /** @return Decimated data, only to be used by the {@link TracePainter} */
+    TraceDecimation<XTYPE> getDecimation()
+    {
+        return decimation;
+    }
+
+    /** @return Value range summary, used by the {@link PlotProcessor} */
+    ValueRangeTree<XTYPE> getValueRangeTree()
+    {
+        return value_range;
+    }
+
     /** {@inheritDoc} */
     @Override
     public RGB getColor()
@@ -16,6 +16,7 @@ import org.csstudio.swt.rtplot.data.PlotDataItem;
 import org.csstudio.swt.rtplot.data.PlotDataProvider;
 import org.csstudio.swt.rtplot.internal.util.IntList;
 import org.csstudio.swt.rtplot.internal.util.ScreenTransform;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
@@ -32,6 +33,10 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
     // plus it works better when using dashed or wide lines,
     // but it requires an int[] array of varying size.
     // IntList turned out to be about 3x faster than ArrayList<Integer>.
+    //
+    // Lines and areas are drawn from the TraceDecimation of the trace,
+    // which limits the number of samples to a few per pixel column.
+    // Points are drawn from the original data since every point is visible.
 
     /** Initial {@link IntList} size */
     private static final int INITIAL_ARRAY_SIZE = 2048;
@@ -66,15 +71,39 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         return y;
     }
 
+    /** Prepare painting a trace by updating its decimated data
+     *
+     *  <p>May be called in parallel for different traces,
+     *  but not concurrently with painting the same trace.
+     *
+     *  @param bounds Clipping bounds within which to paint
+     *  @param x_transform Coordinate transform used by the x axis
+     *  @param trace Trace to prepare
+     */
+    public static <XTYPE extends Comparable<XTYPE>> void prepare(final Rectangle bounds, final ScreenTransform<XTYPE> x_transform,
+                                                                 final TraceImpl<XTYPE> trace)
+    {
+        final PlotDataProvider<XTYPE> original = trace.getData();
+        original.getLock().lock();
+        try
+        {
+            trace.getDecimation().update(original, x_transform, bounds.x - OUTSIDE, bounds.x + bounds.width + OUTSIDE);
+        }
+        finally
+        {
+            original.getLock().unlock();
+        }
+    }
+
     /** @param gc GC
      *  @param media
      *  @param bounds Clipping bounds within which to paint
      *  @param opacity Opacity (0 .. 100 %) of 'area'
      *  @param x_transform Coordinate transform used by the x axis
-     *  @param trace Trace, has reference to its value axis
+     *  @param trace Trace, has reference to its value axis and decimated data
      */
     final public void paint(final GC gc, final SWTMediaPool media, final Rectangle bounds, final int opacity,
-                            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis, final Trace<XTYPE> trace)
+                            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis, final TraceImpl<XTYPE> trace)
     {
         x_min = bounds.x - OUTSIDE;
         x_max = bounds.x + bounds.width + OUTSIDE;
@@ -95,19 +124,16 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         gc.setAdvanced(true);
         gc.setAntialias(SWT.ON);
 
-        // TODO Optimize drawing
-        //
-        // Determine first sample to draw via PlotDataSearch.findSampleLessOrEqual(),
-        // then end drawing when reaching right end of area.
-        //
-        // Loop only once, performing drawMinMax, drawStdDev, drawValueStaircase in one loop
-        //
-        // For now, main point is that this happens in non-UI thread,
-        // so the slower the better to test UI responsiveness.
-        final PlotDataProvider<XTYPE> data = trace.getData();
-        data.getLock().lock();
+        // Painting happens in non-UI thread.
+        // Decimation limits the work per trace to about the screen width,
+        // and when only live samples were added it only handles those.
+        final PlotDataProvider<XTYPE> original = trace.getData();
+        original.getLock().lock();
         try
         {
+            final TraceDecimation<XTYPE> data = trace.getDecimation();
+            data.update(original, x_transform, x_min, x_max);
+
             final TraceType type = trace.getType();
             switch (type)
             {
@@ -159,13 +185,13 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             case DIAMONDS:
             case XMARKS:
             case TRIANGLES:
-                drawPoints(gc, x_transform, y_axis, data, point_type, trace.getPointSize());
+                drawPoints(gc, x_transform, y_axis, original, point_type, trace.getPointSize());
                 break;
             }
         }
         finally
         {
-            data.getLock().unlock();
+            original.getLock().unlock();
         }
         gc.setLineWidth(old_width);
         gc.setBackground(old_bg);
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.internal.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+
+/** Decimated samples of a trace, used for painting
+ *
+ *  <p>Reduces the samples of a {@link PlotDataProvider} to the
+ *  first, last, minimum and maximum sample of each pixel column ("M4").
+ *  Drawn as lines, this results in the same pixels as drawing all samples,
+ *  but the number of samples to draw is limited by the screen width
+ *  instead of the number of samples in the trace.
+ *
+ *  <p>For samples that carry min/max or standard deviation,
+ *  the samples with the lowest minimum, highest maximum,
+ *  and the extreme 'value +- std. deviation' are also kept.
+ *  Samples are grouped by pixel column and by which of
+ *  value, min/max, std. deviation they provide,
+ *  so gaps caused by NaN values remain visible.
+ *
+ *  <p>The decimated samples are cached.
+ *  As long as the horizontal screen transformation and the revision
+ *  of the data are unchanged, and the original data only changes at its end,
+ *  as is the case when live samples arrive,
+ *  an update only re-processes the last pixel column
+ *  and the newly added samples.
+ *  Otherwise, all samples are decimated again.
+ *
+ *  <p>Not thread-safe, meant to be used by one thread at a time,
+ *  the one that prepares or paints the trace,
+ *  while it holds the lock of the original data.
+ *
+ *  @param <XTYPE> Data type used for the {@link PlotDataItem}
+ *  @author Kay Kasemir
+ */
+public class TraceDecimation<XTYPE extends Comparable<XTYPE>> implements PlotDataProvider<XTYPE>
+{
+    // Group flags
+    final private static int NAN_VALUE = 1, MIN_MAX = 2, STD_DEV = 4;
+
+    /** Decimated samples */
+    final private List<PlotDataItem<XTYPE>> items = new ArrayList<>();
+
+    /** Lock of the original data */
+    private Lock lock;
+
+    /** Screen range used to clip pixel columns */
+    private int x_min, x_max;
+
+    /** Revision of the original data */
+    private int revision;
+
+    /** Position, value and screen coordinate of first original sample, <code>null</code> if nothing cached */
+    private XTYPE first_position = null;
+    private double first_value, first_x;
+
+    /** Index, position, value and screen coordinate of the first original sample in the last group */
+    private int open_start;
+    private XTYPE open_position;
+    private double open_value, open_x;
+
+    /** Position and value of the original sample just before the last group, <code>null</code> for none */
+    private XTYPE closed_position;
+    private double closed_value;
+
+    /** Index of the first decimated sample of the last group */
+    private int open_items;
+
+    // Current group: pixel column, flags, indices of the original samples to keep
+    private int column, flags, start;
+    private int first, last, min_value, max_value, min_min, max_max, low_dev, high_dev;
+    private double lowest_value, highest_value, lowest_min, highest_max, lowest_dev, highest_dev;
+
+    /** Indices of the current group's samples to keep */
+    final private int[] keep = new int[8];
+
+    /** Update the decimated samples
+     *
+     *  <p>Caller must hold the lock of the data.
+     *
+     *  @param data Original data
+     *  @param x_transform Screen transformation of the horizontal axis
+     *  @param x_min Smallest screen coordinate, samples further to the left share that pixel column
+     *  @param x_max Largest screen coordinate
+     *  @return Number of original samples that were processed
+     */
+    public int update(final PlotDataProvider<XTYPE> data, final ScreenTransform<XTYPE> x_transform,
+                      final int x_min, final int x_max)
+    {
+        lock = data.getLock();
+        final int N = data.size();
+        final int i0;
+        if (canAppend(data, N, x_transform, x_min, x_max))
+        {   // Keep all complete groups, re-process the last one
+            i0 = open_start;
+            items.subList(open_items, items.size()).clear();
+        }
+        else
+        {
+            i0 = 0;
+            items.clear();
+            this.x_min = x_min;
+            this.x_max = x_max;
+        }
+
+        if (N <= 0)
+        {
+            first_position = null;
+            return 0;
+        }
+
+        startGroup(-1, 0, i0);
+        for (int i=i0; i<N; ++i)
+        {
+            final PlotDataItem<XTYPE> item = data.get(i);
+            final double value = item.getValue();
+            final double min = item.getMin(), max = item.getMax(), dev = item.getStdDev();
+            int item_flags = 0;
+            if (Double.isNaN(value))
+                item_flags |= NAN_VALUE;
+            else if (dev > 0)
+                item_flags |= STD_DEV;
+            if (! (Double.isNaN(min)  ||  Double.isNaN(max)))
+                item_flags |= MIN_MAX;
+            final int x = clip(Math.round(x_transform.transform(item.getPosition())));
+
+            if (x != column  ||  item_flags != flags)
+            {
+                if (i > i0)
+                    emitGroup(data);
+                startGroup(x, item_flags, i);
+            }
+
+            last = i;
+            if ((item_flags & NAN_VALUE) == 0)
+            {
+                if (value < lowest_value)
+                {
+                    lowest_value = value;
+                    min_value = i;
+                }
+                if (value > highest_value)
+                {
+                    highest_value = value;
+                    max_value = i;
+                }
+            }
+            if ((item_flags & MIN_MAX) != 0)
+            {
+                if (min < lowest_min)
+                {
+                    lowest_min = min;
+                    min_min = i;
+                }
+                if (max > highest_max)
+                {
+                    highest_max = max;
+                    max_max = i;
+                }
+            }
+            if ((item_flags & STD_DEV) != 0)
+            {
+                if (value - dev < lowest_dev)
+                {
+                    lowest_dev = value - dev;
+                    low_dev = i;
+                }
+                if (value + dev > highest_dev)
+                {
+                    highest_dev = value + dev;
+                    high_dev = i;
+                }
+            }
+        }
+
+        // Remember the last group, which may change as more samples arrive
+        open_start = start;
+        final PlotDataItem<XTYPE> open = data.get(start);
+        open_position = open.getPosition();
+        open_value = open.getValue();
+        open_x = x_transform.transform(open_position);
+        if (start > 0)
+        {
+            final PlotDataItem<XTYPE> closed = data.get(start - 1);
+            closed_position = closed.getPosition();
+            closed_value = closed.getValue();
+        }
+        else
+            closed_position = null;
+        open_items = items.size();
+        emitGroup(data);
+
+        revision = data.getRevision();
+        final PlotDataItem<XTYPE> first = data.get(0);
+        first_position = first.getPosition();
+        first_value = first.getValue();
+        first_x = x_transform.transform(first_position);
+
+        return N - i0;
+    }
+
+    /** @return <code>true</code> if cached groups are still valid and only the last group needs to be updated */
+    private boolean canAppend(final PlotDataProvider<XTYPE> data, final int N, final ScreenTransform<XTYPE> x_transform,
+                              final int x_min, final int x_max)
+    {
+        if (first_position == null  ||  x_min != this.x_min  ||  x_max != this.x_max  ||  open_start >= N  ||
+            data.getRevision() != revision)
+            return false;
+        // Same screen transformation: Same screen coordinates for two (typically different) positions
+        if (! ValueRangeTree.matches(data.get(0), first_position, first_value)  ||
+            x_transform.transform(first_position) != first_x)
+            return false;
+        if (! ValueRangeTree.matches(data.get(open_start), open_position, open_value)  ||
+            x_transform.transform(open_position) != open_x)
+            return false;
+        // Samples before the last group unchanged?
+        if (closed_position != null  &&  ! ValueRangeTree.matches(data.get(open_start - 1), closed_position, closed_value))
+            return false;
+        return true;
+    }
+
+    private int clip(final double x)
+    {
+        if (x < x_min)
+            return x_min;
+        if (x > x_max)
+            return x_max;
+        return (int) x;
+    }
+
+    private void startGroup(final int column, final int flags, final int index)
+    {
+        this.column = column;
+        this.flags = flags;
+        start = first = last = index;
+        min_value = max_value = min_min = max_max = low_dev = high_dev = -1;
+        lowest_value = lowest_min = lowest_dev = Double.POSITIVE_INFINITY;
+        highest_value = highest_max = highest_dev = Double.NEGATIVE_INFINITY;
+    }
+
+    /** Add the samples to keep for current group, in their original order */
+    private void emitGroup(final PlotDataProvider<XTYPE> data)
+    {
+        int n = 0;
+        keep[n++] = first;
+        keep[n++] = last;
+        keep[n++] = min_value;
+        keep[n++] = max_value;
+        keep[n++] = min_min;
+        keep[n++] = max_max;
+        keep[n++] = low_dev;
+        keep[n++] = high_dev;
+        Arrays.sort(keep);
+        int previous = -1;
+        for (int index : keep)
+        {
+            if (index > previous)
+                items.add(data.get(index));
+            previous = index;
+        }
+    }
+
+    /** @return Lock of the original data */
+    @Override
+    public Lock getLock()
+    {
+        return lock;
+    }
+
+    /** @return Number of decimated samples */
+    @Override
+    public int size()
+    {
+        return items.size();
+    }
+
+    /** @param index 0 .. size()-1
+     *  @return Decimated sample
+     */
+    @Override
+    public PlotDataItem<XTYPE> get(final int index)
+    {
+        return items.get(index);
+    }
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.internal.util;
+
+import java.util.Arrays;
+
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataSearch;
+import org.csstudio.swt.rtplot.data.ValueRange;
+
+/** Summary of the value range of a trace's samples
+ *
+ *  <p>Samples are grouped into blocks of {@link #BLOCK} samples.
+ *  A segment tree holds the minimum and maximum finite value of each block
+ *  and of each power-of-two group of blocks,
+ *  so the value range for a range of sample indices
+ *  is determined in O(log N).
+ *
+ *  <p>The summary is updated incrementally.
+ *  As long as samples are only added at the end,
+ *  or removed from the start as with a ring buffer,
+ *  only the new samples are added to the tree.
+ *  The tree is rebuilt when the revision of the data changes,
+ *  or when the first or last sample in the tree is not where it's expected.
+ *  Changes to other samples that keep the revision
+ *  are not detected.
+ *  The last sample of the data is never added to the tree
+ *  because it tends to change, for example to extend a
+ *  live trace to the current time.
+ *
+ *  <p>Not thread-safe. Caller must synchronize and
+ *  hold the lock of the data.
+ *
+ *  @param <XTYPE> Data type used for the {@link PlotDataItem}
+ *  @author Kay Kasemir
+ */
+public class ValueRangeTree<XTYPE extends Comparable<XTYPE>>
+{
+    /** Number of samples per leaf of the tree */
+    final public static int BLOCK = 64;
+
+    final private PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
+
+    /** Number of leaves (blocks), power of 2 */
+    private int leaves = 0;
+
+    /** Minimum and maximum for tree nodes. Node 1 is the root, leaf for block b is at leaves + b */
+    private double[] min = new double[0], max = new double[0];
+
+    /** Absolute index of data sample 0 */
+    private int base = 0;
+
+    /** Number of samples in the tree */
+    private int count = 0;
+
+    /** Position and value of the first sample in the tree */
+    private XTYPE first_position = null;
+    private double first_value;
+
+    /** Position and value of the last sample in the tree */
+    private XTYPE last_position = null;
+    private double last_value;
+
+    /** Revision of the data */
+    private int revision;
+
+    /** Update the tree for the current data
+     *  @param data Data, caller must hold the lock
+     *  @return Number of samples that were added to the tree
+     */
+    public int update(final PlotDataProvider<XTYPE> data)
+    {
+        final int N = data.size() - 1;
+        if (N <= 0)
+        {
+            clear();
+            return 0;
+        }
+
+        if (data.getRevision() != revision  ||  ! canAppend(data, N))
+            rebuild(N);
+        else if (base + N > leaves * BLOCK)
+        {   // No room for more blocks: Rebuild with larger tree, or compact
+            rebuild(N);
+        }
+
+        final int added = N - count;
+        for (int i=count; i<N; ++i)
+            add(base + i, data.get(i).getValue());
+        count = N;
+        revision = data.getRevision();
+        final PlotDataItem<XTYPE> first = data.get(0);
+        first_position = first.getPosition();
+        first_value = first.getValue();
+        final PlotDataItem<XTYPE> last = data.get(N-1);
+        last_position = last.getPosition();
+        last_value = last.getValue();
+        return added;
+    }
+
+    /** @return <code>true</code> if samples in the tree are still at the start of the data */
+    private boolean canAppend(final PlotDataProvider<XTYPE> data, final int N)
+    {
+        if (count <= 0)
+            return false;
+        // Locate the last sample of the tree in the data
+        final int index = search.findSampleLessOrEqual(data, last_position);
+        if (index < 0  ||  index >= N)
+            return false;
+        if (! matches(data.get(index), last_position, last_value))
+            return false;
+        // Another sample with the same position? Then the match is ambiguous
+        if (index+1 < N  &&  data.get(index+1).getPosition().equals(last_position))
+            return false;
+        // Samples removed from the start
+        final int removed = count - 1 - index;
+        if (removed < 0)
+            return false;
+        // Anchor check of the first sample:
+        // Unchanged unless samples were removed from the start.
+        // Unchanged first sample while the last sample moved
+        // means samples were removed or replaced elsewhere.
+        final boolean same_first = matches(data.get(0), first_position, first_value);
+        if (same_first != (removed == 0))
+            return false;
+        base += removed;
+        count -= removed;
+        return true;
+    }
+
+    /** @return <code>true</code> if item has the position and value */
+    static <XTYPE extends Comparable<XTYPE>> boolean matches(final PlotDataItem<XTYPE> item,
+                                                                     final XTYPE position, final double value)
+    {
+        return item.getPosition().equals(position)  &&
+               Double.doubleToLongBits(item.getValue()) == Double.doubleToLongBits(value);
+    }
+
+    /** Clear the tree, allocating room for at least N samples */
+    private void rebuild(final int N)
+    {
+        final int blocks = 2 * ((N + BLOCK - 1) / BLOCK);
+        int size = 1;
+        while (size < blocks)
+            size <<= 1;
+        if (size != leaves)
+        {
+            leaves = size;
+            min = new double[2*size];
+            max = new double[2*size];
+        }
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        base = 0;
+        count = 0;
+    }
+
+    /** Clear the tree */
+    public void clear()
+    {
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        base = count = 0;
+        first_position = last_position = null;
+    }
+
+    /** @param index Absolute index of sample
+     *  @param value Value of sample
+     */
+    private void add(final int index, final double value)
+    {
+        int node = leaves + index / BLOCK;
+        if (index % BLOCK == 0)
+        {   // Start new block, replacing values from an earlier use of the leaf
+            min[node] = Double.POSITIVE_INFINITY;
+            max[node] = Double.NEGATIVE_INFINITY;
+        }
+        if (Double.isFinite(value))
+        {
+            if (value < min[node])
+                min[node] = value;
+            if (value > max[node])
+                max[node] = value;
+        }
+        // Update parent nodes
+        for (node /= 2;  node > 0;  node /= 2)
+        {
+            min[node] = Math.min(min[2*node], min[2*node+1]);
+            max[node] = Math.max(max[2*node], max[2*node+1]);
+        }
+    }
+
+    /** Determine value range
+     *
+     *  <p>Caller must have called {@link #update(PlotDataProvider)}
+     *  and still hold the lock of the data.
+     *
+     *  @param data Data
+     *  @param start Index of first sample
+     *  @param stop Index of last sample, inclusive
+     *  @return {@link ValueRange} of finite values, low > high if there are none
+     */
+    public ValueRange getValueRange(final PlotDataProvider<XTYPE> data, final int start, final int stop)
+    {
+        final double[] range = { Double.MAX_VALUE, -Double.MAX_VALUE };
+        // Samples covered by the tree
+        final int end = Math.min(stop, count-1);
+        if (start <= end)
+        {
+            final int first = base + start, last = base + end;
+            final int first_block = (first + BLOCK - 1) / BLOCK, last_block = (last + 1) / BLOCK - 1;
+            if (first_block > last_block)
+                scan(data, start, end, range);
+            else
+            {   // Scan partial blocks, use tree for complete blocks
+                scan(data, start, first_block * BLOCK - base - 1, range);
+                query(first_block, last_block, range);
+                scan(data, (last_block + 1) * BLOCK - base, end, range);
+            }
+        }
+        // Samples not in the tree
+        scan(data, Math.max(start, count), stop, range);
+        return new ValueRange(range[0], range[1]);
+    }
+
+    /** Scan samples [start, stop] */
+    private static <XTYPE extends Comparable<XTYPE>> void scan(final PlotDataProvider<XTYPE> data,
+                                                              final int start, final int stop, final double[] range)
+    {
+        for (int i=start; i<=stop; ++i)
+        {
+            final double value = data.get(i).getValue();
+            if (! Double.isFinite(value))
+                continue;
+            if (value < range[0])
+                range[0] = value;
+            if (value > range[1])
+                range[1] = value;
+        }
+    }
+
+    /** Query tree for blocks [first, last] */
+    private void query(final int first, final int last, final double[] range)
+    {
+        int lo = first + leaves, hi = last + leaves + 1;
+        while (lo < hi)
+        {
+            if ((lo & 1) == 1)
+            {
+                range[0] = Math.min(range[0], min[lo]);
+                range[1] = Math.max(range[1], max[lo]);
+                ++lo;
+            }
+            if ((hi & 1) == 1)
+            {
+                --hi;
+                range[0] = Math.min(range[0], min[hi]);
+                range[1] = Math.max(range[1], max[hi]);
+            }
+            lo /= 2;
+            hi /= 2;
+        }
+    }
+}
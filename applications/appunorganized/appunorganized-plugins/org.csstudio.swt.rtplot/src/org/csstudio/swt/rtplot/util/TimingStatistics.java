@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.util;
+
+/** Statistics for the duration of a processing stage
+ *
+ *  <p>Thread-safe.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class TimingStatistics
+{
+    final private String name;
+    private long count = 0, total_ns = 0, max_ns = 0, last_ns = 0;
+
+    /** @param name Name of the stage */
+    public TimingStatistics(final String name)
+    {
+        this.name = name;
+    }
+
+    /** @return Name of the stage */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** Add a measurement that ends now
+     *  @param start_ns Start time of the stage, obtained from <code>System.nanoTime()</code>
+     */
+    public void add(final long start_ns)
+    {
+        final long duration = System.nanoTime() - start_ns;
+        synchronized (this)
+        {
+            ++count;
+            total_ns += duration;
+            last_ns = duration;
+            if (duration > max_ns)
+                max_ns = duration;
+        }
+    }
+
+    /** @return Number of measurements */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /** @return Duration of the last measurement in ms */
+    public synchronized double getLastMillis()
+    {
+        return last_ns / 1e6;
+    }
+
+    /** @return Average duration in ms */
+    public synchronized double getAverageMillis()
+    {
+        return count > 0 ? total_ns / 1e6 / count : 0.0;
+    }
+
+    /** @return Maximum duration in ms */
+    public synchronized double getMaxMillis()
+    {
+        return max_ns / 1e6;
+    }
+
+    /** Clear the statistics */
+    public synchronized void reset()
+    {
+        count = total_ns = max_ns = last_ns = 0;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("%s: %d x, last %.3f ms, average %.3f ms, max %.3f ms",
+                             name, count, getLastMillis(), getAverageMillis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.apputil.ringbuffer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/** JUnit test of the ConcurrentRingBuffer
+ *  @author Kay Kasemir
+ */
+public class ConcurrentRingBufferUnitTest
+{
+    @Test
+    public void testRingBuffer() throws Exception
+    {
+        final ConcurrentRingBuffer<Integer> ring = new ConcurrentRingBuffer<Integer>(5);
+        assertTrue(ring.isEmpty());
+        assertFalse(ring.isFull());
+
+        // Add/remove one item
+        assertFalse(ring.add(1));
+        assertFalse(ring.isEmpty());
+        assertEquals(Integer.valueOf(1), ring.remove());
+        assertNull(ring.remove());
+        assertTrue(ring.isEmpty());
+
+        // Fill
+        for (int i=1; i<=5; ++i)
+            assertFalse(ring.add(i));
+        assertTrue(ring.isFull());
+
+        // Fill to 9, but ring only remembers the last 5 items
+        for (int i=6; i<10; ++i)
+            assertTrue(ring.add(i));
+        assertEquals(5, ring.size());
+
+        // Drain some, then the rest
+        final List<Integer> batch = new ArrayList<>();
+        assertEquals(2, ring.drainTo(batch, 2));
+        assertEquals(3, ring.drainTo(batch, 100));
+        assertEquals(0, ring.drainTo(batch, 100));
+        assertEquals(5, batch.size());
+        for (int i=0; i<5; ++i)
+            assertEquals(Integer.valueOf(5+i), batch.get(i));
+        assertTrue(ring.isEmpty());
+    }
+
+    /** Producer thread adds faster than consumer removes,
+     *  consumer must still see increasing values without duplicates.
+     */
+    @Test(timeout=20000)
+    public void testThreads() throws Exception
+    {
+        final int count = 1000000;
+        final ConcurrentRingBuffer<Integer> ring = new ConcurrentRingBuffer<Integer>(100);
+        final int[] dropped = new int[1];
+        final Thread producer = new Thread(() ->
+        {
+            for (int i=0; i<count; ++i)
+                if (ring.add(i))
+                    ++dropped[0];
+        });
+        producer.start();
+
+        int received = 0, last = -1;
+        final List<Integer> batch = new ArrayList<>();
+        while (producer.isAlive()  ||  !ring.isEmpty())
+        {
+            batch.clear();
+            ring.drainTo(batch, 10);
+            final Integer single = ring.remove();
+            if (single != null)
+                batch.add(single);
+            for (Integer value : batch)
+            {
+                assertTrue(value > last);
+                last = value;
+                ++received;
+            }
+        }
+        producer.join();
+        System.out.println("Received " + received + ", dropped " + dropped[0]); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(count - 1, last);
+        assertEquals(count, received + dropped[0]);
+    }
+}
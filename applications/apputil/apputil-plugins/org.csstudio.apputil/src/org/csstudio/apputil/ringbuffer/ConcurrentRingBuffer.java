@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.apputil.ringbuffer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Lock-free ring buffer for one producer and one consumer thread.
+ *  <p>
+ *  Like the {@link RingBuffer}, the oldest element is dropped
+ *  when adding to a full buffer.
+ *  Exactly one thread may call {@link #add(Object)},
+ *  and exactly one (other) thread may call {@link #remove()}
+ *  or {@link #drainTo(List, int)}.
+ *  Size and capacity may be queried by any thread.
+ *
+ *  @author Kay Kasemir
+ *  @param <T> Element type
+ */
+public class ConcurrentRingBuffer<T>
+{
+    //  Implementation:
+    //
+    //  'head' and 'tail' are ever-increasing sequence numbers.
+    //  Valid entries are [head], [head+1], ..., [tail-1],
+    //  located at ring index (sequence % capacity).
+    //
+    //  Only the producer updates 'tail'.
+    //  'head' is advanced by the consumer when removing an element,
+    //  but also by the producer when it drops the oldest element
+    //  of a full buffer. Both use compare-and-set on 'head',
+    //  so an element is either removed or dropped, never both.
+    //  The producer only writes a slot after 'head' moved past it,
+    //  and a consumer that read such a slot will then fail its
+    //  compare-and-set and retry.
+    final private AtomicReferenceArray<T> ring;
+    final private int capacity;
+    final private AtomicLong head = new AtomicLong();
+    final private AtomicLong tail = new AtomicLong();
+
+    /** Initialize
+     *  @param capacity Capacity
+     */
+    public ConcurrentRingBuffer(final int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity); //$NON-NLS-1$
+        ring = new AtomicReferenceArray<T>(capacity);
+        this.capacity = capacity;
+    }
+
+    /** @return <code>true</code> if ring buffer is empty */
+    public boolean isEmpty()
+    {
+        return size() <= 0;
+    }
+
+    /** @return <code>true</code> if ring buffer is full,
+     *          i.e. the next addition will override the oldest element
+     */
+    public boolean isFull()
+    {
+        return size() >= capacity;
+    }
+
+    /** @return Number of valid entries in ring buffer */
+    public int size()
+    {
+        // Read head first: tail can only grow while we look at it
+        final long h = head.get();
+        final long size = tail.get() - h;
+        if (size <= 0)
+            return 0;
+        if (size >= capacity)
+            return capacity;
+        return (int) size;
+    }
+
+    /** @return Maximum number of entries in ring buffer */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** Add item to ring buffer.
+     *  <p>
+     *  May only be called by the producer thread.
+     *  @param item Item to add
+     *  @return <code>true</code> if the oldest element was dropped to make room
+     */
+    public boolean add(final T item)
+    {
+        final long t = tail.get();
+        boolean dropped = false;
+        long h = head.get();
+        while (t - h >= capacity)
+        {   // Full: Drop oldest element, unless consumer just removed it
+            if (head.compareAndSet(h, h+1))
+            {
+                dropped = true;
+                break;
+            }
+            h = head.get();
+        }
+        ring.set(index(t), item);
+        // Publish the element
+        tail.set(t+1);
+        return dropped;
+    }
+
+    /** Remove the oldest ring buffer element.
+     *  <p>
+     *  May only be called by the consumer thread.
+     *  @return Oldest ring buffer element or <code>null</code>
+     */
+    public T remove()
+    {
+        while (true)
+        {
+            final long h = head.get();
+            if (h >= tail.get())
+                return null;
+            final T item = ring.get(index(h));
+            if (head.compareAndSet(h, h+1))
+                return item;
+            // else: Producer dropped that element, try next one
+        }
+    }
+
+    /** Remove up to <code>max</code> of the oldest elements.
+     *  <p>
+     *  May only be called by the consumer thread.
+     *  @param target List to which elements are appended, oldest first
+     *  @param max Maximum number of elements to remove
+     *  @return Number of elements that were added to <code>target</code>
+     */
+    public int drainTo(final List<? super T> target, final int max)
+    {
+        final int start = target.size();
+        while (true)
+        {
+            final long h = head.get();
+            final int count = (int) Math.min(tail.get() - h, max);
+            if (count <= 0)
+                return 0;
+            for (int i=0; i<count; ++i)
+                target.add(ring.get(index(h + i)));
+            if (head.compareAndSet(h, h + count))
+                return count;
+            // Producer dropped some of those elements, start over
+            target.subList(start, target.size()).clear();
+        }
+    }
+
+    /** @param sequence Sequence number
+     *  @return Index into ring
+     */
+    private int index(final long sequence)
+    {
+        return (int) (sequence % capacity);
+    }
+}
@@ -26,8 +26,9 @@ import org.csstudio.archive.config.GroupConfig;
 import org.csstudio.archive.config.ImportableArchiveConfig;
 import org.csstudio.archive.config.SampleMode;
 import org.csstudio.archive.rdb.RDBArchivePreferences;
+import org.csstudio.archive.rdb.RDBConnectionPool;
+import org.csstudio.archive.rdb.RDBConnectionPool.PooledConnection;
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.csstudio.platform.utility.rdb.RDBUtil;
 import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 
 /** RDB implementation (Oracle, MySQL, PostgreSQL) of {@link ArchiveConfig}
@@ -42,8 +43,8 @@ import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 @SuppressWarnings("nls")
 public class RDBArchiveConfig implements ImportableArchiveConfig
 {
-    /** RDB connection */
-    private RDBUtil rdb;
+    /** RDB connection, borrowed from the pool */
+    private PooledConnection rdb;
 
     /** SQL statements */
     private SQL sql;
@@ -79,7 +80,7 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
     public RDBArchiveConfig(final String url, final String user, final String password,
             final String schema) throws Exception
     {
-        rdb = RDBUtil.connect(url, user, password, false);
+        rdb = RDBConnectionPool.getPool(url, user, password, false).borrow();
         sql = new SQL(rdb.getDialect(), schema);
         loadSampleModes();
     }
@@ -631,7 +632,7 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
         // This statement has a surprisingly complex execution plan for partitioned
         // Oracle setups, so re-use it
         if (last_sample_time_statement == null)
-            last_sample_time_statement = rdb.getConnection().prepareStatement(sql.sel_last_sample_time_by_id);
+            last_sample_time_statement = rdb.prepareStatement(sql.sel_last_sample_time_by_id);
         last_sample_time_statement.setInt(1, channel_id);
         try
         (
@@ -664,16 +665,10 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
     {
         if (last_sample_time_statement != null)
         {
-            try
-            {
-                last_sample_time_statement.close();
-            }
-            catch (Exception ex)
-            {
-                // Ignore, closing down anyway
-            }
+            rdb.releaseStatement(last_sample_time_statement);
             last_sample_time_statement = null;
         }
+        // Return connection to pool
         rdb.close();
     }
 }
@@ -78,19 +78,32 @@ public abstract class AbstractChannelHandler extends MultiplexedChannelHandler<B
         boolean channelFound = false;
         for (ArchiveSource as : sources) {
             ArchiveReader archive = ArchiveRepository.getInstance().getArchiveReader(as.url);
-            ValueIterator iterator;
+            boolean shared = ArchiveRepository.getInstance().isSharedReader(as.url);
             try {
-                iterator = optimised ? archive.getOptimizedValues(as.key, strippedName, startTime, endTime, binCount)
-                    : archive.getRawValues(as.key, strippedName, startTime, endTime);
-            } catch (UnknownChannelException e) {
-                continue;
-            }
-            channelFound = true;
-            VType temp;
-            while (iterator.hasNext()) {
-                temp = iterator.next();
-                if (temp instanceof Time) {
-                    values.add(temp);
+                ValueIterator iterator;
+                try {
+                    iterator = optimised ? archive.getOptimizedValues(as.key, strippedName, startTime, endTime, binCount)
+                        : archive.getRawValues(as.key, strippedName, startTime, endTime);
+                } catch (UnknownChannelException e) {
+                    continue;
+                }
+                channelFound = true;
+                try {
+                    VType temp;
+                    while (iterator.hasNext()) {
+                        temp = iterator.next();
+                        if (temp instanceof Time) {
+                            values.add(temp);
+                        }
+                    }
+                } finally {
+                    iterator.close();
+                }
+            } finally {
+                // Shared readers stay open for other clients,
+                // others may hold a database connection until closed
+                if (!shared) {
+                    archive.close();
                 }
             }
         }
@@ -116,24 +129,35 @@ public abstract class AbstractChannelHandler extends MultiplexedChannelHandler<B
         boolean channelFound = false;
         for (ArchiveSource as : sources) {
             ArchiveReader archive = ArchiveRepository.getInstance().getArchiveReader(as.url);
-            ValueIterator iterator;
-            try {
-                iterator = archive.getRawValues(as.key, strippedName, time, time);
-            } catch (UnknownChannelException e) {
-                continue;
-            }
-            channelFound = true;
-            VType temp = null;
+            boolean shared = ArchiveRepository.getInstance().isSharedReader(as.url);
             VType value = null;
             Instant t = null;
-            while (iterator.hasNext()) {
-                // find the first value that has a timestamp greater than start
-                temp = iterator.next();
-                if (((Time) temp).getTimestamp().compareTo(time) > 0) {
-                    break;
+            try {
+                ValueIterator iterator;
+                try {
+                    iterator = archive.getRawValues(as.key, strippedName, time, time);
+                } catch (UnknownChannelException e) {
+                    continue;
+                }
+                channelFound = true;
+                try {
+                    VType temp = null;
+                    while (iterator.hasNext()) {
+                        // find the first value that has a timestamp greater than start
+                        temp = iterator.next();
+                        if (((Time) temp).getTimestamp().compareTo(time) > 0) {
+                            break;
+                        }
+                        value = temp;
+                        t = ((Time) temp).getTimestamp();
+                    }
+                } finally {
+                    iterator.close();
+                }
+            } finally {
+                if (!shared) {
+                    archive.close();
                 }
-                value = temp;
-                t = ((Time) temp).getTimestamp();
             }
             // value is the last value with a timestamp smaller than the requested time
             if (value != null) {
@@ -9,6 +9,9 @@ package org.csstudio.archive.engine.model;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.csstudio.archive.vtype.VTypeHelper;
 import org.diirt.vtype.VType;
 import org.junit.Test;
@@ -53,6 +56,30 @@ public class SampleBufferUnitTest
         assertEquals(1.0, VTypeHelper.toDouble(value), 0.01);
     }
 
+    /** Check lock-free buffer, including overrun and batched removal */
+    @Test
+    public void testLockFree()
+    {
+        final SampleBuffer buffer = new SampleBuffer("Demo", null, 10, true);
+        for (int i=0; i<buffer.getCapacity(); ++i)
+            buffer.add(TestHelper.newValue(i));
+        assertEquals(buffer.getCapacity(), buffer.getQueueSize());
+        assertEquals(0, buffer.getBufferStats().getOverruns());
+
+        // Cause overrun, dropping value 0
+        buffer.add(TestHelper.newValue(-1.0));
+        assertEquals(buffer.getCapacity(), buffer.getQueueSize());
+        assertEquals(1, buffer.getBufferStats().getOverruns());
+
+        final List<VType> batch = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(batch, 4));
+        assertEquals(1.0, VTypeHelper.toDouble(batch.get(0)), 0.01);
+        assertEquals(4.0, VTypeHelper.toDouble(batch.get(3)), 0.01);
+        assertEquals(6, buffer.drainTo(batch, 100));
+        assertEquals(-1.0, VTypeHelper.toDouble(batch.get(9)), 0.01);
+        assertEquals(0, buffer.getQueueSize());
+    }
+
     final private static long TEST_RUNS = 1000L;
 
     class FillThread extends Thread
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVEnum;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVNumberArray;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.VEnum;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VNumberArray;
+import org.diirt.vtype.VString;
+import org.diirt.vtype.VType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link SampleSpool}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class SampleSpoolUnitTest
+{
+    private File directory;
+
+    @Before
+    public void setup() throws Exception
+    {
+        directory = Files.createTempDirectory("spool").toFile();
+    }
+
+    @After
+    public void cleanup()
+    {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testSampleTypes() throws Exception
+    {
+        final SampleSpool spool = new SampleSpool(directory, 1024*1024, 64*1024);
+        assertTrue(spool.isEmpty());
+
+        final Instant time = Instant.ofEpochSecond(1500000000L, 42);
+        spool.append("a", null, new ArchiveVNumber(time, AlarmSeverity.MINOR, "LOW", TestHelper.display, 3.14));
+        spool.append("b", "forever", new ArchiveVNumber(time, AlarmSeverity.NONE, "OK", TestHelper.display, 42L));
+        spool.append("c", null, new ArchiveVNumberArray(time, AlarmSeverity.NONE, "OK", TestHelper.display, 1.0, 2.0, 3.0));
+        spool.append("d", null, new ArchiveVEnum(time, AlarmSeverity.MAJOR, "STATE", Arrays.asList("Off", "On"), 1));
+        spool.append("e", null, new ArchiveVString(time, AlarmSeverity.INVALID, "Disconnected", "Hello"));
+        assertEquals(5, spool.getSampleCount());
+
+        final List<SampleSpool.Entry> entries = new ArrayList<>();
+        assertEquals(5, spool.read(entries, 100));
+        for (SampleSpool.Entry entry : entries)
+        {
+            System.out.println(entry.channel + ": " + VTypeHelper.toString(entry.sample));
+            assertEquals(time, VTypeHelper.getTimestamp(entry.sample));
+        }
+
+        assertEquals("a", entries.get(0).channel);
+        assertNull(entries.get(0).retention);
+        assertEquals(AlarmSeverity.MINOR, VTypeHelper.getSeverity(entries.get(0).sample));
+        assertEquals("LOW", VTypeHelper.getMessage(entries.get(0).sample));
+        assertEquals(3.14, ((VNumber) entries.get(0).sample).getValue().doubleValue(), 0.001);
+        final Display display = (Display) entries.get(0).sample;
+        assertEquals("Eggs", display.getUnits());
+        assertEquals(2, display.getFormat().getMinimumFractionDigits());
+        assertEquals(10.0, display.getUpperDisplayLimit(), 0.001);
+
+        assertEquals("forever", entries.get(1).retention);
+        assertEquals(Long.valueOf(42), ((VNumber) entries.get(1).sample).getValue());
+
+        assertEquals(3, ((VNumberArray) entries.get(2).sample).getData().size());
+        assertEquals(3.0, ((VNumberArray) entries.get(2).sample).getData().getDouble(2), 0.001);
+
+        assertEquals("On", ((VEnum) entries.get(3).sample).getValue());
+
+        assertEquals("Hello", ((VString) entries.get(4).sample).getValue());
+
+        spool.commit();
+        assertTrue(spool.isEmpty());
+        assertEquals(0, spool.getSampleCount());
+        assertEquals(0, spool.getDiskUsage());
+    }
+
+    @Test
+    public void testReadCommit() throws Exception
+    {
+        final SampleSpool spool = new SampleSpool(directory, 1024*1024, 4*1024);
+        for (int i=0; i<1000; ++i)
+            assertTrue(spool.append("x", null, TestHelper.newValue(i)));
+        assertEquals(1000, spool.getSampleCount());
+        System.out.println(spool + ", " + spool.getDiskUsage() + " bytes");
+        assertTrue(spool.getDiskUsage() > 4*4*1024);
+
+        // Read without commit returns the same samples
+        final List<SampleSpool.Entry> entries = new ArrayList<>();
+        final int count = spool.read(entries, 10);
+        assertEquals(10, count);
+        entries.clear();
+        assertEquals(10, spool.read(entries, 10));
+        assertEquals(0.0, ((VNumber) entries.get(0).sample).getValue().doubleValue(), 0.001);
+        spool.commit();
+        assertEquals(990, spool.getSampleCount());
+
+        // Read the rest, segment by segment, in order
+        int expected = 10;
+        entries.clear();
+        while (spool.read(entries, 100) > 0)
+        {
+            for (SampleSpool.Entry entry : entries)
+                assertEquals(expected++, ((VNumber) entry.sample).getValue().doubleValue(), 0.001);
+            spool.commit();
+            entries.clear();
+        }
+        assertEquals(1000, expected);
+        assertTrue(spool.isEmpty());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void testLimit() throws Exception
+    {
+        final SampleSpool spool = new SampleSpool(directory, 16*1024, 4*1024);
+        int added = 0;
+        for (int i=0; i<1000; ++i)
+            if (spool.append("x", null, TestHelper.newValue(i)))
+                ++added;
+        System.out.println("Spooled " + added + ", dropped " + spool.getDroppedCount());
+        assertEquals(1000, added + spool.getDroppedCount());
+        assertTrue(spool.getDroppedCount() > 0);
+        assertTrue(spool.getDiskUsage() <= 16*1024);
+    }
+
+    @Test
+    public void testRestart() throws Exception
+    {
+        SampleSpool spool = new SampleSpool(directory, 1024*1024, 4*1024);
+        for (int i=0; i<100; ++i)
+            spool.append("x", null, TestHelper.newValue(i));
+        final List<SampleSpool.Entry> entries = new ArrayList<>();
+        spool.read(entries, 30);
+        spool.commit();
+        spool.close();
+
+        // New spool finds the remaining samples
+        spool = new SampleSpool(directory, 1024*1024, 4*1024);
+        assertEquals(70, spool.getSampleCount());
+        entries.clear();
+        spool.read(entries, 1);
+        assertEquals(30.0, ((VNumber) entries.get(0).sample).getValue().doubleValue(), 0.001);
+
+        // Can continue to add
+        spool.append("x", null, TestHelper.newValue(100));
+        assertEquals(71, spool.getSampleCount());
+        int count = 0;
+        entries.clear();
+        while (spool.read(entries, 1000) > 0)
+        {
+            spool.commit();
+            count += entries.size();
+            entries.clear();
+        }
+        assertEquals(71, count);
+        spool.close();
+    }
+
+    @Test
+    public void testCRC() throws Exception
+    {
+        SampleSpool spool = new SampleSpool(directory, 1024*1024, 64*1024);
+        for (int i=0; i<3; ++i)
+            spool.append("x", null, TestHelper.newValue(i));
+        spool.close();
+
+        // Corrupt the value of the second sample, the last byte of its record
+        final File file = directory.listFiles()[0];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.seek(8);
+            final int length = raf.readInt();
+            final long second_end = 8 + 2 * (8 + length) - 1;
+            raf.seek(second_end);
+            final int original = raf.readByte();
+            raf.seek(second_end);
+            raf.writeByte(original ^ 0xFF);
+        }
+
+        spool = new SampleSpool(directory, 1024*1024, 64*1024);
+        final List<SampleSpool.Entry> entries = new ArrayList<>();
+        assertEquals(2, spool.read(entries, 10));
+        assertEquals(1, spool.getBadRecordCount());
+        assertEquals(0.0, ((VNumber) entries.get(0).sample).getValue().doubleValue(), 0.001);
+        assertEquals(2.0, ((VNumber) entries.get(1).sample).getValue().doubleValue(), 0.001);
+        spool.commit();
+        assertTrue(spool.isEmpty());
+        spool.close();
+    }
+
+    /** Spool speed, i.e. how fast a write thread can move samples to disk */
+    @Test
+    public void testSpeed() throws Exception
+    {
+        final SampleSpool spool = new SampleSpool(directory, 1024L*1024*1024);
+        final VType value = TestHelper.newValue(3.14);
+        final int count = 1000000;
+        long start = System.currentTimeMillis();
+        for (int i=0; i<count; ++i)
+            spool.append("SomeChannelName", null, value);
+        spool.flush();
+        double secs = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format("Spooled %d samples in %.1f secs = %.1f samples/sec, %.1f MB\n",
+                          count, secs, count / secs, spool.getDiskUsage() / 1024.0 / 1024.0);
+
+        final List<SampleSpool.Entry> entries = new ArrayList<>();
+        long replayed = 0;
+        start = System.currentTimeMillis();
+        while (spool.read(entries, 5000) > 0)
+        {
+            replayed += entries.size();
+            spool.commit();
+            entries.clear();
+        }
+        secs = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format("Replayed %d samples in %.1f secs = %.1f samples/sec\n", replayed, secs, replayed / secs);
+        assertEquals(count, replayed);
+        spool.close();
+    }
+}
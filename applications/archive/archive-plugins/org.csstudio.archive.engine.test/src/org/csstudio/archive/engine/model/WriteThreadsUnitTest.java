@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link WriteThreads}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class WriteThreadsUnitTest
+{
+    @Test
+    public void testDistribution()
+    {
+        final WriteThreads writers = new WriteThreads(4);
+        assertEquals(4, writers.getThreads().size());
+
+        // Each channel always maps to the same thread
+        for (int i=0; i<1000; ++i)
+        {
+            final String name = "Channel" + i;
+            final WriteThread thread = writers.getThread(name);
+            assertSame(thread, writers.getThread(name));
+            thread.addSampleBuffer(new SampleBuffer(name, null, 10));
+        }
+
+        // .. and channels are spread across all threads
+        int total = 0;
+        for (WriteThread thread : writers.getThreads())
+        {
+            System.out.println(thread.getName() + ": " + thread.getChannelCount() + " channels");
+            assertTrue(thread.getChannelCount() > 100);
+            total += thread.getChannelCount();
+        }
+        assertEquals(1000, total);
+
+        // Nothing written, yet
+        assertNull(writers.getLastWriteTime());
+        assertEquals(0.0, writers.getWriteCount(), 0.01);
+
+        writers.clear();
+        for (WriteThread thread : writers.getThreads())
+            assertEquals(0, thread.getChannelCount());
+    }
+
+    @Test
+    public void testSingleThread()
+    {
+        final WriteThreads writers = new WriteThreads(0);
+        assertEquals(1, writers.getThreads().size());
+        assertEquals("WriteThread", writers.getThreads().get(0).getName());
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/** Unit test of the ScanScheduler
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ScanSchedulerUnitTest
+{
+    /** Scannable item that counts invocations */
+    static class CountingItem implements Runnable
+    {
+        final AtomicInteger scans = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        volatile boolean overlapped = false;
+        final long delay;
+
+        CountingItem(final long delay)
+        {
+            this.delay = delay;
+        }
+
+        @Override
+        public void run()
+        {
+            if (concurrent.incrementAndGet() > 1)
+                overlapped = true;
+            scans.incrementAndGet();
+            if (delay > 0)
+            {
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ex)
+                {
+                    // Ignore
+                }
+            }
+            concurrent.decrementAndGet();
+        }
+    }
+
+    @Test(timeout=20000)
+    public void testManyItems() throws Exception
+    {
+        final ScanScheduler scheduler = new ScanScheduler(4);
+        final List<CountingItem> fast = new ArrayList<>(), slow = new ArrayList<>();
+        for (int i=0; i<10000; ++i)
+        {
+            final CountingItem item = new CountingItem(0);
+            fast.add(item);
+            scheduler.add(item, 0.1);
+        }
+        for (int i=0; i<10000; ++i)
+        {
+            final CountingItem item = new CountingItem(0);
+            slow.add(item);
+            scheduler.add(item, 0.5);
+        }
+        assertEquals(20000, scheduler.size());
+        assertEquals(2, scheduler.getScanStats().size());
+
+        scheduler.start();
+        Thread.sleep(3000);
+        scheduler.stop();
+
+        // About 30 scans of the fast items, 6 of the slow ones
+        int fast_scans = 0, slow_scans = 0;
+        for (CountingItem item : fast)
+            fast_scans += item.scans.get();
+        for (CountingItem item : slow)
+            slow_scans += item.scans.get();
+        System.out.println("Fast items: " + fast_scans/fast.size() + " scans");
+        System.out.println("Slow items: " + slow_scans/slow.size() + " scans");
+        assertTrue(Math.abs(fast_scans/fast.size() - 30) <= 3);
+        assertTrue(Math.abs(slow_scans/slow.size() - 6) <= 1);
+
+        for (ScanStats stats : scheduler.getScanStats())
+        {
+            System.out.println(stats);
+            System.out.println("Lateness: " + Arrays.toString(stats.getLatenessHistogram()));
+            System.out.println("Jitter  : " + Arrays.toString(stats.getJitterHistogram()));
+            assertEquals(10000, stats.getItemCount());
+            assertEquals(0, stats.getOverruns());
+        }
+        System.out.format("Idle: %.2f %%\n", scheduler.getIdlePercentage());
+    }
+
+    @Test(timeout=20000)
+    public void testOverrun() throws Exception
+    {
+        final ScanScheduler scheduler = new ScanScheduler(2);
+        // Item takes longer than its scan period
+        final CountingItem item = new CountingItem(250);
+        scheduler.add(item, 0.1);
+        scheduler.start();
+        Thread.sleep(2000);
+        scheduler.stop();
+
+        final ScanStats stats = scheduler.getScanStats().get(0);
+        System.out.println(stats);
+        assertTrue(! item.overlapped);
+        assertTrue(stats.getOverruns() > 0);
+        assertTrue(item.scans.get() < 10);
+    }
+
+    @Test(timeout=20000)
+    public void testRemove() throws Exception
+    {
+        final ScanScheduler scheduler = new ScanScheduler(0);
+        final CountingItem item = new CountingItem(0);
+        scheduler.add(item, 0.1);
+        scheduler.add(item, 0.1);
+        assertEquals(1, scheduler.size());
+        scheduler.start();
+        Thread.sleep(500);
+        assertTrue(item.scans.get() > 0);
+
+        scheduler.remove(item);
+        assertEquals(0, scheduler.size());
+        assertEquals(0, scheduler.getScanStats().size());
+        final int scans = item.scans.get();
+        Thread.sleep(500);
+        scheduler.stop();
+        // Allow for scan that was in progress while removing
+        assertTrue(item.scans.get() <= scans + 1);
+    }
+}
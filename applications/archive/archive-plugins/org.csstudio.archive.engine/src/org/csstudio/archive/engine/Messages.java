@@ -45,10 +45,14 @@ public class Messages
     final public static String HTTP_QueueCapacity = "Capacity";
     final public static String HTTP_QueueOverruns = "Overruns";
     final public static String HTTP_ReceivedValues = "Received Values";
+    final public static String HTTP_ReplayRate = "Replay Rate";
+    final public static String HTTP_Spool = "Spool";
+    final public static String HTTP_SpoolDisabled = "disabled";
     final public static String HTTP_StartTime = "Start Time";
     final public static String HTTP_State = "State";
     final public static String HTTP_Status = "Status";
     final public static String HTTP_Total = "Total";
+    final public static String HTTP_TotalWritten = "Total Written";
     final public static String HTTP_Uptime = "Uptime";
     final public static String HTTP_Version = "Version";
     final public static String HTTP_Workspace = "Workspace";
@@ -56,5 +60,8 @@ public class Messages
     final public static String HTTP_WriteDuration = "Write Duration";
     final public static String HTTP_WriteError = "Write Error";
     final public static String HTTP_WritePeriod = "Write Period";
+    final public static String HTTP_WriteRate = "Write Rate";
     final public static String HTTP_WriteState = "Write State";
+    final public static String HTTP_WriteThread = "Write Thread";
+    final public static String HTTP_WriteThreads = "Write Threads";
 }
@@ -49,6 +49,24 @@ public class Preferences
         return prefs.getInt(Activator.ID, "batch_size", batch_size, null);
     }
 
+    public static int getWriteThreads()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int write_threads = 1;
+        if (prefs == null)
+            return write_threads;
+        return prefs.getInt(Activator.ID, "write_threads", write_threads, null);
+    }
+
+    public static int getScanThreads()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int scan_threads = 4;
+        if (prefs == null)
+            return scan_threads;
+        return prefs.getInt(Activator.ID, "scan_threads", scan_threads, null);
+    }
+
     public static double getBufferReserve()
     {
         final IPreferencesService prefs = Platform.getPreferencesService();
@@ -58,5 +76,32 @@ public class Preferences
         return prefs.getDouble(Activator.ID, "buffer_reserve", buffer_reserve, null);
     }
 
+    public static boolean useLockFreeBuffers()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final boolean lock_free = false;
+        if (prefs == null)
+            return lock_free;
+        return prefs.getBoolean(Activator.ID, "lock_free_buffers", lock_free, null);
+    }
+
+    public static String getSpoolDirectory()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final String spool_dir = "";
+        if (prefs == null)
+            return spool_dir;
+        return prefs.getString(Activator.ID, "spool_dir", spool_dir, null).trim();
+    }
+
+    public static long getSpoolMaxBytes()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int spool_max_mb = 1000;
+        if (prefs == null)
+            return spool_max_mb * 1024L * 1024L;
+        return prefs.getInt(Activator.ID, "spool_max_mb", spool_max_mb, null) * 1024L * 1024L;
+    }
+
 
 }
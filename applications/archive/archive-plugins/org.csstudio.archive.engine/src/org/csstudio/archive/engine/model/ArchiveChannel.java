@@ -486,8 +486,10 @@ abstract public class ArchiveChannel extends PVListenerAdapter
             }
             // else ...
             last_archived_value = value;
+            // Add while holding the channel lock:
+            // The sample buffer may assume a single 'adding' thread
+            buffer.add(value);
         }
-        buffer.add(value);
         if (SampleBuffer.isInErrorState())
             need_write_error_sample = true;
         return true;
@@ -20,8 +20,8 @@ import org.csstudio.archive.config.GroupConfig;
 import org.csstudio.archive.config.SampleMode;
 import org.csstudio.archive.engine.Activator;
 import org.csstudio.archive.engine.Preferences;
-import org.csstudio.archive.engine.scanner.ScanThread;
-import org.csstudio.archive.engine.scanner.Scanner;
+import org.csstudio.archive.engine.scanner.ScanScheduler;
+import org.csstudio.archive.engine.scanner.ScanStats;
 import org.csstudio.archive.vtype.ArchiveVString;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.diirt.vtype.AlarmSeverity;
@@ -40,8 +40,8 @@ public class EngineModel
     /** Name of this model */
     private String name = "Archive Engine";  //$NON-NLS-1$
 
-    /** Thread that writes to the <code>archive</code> */
-    final private WriteThread writer;
+    /** Threads that write to the <code>archive</code> */
+    final private WriteThreads writer;
 
     /** All the channels.
      *  <p>
@@ -61,11 +61,8 @@ public class EngineModel
      */
     final List<ArchiveGroup> groups = new ArrayList<ArchiveGroup>();
 
-    /** Scanner for scanned channels */
-    final Scanner scanner = new Scanner();
-
-    /** Thread that runs the scanner */
-    final ScanThread scan_thread = new ScanThread(scanner);
+    /** Scheduler for scanned channels */
+    final ScanScheduler scanner = new ScanScheduler(Preferences.getScanThreads());
 
     /** Engine states */
     public enum State
@@ -97,6 +94,15 @@ public class EngineModel
     /** Write batch size */
     final private static int batch_size = Preferences.getBatchSize();
 
+    /** Number of write threads */
+    final private static int write_threads = Preferences.getWriteThreads();
+
+    /** Spool directory, empty to disable spooling */
+    final private static String spool_dir = Preferences.getSpoolDirectory();
+
+    /** Maximum disk space for spool */
+    final private static long spool_max_bytes = Preferences.getSpoolMaxBytes();
+
     /** Buffer reserve (N times what's ideally needed) */
     final private static double buffer_reserve = Preferences.getBufferReserve();
 
@@ -106,7 +112,7 @@ public class EngineModel
     /** Construct model that writes to archive */
     public EngineModel()
     {
-        writer = new WriteThread();
+        writer = new WriteThreads(write_threads, spool_dir, spool_max_bytes);
     }
 
     /** @return Name (description) */
@@ -133,6 +139,12 @@ public class EngineModel
         return batch_size;
     }
 
+    /** @return Write threads */
+    public List<WriteThread> getWriteThreads()
+    {
+        return writer.getThreads();
+    }
+
     /** @return Current model state */
     public State getState()
     {
@@ -323,7 +335,7 @@ public class EngineModel
             if (state == State.SHUTDOWN_REQUESTED)
                 break;
         }
-        scan_thread.start();
+        scanner.start();
     }
 
     /** @return Timestamp of end of last write run */
@@ -344,12 +356,18 @@ public class EngineModel
         return writer.getWriteDuration();
     }
 
-    /** @see Scanner#getIdlePercentage() */
+    /** @see ScanScheduler#getIdlePercentage() */
     public double getIdlePercentage()
     {
         return scanner.getIdlePercentage();
     }
 
+    /** @return Scan statistics for each scan period */
+    public List<ScanStats> getScanStats()
+    {
+        return scanner.getScanStats();
+    }
+
     /** Ask the model to stop.
      *  Merely updates the model state.
      *  @see #getState()
@@ -389,10 +407,9 @@ public class EngineModel
     {
         state = State.STOPPING;
         Activator.getLogger().info("Stopping scanner");
-        // Stop scanning
-        scan_thread.stop();
-        // Assert that scanning has stopped before we add 'off' events
-        scan_thread.join();
+        // Stop scanning, and assert that scanning has
+        // stopped before we add 'off' events
+        scanner.stop();
         // Disconnect from network
         Activator.getLogger().info("Stopping archive groups");
         for (ArchiveGroup group : groups)
@@ -456,6 +473,7 @@ public class EngineModel
             channel_by_name.clear();
             channels.clear();
         }
+        writer.clear();
         scanner.clear();
     }
 
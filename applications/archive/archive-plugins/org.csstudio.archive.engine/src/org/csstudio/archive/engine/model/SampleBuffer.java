@@ -7,9 +7,13 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.model;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+import org.csstudio.apputil.ringbuffer.ConcurrentRingBuffer;
 import org.csstudio.apputil.ringbuffer.RingBuffer;
+import org.csstudio.archive.engine.Preferences;
 import org.csstudio.archive.engine.ThrottledLogger;
 import org.diirt.vtype.VType;
 
@@ -18,6 +22,10 @@ import org.diirt.vtype.VType;
  *  Assumes that one thread adds samples, while a different
  *  thread removes them.
  *  When the queue size is reached, older samples get dropped.
+ *  <p>
+ *  Depending on the <code>lock_free_buffers</code> preference,
+ *  the samples are either kept in a {@link RingBuffer} that is
+ *  locked for each access, or in a lock-free {@link ConcurrentRingBuffer}.
  *
  *  @author Kay Kasemir
  */
@@ -34,9 +42,19 @@ public class SampleBuffer
      */
     final private String retention;
 
-    /** The actual samples in a thread-save queue. */
+    /** Use lock-free buffers by default? */
+    final private static boolean lock_free_default = Preferences.useLockFreeBuffers();
+
+    /** The actual samples in a queue that's locked for access,
+     *  or <code>null</code> when using <code>concurrent_samples</code>
+     */
     final private RingBuffer<VType> samples;
 
+    /** The actual samples in a lock-free queue,
+     *  or <code>null</code> when using <code>samples</code>
+     */
+    final private ConcurrentRingBuffer<VType> concurrent_samples;
+
     /** Statistics */
     final private BufferStats stats = new BufferStats();
 
@@ -47,10 +65,10 @@ public class SampleBuffer
     final private static ThrottledLogger overrun_msg =
         new ThrottledLogger(Level.WARNING, "log_overrun"); //$NON-NLS-1$
 
-    /** Is the buffer in an error state because of RDB write errors?
+    /** Number of write threads that are in an error state because of RDB write errors.
      *  Note that this is global for all buffers, not per instance!
      */
-    private static volatile boolean error = false;
+    private static final AtomicInteger errors = new AtomicInteger();
 
     /** Create sample buffer of given capacity
      * @deprecated Use {@link #SampleBuffer(String,String,int)} instead*/
@@ -62,10 +80,28 @@ public class SampleBuffer
     /** Create sample buffer of given capacity
      * @param retention Sample retention policy (for archive); may be null if default/not supported*/
     SampleBuffer(final String channel_name, String retention, final int capacity)
+    {
+        this(channel_name, retention, capacity, lock_free_default);
+    }
+
+    /** Create sample buffer of given capacity
+     * @param retention Sample retention policy (for archive); may be null if default/not supported
+     * @param lock_free Use lock-free buffer? Requires exactly one thread that adds and one thread that removes samples
+     */
+    SampleBuffer(final String channel_name, String retention, final int capacity, final boolean lock_free)
     {
         this.channel_name = channel_name;
         this.retention = retention;
-        samples = new RingBuffer<VType>(capacity);
+        if (lock_free)
+        {
+            samples = null;
+            concurrent_samples = new ConcurrentRingBuffer<VType>(capacity);
+        }
+        else
+        {
+            samples = new RingBuffer<VType>(capacity);
+            concurrent_samples = null;
+        }
     }
 
     /** @return channel name of this buffer */
@@ -83,6 +119,8 @@ public class SampleBuffer
     /** @return Queue capacity, i.e. maximum queue size. */
     public int getCapacity()
     {
+        if (concurrent_samples != null)
+            return concurrent_samples.getCapacity();
         synchronized (samples)
         {
             return samples.getCapacity();
@@ -92,6 +130,8 @@ public class SampleBuffer
     /** @return Current queue size, i.e. number of samples in the queue. */
     public int getQueueSize()
     {
+        if (concurrent_samples != null)
+            return concurrent_samples.size();
         synchronized (samples)
         {
             return samples.size();
@@ -101,46 +141,95 @@ public class SampleBuffer
     /** @return <code>true</code> if currently experiencing write errors */
     public static boolean isInErrorState()
     {
-        return error;
+        return errors.get() > 0;
     }
 
-    /** Set the error state. */
+    /** Update the error state.
+     *  <p>
+     *  Each {@link WriteThread} calls this when it enters
+     *  and leaves the error state.
+     *  @param error <code>true</code> when entering, <code>false</code> when leaving the error state
+     */
     static void setErrorState(final boolean error)
     {
-        SampleBuffer.error = error;
+        if (error)
+            errors.incrementAndGet();
+        else
+            errors.decrementAndGet();
     }
 
     /** Add a sample to the queue, maybe dropping older samples */
-    @SuppressWarnings("nls")
     void add(final VType value)
     {
+        if (concurrent_samples != null)
+        {
+            // Only called by the one thread that adds samples,
+            // so no need to lock for the overrun info
+            checkOverrun(concurrent_samples.add(value));
+            return;
+        }
         synchronized (samples)
         {
-            if (samples.isFull())
-            {   // Note start of overruns, then drop older sample
-                if (start_of_overruns == null)
-                    start_of_overruns = Integer.valueOf(stats.getOverruns());
-                stats.addOverrun();
-            }
-            else if (start_of_overruns != null)
-            {   // Ending a string of overruns. Maybe log it.
-                final int overruns = stats.getOverruns() - start_of_overruns;
-                overrun_msg.log(channel_name + ": " + overruns + " overruns");
-                start_of_overruns = null;
-            }
+            checkOverrun(samples.isFull());
             samples.add(value);
         }
     }
 
+    /** Update overrun info
+     *  @param overrun Did adding a sample drop an older sample?
+     */
+    @SuppressWarnings("nls")
+    private void checkOverrun(final boolean overrun)
+    {
+        if (overrun)
+        {   // Note start of overruns
+            if (start_of_overruns == null)
+                start_of_overruns = Integer.valueOf(stats.getOverruns());
+            stats.addOverrun();
+        }
+        else if (start_of_overruns != null)
+        {   // Ending a string of overruns. Maybe log it.
+            final int overruns = stats.getOverruns() - start_of_overruns;
+            overrun_msg.log(channel_name + ": " + overruns + " overruns");
+            start_of_overruns = null;
+        }
+    }
+
     /** @return latest sample in queue or <code>null</code> if empty */
     VType remove()
     {
+        if (concurrent_samples != null)
+            return concurrent_samples.remove();
         synchronized (samples)
         {
             return samples.remove();
         }
     }
 
+    /** Remove several samples
+     *  @param batch List to which the oldest samples are appended
+     *  @param max Maximum number of samples to remove
+     *  @return Number of samples that were removed
+     */
+    int drainTo(final List<VType> batch, final int max)
+    {
+        if (concurrent_samples != null)
+            return concurrent_samples.drainTo(batch, max);
+        synchronized (samples)
+        {
+            int count = 0;
+            while (count < max)
+            {
+                final VType sample = samples.remove();
+                if (sample == null)
+                    break;
+                batch.add(sample);
+                ++count;
+            }
+            return count;
+        }
+    }
+
     /** Update stats with current values */
     void updateStats()
     {
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVEnum;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVNumberArray;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.util.array.ListNumber;
+import org.diirt.util.text.NumberFormats;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.VDouble;
+import org.diirt.vtype.VEnum;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VNumberArray;
+import org.diirt.vtype.VString;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueFactory;
+
+/** Binary encoding of samples for the {@link SampleSpool}
+ *  <p>
+ *  Handles the value types that the archive writers support,
+ *  i.e. double, integer, double array, enum and string.
+ *  Other types are encoded as strings, just like the RDB writer
+ *  would write them.
+ *
+ *  @author Kay Kasemir
+ */
+class SampleCodec
+{
+    final private static byte TYPE_DOUBLE = 1;
+    final private static byte TYPE_LONG = 2;
+    final private static byte TYPE_ARRAY = 3;
+    final private static byte TYPE_ENUM = 4;
+    final private static byte TYPE_STRING = 5;
+
+    final private static AlarmSeverity[] SEVERITIES = AlarmSeverity.values();
+
+    /** @param out Where to write the sample
+     *  @param sample Sample to encode
+     *  @throws IOException on error
+     */
+    public static void encode(final DataOutput out, final VType sample) throws IOException
+    {
+        final byte type;
+        if (sample instanceof VDouble)
+            type = TYPE_DOUBLE;
+        else if (sample instanceof VNumber)
+            type = (((VNumber) sample).getValue() instanceof Double) ? TYPE_DOUBLE : TYPE_LONG;
+        else if (sample instanceof VNumberArray)
+            type = TYPE_ARRAY;
+        else if (sample instanceof VEnum)
+            type = TYPE_ENUM;
+        else
+            type = TYPE_STRING;
+        out.writeByte(type);
+
+        final Instant time = VTypeHelper.getTimestamp(sample);
+        out.writeLong(time.getEpochSecond());
+        out.writeInt(time.getNano());
+        out.writeByte(VTypeHelper.getSeverity(sample).ordinal());
+        writeString(out, VTypeHelper.getMessage(sample));
+
+        switch (type)
+        {
+        case TYPE_DOUBLE:
+            writeDisplay(out, sample);
+            out.writeDouble(((VNumber) sample).getValue().doubleValue());
+            break;
+        case TYPE_LONG:
+            writeDisplay(out, sample);
+            out.writeLong(((VNumber) sample).getValue().longValue());
+            break;
+        case TYPE_ARRAY:
+        {
+            writeDisplay(out, sample);
+            final ListNumber data = ((VNumberArray) sample).getData();
+            final int N = data.size();
+            out.writeInt(N);
+            for (int i=0; i<N; ++i)
+                out.writeDouble(data.getDouble(i));
+            break;
+        }
+        case TYPE_ENUM:
+        {
+            final VEnum value = (VEnum) sample;
+            final List<String> labels = value.getLabels();
+            out.writeInt(labels.size());
+            for (String label : labels)
+                writeString(out, label);
+            out.writeInt(value.getIndex());
+            break;
+        }
+        default:
+            writeString(out, sample instanceof VString ? ((VString) sample).getValue() : sample.toString());
+        }
+    }
+
+    /** @param in Where to read the sample
+     *  @return Decoded sample
+     *  @throws IOException on error
+     */
+    public static VType decode(final DataInput in) throws IOException
+    {
+        final byte type = in.readByte();
+        final Instant time = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        final AlarmSeverity severity = SEVERITIES[in.readByte()];
+        final String status = readString(in);
+        switch (type)
+        {
+        case TYPE_DOUBLE:
+        {
+            final Display display = readDisplay(in);
+            return new ArchiveVNumber(time, severity, status, display, in.readDouble());
+        }
+        case TYPE_LONG:
+        {
+            final Display display = readDisplay(in);
+            return new ArchiveVNumber(time, severity, status, display, in.readLong());
+        }
+        case TYPE_ARRAY:
+        {
+            final Display display = readDisplay(in);
+            final double[] data = new double[in.readInt()];
+            for (int i=0; i<data.length; ++i)
+                data[i] = in.readDouble();
+            return new ArchiveVNumberArray(time, severity, status, display, data);
+        }
+        case TYPE_ENUM:
+        {
+            final int N = in.readInt();
+            final List<String> labels = new ArrayList<>(N);
+            for (int i=0; i<N; ++i)
+                labels.add(readString(in));
+            return new ArchiveVEnum(time, severity, status, labels, in.readInt());
+        }
+        case TYPE_STRING:
+            return new ArchiveVString(time, severity, status, readString(in));
+        default:
+            throw new IOException("Unknown sample type " + type); //$NON-NLS-1$
+        }
+    }
+
+    /** Write display info, using the precision of the number format */
+    private static void writeDisplay(final DataOutput out, final VType sample) throws IOException
+    {
+        if (! (sample instanceof Display))
+        {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        final Display display = (Display) sample;
+        writeLimit(out, display.getLowerDisplayLimit());
+        writeLimit(out, display.getUpperDisplayLimit());
+        writeLimit(out, display.getLowerWarningLimit());
+        writeLimit(out, display.getUpperWarningLimit());
+        writeLimit(out, display.getLowerAlarmLimit());
+        writeLimit(out, display.getUpperAlarmLimit());
+        writeLimit(out, display.getLowerCtrlLimit());
+        writeLimit(out, display.getUpperCtrlLimit());
+        writeString(out, display.getUnits());
+        final NumberFormat format = display.getFormat();
+        out.writeInt(format == null ? 0 : format.getMinimumFractionDigits());
+    }
+
+    private static void writeLimit(final DataOutput out, final Double limit) throws IOException
+    {
+        out.writeDouble(limit == null ? Double.NaN : limit);
+    }
+
+    private static Display readDisplay(final DataInput in) throws IOException
+    {
+        if (! in.readBoolean())
+            return null;
+        final double lower_disp = in.readDouble(), upper_disp = in.readDouble();
+        final double lower_warn = in.readDouble(), upper_warn = in.readDouble();
+        final double lower_alarm = in.readDouble(), upper_alarm = in.readDouble();
+        final double lower_ctrl = in.readDouble(), upper_ctrl = in.readDouble();
+        final String units = readString(in);
+        final int precision = in.readInt();
+        return ValueFactory.newDisplay(lower_disp, lower_alarm, lower_warn, units, NumberFormats.format(precision),
+                                       upper_warn, upper_alarm, upper_disp, lower_ctrl, upper_ctrl);
+    }
+
+    /** Write string as UTF-8, not limited to 64k like writeUTF */
+    private static void writeString(final DataOutput out, final String text) throws IOException
+    {
+        if (text == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInput in) throws IOException
+    {
+        final int length = in.readInt();
+        if (length < 0)
+            return null;
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
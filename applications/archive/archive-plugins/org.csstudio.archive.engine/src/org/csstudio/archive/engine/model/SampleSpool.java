@@ -0,0 +1,476 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+import org.csstudio.archive.engine.Activator;
+import org.diirt.vtype.VType;
+
+/** On-disk spool for samples that cannot be written to the archive.
+ *  <p>
+ *  While the archive is unavailable, the {@link WriteThread}
+ *  appends samples to the spool instead of letting its sample buffers
+ *  overrun.
+ *  Once the archive is back, the samples are replayed from the spool
+ *  in large batches.
+ *  <p>
+ *  The spool is a sequence of memory-mapped segment files
+ *  in a directory.
+ *  Each segment starts with a magic number and the read position,
+ *  followed by records of
+ *  <pre>
+ *  int length, int CRC32 of payload, payload
+ *  </pre>
+ *  where the payload holds channel name, retention and the sample.
+ *  A length of 0 marks the end of the data.
+ *  Fully replayed segments are deleted.
+ *  Since the read position is kept in the segment file,
+ *  spooled samples survive an engine restart.
+ *  <p>
+ *  The spool is limited to a maximum disk size.
+ *  When full, new samples are dropped and counted.
+ *  <p>
+ *  Not thread-safe, meant to be used by one {@link WriteThread}.
+ *  Only the statistics may be read from other threads.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class SampleSpool
+{
+    /** Sample read from the spool */
+    static class Entry
+    {
+        final String channel;
+        final String retention;
+        final VType sample;
+
+        Entry(final String channel, final String retention, final VType sample)
+        {
+            this.channel = channel;
+            this.retention = retention;
+            this.sample = sample;
+        }
+    }
+
+    /** Memory-mapped segment file */
+    private static class Segment
+    {
+        final File file;
+        final MappedByteBuffer buffer;
+
+        Segment(final File file, final MappedByteBuffer buffer)
+        {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /** {@link ByteArrayOutputStream} with access to the data */
+    private static class RecordBuffer extends ByteArrayOutputStream
+    {
+        byte[] getData()
+        {
+            return buf;
+        }
+    }
+
+    /** Default size of a segment file */
+    final private static int SEGMENT_SIZE = 64*1024*1024;
+
+    /** Magic number 'SPOL' at start of segment file */
+    final private static int MAGIC = 0x53504F4C;
+
+    /** Segment header: magic, read position */
+    final private static int HEADER = 8;
+
+    /** Record header: length, CRC */
+    final private static int RECORD_HEADER = 8;
+
+    final private static String PREFIX = "spool_";
+    final private static String SUFFIX = ".dat";
+
+    final private File directory;
+    final private long max_bytes;
+    final private int segment_size;
+
+    /** Segments, oldest first. Writing to the last one. */
+    final private LinkedList<Segment> segments = new LinkedList<>();
+
+    /** Number for next segment file */
+    private long next_segment = 0;
+
+    final private RecordBuffer record = new RecordBuffer();
+    final private DataOutputStream record_out = new DataOutputStream(record);
+    final private CRC32 crc = new CRC32();
+
+    /** Read position in first segment that commit() will set, -1 if nothing was read */
+    private int read_position = -1;
+
+    /** Has read() reached the end of the first segment? */
+    private boolean read_segment_done = false;
+
+    /** Number of records passed to read() since last commit() */
+    private int read_count = 0;
+
+    /** Number of samples in the spool */
+    private volatile long count = 0;
+
+    /** Number of segment files */
+    private volatile int segment_count = 0;
+
+    /** Number of samples dropped because the spool was full */
+    private volatile long dropped = 0;
+
+    /** Number of records skipped because of CRC or format errors */
+    private volatile long bad_records = 0;
+
+    /** Open spool
+     *  <p>
+     *  Existing segment files in the directory are
+     *  read and will be replayed.
+     *
+     *  @param directory Directory for segment files
+     *  @param max_bytes Maximum disk space to use
+     *  @throws Exception on error
+     */
+    public SampleSpool(final File directory, final long max_bytes) throws Exception
+    {
+        this(directory, max_bytes, (int) Math.min(SEGMENT_SIZE, max_bytes / 4));
+    }
+
+    /** Open spool
+     *  @param directory Directory for segment files
+     *  @param max_bytes Maximum disk space to use
+     *  @param segment_size Size of each segment file
+     *  @throws Exception on error
+     */
+    SampleSpool(final File directory, final long max_bytes, final int segment_size) throws Exception
+    {
+        if (segment_size <= HEADER + RECORD_HEADER)
+            throw new Exception("Spool segment size of " + segment_size + " bytes is too small");
+        this.directory = directory;
+        this.max_bytes = max_bytes;
+        this.segment_size = segment_size;
+        if (! directory.isDirectory()  &&  ! directory.mkdirs())
+            throw new IOException("Cannot create spool directory " + directory);
+        openExistingSegments();
+    }
+
+    /** Open segment files left from a previous run */
+    private void openExistingSegments() throws IOException
+    {
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null)
+            return;
+        // Names use fixed-width numbers, so sorted by name = sorted by age
+        Arrays.sort(files);
+        for (File file : files)
+        {
+            final String name = file.getName();
+            next_segment = Math.max(next_segment,
+                                    Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+            final MappedByteBuffer buffer = map(file, (int) file.length());
+            if (buffer.capacity() < HEADER  ||  buffer.getInt(0) != MAGIC)
+            {
+                Activator.getLogger().log(Level.WARNING, "Ignoring invalid spool file {0}", file);
+                continue;
+            }
+            // Count records, locating the end of the data
+            int pos = buffer.getInt(4);
+            int length;
+            while (pos + RECORD_HEADER <= buffer.capacity()  &&
+                   (length = buffer.getInt(pos)) > 0  &&
+                   pos + RECORD_HEADER + length <= buffer.capacity())
+            {
+                ++count;
+                pos += RECORD_HEADER + length;
+            }
+            buffer.position(pos);
+            segments.add(new Segment(file, buffer));
+        }
+        segment_count = segments.size();
+        if (count > 0)
+            Activator.getLogger().log(Level.INFO, "Spool {0} holds {1} samples", new Object[] { directory, count });
+        // Remove segment files without data
+        dropReadSegments();
+    }
+
+    /** @param file File to map
+     *  @param size Size of file
+     *  @return Memory-mapped file content
+     */
+    private static MappedByteBuffer map(final File file, final int size) throws IOException
+    {
+        try
+        (
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            final FileChannel channel = raf.getChannel();
+        )
+        {   // Mapping remains valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /** @return Spool directory */
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /** @return <code>true</code> if the spool holds no samples */
+    public boolean isEmpty()
+    {
+        return segments.isEmpty();
+    }
+
+    /** @return Number of samples in the spool */
+    public long getSampleCount()
+    {
+        return count;
+    }
+
+    /** @return Disk space used by the spool in bytes */
+    public long getDiskUsage()
+    {
+        return (long)segment_count * segment_size;
+    }
+
+    /** @return Maximum disk space in bytes */
+    public long getDiskLimit()
+    {
+        return max_bytes;
+    }
+
+    /** @return Number of samples dropped because the spool was full */
+    public long getDroppedCount()
+    {
+        return dropped;
+    }
+
+    /** @return Number of records skipped because of CRC or format errors */
+    public long getBadRecordCount()
+    {
+        return bad_records;
+    }
+
+    /** Add sample to spool
+     *  @param channel Channel name
+     *  @param retention Data retention or <code>null</code>
+     *  @param sample Sample
+     *  @return <code>true</code> if added, <code>false</code> if dropped because spool is full
+     *  @throws IOException on error
+     */
+    public boolean append(final String channel, final String retention, final VType sample) throws IOException
+    {
+        record.reset();
+        record_out.writeUTF(channel);
+        record_out.writeUTF(retention == null ? "" : retention);
+        SampleCodec.encode(record_out, sample);
+        final int length = record.size();
+        final int needed = RECORD_HEADER + length;
+
+        MappedByteBuffer buffer = segments.isEmpty() ? null : segments.getLast().buffer;
+        if (buffer == null  ||  buffer.remaining() < needed)
+        {
+            if (HEADER + needed > segment_size  ||
+                (segments.size() + 1L) * segment_size > max_bytes)
+            {
+                ++dropped;
+                return false;
+            }
+            buffer = createSegment().buffer;
+        }
+
+        crc.reset();
+        crc.update(record.getData(), 0, length);
+        final int pos = buffer.position();
+        buffer.position(pos + RECORD_HEADER);
+        buffer.put(record.getData(), 0, length);
+        buffer.putInt(pos + 4, (int) crc.getValue());
+        // Write length last, so an interrupted append leaves a 0 end marker
+        buffer.putInt(pos, length);
+        ++count;
+        return true;
+    }
+
+    /** @return New segment, added to end of segments */
+    private Segment createSegment() throws IOException
+    {
+        final File file = new File(directory, String.format("%s%012d%s", PREFIX, next_segment++, SUFFIX));
+        final MappedByteBuffer buffer = map(file, segment_size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, HEADER);
+        buffer.position(HEADER);
+        final Segment segment = new Segment(file, buffer);
+        segments.add(segment);
+        segment_count = segments.size();
+        return segment;
+    }
+
+    /** Read samples from the spool
+     *  <p>
+     *  Samples remain in the spool until <code>commit()</code>.
+     *  Calling <code>read()</code> again without commit
+     *  returns the same samples.
+     *  Stops at the end of a segment, so may return fewer than
+     *  <code>max</code> samples even if more are available.
+     *
+     *  @param batch List to which samples are added
+     *  @param max Maximum number of samples to read
+     *  @return Number of samples added
+     *  @throws IOException on error
+     */
+    public int read(final List<Entry> batch, final int max) throws IOException
+    {
+        read_position = -1;
+        read_segment_done = false;
+        read_count = 0;
+        int added = 0;
+        while (added < max  &&  !segments.isEmpty())
+        {
+            final Segment segment = segments.getFirst();
+            final MappedByteBuffer buffer = segment.buffer;
+            final boolean is_write_segment = segment == segments.getLast();
+            final int end = is_write_segment ? buffer.position() : buffer.capacity();
+            int pos = read_position < 0 ? buffer.getInt(4) : read_position;
+            while (added < max  &&  pos + RECORD_HEADER <= end)
+            {
+                final int length = buffer.getInt(pos);
+                if (length == 0)
+                    break;
+                if (length < 0  ||  pos + RECORD_HEADER + length > end)
+                {   // Cannot locate further records in this segment
+                    Activator.getLogger().log(Level.WARNING, "Invalid record in spool file {0}", segment.file);
+                    ++bad_records;
+                    pos = end;
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                final ByteBuffer copy = buffer.duplicate();
+                copy.position(pos + RECORD_HEADER);
+                copy.get(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                final int expected = buffer.getInt(pos + 4);
+                pos += RECORD_HEADER + length;
+                ++read_count;
+                if ((int) crc.getValue() != expected)
+                {
+                    ++bad_records;
+                    continue;
+                }
+                final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                final String channel = in.readUTF();
+                final String retention = in.readUTF();
+                batch.add(new Entry(channel, retention.isEmpty() ? null : retention, SampleCodec.decode(in)));
+                ++added;
+            }
+            read_position = pos;
+            if (is_write_segment  ||  added >= max)
+                break;
+            if (pos + RECORD_HEADER <= end  &&  buffer.getInt(pos) > 0)
+                break;
+            // Reached end of a segment that's no longer written
+            if (added > 0)
+            {   // Leave removal to commit()
+                read_segment_done = true;
+                break;
+            }
+            // Nothing to replay from this segment, drop and try next
+            read_segment_done = true;
+            commit();
+        }
+        return added;
+    }
+
+    /** Remove the samples returned by the last <code>read()</code> from the spool
+     *  @throws IOException on error
+     */
+    public void commit() throws IOException
+    {
+        if (read_position < 0  ||  segments.isEmpty())
+            return;
+        if (read_segment_done)
+            deleteSegment(segments.removeFirst());
+        else
+            segments.getFirst().buffer.putInt(4, read_position);
+        count = Math.max(0, count - read_count);
+        read_position = -1;
+        read_segment_done = false;
+        read_count = 0;
+        dropReadSegments();
+    }
+
+    /** Remove segments that have been read completely */
+    private void dropReadSegments()
+    {
+        while (! segments.isEmpty())
+        {
+            final Segment segment = segments.getFirst();
+            final MappedByteBuffer buffer = segment.buffer;
+            final int pos = buffer.getInt(4);
+            final boolean all_read;
+            if (segment == segments.getLast())
+                all_read = pos >= buffer.position();
+            else
+                all_read = pos + RECORD_HEADER > buffer.capacity()  ||  buffer.getInt(pos) <= 0;
+            if (! all_read)
+                break;
+            deleteSegment(segments.removeFirst());
+        }
+        if (segments.isEmpty())
+            count = 0;
+    }
+
+    /** @param segment Segment to delete */
+    private void deleteSegment(final Segment segment)
+    {
+        segment_count = segments.size();
+        // On Linux, a mapped file can be deleted.
+        // On other OS this may fail until the buffer is garbage collected.
+        if (! segment.file.delete())
+            Activator.getLogger().log(Level.WARNING, "Cannot delete spool file {0}", segment.file);
+    }
+
+    /** Write spooled data to disk */
+    public void flush()
+    {
+        if (! segments.isEmpty())
+            segments.getLast().buffer.force();
+    }
+
+    /** Flush and release the spool files. Spool must not be used afterwards. */
+    public void close()
+    {
+        flush();
+        segments.clear();
+        segment_count = 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Spool " + directory + ": " + count + " samples";
+    }
+}
@@ -9,6 +9,7 @@ package org.csstudio.archive.engine.model;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.csstudio.apputil.time.BenchmarkTimer;
@@ -29,6 +30,16 @@ import org.diirt.vtype.VType;
  *  be lost.
  *  The channels that add samples to the sample buffer supposedly notice
  *  the error condition and add a special indicator once we recover.
+ *  <p>
+ *  There may be several write threads, see {@link WriteThreads},
+ *  each using its own {@link ArchiveWriter}.
+ *  <p>
+ *  With a {@link SampleSpool}, samples are moved from the sample buffers
+ *  into the spool while the archive cannot be written,
+ *  so longer outages don't result in buffer overruns.
+ *  Once the writer recovers, spooled samples are replayed in large batches.
+ *  Until the spool is empty, new samples are also appended to the spool
+ *  to preserve their time order.
  *
  *  @author Kay Kasemir
  */
@@ -37,9 +48,18 @@ public class WriteThread implements Runnable
     /** Minimum write period [seconds] */
     private static final double MIN_WRITE_PERIOD = 5.0;
 
+    /** Replay reads this many times the batch size from the spool */
+    private static final int REPLAY_BATCH_FACTOR = 10;
+
+    /** Name of this thread */
+    final private String name;
+
     /** Server to which this thread writes. */
     private ArchiveWriter writer;
 
+    /** Spool for samples while writer fails, or <code>null</code> */
+    final private SampleSpool spool;
+
     /** All the sample buffers this thread writes. */
     final private ArrayList<SampleBuffer> buffers =
         new ArrayList<SampleBuffer>();
@@ -58,6 +78,30 @@ public class WriteThread implements Runnable
     /** Number of values to place into one batch */
     private int batch_size = 500;
 
+    /** Samples removed from buffers by write() that have not been flushed.
+     *  Moved to the spool when the write fails.
+     *  Only accessed by write() and spoolBuffers(), re-used to avoid allocation.
+     */
+    final private List<VType> samples = new ArrayList<>();
+
+    /** Index of the buffer that provided the first sample in 'samples' */
+    private int unflushed_first = 0;
+
+    /** Index of the buffer that provided the last sample in 'samples',
+     *  -1 when 'samples' holds no unflushed samples
+     */
+    private int unflushed_last = -1;
+
+    /** unflushed_end[i] is the end index in 'samples'
+     *  of the samples taken from buffers.get(i)
+     */
+    private int[] unflushed_end = new int[0];
+
+    /** Samples read from the spool, about to be written.
+     *  Only accessed by replay(), re-used to avoid allocation.
+     */
+    final private List<SampleSpool.Entry> spooled = new ArrayList<>();
+
     /** Time of end of last write run */
     private Instant last_write_stamp = null;
 
@@ -67,9 +111,57 @@ public class WriteThread implements Runnable
     /** Average duration of write run */
     private Average write_time = new Average();
 
+    /** Average number of values written per second while writing */
+    private Average write_rate = new Average();
+
+    /** Total number of values written */
+    private volatile long total_written = 0;
+
+    /** Average number of spooled values replayed per second */
+    private Average replay_rate = new Average();
+
+    /** Is this thread in the error state? */
+    private volatile boolean in_error_state = false;
+
     /** Thread the executes this.run() */
     private Thread thread;
 
+    /** Create write thread */
+    public WriteThread()
+    {
+        this("WriteThread"); //$NON-NLS-1$
+    }
+
+    /** Create write thread
+     *  @param name Name of the thread
+     */
+    public WriteThread(final String name)
+    {
+        this(name, null);
+    }
+
+    /** Create write thread
+     *  @param name Name of the thread
+     *  @param spool Spool to use while writer fails, or <code>null</code>
+     */
+    public WriteThread(final String name, final SampleSpool spool)
+    {
+        this.name = name;
+        this.spool = spool;
+    }
+
+    /** @return Name of the thread */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** @return Number of sample buffers that this thread writes */
+    public int getChannelCount()
+    {
+        return buffers.size();
+    }
+
     /** Add a channel's buffer that this thread reads */
     public void addChannel(final ArchiveChannel channel)
     {
@@ -82,6 +174,12 @@ public class WriteThread implements Runnable
         buffers.add(buffer);
     }
 
+    /** Remove all sample buffers. Only allowed while stopped. */
+    void clear()
+    {
+        buffers.clear();
+    }
+
     /** Start the write thread.
      *  @param write_period Period between writes in seconds
      *  @param batch_size Number of values to batch
@@ -97,7 +195,7 @@ public class WriteThread implements Runnable
         }
         millisec_delay = (int)(1000.0 * write_period);
         this.batch_size = batch_size;
-        thread = new Thread(this, "WriteThread");
+        thread = new Thread(this, name);
         thread.start();
     }
 
@@ -106,6 +204,8 @@ public class WriteThread implements Runnable
     {
         write_count.reset();
         write_time.reset();
+        write_rate.reset();
+        replay_rate.reset();
     }
 
     /** Ask the write thread to stop ASAP. */
@@ -136,6 +236,36 @@ public class WriteThread implements Runnable
         return write_time.get();
     }
 
+    /** @return Average number of values written per second while writing */
+    public double getWriteRate()
+    {
+        return write_rate.get();
+    }
+
+    /** @return Total number of values written since start */
+    public long getTotalWriteCount()
+    {
+        return total_written;
+    }
+
+    /** @return Spool used while writer fails, or <code>null</code> */
+    public SampleSpool getSpool()
+    {
+        return spool;
+    }
+
+    /** @return Average number of spooled values replayed per second */
+    public double getReplayRate()
+    {
+        return replay_rate.get();
+    }
+
+    /** @return <code>true</code> if this thread currently experiences write errors */
+    public boolean isInErrorState()
+    {
+        return in_error_state;
+    }
+
     /** 'Main loop' of the write thread.
      *  <p>
      *  Writes all values out, then waits.
@@ -153,7 +283,7 @@ public class WriteThread implements Runnable
     @SuppressWarnings("nls")
     public void run()
     {
-        Activator.getLogger().info("WriteThread starts");
+        Activator.getLogger().info(name + " starts");
         final BenchmarkTimer timer = new BenchmarkTimer();
         boolean write_error = false;
         do_run = true;
@@ -184,6 +314,9 @@ public class WriteThread implements Runnable
                 last_write_stamp = Instant.now();
                 write_count.update(written);
                 write_time.update(timer.getSeconds());
+                if (timer.getSeconds() > 0)
+                    write_rate.update(written / timer.getSeconds());
+                total_written += written;
                 // How much of the scheduled delay is left after write()?
                 delay = millisec_delay - timer.getMilliseconds();
             }
@@ -193,8 +326,15 @@ public class WriteThread implements Runnable
                 // Use max. delay
                 delay = millisec_delay;
                 write_error = true;
+                // Move samples to disk instead of letting buffers overrun
+                spoolBuffers();
+            }
+            // Update global error state when this thread's state changes
+            if (write_error != in_error_state)
+            {
+                in_error_state = write_error;
+                SampleBuffer.setErrorState(write_error);
             }
-            SampleBuffer.setErrorState(write_error);
             // See if there's any time left to wait,
             // or if we already used all that time in the last 'write'
             if (delay > 0)
@@ -212,7 +352,7 @@ public class WriteThread implements Runnable
                 }
             }
         }
-        Activator.getLogger().info("WriteThread exists");
+        Activator.getLogger().info(name + " exits");
     }
 
     /** Stop the write thread, performing a final write. */
@@ -226,8 +366,15 @@ public class WriteThread implements Runnable
         // Errors in this last write are passed up.
         try
         {
+            if (writer == null)
+                writer = ArchiveWriterFactory.getArchiveWriter();
             write();
         }
+        catch (Exception ex)
+        {   // Keep what's left for replay after restart
+            spoolBuffers();
+            throw ex;
+        }
         finally
         {
             if (writer != null)
@@ -235,6 +382,9 @@ public class WriteThread implements Runnable
                 writer.close();
                 writer = null;
             }
+            // Spool remains open, model may be restarted
+            if (spool != null)
+                spool.flush();
         }
     }
 
@@ -243,35 +393,136 @@ public class WriteThread implements Runnable
      */
     private long write() throws Exception
     {
-        int total_count = 0;
-        int count = 0;
-        for (SampleBuffer buffer : buffers)
+        if (spool != null  &&  !spool.isEmpty())
+        {   // Append new samples behind those already spooled,
+            // then replay in time order
+            spoolBuffers();
+            return replay();
+        }
+        long total_count = 0;
+        // Drop samples left over from a failed write
+        samples.clear();
+        unflushed_first = 0;
+        unflushed_last = -1;
+        if (unflushed_end.length < buffers.size())
+            unflushed_end = new int[buffers.size()];
+        for (int i=0; i<buffers.size(); ++i)
         {
+            final SampleBuffer buffer = buffers.get(i);
             // Update max buffer length etc. before we start to remove samples
             buffer.updateStats();
             // Write samples for one channel
-            final String name = buffer.getChannelName();
-            final String retention = buffer.getArchiveDataRetention();
-            final WriteChannel channel = writer.getChannel(name, retention);
-            VType sample = buffer.remove();
-            while (sample != null)
-            {   // Write one value
-                writer.addSample(channel, sample);
-                // Note: count across different sample buffers!
-                ++count;
-                if (count > batch_size)
+            final WriteChannel channel = writer.getChannel(buffer.getChannelName(),
+                                                           buffer.getArchiveDataRetention());
+            unflushed_end[i] = samples.size();
+            unflushed_last = i;
+            // Fetch samples in batches instead of one-by-one
+            // to reduce the per-sample access to the buffer.
+            // Note: batch counts samples across different sample buffers!
+            while (true)
+            {
+                if (samples.size() >= batch_size)
                 {
-                    total_count += count;
-                    count = 0;
                     writer.flush();
+                    total_count += samples.size();
+                    samples.clear();
+                    unflushed_first = i;
                 }
-                // next
-                sample = buffer.remove();
+                final int start = samples.size();
+                if (buffer.drainTo(samples, batch_size - start) <= 0)
+                    break;
+                for (int s=start; s<samples.size(); ++s)
+                    writer.addSample(channel, samples.get(s));
+                unflushed_end[i] = samples.size();
             }
         }
         // Flush remaining samples (less than batch_size)
         writer.flush();
-        total_count += count;
+        total_count += samples.size();
+        samples.clear();
+        unflushed_last = -1;
         return total_count;
     }
+
+    /** Write samples from spool to archive
+     *  <p>
+     *  Replays in batches until the spool is empty,
+     *  but at most for one write period to avoid overruns
+     *  in the sample buffers.
+     *  Samples are removed from the spool once their batch has been flushed.
+     *
+     *  @return number of samples written
+     */
+    private long replay() throws Exception
+    {
+        final long start = System.currentTimeMillis();
+        final int replay_batch = batch_size * REPLAY_BATCH_FACTOR;
+        long total_count = 0;
+        int count;
+        spooled.clear();
+        while ((count = spool.read(spooled, replay_batch)) > 0)
+        {
+            for (SampleSpool.Entry entry : spooled)
+                writer.addSample(writer.getChannel(entry.channel, entry.retention), entry.sample);
+            writer.flush();
+            spool.commit();
+            spooled.clear();
+            total_count += count;
+            if (System.currentTimeMillis() - start > millisec_delay)
+                break;
+        }
+        final double secs = (System.currentTimeMillis() - start) / 1000.0;
+        if (secs > 0)
+            replay_rate.update(total_count / secs);
+        if (spool.isEmpty())
+            Activator.getLogger().log(Level.INFO, "{0} replayed all spooled samples", name); //$NON-NLS-1$
+        return total_count;
+    }
+
+    /** Move samples from all sample buffers into the spool.
+     *  Errors are logged, not passed up.
+     */
+    @SuppressWarnings("nls")
+    private void spoolBuffers()
+    {
+        if (spool == null)
+            return;
+        final long dropped = spool.getDroppedCount();
+        try
+        {
+            // Samples of a failed write are older than those still in the buffers
+            for (int i=unflushed_first; i<=unflushed_last; ++i)
+            {
+                final SampleBuffer buffer = buffers.get(i);
+                final String channel = buffer.getChannelName();
+                final String retention = buffer.getArchiveDataRetention();
+                final int start = i > unflushed_first ? unflushed_end[i-1] : 0;
+                final int end = i < unflushed_last ? unflushed_end[i] : samples.size();
+                for (int s=start; s<end; ++s)
+                    spool.append(channel, retention, samples.get(s));
+            }
+            unflushed_last = -1;
+            samples.clear();
+            for (SampleBuffer buffer : buffers)
+            {
+                buffer.updateStats();
+                final String channel = buffer.getChannelName();
+                final String retention = buffer.getArchiveDataRetention();
+                while (buffer.drainTo(samples, batch_size) > 0)
+                {
+                    for (VType sample : samples)
+                        spool.append(channel, retention, sample);
+                    samples.clear();
+                }
+            }
+            spool.flush();
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING, name + " cannot spool samples", ex);
+        }
+        if (spool.getDroppedCount() > dropped)
+            Activator.getLogger().log(Level.WARNING, "{0} spool is full, dropped {1} samples",
+                                      new Object[] { name, spool.getDroppedCount() - dropped });
+    }
 }
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.csstudio.archive.engine.Activator;
+
+/** Several {@link WriteThread}s that share the channels.
+ *  <p>
+ *  Each channel is assigned to one write thread based on
+ *  the hash of its name.
+ *  Each write thread uses its own archive writer, i.e. its own
+ *  connection to the archive, batches its samples independently,
+ *  and keeps its own statistics.
+ *  With a single thread, this behaves like the original
+ *  single {@link WriteThread}.
+ *  <p>
+ *  When a spool directory is configured, each thread uses
+ *  its own {@link SampleSpool} in a sub-directory,
+ *  sharing the maximum spool size.
+ *
+ *  @author Kay Kasemir
+ */
+public class WriteThreads
+{
+    /** Write threads */
+    final private List<WriteThread> threads;
+
+    /** Create write threads
+     *  @param count Number of threads
+     */
+    public WriteThreads(final int count)
+    {
+        this(count, "", 0);
+    }
+
+    /** Create write threads
+     *  @param count Number of threads
+     *  @param spool_dir Spool directory, empty to disable spooling
+     *  @param spool_max_bytes Maximum disk space for spool of all threads
+     */
+    @SuppressWarnings("nls")
+    public WriteThreads(final int count, final String spool_dir, final long spool_max_bytes)
+    {
+        final int n = Math.max(1, count);
+        final List<WriteThread> threads = new ArrayList<>(n);
+        for (int i=0; i<n; ++i)
+        {
+            final String name = n == 1 ? "WriteThread" : "WriteThread " + (i+1);
+            SampleSpool spool = null;
+            if (! spool_dir.isEmpty())
+            {
+                final File dir = new File(spool_dir, "writer" + (i+1));
+                try
+                {
+                    spool = new SampleSpool(dir, spool_max_bytes / n);
+                }
+                catch (Exception ex)
+                {
+                    Activator.getLogger().log(Level.SEVERE, "Cannot open spool " + dir + " for " + name, ex);
+                }
+            }
+            threads.add(new WriteThread(name, spool));
+        }
+        this.threads = Collections.unmodifiableList(threads);
+    }
+
+    /** @return The individual write threads */
+    public List<WriteThread> getThreads()
+    {
+        return threads;
+    }
+
+    /** Add a channel's buffer to the write thread for that channel */
+    public void addChannel(final ArchiveChannel channel)
+    {
+        getThread(channel.getName()).addSampleBuffer(channel.getSampleBuffer());
+    }
+
+    /** @param name Channel name
+     *  @return Write thread that handles the channel
+     */
+    WriteThread getThread(final String name)
+    {
+        return threads.get(Math.floorMod(name.hashCode(), threads.size()));
+    }
+
+    /** Start the write threads.
+     *  @param write_period Period between writes in seconds
+     *  @param batch_size Number of values to batch in each thread
+     */
+    public void start(final double write_period, final int batch_size)
+    {
+        for (WriteThread thread : threads)
+            thread.start(write_period, batch_size);
+    }
+
+    /** Reset statistics */
+    public void reset()
+    {
+        for (WriteThread thread : threads)
+            thread.reset();
+    }
+
+    /** Remove all sample buffers. Only allowed while stopped. */
+    public void clear()
+    {
+        for (WriteThread thread : threads)
+            thread.clear();
+    }
+
+    /** @return Oldest time stamp of end of last write run among all threads,
+     *          <code>null</code> if any thread has not written, yet
+     */
+    public Instant getLastWriteTime()
+    {
+        Instant oldest = null;
+        for (WriteThread thread : threads)
+        {
+            final Instant time = thread.getLastWriteTime();
+            if (time == null)
+                return null;
+            if (oldest == null  ||  time.isBefore(oldest))
+                oldest = time;
+        }
+        return oldest;
+    }
+
+    /** @return Total of the average number of values per write run of all threads */
+    public double getWriteCount()
+    {
+        double count = 0.0;
+        for (WriteThread thread : threads)
+            count += thread.getWriteCount();
+        return count;
+    }
+
+    /** @return Longest average duration of write run in seconds.
+     *          Since the threads write in parallel,
+     *          this is the time for writing all channels.
+     */
+    public double getWriteDuration()
+    {
+        double duration = 0.0;
+        for (WriteThread thread : threads)
+            duration = Math.max(duration, thread.getWriteDuration());
+        return duration;
+    }
+
+    /** Stop the write threads, performing a final write.
+     *  @throws Exception on error in the final write of any thread
+     */
+    public void shutdown() throws Exception
+    {
+        Exception error = null;
+        for (WriteThread thread : threads)
+        {
+            try
+            {
+                thread.shutdown();
+            }
+            catch (Exception ex)
+            {   // Stop remaining threads, then report the first error
+                if (error == null)
+                    error = ex;
+            }
+        }
+        if (error != null)
+            throw error;
+    }
+}
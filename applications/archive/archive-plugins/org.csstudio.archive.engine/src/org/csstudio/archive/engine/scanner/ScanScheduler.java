@@ -0,0 +1,421 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.scanner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.csstudio.archive.engine.Activator;
+import org.csstudio.util.stats.Average;
+
+/** Scheduler for periodic scans, based on a hashed timer wheel.
+ *  <p>
+ *  Each item is placed on the wheel at its next due time.
+ *  A timer thread advances the wheel by one bucket per tick
+ *  and hands the due items to a pool of scan threads,
+ *  so scans of many items can run in parallel.
+ *  <p>
+ *  Items of the same period are spread across the period
+ *  to avoid bursts of scans.
+ *  An item is never scanned concurrently with itself:
+ *  If its previous scan is still running when it is due again,
+ *  that scan is skipped and counted as an overrun.
+ *  Adding and removing items does not depend on the number of periods,
+ *  and slow scans of one item don't delay scans of other items.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ScanScheduler
+{
+    /** Granularity in seconds for the supported periods */
+    final private static double GRANULARITY = 0.1;
+
+    /** Duration of one wheel tick in millis */
+    final private static long TICK_MILLIS = 10;
+
+    /** Number of buckets in the wheel, must be power of 2 */
+    final private static int WHEEL_SIZE = 1024;
+
+    /** Maximum number of items handed to a scan thread as one task */
+    final private static int TASK_SIZE = 64;
+
+    /** Update idle percentage every this many ticks */
+    final private static int IDLE_TICKS = (int) (1000 / TICK_MILLIS);
+
+    /** Item on the wheel */
+    private static class Entry
+    {
+        final Runnable item;
+        final long period_millis;
+        final ScanStats stats;
+
+        /** Time when next due */
+        long deadline;
+
+        /** Tick when next due */
+        long due_tick;
+
+        /** Deadline of the scan that's been handed to a scan thread */
+        volatile long dispatched_deadline;
+
+        /** Start of previous scan, 0 if none */
+        long last_start = 0;
+
+        volatile boolean removed = false;
+
+        /** Is the item scanned right now? */
+        final AtomicBoolean busy = new AtomicBoolean();
+
+        Entry(final Runnable item, final long period_millis, final ScanStats stats)
+        {
+            this.item = item;
+            this.period_millis = period_millis;
+            this.stats = stats;
+        }
+    }
+
+    /** Number of scan threads, 0 to scan on the timer thread */
+    final private int threads;
+
+    /** Wheel of buckets, each holding entries due at that tick modulo WHEEL_SIZE.
+     *  Access to buckets and entries synchronizes on this.
+     */
+    @SuppressWarnings("unchecked")
+    final private List<Entry>[] wheel = new List[WHEEL_SIZE];
+
+    /** Entries by item, for removal */
+    final private Map<Runnable, Entry> entries = new HashMap<>();
+
+    /** Statistics per period in millis */
+    final private Map<Long, ScanStats> stats = new TreeMap<>();
+
+    /** Time of tick 0 */
+    private long start_millis = System.currentTimeMillis();
+
+    /** Tick that timer will process next */
+    private long current_tick = 0;
+
+    private volatile boolean do_run = false;
+    private Thread timer;
+    private ExecutorService pool;
+
+    /** Time spent scanning, nanoseconds */
+    final private AtomicLong busy_nanos = new AtomicLong();
+
+    /** Average idle time in percent. */
+    final private Average idle_percentage = new Average();
+
+    /** @param threads Number of scan threads, 0 to scan on the timer thread */
+    public ScanScheduler(final int threads)
+    {
+        this.threads = Math.max(0, threads);
+        for (int i=0; i<WHEEL_SIZE; ++i)
+            wheel[i] = new ArrayList<>();
+    }
+
+    /** Add an item to the scheduler
+     *  @param item Item to scan
+     *  @param period Scan period in seconds
+     */
+    public synchronized void add(final Runnable item, final double period)
+    {
+        // Avoid duplicates by removing what might be there
+        remove(item);
+
+        final long period_millis = Math.max(TICK_MILLIS,
+                (long) (Math.round(period / GRANULARITY) * GRANULARITY * 1000.0));
+        final ScanStats period_stats = stats.computeIfAbsent(period_millis, ScanStats::new);
+        final Entry entry = new Entry(item, period_millis, period_stats);
+        entry.deadline = getFirstDeadline(entry, System.currentTimeMillis());
+        schedule(entry);
+        entries.put(item, entry);
+        period_stats.addItem();
+    }
+
+    /** Remove an item from the scheduler
+     *  @param item Item to remove
+     */
+    public synchronized void remove(final Runnable item)
+    {
+        final Entry entry = entries.remove(item);
+        if (entry == null)
+            return;
+        // Actual removal from wheel happens when the bucket is processed
+        entry.removed = true;
+        entry.stats.removeItem();
+        if (entry.stats.getItemCount() <= 0)
+            stats.remove(entry.period_millis);
+    }
+
+    /** Remove all items */
+    public synchronized void clear()
+    {
+        for (List<Entry> bucket : wheel)
+            bucket.clear();
+        entries.clear();
+        stats.clear();
+    }
+
+    /** @return Number of items */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /** @return Statistics for each scan period, sorted by period */
+    public synchronized List<ScanStats> getScanStats()
+    {
+        return new ArrayList<>(stats.values());
+    }
+
+    /** Average idle time of the scan threads in percent.
+     *  <p>
+     *  100 means: Nothing to do, always waiting.<br>
+     *   50 means: using about half the available time for the scans<br>
+     *    0 means: Busy all the time, probably skipping scans<br>
+     */
+    public double getIdlePercentage()
+    {
+        return idle_percentage.get();
+    }
+
+    /** Reset statistics */
+    public synchronized void reset()
+    {
+        idle_percentage.reset();
+        for (ScanStats period_stats : stats.values())
+            period_stats.reset();
+    }
+
+    /** Spread first scans across the period, but wait at least one tick
+     *  @param entry Entry
+     *  @param now Current time
+     *  @return Deadline for first scan of the entry
+     */
+    private static long getFirstDeadline(final Entry entry, final long now)
+    {
+        return now + Math.max(TICK_MILLIS, Math.floorMod(System.identityHashCode(entry.item), entry.period_millis));
+    }
+
+    /** Place entry on wheel for its deadline */
+    private void schedule(final Entry entry)
+    {
+        // Round up so entry is never processed early
+        final long tick = (entry.deadline - start_millis + TICK_MILLIS - 1) / TICK_MILLIS;
+        entry.due_tick = Math.max(tick, current_tick);
+        wheel[(int) (entry.due_tick & (WHEEL_SIZE-1))].add(entry);
+    }
+
+    /** Start the timer and scan threads */
+    public void start()
+    {
+        synchronized (this)
+        {   // Restart the wheel at the current time
+            for (List<Entry> bucket : wheel)
+                bucket.clear();
+            start_millis = System.currentTimeMillis();
+            current_tick = 0;
+            for (Entry entry : entries.values())
+            {
+                entry.deadline = getFirstDeadline(entry, start_millis);
+                entry.last_start = 0;
+                schedule(entry);
+            }
+        }
+        if (threads > 0)
+        {
+            final AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(threads,
+                    runnable -> new Thread(runnable, "ScanThread " + count.incrementAndGet()));
+        }
+        do_run = true;
+        timer = new Thread(this::runTimer, "ScanTimer");
+        timer.start();
+    }
+
+    /** Stop the timer, wait for scans to finish */
+    public void stop()
+    {
+        do_run = false;
+        if (timer == null)
+            return;
+        timer.interrupt();
+        try
+        {
+            timer.join();
+            if (pool != null)
+            {
+                pool.shutdown();
+                if (! pool.awaitTermination(10, TimeUnit.SECONDS))
+                    Activator.getLogger().log(Level.WARNING, "Scan threads did not stop");
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Scan scheduler stop interrupted", ex);
+        }
+        timer = null;
+        pool = null;
+    }
+
+    /** Timer thread: Advance wheel tick by tick */
+    private void runTimer()
+    {
+        Activator.getLogger().info("Scan Timer runs");
+        final List<Entry> due = new ArrayList<>();
+        long idle_start = System.nanoTime();
+        long idle_busy = busy_nanos.get();
+        while (do_run)
+        {
+            final long tick;
+            synchronized (this)
+            {
+                tick = current_tick;
+            }
+            // Wait for the tick
+            final long delay = start_millis + tick * TICK_MILLIS - System.currentTimeMillis();
+            if (delay > 0)
+            {
+                try
+                {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ex)
+                {   // stop()
+                    break;
+                }
+            }
+            collectDueEntries(tick, due);
+            dispatch(due);
+            due.clear();
+
+            if (tick % IDLE_TICKS == 0)
+            {
+                final long now = System.nanoTime();
+                final long busy = busy_nanos.get();
+                final double available = (now - idle_start) * (double) Math.max(1, threads);
+                if (available > 0)
+                    idle_percentage.update(Math.max(0.0, 100.0 - (busy - idle_busy) * 100.0 / available));
+                idle_start = now;
+                idle_busy = busy;
+            }
+        }
+        Activator.getLogger().info("Scan Timer ends");
+    }
+
+    /** Process one bucket of the wheel
+     *  @param tick Tick to process
+     *  @param due Entries that are due are added to this list
+     */
+    private synchronized void collectDueEntries(final long tick, final List<Entry> due)
+    {
+        final List<Entry> bucket = wheel[(int) (tick & (WHEEL_SIZE-1))];
+        final List<Entry> reschedule = new ArrayList<>();
+        int i = 0;
+        while (i < bucket.size())
+        {
+            final Entry entry = bucket.get(i);
+            if (entry.removed)
+            {
+                removeAt(bucket, i);
+                continue;
+            }
+            if (entry.due_tick > tick)
+            {   // Due in a later turn of the wheel
+                ++i;
+                continue;
+            }
+            removeAt(bucket, i);
+            if (entry.busy.compareAndSet(false, true))
+            {
+                entry.dispatched_deadline = entry.deadline;
+                due.add(entry);
+            }
+            else
+                entry.stats.addOverrun();
+            // Next deadline at fixed rate, but skip scans that were missed
+            entry.deadline += entry.period_millis;
+            final long now = System.currentTimeMillis();
+            if (entry.deadline < now)
+                entry.deadline += ((now - entry.deadline) / entry.period_millis + 1) * entry.period_millis;
+            reschedule.add(entry);
+        }
+        current_tick = tick + 1;
+        for (Entry entry : reschedule)
+            schedule(entry);
+    }
+
+    /** Remove list element without shifting the remaining elements */
+    private static void removeAt(final List<Entry> list, final int index)
+    {
+        final int last = list.size() - 1;
+        list.set(index, list.get(last));
+        list.remove(last);
+    }
+
+    /** Run scans of due entries, on scan threads if available */
+    private void dispatch(final List<Entry> due)
+    {
+        if (due.isEmpty())
+            return;
+        if (pool == null)
+        {
+            scan(due);
+            return;
+        }
+        for (int start = 0; start < due.size(); start += TASK_SIZE)
+        {
+            final List<Entry> task = new ArrayList<>(due.subList(start, Math.min(start + TASK_SIZE, due.size())));
+            pool.execute(() -> scan(task));
+        }
+    }
+
+    /** Scan entries, updating statistics */
+    private void scan(final List<Entry> task)
+    {
+        final long start = System.nanoTime();
+        for (Entry entry : task)
+        {
+            final long now = System.currentTimeMillis();
+            entry.stats.update(Math.max(0, now - entry.dispatched_deadline),
+                               entry.last_start > 0 ? now - entry.last_start : 0);
+            entry.last_start = now;
+            try
+            {
+                if (! entry.removed)
+                    entry.item.run();
+            }
+            catch (Throwable ex)
+            {
+                Activator.getLogger().log(Level.SEVERE, "Scan error for " + entry.item, ex);
+            }
+            finally
+            {
+                entry.busy.set(false);
+            }
+        }
+        busy_nanos.addAndGet(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "ScanScheduler with " + threads + " threads, " + entries.size() + " items";
+    }
+}
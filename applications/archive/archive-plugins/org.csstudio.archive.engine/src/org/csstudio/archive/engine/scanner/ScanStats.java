@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.scanner;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Statistics for all items scanned at one period
+ *  <p>
+ *  Keeps histograms of
+ *  <ul>
+ *  <li>Lateness: Time between when a scan was due and when it started
+ *  <li>Jitter: Difference between the actual time from the previous scan
+ *      of the same item and the scan period
+ *  </ul>
+ *  Updated from several scan threads.
+ *
+ *  @author Kay Kasemir
+ */
+public class ScanStats
+{
+    /** Upper limits of the histogram bins in milliseconds.
+     *  Last bin holds everything at or above the last limit.
+     */
+    final public static long[] BIN_LIMITS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000 };
+
+    /** Scan period in millis */
+    final private long period_millis;
+
+    /** Number of items scanned at this period */
+    final private AtomicInteger items = new AtomicInteger();
+
+    final private AtomicLongArray lateness = new AtomicLongArray(BIN_LIMITS.length + 1);
+    final private AtomicLongArray jitter = new AtomicLongArray(BIN_LIMITS.length + 1);
+    final private AtomicLong scans = new AtomicLong();
+    final private AtomicLong total_lateness = new AtomicLong();
+    final private AtomicLong max_lateness = new AtomicLong();
+    final private AtomicLong overruns = new AtomicLong();
+
+    /** @param period_millis Scan period in millis */
+    ScanStats(final long period_millis)
+    {
+        this.period_millis = period_millis;
+    }
+
+    /** @return Scan period in seconds */
+    public double getPeriod()
+    {
+        return period_millis / 1000.0;
+    }
+
+    /** @return Number of items scanned at this period */
+    public int getItemCount()
+    {
+        return items.get();
+    }
+
+    void addItem()
+    {
+        items.incrementAndGet();
+    }
+
+    void removeItem()
+    {
+        items.decrementAndGet();
+    }
+
+    /** Update statistics with a scan
+     *  @param late_millis Lateness of the scan
+     *  @param interval_millis Time since previous scan of the item, 0 for first scan
+     */
+    void update(final long late_millis, final long interval_millis)
+    {
+        scans.incrementAndGet();
+        lateness.incrementAndGet(getBin(late_millis));
+        total_lateness.addAndGet(late_millis);
+        long max = max_lateness.get();
+        while (late_millis > max  &&  !max_lateness.compareAndSet(max, late_millis))
+            max = max_lateness.get();
+        if (interval_millis > 0)
+            jitter.incrementAndGet(getBin(Math.abs(interval_millis - period_millis)));
+    }
+
+    /** Count a scan that was skipped because the previous scan of the item was still running */
+    void addOverrun()
+    {
+        overruns.incrementAndGet();
+    }
+
+    /** @param millis Time in milliseconds
+     *  @return Histogram bin for that time
+     */
+    private static int getBin(final long millis)
+    {
+        for (int i=0; i<BIN_LIMITS.length; ++i)
+            if (millis < BIN_LIMITS[i])
+                return i;
+        return BIN_LIMITS.length;
+    }
+
+    /** @return Number of scans */
+    public long getScanCount()
+    {
+        return scans.get();
+    }
+
+    /** @return Average lateness in milliseconds */
+    public double getAverageLateness()
+    {
+        final long count = scans.get();
+        return count > 0 ? total_lateness.get() / (double) count : 0.0;
+    }
+
+    /** @return Maximum lateness in milliseconds */
+    public long getMaxLateness()
+    {
+        return max_lateness.get();
+    }
+
+    /** @return Number of scans skipped because the previous scan of an item was still running */
+    public long getOverruns()
+    {
+        return overruns.get();
+    }
+
+    /** @return Lateness histogram, counts for the {@link #BIN_LIMITS} */
+    public long[] getLatenessHistogram()
+    {
+        return toArray(lateness);
+    }
+
+    /** @return Jitter histogram, counts for the {@link #BIN_LIMITS} */
+    public long[] getJitterHistogram()
+    {
+        return toArray(jitter);
+    }
+
+    private static long[] toArray(final AtomicLongArray bins)
+    {
+        final long[] result = new long[bins.length()];
+        for (int i=0; i<result.length; ++i)
+            result[i] = bins.get(i);
+        return result;
+    }
+
+    /** Reset statistics, keeping the item count */
+    public void reset()
+    {
+        for (int i=0; i<lateness.length(); ++i)
+        {
+            lateness.set(i, 0);
+            jitter.set(i, 0);
+        }
+        scans.set(0);
+        total_lateness.set(0);
+        max_lateness.set(0);
+        overruns.set(0);
+    }
+
+    @SuppressWarnings("nls")
+    @Override
+    public String toString()
+    {
+        return String.format("%.1f sec: %d items, %d scans, avg. %.1f ms late, max. %d ms, %d overruns",
+                             getPeriod(), getItemCount(), getScanCount(),
+                             getAverageLateness(), getMaxLateness(), getOverruns());
+    }
+}
@@ -7,13 +7,19 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.server.html;
 
+import java.util.List;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.csstudio.archive.engine.model.EngineModel;
+import org.csstudio.archive.engine.scanner.ScanStats;
 import org.csstudio.archive.engine.server.AbstractResponse;
 
 /** Provide web page for triggering debug output
+ *  <p>
+ *  Also shows the scan lateness and jitter histograms
+ *  for each scan period.
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
@@ -34,6 +40,60 @@ public class DebugResponse extends AbstractResponse
         html.text("Engine wrote debug info ....");
         model.dumpDebugInfo();
 
+        final List<ScanStats> scans = model.getScanStats();
+        html.h2("Scans");
+        html.openTable(1, new String[]
+        {
+            "Period", "Channels", "Scans", "Avg. Late", "Max. Late", "Overruns"
+        });
+        for (ScanStats stats : scans)
+            html.tableLine(new String[]
+            {
+                String.format("%.1f sec", stats.getPeriod()),
+                Integer.toString(stats.getItemCount()),
+                Long.toString(stats.getScanCount()),
+                String.format("%.1f ms", stats.getAverageLateness()),
+                stats.getMaxLateness() + " ms",
+                stats.getOverruns() > 0
+                ? HTMLWriter.makeRedText(Long.toString(stats.getOverruns()))
+                : "0"
+            });
+        html.closeTable();
+
+        html.h2("Scan Lateness");
+        html.text("Time from when a scan was due to when it started.");
+        histogramTable(html, scans, true);
+
+        html.h2("Scan Jitter");
+        html.text("Difference between time since previous scan of a channel and the scan period.");
+        histogramTable(html, scans, false);
+
         html.close();
     }
+
+    /** Add table with histogram for each scan period
+     *  @param html HTML writer
+     *  @param scans Scan statistics
+     *  @param lateness Show lateness or jitter?
+     */
+    private void histogramTable(final HTMLWriter html, final List<ScanStats> scans, final boolean lateness)
+    {
+        final long[] limits = ScanStats.BIN_LIMITS;
+        final String[] headers = new String[limits.length + 2];
+        headers[0] = "Period";
+        for (int i=0; i<limits.length; ++i)
+            headers[i+1] = "&lt; " + limits[i] + " ms";
+        headers[limits.length + 1] = "&ge; " + limits[limits.length-1] + " ms";
+        html.openTable(1, headers);
+        for (ScanStats stats : scans)
+        {
+            final long[] bins = lateness ? stats.getLatenessHistogram() : stats.getJitterHistogram();
+            final String[] line = new String[bins.length + 1];
+            line[0] = String.format("%.1f sec", stats.getPeriod());
+            for (int i=0; i<bins.length; ++i)
+                line[i+1] = Long.toString(bins[i]);
+            html.tableLine(line);
+        }
+        html.closeTable();
+    }
 }
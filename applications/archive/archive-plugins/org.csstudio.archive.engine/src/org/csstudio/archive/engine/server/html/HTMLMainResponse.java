@@ -17,6 +17,8 @@ import org.csstudio.apputil.time.PeriodFormat;
 import org.csstudio.archive.engine.Messages;
 import org.csstudio.archive.engine.model.EngineModel;
 import org.csstudio.archive.engine.model.SampleBuffer;
+import org.csstudio.archive.engine.model.SampleSpool;
+import org.csstudio.archive.engine.model.WriteThread;
 import org.csstudio.archive.engine.server.AbstractMainResponse;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.diirt.util.time.TimeDuration;
@@ -144,6 +146,60 @@ public class HTMLMainResponse extends AbstractMainResponse
 
         html.closeTable();
 
+        // Per-thread write statistics
+        html.openTable(1, new String[]
+        {
+            Messages.HTTP_WriteThread,
+            Messages.HTTP_ChannelCount,
+            Messages.HTTP_WriteState,
+            Messages.HTTP_LastWriteTime,
+            Messages.HTTP_WriteCount,
+            Messages.HTTP_WriteDuration,
+            Messages.HTTP_WriteRate,
+            Messages.HTTP_TotalWritten,
+            Messages.HTTP_Spool,
+            Messages.HTTP_ReplayRate
+        });
+        for (WriteThread thread : model.getWriteThreads())
+        {
+            final Instant thread_write_time = thread.getLastWriteTime();
+            html.tableLine(new String[]
+            {
+                thread.getName(),
+                Integer.toString(thread.getChannelCount()),
+                (thread.isInErrorState()
+                 ? HTMLWriter.makeRedText(Messages.HTTP_WriteError)
+                 : "OK"),
+                (thread_write_time == null
+                 ? Messages.HTTP_Never
+                 : TimestampHelper.format(thread_write_time)),
+                (int)thread.getWriteCount() + " samples",
+                String.format("%.1f sec", thread.getWriteDuration()),
+                String.format("%.1f samples/sec", thread.getWriteRate()),
+                thread.getTotalWriteCount() + " samples",
+                formatSpool(thread.getSpool()),
+                String.format("%.1f samples/sec", thread.getReplayRate())
+            });
+        }
+        html.closeTable();
+
         html.close();
     }
+
+    /** @param spool Spool or <code>null</code>
+     *  @return Spool depth and disk usage
+     */
+    private String formatSpool(final SampleSpool spool)
+    {
+        if (spool == null)
+            return Messages.HTTP_SpoolDisabled;
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format("%d samples, %.1f MB of %.1f MB",
+                                 spool.getSampleCount(), spool.getDiskUsage() / MB, spool.getDiskLimit() / MB));
+        if (spool.getDroppedCount() > 0)
+            buf.append(", ").append(HTMLWriter.makeRedText(spool.getDroppedCount() + " dropped"));
+        if (spool.getBadRecordCount() > 0)
+            buf.append(", ").append(HTMLWriter.makeRedText(spool.getBadRecordCount() + " bad"));
+        return buf.toString();
+    }
 }
@@ -17,6 +17,8 @@ import org.csstudio.apputil.time.PeriodFormat;
 import org.csstudio.archive.engine.Messages;
 import org.csstudio.archive.engine.model.EngineModel;
 import org.csstudio.archive.engine.model.SampleBuffer;
+import org.csstudio.archive.engine.model.SampleSpool;
+import org.csstudio.archive.engine.model.WriteThread;
 import org.csstudio.archive.engine.server.AbstractMainResponse;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.diirt.util.time.TimeDuration;
@@ -76,6 +78,41 @@ public class JSONMainResponse extends AbstractMainResponse
         json.writeObjectEntry(Messages.HTTP_WriteCount, model.getWriteCount());
         json.writeObjectEntry(Messages.HTTP_WriteDuration, model.getWriteDuration());
 
+        final JSONList threads = new JSONList();
+        for (WriteThread thread : model.getWriteThreads())
+        {
+            final JSONObject json_thread = new JSONObject();
+            json_thread.writeObjectEntry(Messages.HTTP_WriteThread, thread.getName());
+            json_thread.writeObjectEntry(Messages.HTTP_ChannelCount, thread.getChannelCount());
+            json_thread.writeObjectEntry(Messages.HTTP_WriteState, thread.isInErrorState()?
+                                                                   Messages.HTTP_WriteError
+                                                                   : "OK");
+            final Instant thread_write_time = thread.getLastWriteTime();
+            json_thread.writeObjectEntry(Messages.HTTP_LastWriteTime, thread_write_time == null?
+                                                                      Messages.HTTP_Never
+                                                                      : TimestampHelper.format(thread_write_time));
+            json_thread.writeObjectEntry(Messages.HTTP_WriteCount, thread.getWriteCount());
+            json_thread.writeObjectEntry(Messages.HTTP_WriteDuration, thread.getWriteDuration());
+            json_thread.writeObjectEntry(Messages.HTTP_WriteRate, thread.getWriteRate());
+            json_thread.writeObjectEntry(Messages.HTTP_TotalWritten, thread.getTotalWriteCount());
+            final SampleSpool spool = thread.getSpool();
+            if (spool == null)
+                json_thread.writeObjectEntry(Messages.HTTP_Spool, Messages.HTTP_SpoolDisabled);
+            else
+            {
+                final JSONObject json_spool = new JSONObject();
+                json_spool.writeObjectEntry("Samples", spool.getSampleCount());
+                json_spool.writeObjectEntry("Disk Usage", spool.getDiskUsage() / MB);
+                json_spool.writeObjectEntry("Disk Limit", spool.getDiskLimit() / MB);
+                json_spool.writeObjectEntry("Dropped", spool.getDroppedCount());
+                json_spool.writeObjectEntry("Bad Records", spool.getBadRecordCount());
+                json_thread.writeObjectEntry(Messages.HTTP_Spool, json_spool);
+            }
+            json_thread.writeObjectEntry(Messages.HTTP_ReplayRate, thread.getReplayRate());
+            threads.addObjectToList(json_thread);
+        }
+        json.writeObjectEntry(Messages.HTTP_WriteThreads, threads);
+
         json.writeObjectEntry(Messages.HTTP_Idletime, model.getIdlePercentage());
 
         final Runtime runtime = Runtime.getRuntime();
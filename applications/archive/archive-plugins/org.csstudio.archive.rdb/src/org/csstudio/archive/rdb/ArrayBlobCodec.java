@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.rdb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.diirt.util.array.ArrayByte;
+import org.diirt.util.array.ArrayDouble;
+import org.diirt.util.array.ArrayFloat;
+import org.diirt.util.array.ArrayInt;
+import org.diirt.util.array.ArrayLong;
+import org.diirt.util.array.ArrayShort;
+import org.diirt.util.array.ListByte;
+import org.diirt.util.array.ListFloat;
+import org.diirt.util.array.ListInt;
+import org.diirt.util.array.ListLong;
+import org.diirt.util.array.ListNumber;
+import org.diirt.util.array.ListShort;
+
+/** Encoding of array samples for the SAMPLE.ARRAY_VAL BLOB
+ *
+ *  <p>Handles the original 'd' encoding, one double per element,
+ *  and the columnar 'c' encoding which keeps the element type
+ *  and optionally compresses the elements.
+ *  See dbd/array_encoding.txt for the BLOB layout.
+ *
+ *  <p>Decoding reads the BLOB in bulk into a primitive array
+ *  that is then wrapped, not copied, by the returned {@link ListNumber}.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ArrayBlobCodec
+{
+    /** SAMPLE.DATATYPE for scalar samples */
+    public static final String SCALAR = " ";
+
+    /** SAMPLE.DATATYPE for the original double array encoding */
+    public static final String DOUBLE = "d";
+
+    /** SAMPLE.DATATYPE for the columnar encoding */
+    public static final String COLUMNAR = "c";
+
+    /** Columnar flag: Elements are differences to the previous element */
+    public static final byte DELTA = 0x01;
+
+    /** Columnar flag: Elements are compressed with 'deflate' */
+    public static final byte DEFLATE = 0x02;
+
+    /** Size of columnar header: type, flags, element count */
+    private static final int HEADER = 6;
+
+    /** Upper limit for the compression ratio of 'deflate' */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /** @param data Array elements
+     *  @return BLOB for {@link #DOUBLE} datatype
+     */
+    public static byte[] encodeDouble(final ListNumber data)
+    {
+        final int N = data.size();
+        final ByteBuffer buf = ByteBuffer.allocate(4 + N*8);
+        buf.putInt(N);
+        for (int i=0; i<N; ++i)
+            buf.putDouble(data.getDouble(i));
+        return buf.array();
+    }
+
+    /** @param data Array elements
+     *  @param compress Delta-encode and compress the elements?
+     *  @return BLOB for {@link #COLUMNAR} datatype
+     */
+    public static byte[] encodeColumnar(final ListNumber data, final boolean compress)
+    {
+        final char type = getType(data);
+        final int N = data.size();
+        final ByteBuffer buf = ByteBuffer.allocate(HEADER + N*getSize(type));
+        buf.put((byte) type);
+        buf.put(compress ? DELTA : 0);
+        buf.putInt(N);
+        switch (type)
+        {
+        case 'b':
+        {
+            byte last = 0;
+            for (int i=0; i<N; ++i)
+            {
+                final byte value = data.getByte(i);
+                buf.put(compress ? (byte) (value - last) : value);
+                last = value;
+            }
+            break;
+        }
+        case 's':
+        {
+            short last = 0;
+            for (int i=0; i<N; ++i)
+            {
+                final short value = data.getShort(i);
+                buf.putShort(compress ? (short) (value - last) : value);
+                last = value;
+            }
+            break;
+        }
+        case 'i':
+        {
+            int last = 0;
+            for (int i=0; i<N; ++i)
+            {
+                final int value = data.getInt(i);
+                buf.putInt(compress ? value - last : value);
+                last = value;
+            }
+            break;
+        }
+        case 'l':
+        {
+            long last = 0;
+            for (int i=0; i<N; ++i)
+            {
+                final long value = data.getLong(i);
+                buf.putLong(compress ? value - last : value);
+                last = value;
+            }
+            break;
+        }
+        case 'f':
+        {   // 'Delta' of floating point numbers: XOR of the bits,
+            // which turns similar values into leading zero bytes
+            int last = 0;
+            for (int i=0; i<N; ++i)
+            {
+                final int value = Float.floatToRawIntBits(data.getFloat(i));
+                buf.putInt(compress ? value ^ last : value);
+                last = value;
+            }
+            break;
+        }
+        default:
+        {
+            long last = 0;
+            for (int i=0; i<N; ++i)
+            {
+                final long value = Double.doubleToRawLongBits(data.getDouble(i));
+                buf.putLong(compress ? value ^ last : value);
+                last = value;
+            }
+        }
+        }
+        final byte[] packed = buf.array();
+        if (! compress)
+            return packed;
+        return deflate(packed);
+    }
+
+    /** @param packed Columnar BLOB with uncompressed elements
+     *  @return BLOB with compressed elements, or original BLOB if compression doesn't help
+     */
+    private static byte[] deflate(final byte[] packed)
+    {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try
+        {
+            deflater.setInput(packed, HEADER, packed.length - HEADER);
+            deflater.finish();
+            final byte[] result = new byte[packed.length];
+            System.arraycopy(packed, 0, result, 0, HEADER);
+            int size = HEADER;
+            while (! deflater.finished()  &&  size < result.length)
+                size += deflater.deflate(result, size, result.length - size);
+            if (! deflater.finished())
+                return packed;
+            result[1] |= DEFLATE;
+            return Arrays.copyOf(result, size);
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    /** @param datatype SAMPLE.DATATYPE
+     *  @param blob SAMPLE.ARRAY_VAL
+     *  @return Array elements
+     *  @throws Exception on error, including unknown datatype
+     */
+    public static ListNumber decode(final String datatype, final byte[] blob) throws Exception
+    {
+        final ByteBuffer buf = ByteBuffer.wrap(blob);
+        if (DOUBLE.equals(datatype))
+        {
+            final int N = buf.getInt();
+            if (N < 0  ||  N > buf.remaining() / 8)
+                throw new Exception("Sample BLOB with " + N + " elements exceeds BLOB size of " + blob.length + " bytes");
+            final double[] array = new double[N];
+            buf.asDoubleBuffer().get(array);
+            return new ArrayDouble(array);
+        }
+        if (! COLUMNAR.equals(datatype))
+            throw new Exception("Sample BLOBs of type '" + datatype + "' are not decoded");
+
+        final char type = (char) buf.get();
+        final byte flags = buf.get();
+        final int N = buf.getInt();
+        final int size = getSize(type);
+        if (size <= 0)
+            throw new Exception("Columnar sample BLOB with unknown element type '" + type + "'");
+        // Check element count before allocating arrays for it
+        final boolean deflated = (flags & DEFLATE) != 0;
+        final long bytes = (long) N * size;
+        final long available = deflated ? (long) buf.remaining() * MAX_DEFLATE_RATIO : buf.remaining();
+        if (N < 0  ||  bytes > available  ||  bytes > Integer.MAX_VALUE)
+            throw new Exception("Columnar sample BLOB with " + N + " elements of type '" + type +
+                                "' exceeds BLOB size of " + blob.length + " bytes");
+        final ByteBuffer elements = deflated
+                                  ? inflate(blob, (int) bytes)
+                                  : buf.slice();
+        final boolean delta = (flags & DELTA) != 0;
+        switch (type)
+        {
+        case 'b':
+        {
+            final byte[] array = new byte[N];
+            elements.get(array);
+            if (delta)
+                for (int i=1; i<N; ++i)
+                    array[i] += array[i-1];
+            return new ArrayByte(array);
+        }
+        case 's':
+        {
+            final short[] array = new short[N];
+            elements.asShortBuffer().get(array);
+            if (delta)
+                for (int i=1; i<N; ++i)
+                    array[i] += array[i-1];
+            return new ArrayShort(array);
+        }
+        case 'i':
+        {
+            final int[] array = new int[N];
+            elements.asIntBuffer().get(array);
+            if (delta)
+                for (int i=1; i<N; ++i)
+                    array[i] += array[i-1];
+            return new ArrayInt(array);
+        }
+        case 'l':
+        {
+            final long[] array = new long[N];
+            elements.asLongBuffer().get(array);
+            if (delta)
+                for (int i=1; i<N; ++i)
+                    array[i] += array[i-1];
+            return new ArrayLong(array);
+        }
+        case 'f':
+        {
+            final float[] array = new float[N];
+            if (delta)
+            {
+                int last = 0;
+                for (int i=0; i<N; ++i)
+                {
+                    last ^= elements.getInt();
+                    array[i] = Float.intBitsToFloat(last);
+                }
+            }
+            else
+                elements.asFloatBuffer().get(array);
+            return new ArrayFloat(array);
+        }
+        case 'd':
+        {
+            final double[] array = new double[N];
+            if (delta)
+            {
+                long last = 0;
+                for (int i=0; i<N; ++i)
+                {
+                    last ^= elements.getLong();
+                    array[i] = Double.longBitsToDouble(last);
+                }
+            }
+            else
+                elements.asDoubleBuffer().get(array);
+            return new ArrayDouble(array);
+        }
+        default:
+            throw new Exception("Columnar sample BLOB with unknown element type '" + type + "'");
+        }
+    }
+
+    /** @param blob Columnar BLOB with compressed elements
+     *  @param size Size of uncompressed elements
+     *  @return Uncompressed elements
+     *  @throws DataFormatException on error
+     */
+    private static ByteBuffer inflate(final byte[] blob, final int size) throws DataFormatException
+    {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(blob, HEADER, blob.length - HEADER);
+            final byte[] result = new byte[size];
+            int got = 0;
+            while (got < size  &&  ! inflater.finished())
+            {
+                final int n = inflater.inflate(result, got, size - got);
+                if (n == 0  &&  (inflater.needsInput()  ||  inflater.needsDictionary()))
+                    break;
+                got += n;
+            }
+            if (got != size)
+                throw new DataFormatException("Expected " + size + " bytes of array elements, got " + got);
+            return ByteBuffer.wrap(result);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /** @param data Array elements
+     *  @return Element type used in columnar BLOB
+     */
+    private static char getType(final ListNumber data)
+    {
+        if (data instanceof ListByte)
+            return 'b';
+        if (data instanceof ListShort)
+            return 's';
+        if (data instanceof ListInt)
+            return 'i';
+        if (data instanceof ListLong)
+            return 'l';
+        if (data instanceof ListFloat)
+            return 'f';
+        return 'd';
+    }
+
+    /** @param type Element type
+     *  @return Bytes per element, 0 for unknown type
+     */
+    private static int getSize(final char type)
+    {
+        switch (type)
+        {
+        case 'b': return 1;
+        case 's': return 2;
+        case 'i':
+        case 'f': return 4;
+        case 'l':
+        case 'd': return 8;
+        default:   return 0;
+        }
+    }
+}
@@ -23,6 +23,12 @@ public class RDBArchivePreferences
     public static final String PASSWORD = "password";
     public static final String SQL_TIMEOUT = "sql_timeout";
     public static final String USE_ARRAY_BLOB = "use_array_blob";
+    public static final String COLUMNAR_ARRAY_BLOB = "columnar_array_blob";
+    public static final String COMPRESS_ARRAY_BLOB = "compress_array_blob";
+    public static final String POOL_SIZE = "pool_size";
+    public static final String POOL_IDLE_TIMEOUT = "pool_idle_timeout";
+    public static final String POOL_WAIT_TIMEOUT = "pool_wait_timeout";
+    public static final String STATEMENT_CACHE = "statement_cache";
 
     /** @return URL of RDB archive server */
     public static String getURL()
@@ -69,6 +75,68 @@ public class RDBArchivePreferences
         return prefs.getBoolean(Activator.ID, USE_ARRAY_BLOB, true, null);
     }
 
+    /** @return <code>true</code> if array BLOBs should be written in the columnar encoding */
+    public static boolean useColumnarArrayBlob()
+    {
+        return getBoolean(COLUMNAR_ARRAY_BLOB, false);
+    }
+
+    /** @return <code>true</code> if columnar array BLOBs should be compressed */
+    public static boolean compressArrayBlob()
+    {
+        return getBoolean(COMPRESS_ARRAY_BLOB, false);
+    }
+
+    /** @return Maximum number of pooled connections per database */
+    public static int getPoolSize()
+    {
+        return getInt(POOL_SIZE, 8);
+    }
+
+    /** @return Seconds after which idle pooled connections are closed */
+    public static int getPoolIdleTimeoutSecs()
+    {
+        return getInt(POOL_IDLE_TIMEOUT, 60);
+    }
+
+    /** @return Seconds to wait for a pooled connection when all are in use */
+    public static int getPoolWaitTimeoutSecs()
+    {
+        return getInt(POOL_WAIT_TIMEOUT, 60);
+    }
+
+    /** @return Number of prepared statements cached per connection */
+    public static int getStatementCacheSize()
+    {
+        return getInt(STATEMENT_CACHE, 20);
+    }
+
+    /** Get integer preference
+     *  @param key Preference key
+     *  @param default_value Default value
+     *  @return Value
+     */
+    private static int getInt(final String key, final int default_value)
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return default_value;
+        return prefs.getInt(Activator.ID, key, default_value, null);
+    }
+
+    /** Get boolean preference
+     *  @param key Preference key
+     *  @param default_value Default value
+     *  @return Value
+     */
+    private static boolean getBoolean(final String key, final boolean default_value)
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return default_value;
+        return prefs.getBoolean(Activator.ID, key, default_value, null);
+    }
+
     /** Get string preference
      *  @param key Preference key
      *  @return String or <code>null</code>
@@ -0,0 +1,539 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.rdb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.csstudio.platform.utility.rdb.RDBUtil;
+import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
+
+/** Pool of RDB connections
+ *
+ *  <p>Connections are borrowed for exclusive use and returned
+ *  to the pool when closed.
+ *  Each pool is limited to a maximum number of connections.
+ *  When all are in use, callers wait until one is returned.
+ *  Connections that remain idle for some time are closed.
+ *
+ *  <p>Each connection caches prepared statements,
+ *  so repeated queries for the same SQL don't need
+ *  to be prepared again.
+ *
+ *  <p>There is one pool per URL, user, password and read-only mode,
+ *  shared by all RDB archive plugins.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class RDBConnectionPool
+{
+    private static final Logger logger = Logger.getLogger(RDBConnectionPool.class.getName());
+
+    /** Pool identifier */
+    private static class ID
+    {
+        private final String url, user, password;
+        private final boolean read_only;
+
+        ID(final String url, final String user, final String password, final boolean read_only)
+        {
+            this.url = Objects.requireNonNull(url);
+            this.user = user;
+            this.password = password;
+            this.read_only = read_only;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (! (obj instanceof ID))
+                return false;
+            final ID other = (ID) obj;
+            return url.equals(other.url)   &&
+                   Objects.equals(user, other.user) &&
+                   Objects.equals(password, other.password) &&
+                   read_only == other.read_only;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(url, user, password, read_only);
+        }
+    }
+
+    /** Connection borrowed from the pool.
+     *
+     *  <p>Must be used by one thread at a time,
+     *  and {@link #close()}d to return it to the pool.
+     */
+    public static class PooledConnection implements AutoCloseable
+    {
+        private final RDBConnectionPool pool;
+        private final RDBUtil rdb;
+
+        /** Idle prepared statements by SQL, least recently used first */
+        private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        /** Statements handed out by prepareStatement, mapped to their SQL */
+        private final Map<PreparedStatement, String> used_statements = new IdentityHashMap<>();
+
+        /** Time when returned to the pool [ms] */
+        private long idle_since;
+
+        PooledConnection(final RDBConnectionPool pool, final RDBUtil rdb)
+        {
+            this.pool = pool;
+            this.rdb = rdb;
+        }
+
+        /** @return JDBC connection, MUST NOT BE CLOSED
+         *  @throws Exception on error
+         */
+        public Connection getConnection() throws Exception
+        {
+            return rdb.getConnection();
+        }
+
+        /** @return RDB Dialect */
+        public Dialect getDialect()
+        {
+            return rdb.getDialect();
+        }
+
+        /** Get prepared statement, re-using a cached one if possible
+         *
+         *  <p>The statement is reserved for the caller until it is passed to
+         *  {@link #releaseStatement(PreparedStatement)}.
+         *  It must not be closed by the caller.
+         *
+         *  @param sql SQL
+         *  @return {@link PreparedStatement}
+         *  @throws Exception on error
+         */
+        public PreparedStatement prepareStatement(final String sql) throws Exception
+        {
+            PreparedStatement statement;
+            synchronized (statements)
+            {
+                statement = statements.remove(sql);
+            }
+            if (statement != null  &&  ! statement.isClosed())
+                pool.statement_hits.incrementAndGet();
+            else
+            {
+                pool.statement_misses.incrementAndGet();
+                statement = getConnection().prepareStatement(sql);
+            }
+            synchronized (statements)
+            {
+                used_statements.put(statement, sql);
+            }
+            return statement;
+        }
+
+        /** Return statement to the cache
+         *  @param statement Statement obtained from {@link #prepareStatement(String)}
+         */
+        public void releaseStatement(final PreparedStatement statement)
+        {
+            final String sql;
+            synchronized (statements)
+            {
+                sql = used_statements.remove(statement);
+            }
+            try
+            {
+                statement.clearParameters();
+            }
+            catch (Exception ex)
+            {
+                close(statement);
+                return;
+            }
+            PreparedStatement drop = null;
+            synchronized (statements)
+            {
+                if (sql == null  ||  statements.containsKey(sql))
+                    drop = statement;
+                else
+                {
+                    statements.put(sql, statement);
+                    if (statements.size() > pool.statement_cache)
+                    {   // Drop least recently used
+                        final String eldest = statements.keySet().iterator().next();
+                        drop = statements.remove(eldest);
+                    }
+                }
+            }
+            if (drop != null)
+                close(drop);
+        }
+
+        private static void close(final PreparedStatement statement)
+        {
+            try
+            {
+                statement.close();
+            }
+            catch (Exception ex)
+            {
+                // Ignore
+            }
+        }
+
+        /** Close cached statements and the connection */
+        void disconnect()
+        {
+            final List<PreparedStatement> to_close;
+            synchronized (statements)
+            {
+                to_close = new ArrayList<>(statements.values());
+                to_close.addAll(used_statements.keySet());
+                statements.clear();
+                used_statements.clear();
+            }
+            for (PreparedStatement statement : to_close)
+                close(statement);
+            rdb.close();
+        }
+
+        /** Return connection to the pool */
+        @Override
+        public void close()
+        {
+            pool.release(this);
+        }
+    }
+
+    /** Connections idle for longer than this [ms] are checked before they are re-used */
+    private static final long VALIDATE_AFTER_MS = 10000;
+
+    /** Pools */
+    private static final Map<ID, RDBConnectionPool> pools = new HashMap<>();
+
+    /** Timer that closes idle connections */
+    private static ScheduledExecutorService eviction = null;
+
+    private final ID id;
+    private final int max_connections;
+    private final long idle_timeout_ms;
+    private final long wait_timeout_ms;
+    private final int statement_cache;
+
+    /** Idle connections, most recently returned first. Synchronize on this */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    /** Number of open connections, idle or in use. Synchronize on this */
+    private int open = 0;
+
+    private final AtomicLong borrowed = new AtomicLong(),
+                             waits = new AtomicLong(),
+                             wait_nanos = new AtomicLong(),
+                             max_wait_nanos = new AtomicLong(),
+                             statement_hits = new AtomicLong(),
+                             statement_misses = new AtomicLong();
+
+    /** Get pool
+     *  @param url Database URL
+     *  @param user .. user
+     *  @param password .. password
+     *  @param read_only Mark connections as read-only?
+     *  @return {@link RDBConnectionPool} for those settings
+     */
+    public static RDBConnectionPool getPool(final String url, final String user, final String password, final boolean read_only)
+    {
+        final ID id = new ID(url, user, password, read_only);
+        synchronized (pools)
+        {
+            RDBConnectionPool pool = pools.get(id);
+            if (pool == null)
+            {
+                pool = new RDBConnectionPool(id,
+                                             RDBArchivePreferences.getPoolSize(),
+                                             RDBArchivePreferences.getPoolIdleTimeoutSecs(),
+                                             RDBArchivePreferences.getPoolWaitTimeoutSecs(),
+                                             RDBArchivePreferences.getStatementCacheSize());
+                pools.put(id, pool);
+                if (eviction == null)
+                {
+                    eviction = Executors.newSingleThreadScheduledExecutor(runnable ->
+                    {
+                        final Thread thread = new Thread(runnable, "RDBConnectionPool");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    eviction.scheduleWithFixedDelay(RDBConnectionPool::closeIdleConnections, 10, 10, TimeUnit.SECONDS);
+                }
+            }
+            return pool;
+        }
+    }
+
+    /** @return All pools */
+    public static List<RDBConnectionPool> getPools()
+    {
+        synchronized (pools)
+        {
+            return new ArrayList<>(pools.values());
+        }
+    }
+
+    /** Close idle connections of all pools that have exceeded the idle timeout */
+    private static void closeIdleConnections()
+    {
+        for (RDBConnectionPool pool : getPools())
+            pool.closeIdle(pool.idle_timeout_ms);
+    }
+
+    private RDBConnectionPool(final ID id, final int max_connections,
+                              final int idle_timeout_secs, final int wait_timeout_secs,
+                              final int statement_cache)
+    {
+        this.id = id;
+        this.max_connections = Math.max(1, max_connections);
+        this.idle_timeout_ms = TimeUnit.SECONDS.toMillis(idle_timeout_secs);
+        this.wait_timeout_ms = TimeUnit.SECONDS.toMillis(wait_timeout_secs);
+        this.statement_cache = Math.max(0, statement_cache);
+    }
+
+    /** Borrow a connection, waiting if all connections are in use
+     *  @return {@link PooledConnection}, must be closed to return it
+     *  @throws Exception on error, or when no connection became available in time
+     */
+    public PooledConnection borrow() throws Exception
+    {
+        return borrow(true);
+    }
+
+    /** Borrow a connection if one is available without waiting
+     *  @return {@link PooledConnection} or <code>null</code> if all connections are in use
+     *  @throws Exception on error
+     */
+    public PooledConnection tryBorrow() throws Exception
+    {
+        return borrow(false);
+    }
+
+    private PooledConnection borrow(final boolean wait) throws Exception
+    {
+        final long start = System.nanoTime();
+        PooledConnection connection = null;
+        boolean waited = false;
+        synchronized (this)
+        {
+            while (true)
+            {
+                connection = idle.pollFirst();
+                if (connection != null)
+                    break;
+                if (open < max_connections)
+                {
+                    ++open;
+                    break;
+                }
+                if (! wait)
+                    return null;
+                final long remaining = wait_timeout_ms - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (remaining <= 0)
+                    throw new Exception("Timeout waiting for connection to " + id.url +
+                                        ", all " + max_connections + " connections are in use");
+                waited = true;
+                wait(remaining);
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        borrowed.incrementAndGet();
+        if (waited)
+        {
+            waits.incrementAndGet();
+            wait_nanos.addAndGet(nanos);
+            max_wait_nanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        try
+        {
+            if (connection == null)
+                connection = connect();
+            else if (System.currentTimeMillis() - connection.idle_since > VALIDATE_AFTER_MS  &&
+                     ! connection.getConnection().isValid(5))
+            {
+                logger.log(Level.FINE, "Replacing stale connection to {0}", id.url);
+                connection.disconnect();
+                connection = connect();
+            }
+        }
+        catch (Exception ex)
+        {
+            synchronized (this)
+            {
+                --open;
+                notifyAll();
+            }
+            throw ex;
+        }
+        return connection;
+    }
+
+    /** @return New connection
+     *  @throws Exception on error
+     */
+    private PooledConnection connect() throws Exception
+    {
+        logger.log(Level.FINE, "Connecting to {0}", id.url);
+        final PooledConnection connection = new PooledConnection(this, RDBUtil.connect(id.url, id.user, id.password, false));
+        // Read-only allows MySQL to use load balancing
+        if (id.read_only)
+            connection.getConnection().setReadOnly(true);
+        return connection;
+    }
+
+    /** Return connection to the pool
+     *  @param connection Connection obtained from {@link #borrow()}
+     */
+    private void release(final PooledConnection connection)
+    {
+        boolean usable;
+        try
+        {   // Reset what users might have changed
+            final Connection jdbc = connection.getConnection();
+            if (! jdbc.getAutoCommit())
+            {
+                jdbc.rollback();
+                jdbc.setAutoCommit(true);
+            }
+            usable = ! jdbc.isClosed();
+        }
+        catch (Exception ex)
+        {
+            usable = false;
+        }
+        synchronized (this)
+        {
+            if (usable)
+            {
+                connection.idle_since = System.currentTimeMillis();
+                idle.addFirst(connection);
+            }
+            else
+                --open;
+            notifyAll();
+        }
+        if (! usable)
+            connection.disconnect();
+    }
+
+    /** Close idle connections
+     *  @param min_idle_ms Close connections that have been idle at least this long
+     */
+    public void closeIdle(final long min_idle_ms)
+    {
+        final long now = System.currentTimeMillis();
+        final List<PooledConnection> to_close = new ArrayList<>();
+        synchronized (this)
+        {
+            // Least recently used connections are at the end
+            while (! idle.isEmpty()  &&  now - idle.peekLast().idle_since >= min_idle_ms)
+            {
+                to_close.add(idle.pollLast());
+                --open;
+            }
+        }
+        for (PooledConnection connection : to_close)
+        {
+            logger.log(Level.FINE, "Closing idle connection to {0}", id.url);
+            connection.disconnect();
+        }
+    }
+
+    /** @return Database URL */
+    public String getURL()
+    {
+        return id.url;
+    }
+
+    /** @return Number of connections in use */
+    public synchronized int getActiveCount()
+    {
+        return open - idle.size();
+    }
+
+    /** @return Number of idle connections */
+    public synchronized int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /** @return Maximum number of connections */
+    public int getMaxConnections()
+    {
+        return max_connections;
+    }
+
+    /** @return Number of times that a connection was borrowed */
+    public long getBorrowCount()
+    {
+        return borrowed.get();
+    }
+
+    /** @return Number of times that a caller had to wait for a connection */
+    public long getWaitCount()
+    {
+        return waits.get();
+    }
+
+    /** @return Average wait time in milliseconds of callers that had to wait */
+    public double getAverageWaitMillis()
+    {
+        final long count = waits.get();
+        return count > 0 ? wait_nanos.get() / 1e6 / count : 0.0;
+    }
+
+    /** @return Longest wait time in milliseconds */
+    public double getMaxWaitMillis()
+    {
+        return max_wait_nanos.get() / 1e6;
+    }
+
+    /** @return Number of prepared statements that were re-used */
+    public long getStatementHits()
+    {
+        return statement_hits.get();
+    }
+
+    /** @return Number of prepared statements that had to be created */
+    public long getStatementMisses()
+    {
+        return statement_misses.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("RDBConnectionPool %s: %d active, %d idle, max %d, %d borrowed, %d waited (avg %.1f ms, max %.1f ms), statements %d re-used, %d prepared",
+                             id.url, getActiveCount(), getIdleCount(), max_connections,
+                             getBorrowCount(), getWaitCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                             getStatementHits(), getStatementMisses());
+    }
+}
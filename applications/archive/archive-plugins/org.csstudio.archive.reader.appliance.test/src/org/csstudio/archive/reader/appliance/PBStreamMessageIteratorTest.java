@@ -0,0 +1,156 @@
+package org.csstudio.archive.reader.appliance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.archiverappliance.retrieval.client.EpicsMessage;
+import org.junit.Test;
+
+import com.google.protobuf.GeneratedMessage;
+
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadInfo;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadType;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarDouble;
+
+/**
+ *
+ * <code>PBStreamMessageIteratorTest</code> tests the decoding of PB/HTTP responses by the
+ * {@link PBStreamMessageIterator} and the statistics collected in the {@link ApplianceFetchPool}.
+ *
+ * @author Kay Kasemir
+ *
+ */
+public class PBStreamMessageIteratorTest {
+
+    /**
+     * Writes one escaped line of the PB/HTTP protocol.
+     */
+    private static void writeLine(ByteArrayOutputStream out, GeneratedMessage message) {
+        for (byte b : message.toByteArray()) {
+            switch (b) {
+                case 0x1B:
+                    out.write(0x1B);
+                    out.write(0x01);
+                    break;
+                case 0x0A:
+                    out.write(0x1B);
+                    out.write(0x02);
+                    break;
+                case 0x0D:
+                    out.write(0x1B);
+                    out.write(0x03);
+                    break;
+                default:
+                    out.write(b);
+            }
+        }
+        out.write(0x0A);
+    }
+
+    private static PayloadInfo createInfo(int year) {
+        return PayloadInfo.newBuilder().setType(PayloadType.SCALAR_DOUBLE).setPvname("test_pv_double")
+                .setYear(year).build();
+    }
+
+    /**
+     * Values and timestamps that contain the escaped characters
+     */
+    private static ScalarDouble createSample(int i) {
+        return ScalarDouble.newBuilder().setSecondsintoyear(0x0A0D1B + i).setNano(0x1B + i)
+                .setVal(i == 0 ? Double.longBitsToDouble(0x0A0A0A0A1B1B0D0DL) : i * 0.5).build();
+    }
+
+    /**
+     * Tests decoding of two chunks with escaped content and the request statistics.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDecoding() throws Exception {
+        final int count = 10000;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLine(out, createInfo(2015));
+        for (int i = 0; i < count; i++) {
+            writeLine(out, createSample(i));
+        }
+        out.write(0x0A);
+        writeLine(out, createInfo(2016));
+        for (int i = count; i < 2 * count; i++) {
+            writeLine(out, createSample(i));
+        }
+        final byte[] response = out.toByteArray();
+
+        final ApplianceFetchPool pool = new ApplianceFetchPool("http://test/retrieval", 2);
+        final List<Integer> years = new ArrayList<>();
+        int i = 0;
+        try (PBStreamMessageIterator iter = new PBStreamMessageIterator(new ByteArrayInputStream(response),
+                pool.startRequest("test_pv_double"))) {
+            assertEquals("Payload year", 2015, iter.getPayLoadInfo().getYear());
+            iter.onInfoChange(info -> years.add(info.getYear()));
+            for (EpicsMessage message : iter) {
+                final ScalarDouble expected = createSample(i);
+                assertEquals("Value", expected.getVal(), message.getNumberValue().doubleValue(), 0.0);
+                assertEquals("Sample", expected, message.getMessage());
+                i++;
+            }
+        }
+        assertEquals("Number of samples", 2 * count, i);
+        assertEquals("Info change", 1, years.size());
+        assertEquals("New year", Integer.valueOf(2016), years.get(0));
+        assertEquals("Active requests", 0, pool.getActiveCount());
+        assertEquals("Bytes", response.length, pool.getByteCount());
+        assertEquals("Samples", 2 * count, pool.getMessageCount());
+        assertEquals("Requests", 1, pool.getRequestCount());
+    }
+
+    /**
+     * Tests that an empty response is reported and the request is finished.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEmptyResponse() throws Exception {
+        final ApplianceFetchPool pool = new ApplianceFetchPool("http://test/retrieval", 2);
+        try {
+            new PBStreamMessageIterator(new ByteArrayInputStream(new byte[0]), pool.startRequest("empty"));
+            fail("Empty response must not create an iterator");
+        } catch (IOException e) {
+            assertEquals("Active requests", 0, pool.getActiveCount());
+        }
+    }
+
+    /**
+     * Tests that the pool limits the number of concurrent requests.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallelism() throws Exception {
+        final ApplianceFetchPool pool = new ApplianceFetchPool("http://test/retrieval", 2);
+        pool.acquire();
+        pool.acquire();
+        final Thread third = new Thread(() -> {
+            try {
+                pool.acquire();
+                pool.release();
+            } catch (IOException e) {
+                // Test fails below
+            }
+        });
+        third.start();
+        third.join(200);
+        assertTrue("Third request must wait", third.isAlive());
+        pool.release();
+        third.join(2000);
+        assertFalse("Third request must proceed", third.isAlive());
+        pool.release();
+    }
+}
@@ -18,6 +18,8 @@ public class Activator extends Plugin {
 
     private Boolean useStatistics;
     private Boolean useNewOptimizedOperator;
+    private Integer fetchParallelism;
+    private Integer fetchTimeout;
 
     /**
      * The constructor
@@ -86,4 +88,36 @@ public class Activator extends Plugin {
         }
         return useNewOptimizedOperator;
     }
+
+    /**
+     * @return the maximum number of concurrent data requests to one appliance URL
+     */
+    public int getFetchParallelism() {
+        if (fetchParallelism == null) {
+            final IPreferencesService prefs = Platform.getPreferencesService();
+            if (prefs == null) {
+                fetchParallelism = ApplianceFetchPool.DEFAULT_PARALLELISM;
+            } else {
+                fetchParallelism = prefs.getInt(Activator.PLUGIN_ID, "fetchParallelism",
+                        ApplianceFetchPool.DEFAULT_PARALLELISM, null);
+            }
+        }
+        return fetchParallelism;
+    }
+
+    /**
+     * @return the timeout in seconds for connecting to an appliance and for reading its response
+     */
+    public int getFetchTimeout() {
+        if (fetchTimeout == null) {
+            final IPreferencesService prefs = Platform.getPreferencesService();
+            if (prefs == null) {
+                fetchTimeout = PBStreamDataRetrieval.DEFAULT_TIMEOUT;
+            } else {
+                fetchTimeout = prefs.getInt(Activator.PLUGIN_ID, "fetchTimeout",
+                        PBStreamDataRetrieval.DEFAULT_TIMEOUT, null);
+            }
+        }
+        return fetchTimeout;
+    }
 }
\ No newline at end of file
@@ -10,19 +10,20 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
 import org.csstudio.apputil.text.RegExHelper;
 import org.csstudio.archive.reader.ArchiveInfo;
 import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ConcurrentFetch;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.epics.archiverappliance.retrieval.client.DataRetrieval;
 import org.epics.archiverappliance.retrieval.client.EpicsMessage;
 import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
-import org.epics.archiverappliance.retrieval.client.RawDataRetrieval;
 
 /**
  * Appliance archive reader which reads data from EPICS archiver appliance.
@@ -210,6 +211,28 @@ public class ApplianceArchiveReader implements ArchiveReader, IteratorListener {
         return it;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The appliance has no retrieval call for several PVs in one
+     * PB request, so the PVs are requested concurrently.
+     */
+    @Override
+    public List<ValueIterator> getRawValues(int key, List<String> names, Instant start, Instant end) throws UnknownChannelException, Exception {
+        return ConcurrentFetch.getDefault().fetch(names, (index, name) -> getRawValues(key, name, start, end));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The appliance has no retrieval call for several PVs in one
+     * PB request, so the PVs are requested concurrently.
+     */
+    @Override
+    public List<ValueIterator> getOptimizedValues(int key, List<String> names, Instant start, Instant end, int count) throws UnknownChannelException, Exception {
+        return ConcurrentFetch.getDefault().fetch(names, (index, name) -> getOptimizedValues(key, name, start, end, count));
+    }
+
     /* (non-Javadoc)
      * @see org.csstudio.archive.reader.ArchiveReader#cancel()
      */
@@ -236,7 +259,30 @@ public class ApplianceArchiveReader implements ArchiveReader, IteratorListener {
      * @return dataRetrieval instance
      */
     public DataRetrieval createDataRetriveal(String dataRetrievalURL) {
-        return new RawDataRetrieval(dataRetrievalURL);
+        return new PBStreamDataRetrieval(dataRetrievalURL);
+    }
+
+    /**
+     * Requests the data for the given PV. Requests from all iterators and threads run concurrently, limited to the
+     * parallelism of the {@link ApplianceFetchPool} for the data retrieval URL.
+     *
+     * @param pvName name of the PV as used in the request, including a post processing operator
+     * @param start the start of the time window of the data
+     * @param end the end of the time window of the data
+     * @return the messages, or null if no data was found
+     * @throws IOException if interrupted while waiting for the pool
+     */
+    public GenMsgIterator getDataForPV(String pvName, java.sql.Timestamp start, java.sql.Timestamp end)
+            throws IOException {
+        String url = getDataRetrievalURL();
+        DataRetrieval dataRetrieval = createDataRetriveal(url);
+        ApplianceFetchPool pool = ApplianceFetchPool.getPool(url);
+        pool.acquire();
+        try {
+            return dataRetrieval.getDataForPV(pvName, start, end);
+        } finally {
+            pool.release();
+        }
     }
 
     /**
@@ -302,10 +348,9 @@ public class ApplianceArchiveReader implements ArchiveReader, IteratorListener {
      */
     private int getNumberOfPoints(String pvName, Instant start, Instant end) throws IOException {
         String countName = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_NCOUNT).append('(').append(pvName).append(')').toString();
-        DataRetrieval dataRetrieval = createDataRetriveal(getDataRetrievalURL());
         java.sql.Timestamp sqlStartTimestamp = TimestampHelper.toSQLTimestamp(start);
         java.sql.Timestamp sqlEndTimestamp = TimestampHelper.toSQLTimestamp(end);
-        GenMsgIterator iterator = dataRetrieval.getDataForPV(countName, sqlStartTimestamp, sqlEndTimestamp);
+        GenMsgIterator iterator = getDataForPV(countName, sqlStartTimestamp, sqlEndTimestamp);
 
         if (iterator != null) {
             try {
@@ -336,10 +381,9 @@ public class ApplianceArchiveReader implements ArchiveReader, IteratorListener {
     private int getNumberOfPointsLegacy(String pvName, Instant start, Instant end) throws IOException {
         int interval = Math.max(1,(int)(end.getEpochSecond() - start.getEpochSecond()));
         String countName = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_COUNT).append(interval).append('(').append(pvName).append(')').toString();
-        DataRetrieval dataRetrieval = createDataRetriveal(getDataRetrievalURL());
         java.sql.Timestamp sqlStartTimestamp = TimestampHelper.toSQLTimestamp(start);
         java.sql.Timestamp sqlEndTimestamp = TimestampHelper.toSQLTimestamp(end);
-        GenMsgIterator iterator = dataRetrieval.getDataForPV(countName, sqlStartTimestamp, sqlEndTimestamp);
+        GenMsgIterator iterator = getDataForPV(countName, sqlStartTimestamp, sqlEndTimestamp);
 
         if (iterator != null) {
             try {
@@ -31,4 +31,9 @@ public class ApplianceArchiveReaderFactory implements ArchiveReaderFactory{
         return result;
     }
 
+    /** Readers are cached by URL */
+    @Override
+    public boolean isSharingReaders() {
+        return true;
+    }
 }
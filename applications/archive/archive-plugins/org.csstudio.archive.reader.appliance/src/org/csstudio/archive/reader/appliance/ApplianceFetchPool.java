@@ -0,0 +1,255 @@
+package org.csstudio.archive.reader.appliance;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>ApplianceFetchPool</code> limits the number of concurrent data requests to one appliance and keeps
+ * statistics about the requests.
+ * <p>
+ * Requests to different appliances, and up to the configured parallelism to the same appliance, are sent
+ * concurrently. A permit is only held while the request is sent and the response header is received, not while
+ * the samples are streamed, so iterators that are consumed one after the other cannot block each other.
+ *
+ * @author Kay Kasemir
+ */
+public class ApplianceFetchPool {
+
+    private static final Logger LOGGER = Logger.getLogger(ApplianceFetchPool.class.getName());
+
+    /** Default number of concurrent requests per appliance URL */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private static final Map<String, ApplianceFetchPool> POOLS = new ConcurrentHashMap<>();
+
+    private final String url;
+    private final int parallelism;
+    private final Semaphore permits;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Statistics of one request. Created when the request is sent, updated while the response is read.
+     */
+    public class Request {
+        private final String pvName;
+        private final long start = System.nanoTime();
+        private long latency = -1;
+        private long requestBytes = 0;
+        private int requestMessages = 0;
+        private boolean finished = false;
+
+        private Request(String pvName) {
+            this.pvName = pvName;
+            requests.incrementAndGet();
+            final int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+        }
+
+        /**
+         * Called when the response header was received.
+         */
+        public void responseReceived() {
+            if (latency >= 0) {
+                return;
+            }
+            latency = System.nanoTime() - start;
+            responses.incrementAndGet();
+            latencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+
+        /**
+         * @param count number of bytes received
+         */
+        public void bytesReceived(int count) {
+            requestBytes += count;
+            bytes.addAndGet(count);
+        }
+
+        /**
+         * Called for each decoded message.
+         */
+        public void messageReceived() {
+            ++requestMessages;
+            messages.incrementAndGet();
+        }
+
+        /**
+         * Called when the response has been read or the request was closed. Further calls are ignored.
+         */
+        public void finished() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            active.decrementAndGet();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, String.format("%s: %d bytes, %d samples, latency %.1f ms, total %.1f ms",
+                        pvName, requestBytes, requestMessages, Math.max(0, latency) / 1e6,
+                        (System.nanoTime() - start) / 1e6));
+            }
+        }
+
+        /**
+         * @return number of bytes received for this request
+         */
+        public long getByteCount() {
+            return requestBytes;
+        }
+    }
+
+    /**
+     * Returns the pool for the given appliance URL, creating it if necessary.
+     *
+     * @param url the data retrieval URL
+     * @return the pool for the URL
+     */
+    public static ApplianceFetchPool getPool(String url) {
+        return POOLS.computeIfAbsent(url, u -> new ApplianceFetchPool(u, getConfiguredParallelism()));
+    }
+
+    /**
+     * @return all pools that have been used
+     */
+    public static List<ApplianceFetchPool> getPools() {
+        return new ArrayList<>(POOLS.values());
+    }
+
+    private static int getConfiguredParallelism() {
+        final Activator activator = Activator.getDefault();
+        return activator == null ? DEFAULT_PARALLELISM : activator.getFetchParallelism();
+    }
+
+    /**
+     * Constructs a new pool.
+     *
+     * @param url the data retrieval URL
+     * @param parallelism the maximum number of concurrent requests
+     */
+    ApplianceFetchPool(String url, int parallelism) {
+        this.url = url;
+        this.parallelism = Math.max(1, parallelism);
+        this.permits = new Semaphore(this.parallelism, true);
+    }
+
+    /**
+     * Waits for a permit to send a request.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for request to " + url);
+        }
+    }
+
+    /**
+     * Releases a permit obtained from {@link #acquire()}.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * @param pvName name of the PV as used in the request
+     * @return statistics for a new request
+     */
+    public Request startRequest(String pvName) {
+        return new Request(pvName);
+    }
+
+    /**
+     * @return the data retrieval URL
+     */
+    public String getURL() {
+        return url;
+    }
+
+    /**
+     * @return the maximum number of concurrent requests
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of requests that are currently sent or read
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * @return maximum number of requests that were active at the same time
+     */
+    public int getMaxActiveCount() {
+        return maxActive.get();
+    }
+
+    /**
+     * @return total number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return total number of bytes received
+     */
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    /**
+     * @return total number of messages (samples) received
+     */
+    public long getMessageCount() {
+        return messages.get();
+    }
+
+    /**
+     * @return average time from sending a request to receiving the response header in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        final long count = responses.get();
+        return count > 0 ? latencyNanos.get() / 1e6 / count : 0.0;
+    }
+
+    /**
+     * @return maximum time from sending a request to receiving the response header in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d active (max %d), %d requests, %d bytes, %d samples, latency avg %.1f ms, max %.1f ms",
+                url, getActiveCount(), parallelism, getMaxActiveCount(), getRequestCount(), getByteCount(),
+                getMessageCount(), getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+}
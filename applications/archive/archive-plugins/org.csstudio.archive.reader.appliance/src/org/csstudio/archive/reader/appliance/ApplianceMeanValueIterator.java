@@ -5,7 +5,6 @@ import java.time.Instant;
 import java.util.Iterator;
 
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.epics.archiverappliance.retrieval.client.DataRetrieval;
 import org.epics.archiverappliance.retrieval.client.EpicsMessage;
 import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
 import org.diirt.util.text.NumberFormats;
@@ -75,8 +74,7 @@ public class ApplianceMeanValueIterator extends ApplianceValueIterator {
             throws ArchiverApplianceInvalidTypeException,IOException {
         //to retrieve the display, request the raw data for the end timestamp
         java.sql.Timestamp timestamp = TimestampHelper.toSQLTimestamp(time);
-        DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        GenMsgIterator genMsgIterator = dataRetrieval.getDataForPV(name, timestamp, timestamp);
+        GenMsgIterator genMsgIterator = reader.getDataForPV(name, timestamp, timestamp);
         if (genMsgIterator != null) {
             try {
                 PayloadInfo payloadInfo = null;
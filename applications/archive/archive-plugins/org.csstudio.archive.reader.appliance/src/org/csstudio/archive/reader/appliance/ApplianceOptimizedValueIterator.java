@@ -7,7 +7,6 @@ import java.util.Iterator;
 import org.csstudio.archive.vtype.ArchiveVNumber;
 import org.csstudio.archive.vtype.ArchiveVStatistics;
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.epics.archiverappliance.retrieval.client.DataRetrieval;
 import org.epics.archiverappliance.retrieval.client.EpicsMessage;
 import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
 import org.diirt.util.text.NumberFormats;
@@ -84,8 +83,7 @@ public class ApplianceOptimizedValueIterator extends ApplianceValueIterator {
             throws ArchiverApplianceInvalidTypeException, IOException {
         // to retrieve the display, request the raw data for the end timestamp
         java.sql.Timestamp timestamp = TimestampHelper.toSQLTimestamp(time);
-        DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        GenMsgIterator genMsgIterator = dataRetrieval.getDataForPV(name, timestamp, timestamp);
+        GenMsgIterator genMsgIterator = reader.getDataForPV(name, timestamp, timestamp);
         if (genMsgIterator != null) {
             try {
                 PayloadInfo payloadInfo = null;
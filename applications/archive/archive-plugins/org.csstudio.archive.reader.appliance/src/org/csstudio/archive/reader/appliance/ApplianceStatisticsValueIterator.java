@@ -6,7 +6,6 @@ import java.util.Iterator;
 
 import org.csstudio.archive.vtype.ArchiveVStatistics;
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.epics.archiverappliance.retrieval.client.DataRetrieval;
 import org.epics.archiverappliance.retrieval.client.EpicsMessage;
 import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
 import org.diirt.vtype.VType;
@@ -66,8 +65,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 
         String std = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_STD).append(interval).append('(')
             .append(pvName).append(')').toString();
-        DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        stdStream = dataRetrieval.getDataForPV(std, sqlStartTimestamp, sqlEndTimestamp);
+        stdStream = getDataForPV(std, sqlStartTimestamp, sqlEndTimestamp);
         if (stdStream != null) {
             stdIterator = stdStream.iterator();
         } else {
@@ -76,8 +74,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 
         String min = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_MIN).append(interval).append('(')
             .append(pvName).append(')').toString();
-        dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        minStream = dataRetrieval.getDataForPV(min, sqlStartTimestamp, sqlEndTimestamp);
+        minStream = getDataForPV(min, sqlStartTimestamp, sqlEndTimestamp);
         if (minStream != null) {
             minIterator = minStream.iterator();
         } else {
@@ -86,8 +83,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 
         String max = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_MAX).append(interval).append('(')
             .append(pvName).append(')').toString();
-        dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        maxStream = dataRetrieval.getDataForPV(max, sqlStartTimestamp, sqlEndTimestamp);
+        maxStream = getDataForPV(max, sqlStartTimestamp, sqlEndTimestamp);
         if (maxStream != null) {
             maxIterator = maxStream.iterator();
         } else {
@@ -96,8 +92,7 @@ public class ApplianceStatisticsValueIterator extends ApplianceMeanValueIterator
 
         String count = new StringBuilder().append(ApplianceArchiveReaderConstants.OP_COUNT).append(interval).append('(')
             .append(pvName).append(')').toString();
-        dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        countStream = dataRetrieval.getDataForPV(count, sqlStartTimestamp, sqlEndTimestamp);
+        countStream = getDataForPV(count, sqlStartTimestamp, sqlEndTimestamp);
         if (countStream != null) {
             countIterator = countStream.iterator();
         } else {
@@ -13,7 +13,6 @@ import org.csstudio.archive.vtype.ArchiveVNumber;
 import org.csstudio.archive.vtype.ArchiveVNumberArray;
 import org.csstudio.archive.vtype.ArchiveVString;
 import org.csstudio.archive.vtype.TimestampHelper;
-import org.epics.archiverappliance.retrieval.client.DataRetrieval;
 import org.epics.archiverappliance.retrieval.client.EpicsMessage;
 import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
 import org.diirt.util.array.ArrayByte;
@@ -56,8 +55,6 @@ public abstract class ApplianceValueIterator implements ValueIterator {
 
     protected boolean closed = false;
 
-    private static Object lock = new Object();
-
     /**
      * Constructs a new ApplianceValueIterator.
      *
@@ -95,10 +92,7 @@ public abstract class ApplianceValueIterator implements ValueIterator {
         java.sql.Timestamp sqlStartTimestamp = TimestampHelper.toSQLTimestamp(start);
         java.sql.Timestamp sqlEndTimestamp = TimestampHelper.toSQLTimestamp(end);
 
-        DataRetrieval dataRetrieval = reader.createDataRetriveal(reader.getDataRetrievalURL());
-        synchronized(lock){
-            mainStream = dataRetrieval.getDataForPV(pvName, sqlStartTimestamp, sqlEndTimestamp);
-        }
+        mainStream = getDataForPV(pvName, sqlStartTimestamp, sqlEndTimestamp);
         if (mainStream != null) {
             mainIterator = mainStream.iterator();
         } else {
@@ -106,6 +100,24 @@ public abstract class ApplianceValueIterator implements ValueIterator {
         }
     }
 
+    /**
+     * Requests the data for the given pv name from the reader.
+     *
+     * @param pvName name of the PV as used in the request made to the server
+     * @param start the start of the time window of the data
+     * @param end the end of the time window of the data
+     * @return the messages, or null if no data was found
+     * @throws ArchiverApplianceException if the request failed
+     */
+    protected GenMsgIterator getDataForPV(String pvName, java.sql.Timestamp start, java.sql.Timestamp end)
+            throws ArchiverApplianceException {
+        try {
+            return reader.getDataForPV(pvName, start, end);
+        } catch (IOException e) {
+            throw new ArchiverApplianceException("Could not fetch data.", e);
+        }
+    }
+
     /*
      * (non-Javadoc)
      *
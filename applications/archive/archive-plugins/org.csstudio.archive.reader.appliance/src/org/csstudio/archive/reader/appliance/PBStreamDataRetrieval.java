@@ -0,0 +1,147 @@
+package org.csstudio.archive.reader.appliance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.epics.archiverappliance.retrieval.client.DataRetrieval;
+import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
+
+/**
+ * <code>PBStreamDataRetrieval</code> requests PB/HTTP data from the appliance and decodes the samples while they
+ * are read from the response, see {@link PBStreamMessageIterator}.
+ * <p>
+ * Bytes and latency of each request are recorded in the {@link ApplianceFetchPool} of the URL.
+ *
+ * @author Kay Kasemir
+ */
+public class PBStreamDataRetrieval implements DataRetrieval {
+
+    /** Default timeout in seconds for connecting and for each read of the response */
+    public static final int DEFAULT_TIMEOUT = 30;
+
+    private static final Logger LOGGER = Logger.getLogger(PBStreamDataRetrieval.class.getName());
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final String url;
+    private final ApplianceFetchPool pool;
+
+    /**
+     * Constructs a new data retrieval.
+     *
+     * @param url the data retrieval URL, for example http://server:port/retrieval/data/getData.raw
+     */
+    public PBStreamDataRetrieval(String url) {
+        this.url = url;
+        this.pool = ApplianceFetchPool.getPool(url);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.epics.archiverappliance.retrieval.client.DataRetrieval#getDataForPV(java.lang.String,
+     * java.sql.Timestamp, java.sql.Timestamp)
+     */
+    @Override
+    public GenMsgIterator getDataForPV(String pvName, Timestamp start, Timestamp end) {
+        return getDataForPV(pvName, start, end, false, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.epics.archiverappliance.retrieval.client.DataRetrieval#getDataForPV(java.lang.String,
+     * java.sql.Timestamp, java.sql.Timestamp, boolean)
+     */
+    @Override
+    public GenMsgIterator getDataForPV(String pvName, Timestamp start, Timestamp end, boolean useReducedDataSet) {
+        return getDataForPV(pvName, start, end, useReducedDataSet, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.epics.archiverappliance.retrieval.client.DataRetrieval#getDataForPV(java.lang.String,
+     * java.sql.Timestamp, java.sql.Timestamp, boolean, java.util.HashMap)
+     */
+    @Override
+    public GenMsgIterator getDataForPV(String pvName, Timestamp start, Timestamp end, boolean useReducedDataSet,
+            HashMap<String, String> otherParams) {
+        final String requestURL;
+        try {
+            requestURL = createURL(pvName, start, end, useReducedDataSet, otherParams);
+        } catch (UnsupportedEncodingException e) {
+            LOGGER.log(Level.SEVERE, "Cannot encode request for " + pvName, e);
+            return null;
+        }
+        final ApplianceFetchPool.Request request = pool.startRequest(pvName);
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(requestURL).openConnection();
+            // Don't tie up a fetch pool thread on a hung appliance
+            final int timeout = (int) TimeUnit.SECONDS.toMillis(getConfiguredTimeout());
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.connect();
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                LOGGER.log(Level.FINE, "No data for " + pvName + " from " + requestURL + ": "
+                        + connection.getResponseCode());
+                connection.disconnect();
+                request.finished();
+                return null;
+            }
+            final InputStream input = connection.getInputStream();
+            try {
+                return new PBStreamMessageIterator(input, request);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "No data for " + pvName + " from " + requestURL, e);
+                input.close();
+                request.finished();
+                return null;
+            }
+        } catch (Exception e) {
+            request.finished();
+            LOGGER.log(Level.WARNING, "Cannot fetch data from " + requestURL, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the request URL
+     * @throws UnsupportedEncodingException on error
+     */
+    private String createURL(String pvName, Timestamp start, Timestamp end, boolean useReducedDataSet,
+            Map<String, String> otherParams) throws UnsupportedEncodingException {
+        final StringBuilder buf = new StringBuilder(url);
+        buf.append(url.contains("?") ? "&pv=" : "?pv=").append(URLEncoder.encode(pvName, "UTF-8"));
+        buf.append("&from=").append(URLEncoder.encode(TIME_FORMAT.format(start.toInstant()), "UTF-8"));
+        buf.append("&to=").append(URLEncoder.encode(TIME_FORMAT.format(end.toInstant()), "UTF-8"));
+        if (useReducedDataSet) {
+            buf.append("&usereduced=true");
+        }
+        if (otherParams != null) {
+            for (Map.Entry<String, String> param : otherParams.entrySet()) {
+                buf.append('&').append(URLEncoder.encode(param.getKey(), "UTF-8"))
+                   .append('=').append(URLEncoder.encode(param.getValue(), "UTF-8"));
+            }
+        }
+        return buf.toString();
+    }
+
+    private static int getConfiguredTimeout() {
+        final Activator activator = Activator.getDefault();
+        return activator == null ? DEFAULT_TIMEOUT : activator.getFetchTimeout();
+    }
+}
@@ -0,0 +1,297 @@
+package org.csstudio.archive.reader.appliance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.epics.archiverappliance.retrieval.client.EpicsMessage;
+import org.epics.archiverappliance.retrieval.client.GenMsgIterator;
+import org.epics.archiverappliance.retrieval.client.InfoChangeHandler;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.GeneratedMessage;
+
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.PayloadInfo;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarByte;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarDouble;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarEnum;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarFloat;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarInt;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarShort;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.ScalarString;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.V4GenericBytes;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorChar;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorDouble;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorEnum;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorFloat;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorInt;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorShort;
+import edu.stanford.slac.archiverappliance.PB.EPICSEvent.VectorString;
+
+/**
+ * <code>PBStreamMessageIterator</code> decodes the PB/HTTP response of the appliance while it is read.
+ * <p>
+ * The response consists of lines with escaped protocol buffer messages. Each chunk starts with a
+ * {@link PayloadInfo} line, followed by one line per sample, and chunks are separated by an empty line. Only one
+ * line is held in memory at a time; the line buffer grows to the size of the largest sample.
+ *
+ * @author Kay Kasemir
+ */
+public class PBStreamMessageIterator implements GenMsgIterator {
+
+    private static final byte ESCAPE_CHAR = 0x1B;
+    private static final byte ESCAPE_ESCAPE_CHAR = 0x01;
+    private static final byte NEWLINE_CHAR = 0x0A;
+    private static final byte NEWLINE_ESCAPE_CHAR = 0x02;
+    private static final byte CARRIAGERETURN_CHAR = 0x0D;
+    private static final byte CARRIAGERETURN_ESCAPE_CHAR = 0x03;
+
+    /** Maximum number of empty chunks that are skipped while looking for the next sample */
+    private static final int MAX_CHUNKS = 1000;
+
+    private final InputStream input;
+    private final ApplianceFetchPool.Request request;
+    private final byte[] inputBuffer = new byte[64 * 1024];
+    private int inputPosition = 0;
+    private int inputLength = 0;
+
+    private byte[] line = new byte[1024];
+    private int lineLength = 0;
+
+    private PayloadInfo info;
+    private InfoChangeHandler infoChangeHandler;
+    private EpicsMessage nextMessage;
+    private boolean closed = false;
+
+    /**
+     * Constructs a new iterator and reads the initial {@link PayloadInfo}.
+     *
+     * @param input the response stream, will be closed when the iterator is closed
+     * @param request statistics for the request, or null
+     * @throws IOException if the response could not be read or is empty
+     */
+    public PBStreamMessageIterator(InputStream input, ApplianceFetchPool.Request request) throws IOException {
+        this.input = input;
+        this.request = request;
+        if (readLine() <= 0) {
+            close();
+            throw new IOException("No data");
+        }
+        info = PayloadInfo.parseFrom(CodedInputStream.newInstance(line, 0, lineLength));
+        if (request != null) {
+            request.responseReceived();
+        }
+        readNextMessage();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.epics.archiverappliance.retrieval.client.GenMsgIterator#getPayLoadInfo()
+     */
+    @Override
+    public PayloadInfo getPayLoadInfo() {
+        return info;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.epics.archiverappliance.retrieval.client.GenMsgIterator#onInfoChange(org.epics.archiverappliance.
+     * retrieval.client.InfoChangeHandler)
+     */
+    @Override
+    public void onInfoChange(InfoChangeHandler handler) {
+        this.infoChangeHandler = handler;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public Iterator<EpicsMessage> iterator() {
+        return new Iterator<EpicsMessage>() {
+            @Override
+            public boolean hasNext() {
+                return nextMessage != null;
+            }
+
+            @Override
+            public EpicsMessage next() {
+                final EpicsMessage message = nextMessage;
+                if (message == null) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    readNextMessage();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return message;
+            }
+        };
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        nextMessage = null;
+        if (request != null) {
+            request.finished();
+        }
+        input.close();
+    }
+
+    /**
+     * Reads and decodes the next sample, handling chunk boundaries.
+     * Sets <code>nextMessage</code> to null and closes the stream at the end of the response.
+     *
+     * @throws IOException on error
+     */
+    private void readNextMessage() throws IOException {
+        nextMessage = null;
+        for (int chunk = 0; chunk < MAX_CHUNKS; ++chunk) {
+            if (closed) {
+                return;
+            }
+            int length = readLine();
+            if (length < 0) {
+                close();
+                return;
+            }
+            if (length > 0) {
+                nextMessage = new EpicsMessage(parseMessage(), info);
+                if (request != null) {
+                    request.messageReceived();
+                }
+                return;
+            }
+            // Empty line: Next line is the PayloadInfo of a new chunk
+            length = readLine();
+            if (length <= 0) {
+                close();
+                return;
+            }
+            info = PayloadInfo.parseFrom(CodedInputStream.newInstance(line, 0, lineLength));
+            if (infoChangeHandler != null) {
+                infoChangeHandler.handleInfoChange(info);
+            }
+        }
+        throw new IOException("Unable to locate next sample in " + MAX_CHUNKS + " chunks");
+    }
+
+    /**
+     * @return the sample in the current line, decoded for the current payload type
+     * @throws IOException on error
+     */
+    private GeneratedMessage parseMessage() throws IOException {
+        final CodedInputStream in = CodedInputStream.newInstance(line, 0, lineLength);
+        switch (info.getType()) {
+            case SCALAR_BYTE:
+                return ScalarByte.parseFrom(in);
+            case SCALAR_DOUBLE:
+                return ScalarDouble.parseFrom(in);
+            case SCALAR_ENUM:
+                return ScalarEnum.parseFrom(in);
+            case SCALAR_FLOAT:
+                return ScalarFloat.parseFrom(in);
+            case SCALAR_INT:
+                return ScalarInt.parseFrom(in);
+            case SCALAR_SHORT:
+                return ScalarShort.parseFrom(in);
+            case SCALAR_STRING:
+                return ScalarString.parseFrom(in);
+            case V4_GENERIC_BYTES:
+                return V4GenericBytes.parseFrom(in);
+            case WAVEFORM_BYTE:
+                return VectorChar.parseFrom(in);
+            case WAVEFORM_DOUBLE:
+                return VectorDouble.parseFrom(in);
+            case WAVEFORM_ENUM:
+                return VectorEnum.parseFrom(in);
+            case WAVEFORM_FLOAT:
+                return VectorFloat.parseFrom(in);
+            case WAVEFORM_INT:
+                return VectorInt.parseFrom(in);
+            case WAVEFORM_SHORT:
+                return VectorShort.parseFrom(in);
+            case WAVEFORM_STRING:
+                return VectorString.parseFrom(in);
+            default:
+                throw new IOException("Unsupported payload type " + info.getType());
+        }
+    }
+
+    /**
+     * Reads the next line into <code>line</code>, removing the escape sequences.
+     *
+     * @return number of bytes in the line, 0 for an empty line, -1 at the end of the stream
+     * @throws IOException on error
+     */
+    private int readLine() throws IOException {
+        lineLength = 0;
+        int b;
+        while ((b = read()) >= 0) {
+            if (b == NEWLINE_CHAR) {
+                return lineLength;
+            }
+            if (b == ESCAPE_CHAR) {
+                b = read();
+                if (b < 0) {
+                    throw new IOException("Escape character terminated early");
+                }
+                switch (b) {
+                    case ESCAPE_ESCAPE_CHAR:
+                        b = ESCAPE_CHAR;
+                        break;
+                    case NEWLINE_ESCAPE_CHAR:
+                        b = NEWLINE_CHAR;
+                        break;
+                    case CARRIAGERETURN_ESCAPE_CHAR:
+                        b = CARRIAGERETURN_CHAR;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (lineLength >= line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = (byte) b;
+        }
+        // Last line may lack the newline
+        return lineLength > 0 ? lineLength : -1;
+    }
+
+    /**
+     * @return next byte of the response or -1 at the end of the stream
+     * @throws IOException on error
+     */
+    private int read() throws IOException {
+        if (inputPosition >= inputLength) {
+            inputLength = input.read(inputBuffer);
+            inputPosition = 0;
+            if (inputLength <= 0) {
+                inputLength = 0;
+                return -1;
+            }
+            if (request != null) {
+                request.bytesReceived(inputLength);
+            }
+        }
+        return inputBuffer[inputPosition++] & 0xFF;
+    }
+}
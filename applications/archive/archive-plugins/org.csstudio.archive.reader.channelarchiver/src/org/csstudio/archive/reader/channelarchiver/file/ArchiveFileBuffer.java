@@ -17,25 +17,63 @@ import java.time.Instant;
 /**
  * Implements ByteBuffer-like relative get methods for getting binary data
  * from a file. Created for use with ArchiveFileReader and associated classes.
+ *
+ * <p>By default, the file is read via a heap buffer.
+ * In memory-mapped mode, the buffer reads from a {@link MappedArchiveFile}
+ * that is shared with all other memory-mapped buffers for the same file.
+ * Each buffer is still meant to be used by only one thread at a time.
+ *
  * @author Amanda Carpenter
  *
  */
 public class ArchiveFileBuffer implements AutoCloseable
 {
     // XXX: what size? Bigger means less fetching, but too big means memory runs out;
-    private final ByteBuffer buffer = ByteBuffer.allocate(65536);
+    private final ByteBuffer buffer;
+    private final boolean memory_mapped;
     private FileChannel fileChannel;
     private File file = null;
+    private long file_modified, file_size;
+
+    /** Memory-mapped file, or <code>null</code> */
+    private MappedArchiveFile mapped = null;
+
+    /** Read position in memory-mapped mode */
+    private long position = 0;
 
     public ArchiveFileBuffer()
     {
+        this(false);
+    }
+
+    /** @param memory_mapped Use memory-mapped file access? */
+    public ArchiveFileBuffer(final boolean memory_mapped)
+    {
+        this.memory_mapped = memory_mapped;
+        buffer = memory_mapped ? null : ByteBuffer.allocate(65536);
     }
 
     public ArchiveFileBuffer(final File file) throws IOException
     {
+        this(file, false);
+    }
+
+    /** @param file File to read
+     *  @param memory_mapped Use memory-mapped file access?
+     *  @throws IOException on error
+     */
+    public ArchiveFileBuffer(final File file, final boolean memory_mapped) throws IOException
+    {
+        this(memory_mapped);
         setFile(file);
     }
 
+    /** @return Is the buffer memory-mapped? */
+    public boolean isMemoryMapped()
+    {
+        return memory_mapped;
+    }
+
     /** Set file
      *  @param file
      *  @throws IOException
@@ -44,11 +82,25 @@ public class ArchiveFileBuffer implements AutoCloseable
     {
         if (! file.equals(this.file))
         {
-            this.file = file;
             close();
-            fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.file = file;
+            if (memory_mapped)
+            {
+                mapped = MappedArchiveFile.acquire(file);
+                file_modified = mapped.getLastModified();
+                file_size = mapped.size();
+            }
+            else
+            {
+                file_modified = file.lastModified();
+                fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                file_size = fileChannel.size();
+            }
         }
-        buffer.position(0).limit(0);
+        if (memory_mapped)
+            position = 0;
+        else
+            buffer.position(0).limit(0);
     }
 
     public File getFile()
@@ -56,6 +108,18 @@ public class ArchiveFileBuffer implements AutoCloseable
         return file;
     }
 
+    /** @return Modification time of the file when it was opened */
+    long getFileModified()
+    {
+        return file_modified;
+    }
+
+    /** @return Size of the file when it was opened */
+    long getFileSize()
+    {
+        return file_size;
+    }
+
     public void prepareGet(int numBytes) throws IOException
     {
         if (buffer.remaining() < numBytes)
@@ -69,36 +133,64 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     public void get(byte dst []) throws IOException
     {
+        if (mapped != null)
+        {
+            mapped.get(position, dst);
+            position += dst.length;
+            return;
+        }
         prepareGet(dst.length);
         buffer.get(dst);
     }
 
     public long getUnsignedInt() throws IOException
     {
+        if (mapped != null)
+            return Integer.toUnsignedLong(getInt());
         prepareGet(4);
         return Integer.toUnsignedLong(buffer.getInt());
     }
 
     public short getShort() throws IOException
     {
+        if (mapped != null)
+        {
+            final short value = mapped.getShort(position);
+            position += 2;
+            return value;
+        }
         prepareGet(2);
         return buffer.getShort();
     }
 
     public float getFloat() throws IOException
     {
+        if (mapped != null)
+        {
+            final float value = mapped.getFloat(position);
+            position += 4;
+            return value;
+        }
         prepareGet(4);
         return buffer.getFloat();
     }
 
     public double getDouble() throws IOException
     {
+        if (mapped != null)
+        {
+            final double value = mapped.getDouble(position);
+            position += 8;
+            return value;
+        }
         prepareGet(8);
         return buffer.getDouble();
     }
 
     public byte get() throws IOException
     {
+        if (mapped != null)
+            return mapped.get(position++);
         if (!buffer.hasRemaining())
         {
             buffer.clear();
@@ -116,6 +208,11 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     public void skip(int numBytes) throws IOException
     {
+        if (mapped != null)
+        {
+            position += numBytes;
+            return;
+        }
         int numAlready = buffer.remaining();
         while (numBytes > numAlready)
         {
@@ -130,7 +227,13 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     public void offset(long offset) throws IOException
     {
-         if (offset < 0 || offset > fileChannel.size())
+        if (mapped != null)
+        {
+            if (offset >= 0  &&  offset <= mapped.size())
+                position = offset;
+            return;
+        }
+        if (offset < 0 || offset > fileChannel.size())
         {
             //throw new RuntimeException("Offset is invalid.") ?
             return;
@@ -154,17 +257,27 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     public int getInt() throws IOException
     {
+        if (mapped != null)
+        {
+            final int value = mapped.getInt(position);
+            position += 4;
+            return value;
+        }
         prepareGet(4);
         return buffer.getInt();
     }
 
     long offset() throws IOException
     {
+        if (mapped != null)
+            return position;
         return fileChannel.position() - buffer.limit() + buffer.position();
     }
 
     public int remaining()
     {
+        if (mapped != null)
+            return (int) Math.min(Integer.MAX_VALUE, mapped.size() - position);
         return buffer.remaining();
     }
 
@@ -176,11 +289,19 @@ public class ArchiveFileBuffer implements AutoCloseable
             fileChannel.close();
             fileChannel = null;
         }
+        if (mapped != null)
+        {
+            mapped.release();
+            mapped = null;
+        }
+        file = null;
     }
 
     @Override
     public String toString()
     {
+        if (mapped != null)
+            return String.format("mapped buffer@offset=%x(%d)", position, position);
         long offset = -1;
         try
         {
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Cache of decoded {@link RTreeNode}s and {@link DataHeader}s
+ *
+ *  <p>Bounded, least-recently-used cache that is shared
+ *  by all readers.
+ *  Entries are identified by file, offset and the modification
+ *  time and size of the file, so entries of a file that has since
+ *  been updated are no longer used and eventually drop out of the cache.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+class ArchiveFileCache
+{
+    /** Shared cache instance */
+    private static volatile ArchiveFileCache instance;
+
+    /** Key for cached items */
+    private static class Key
+    {
+        final File file;
+        final long modified, size, offset;
+        final int type;
+
+        Key(final ArchiveFileBuffer buffer, final long offset, final int type)
+        {
+            this.file = buffer.getFile();
+            this.modified = buffer.getFileModified();
+            this.size = buffer.getFileSize();
+            this.offset = offset;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = file.hashCode();
+            result = 31 * result + Long.hashCode(offset);
+            result = 31 * result + Long.hashCode(modified);
+            return 31 * result + type;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (! (obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return offset == other.offset  &&
+                   type == other.type      &&
+                   modified == other.modified  &&
+                   size == other.size  &&
+                   file.equals(other.file);
+        }
+    }
+
+    /** Key type for data headers. RTree nodes use their 'M' as the key type */
+    private static final int DATA_HEADER = -1;
+
+    final private Map<Key, Object> cache;
+    final private AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    /** @return Shared cache, sized per preferences */
+    static ArchiveFileCache getInstance()
+    {
+        ArchiveFileCache result = instance;
+        if (result == null)
+        {
+            synchronized (ArchiveFileCache.class)
+            {
+                result = instance;
+                if (result == null)
+                    instance = result = new ArchiveFileCache(Preferences.getCacheSize());
+            }
+        }
+        return result;
+    }
+
+    /** @param capacity Maximum number of cached items */
+    ArchiveFileCache(final int capacity)
+    {
+        cache = new LinkedHashMap<Key, Object>(Math.min(capacity, 1024), 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Object> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** @param key Key
+     *  @return Cached item or <code>null</code>
+     */
+    private Object get(final Key key)
+    {
+        final Object item;
+        synchronized (cache)
+        {
+            item = cache.get(key);
+        }
+        if (item == null)
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        return item;
+    }
+
+    private void put(final Key key, final Object item)
+    {
+        synchronized (cache)
+        {
+            cache.put(key, item);
+        }
+    }
+
+    /** Get RTree node
+     *  @param buffer Buffer for the index file
+     *  @param offset Offset of the node
+     *  @param M Number of records per node
+     *  @return {@link RTreeNode}, read from the buffer unless cached
+     *  @throws Exception on error
+     */
+    RTreeNode getRTreeNode(final ArchiveFileBuffer buffer, final long offset, final int M) throws Exception
+    {
+        final Key key = new Key(buffer, offset, M);
+        RTreeNode node = (RTreeNode) get(key);
+        if (node == null)
+        {
+            node = new RTreeNode(buffer, offset, M);
+            put(key, node);
+        }
+        return node;
+    }
+
+    /** Get data header at the current buffer offset
+     *
+     *  <p>Like {@link DataHeader#readDataHeader(ArchiveFileBuffer, CtrlInfoReader)},
+     *  leaves the buffer positioned on the first sample after the header.
+     *
+     *  @param buffer Buffer for the data file, positioned on the data header
+     *  @param info {@link CtrlInfoReader} to use if it matches the header
+     *  @return {@link DataHeader}, read from the buffer unless cached
+     *  @throws IOException on error
+     */
+    DataHeader getDataHeader(final ArchiveFileBuffer buffer, final CtrlInfoReader info) throws IOException
+    {
+        final long offset = buffer.offset();
+        final Key key = new Key(buffer, offset, DATA_HEADER);
+        DataHeader header = (DataHeader) get(key);
+        if (header == null)
+        {
+            header = DataHeader.readDataHeader(buffer, info);
+            put(key, header);
+        }
+        else
+            buffer.offset(offset + DataHeader.SIZE);
+        return header;
+    }
+
+    /** @return Number of cached items */
+    int size()
+    {
+        synchronized (cache)
+        {
+            return cache.size();
+        }
+    }
+
+    /** Remove all cached items */
+    void clear()
+    {
+        synchronized (cache)
+        {
+            cache.clear();
+        }
+    }
+
+    /** @return Number of lookups that found a cached item */
+    long getHits()
+    {
+        return hits.get();
+    }
+
+    /** @return Number of lookups that had to read the file */
+    long getMisses()
+    {
+        return misses.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ArchiveFileCache: " + size() + " items, " + getHits() + " hits, " + getMisses() + " misses";
+    }
+}
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -25,11 +26,22 @@ import org.csstudio.archive.reader.channelarchiver.file.RTreeNode.RTreeNodeWithI
 /**
  * Helper class for reading ChannelArchiver index files (both master index files
  * and sub-archive index files).
+ *
+ * <p>Lookups are thread-safe.
+ * Each concurrent lookup uses its own {@link ArchiveFileBuffer} from a pool,
+ * and decoded RTree nodes are shared via the {@link ArchiveFileCache}.
  * @author Amanda Carpenter
  */
 public class ArchiveFileIndexReader implements AutoCloseable
 {
-    private final ArchiveFileBuffer buffer;
+    private final File indexFile;
+    private final boolean memory_mapped;
+    private final ArchiveFileCache cache = ArchiveFileCache.getInstance();
+
+    /** Buffers that are not in use by a lookup. Synchronize on access */
+    private final Deque<ArchiveFileBuffer> buffers = new ArrayDeque<>();
+    private boolean closed = false;
+
     private final File indexParent;
     private final HashMap<String, TreeAnchor> anchors;
 
@@ -42,7 +54,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
         public final long root;
         public final int numRecords;
 
-        public TreeAnchor(final String name, final long offset) throws IOException
+        public TreeAnchor(final ArchiveFileBuffer buffer, final String name, final long offset) throws IOException
         {
             this.name = name;
             buffer.offset(offset);
@@ -59,13 +71,62 @@ public class ArchiveFileIndexReader implements AutoCloseable
 
     public ArchiveFileIndexReader(final File indexFile) throws IOException
     {
-        buffer = new ArchiveFileBuffer(indexFile);
+        this(indexFile, Preferences.isMemoryMapped());
+    }
+
+    /** @param indexFile Index file
+     *  @param memory_mapped Use memory-mapped file access?
+     *  @throws IOException on error
+     */
+    public ArchiveFileIndexReader(final File indexFile, final boolean memory_mapped) throws IOException
+    {
+        this.indexFile = indexFile;
+        this.memory_mapped = memory_mapped;
         indexParent = indexFile.getParentFile();
-        anchors = getAnchors();
-        logger.fine(() -> "Opened " + indexFile + ", " + anchors.size() + " channels");
+        final ArchiveFileBuffer buffer = borrowBuffer();
+        try
+        {
+            anchors = getAnchors(buffer);
+        }
+        catch (IOException ex)
+        {
+            buffer.close();
+            throw ex;
+        }
+        releaseBuffer(buffer);
+        logger.fine(() -> "Opened " + indexFile + ", " + anchors.size() + " channels" +
+                          (memory_mapped ? " (memory mapped)" : ""));
+    }
+
+    /** @return Buffer for the index file, must be released */
+    private ArchiveFileBuffer borrowBuffer() throws IOException
+    {
+        synchronized (buffers)
+        {
+            if (closed)
+                throw new IOException("Index " + indexFile + " has been closed");
+            final ArchiveFileBuffer buffer = buffers.poll();
+            if (buffer != null)
+                return buffer;
+        }
+        return new ArchiveFileBuffer(indexFile, memory_mapped);
+    }
+
+    /** @param buffer Buffer obtained from {@link #borrowBuffer()} */
+    private void releaseBuffer(final ArchiveFileBuffer buffer) throws IOException
+    {
+        synchronized (buffers)
+        {
+            if (! closed)
+            {
+                buffers.push(buffer);
+                return;
+            }
+        }
+        buffer.close();
     }
 
-    private Queue<Long> readHashTable() throws IOException
+    private Queue<Long> readHashTable(final ArchiveFileBuffer buffer) throws IOException
     {
         buffer.offset(4);
         long start = buffer.getUnsignedInt();
@@ -82,7 +143,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
         return ret;
     }
 
-    private HashMap<String, TreeAnchor> getAnchors() throws IOException
+    private HashMap<String, TreeAnchor> getAnchors(final ArchiveFileBuffer buffer) throws IOException
     {
         //Hash table entries are stored as follows:
         // long next - offset of next hash entry on the table
@@ -92,7 +153,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
         // char name [name_name] - channel name (without '/0' terminator)
         // char id_text [id_text_len] - id text (without '/0' terminator)
         HashMap<String, TreeAnchor> ret = new HashMap<>();
-        Queue<Long> offsets = readHashTable();
+        Queue<Long> offsets = readHashTable(buffer);
         while (!offsets.isEmpty())
         {
             long offset = offsets.poll();
@@ -107,7 +168,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
             byte name_buf [] = new byte [nameLen];
             buffer.get(name_buf);
             final String name = new String(name_buf);
-            ret.put(name, new TreeAnchor(name, anchor_offset));
+            ret.put(name, new TreeAnchor(buffer, name, anchor_offset));
             if (offset != 0)
                 offsets.add(offset);
         }
@@ -133,7 +194,21 @@ public class ArchiveFileIndexReader implements AutoCloseable
         if (anchor == null)
             throw new UnknownChannelException(channelName);
 
-        final RTreeNodeWithIndex node_and_index = searchRTreeNodes(anchor.root, anchor.numRecords, startTime);
+        final ArchiveFileBuffer buffer = borrowBuffer();
+        try
+        {
+            return getEntries(buffer, anchor, startTime, endTime);
+        }
+        finally
+        {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private List<DataFileEntry> getEntries(final ArchiveFileBuffer buffer, final TreeAnchor anchor,
+                                           final Instant startTime, final Instant endTime) throws Exception
+    {
+        final RTreeNodeWithIndex node_and_index = searchRTreeNodes(buffer, anchor.root, anchor.numRecords, startTime);
         if (node_and_index == null)
             return Collections.emptyList();
 
@@ -146,7 +221,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
             if (! node.records[index].isEmpty())
             {
                 // A record might point to a chain of data blocks
-                final List<DataFileEntry>  sub_entries = readDatablocks(node.records[index].child);
+                final List<DataFileEntry>  sub_entries = readDatablocks(buffer, node.records[index].child);
                 // Use only the first data block, not the 'shadowed' data blocks below
                 entries.add(sub_entries.get(0));
             }
@@ -160,11 +235,11 @@ public class ArchiveFileIndexReader implements AutoCloseable
                 {
                     if (node.parent == 0)
                         return entries;
-                    final RTreeNode parent = new RTreeNode(buffer, node.parent, node.getM());
+                    final RTreeNode parent = cache.getRTreeNode(buffer, node.parent, node.getM());
                     index = parent.findRecordForChild(node.offset) + 1;
                     if (index < node.getM()  &&   ! parent.records[index].isEmpty())
                     {   // From the _next_ parent record, descent into first child
-                        node = new RTreeNode(buffer, parent.records[index].child, node.getM());
+                        node = cache.getRTreeNode(buffer, parent.records[index].child, node.getM());
                         index = 0;
                         break;
                     }
@@ -173,7 +248,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
                 }
                 // Keep descending via leftmost child to leaf
                 while (! node.isLeaf)
-                    node = new RTreeNode(buffer, node.records[index].child, node.getM());
+                    node = cache.getRTreeNode(buffer, node.records[index].child, node.getM());
             }
         }
 
@@ -194,7 +269,20 @@ public class ArchiveFileIndexReader implements AutoCloseable
      */
     public RTreeNodeWithIndex searchRTreeNodes(final long root, final int numRecords, final Instant time) throws Exception
     {
-        RTreeNode node = new RTreeNode(buffer, root, numRecords);
+        final ArchiveFileBuffer buffer = borrowBuffer();
+        try
+        {
+            return searchRTreeNodes(buffer, root, numRecords, time);
+        }
+        finally
+        {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private RTreeNodeWithIndex searchRTreeNodes(final ArchiveFileBuffer buffer, final long root, final int numRecords, final Instant time) throws Exception
+    {
+        RTreeNode node = cache.getRTreeNode(buffer, root, numRecords);
         while (true)
         {
             // System.out.println(node);
@@ -214,7 +302,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
                 i = 0;
             if (node.isLeaf)
                 return new RTreeNodeWithIndex(node, i);
-            node = new RTreeNode(buffer, child, numRecords);
+            node = cache.getRTreeNode(buffer, child, numRecords);
         }
     }
 
@@ -228,7 +316,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
      *             all datablocks associated with the RTree record which contains the given offset
      * @throws IOException
      */
-    private List<DataFileEntry> readDatablocks(long offset) throws IOException
+    private List<DataFileEntry> readDatablocks(final ArchiveFileBuffer buffer, long offset) throws IOException
     {
         //Datablocks (RTree entries) are stored as follows:
         // long next_ID - offset of next datablock
@@ -253,7 +341,13 @@ public class ArchiveFileIndexReader implements AutoCloseable
     @Override
     public void close() throws IOException
     {
-        buffer.close();
+        synchronized (buffers)
+        {
+            closed = true;
+            for (ArchiveFileBuffer buffer : buffers)
+                buffer.close();
+            buffers.clear();
+        }
     }
 
     public java.util.Set<String> getChannelNames()
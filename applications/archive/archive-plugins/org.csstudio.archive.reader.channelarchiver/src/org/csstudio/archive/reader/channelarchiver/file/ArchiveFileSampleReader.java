@@ -44,7 +44,9 @@ public class ArchiveFileSampleReader implements ValueIterator
      */
     private final Queue<DataFileEntry> entries;
 
-    private final ArchiveFileBuffer buffer = new ArchiveFileBuffer();
+    private final ArchiveFileBuffer buffer;
+
+    private final ArchiveFileCache cache = ArchiveFileCache.getInstance();
 
     private DataHeader header;
 
@@ -56,8 +58,21 @@ public class ArchiveFileSampleReader implements ValueIterator
 
     public ArchiveFileSampleReader(final Instant iteratorStart, final Instant iteratorStop,
                                    final List<DataFileEntry> entries) throws Exception
+    {
+        this(iteratorStart, iteratorStop, entries, Preferences.isMemoryMapped());
+    }
+
+    /** @param iteratorStart Start time
+     *  @param iteratorStop End time
+     *  @param entries Data file entries to read
+     *  @param memory_mapped Use memory-mapped file access?
+     *  @throws Exception on error
+     */
+    public ArchiveFileSampleReader(final Instant iteratorStart, final Instant iteratorStop,
+                                   final List<DataFileEntry> entries, final boolean memory_mapped) throws Exception
     {
         this.iteratorStop = iteratorStop;
+        buffer = new ArchiveFileBuffer(memory_mapped);
 
         this.entries = new ArrayDeque<>(entries);
 
@@ -71,7 +86,7 @@ public class ArchiveFileSampleReader implements ValueIterator
             final DataFileEntry entry = this.entries.remove();
             buffer.setFile(entry.file);
             buffer.offset(entry.offset);
-            header = DataHeader.readDataHeader(buffer, new CtrlInfoReader(0));
+            header = cache.getDataHeader(buffer, new CtrlInfoReader(0));
             samples_left = binarySearchSamples(iteratorStart);
         }
     }
@@ -145,7 +160,7 @@ public class ArchiveFileSampleReader implements ValueIterator
             final DataFileEntry entry = this.entries.remove();
             buffer.setFile(entry.file);
             buffer.offset(entry.offset);
-            header = DataHeader.readDataHeader(buffer, header.info);
+            header = cache.getDataHeader(buffer, header.info);
             // Start on the first sample, no need to search for 'start' time
             samples_left = header.numSamples;
             // Is new data block empty?
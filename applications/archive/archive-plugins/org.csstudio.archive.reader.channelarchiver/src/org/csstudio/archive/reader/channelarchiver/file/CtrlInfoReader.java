@@ -24,8 +24,9 @@ import org.diirt.vtype.ValueFactory;
 public class CtrlInfoReader
 {
     private final long offset;
-    private Display display; //display, for number/display types
-    private List<String> labels; //labels, for enum types
+    // Volatile since data headers and their info are shared via the ArchiveFileCache
+    private volatile Display display; //display, for number/display types
+    private volatile List<String> labels; //labels, for enum types
 
     public CtrlInfoReader(long offset)
     {
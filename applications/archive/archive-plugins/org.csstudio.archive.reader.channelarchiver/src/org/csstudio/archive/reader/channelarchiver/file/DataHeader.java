@@ -21,6 +21,9 @@ import org.csstudio.archive.reader.channelarchiver.file.ArchiveFileSampleReader.
  */
 class DataHeader
 {
+    /** Size of the header in the data file */
+    public static final int SIZE = 152;
+
     public final File file;
     public final long offset;
     public final File nextFile;
@@ -88,7 +91,7 @@ class DataHeader
         long numSamples = buffer.getUnsignedInt();
         long ctrlInfoOffset = buffer.getUnsignedInt();
         // compute amount of data in this data file entry: (bytes allocated) - (bytes free) - (bytes in header)
-        long buffDataSize = buffer.getUnsignedInt() - buffer.getUnsignedInt() - 152;
+        long buffDataSize = buffer.getUnsignedInt() - buffer.getUnsignedInt() - SIZE;
         short dbrTypeCode = buffer.getShort();
         short dbrCount = buffer.getShort();
 
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Memory-mapped, read-only view of an index or data file
+ *
+ *  <p>Files can be larger than the 2GB that a single
+ *  {@link ByteBuffer} can address, so the file is mapped
+ *  in regions which are created on first access.
+ *  Each region overlaps the next one by {@link #OVERLAP} bytes,
+ *  so any primitive value starting in a region
+ *  can be read from that region.
+ *
+ *  <p>Only absolute 'get' calls are used on the mapped buffers,
+ *  so one mapping can be shared by any number of
+ *  {@link ArchiveFileBuffer}s in different threads.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+class MappedArchiveFile
+{
+    /** Default size of a mapped region */
+    final static int REGION_SIZE = 256*1024*1024;
+
+    /** Overlap of regions */
+    final static int OVERLAP = 64*1024;
+
+    /** Mappings in use, by file */
+    private static final Map<File, MappedArchiveFile> mappings = new HashMap<>();
+
+    final private File file;
+    final private long size;
+    final private long last_modified;
+    final private int region_size;
+    final private AtomicReferenceArray<ByteBuffer> regions;
+    private int references = 0;
+
+    /** Get shared mapping of a file
+     *
+     *  <p>Returns existing mapping of the file unless the file has since
+     *  been modified, in which case a new mapping is created.
+     *  Must be {@link #release()}d when no longer used.
+     *
+     *  @param file File to map
+     *  @return {@link MappedArchiveFile}
+     *  @throws IOException on error
+     */
+    static MappedArchiveFile acquire(final File file) throws IOException
+    {
+        synchronized (mappings)
+        {
+            MappedArchiveFile mapped = mappings.get(file);
+            if (mapped == null  ||
+                mapped.size != file.length()  ||
+                mapped.last_modified != file.lastModified())
+            {
+                mapped = new MappedArchiveFile(file, REGION_SIZE);
+                mappings.put(file, mapped);
+            }
+            ++mapped.references;
+            return mapped;
+        }
+    }
+
+    /** Release a mapping obtained via {@link #acquire(File)} */
+    void release()
+    {
+        synchronized (mappings)
+        {
+            if (--references <= 0  &&  mappings.get(file) == this)
+                mappings.remove(file);
+        }
+        // Mapped regions are unmapped once garbage collected
+    }
+
+    /** @param file File to map
+     *  @param region_size Size of mapped regions
+     *  @throws IOException on error
+     */
+    MappedArchiveFile(final File file, final int region_size) throws IOException
+    {
+        this.file = file;
+        this.last_modified = file.lastModified();
+        this.region_size = region_size;
+        try
+        (
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        )
+        {
+            size = channel.size();
+        }
+        regions = new AtomicReferenceArray<>((int) ((size + region_size - 1) / region_size));
+    }
+
+    /** @return Mapped file */
+    File getFile()
+    {
+        return file;
+    }
+
+    /** @return Size of the file in bytes */
+    long size()
+    {
+        return size;
+    }
+
+    /** @return Modification time of the file when mapped */
+    long getLastModified()
+    {
+        return last_modified;
+    }
+
+    /** @param offset Offset in file
+     *  @param num_bytes Number of bytes to read at offset, at most {@link #OVERLAP}
+     *  @return Region that contains the requested bytes
+     *  @throws IOException on error
+     */
+    private ByteBuffer getRegion(final long offset, final int num_bytes) throws IOException
+    {
+        if (offset < 0  ||  offset + num_bytes > size)
+            throw new EOFException("Cannot read " + num_bytes + " bytes at offset " + offset + " of " + file);
+        final int index = (int) (offset / region_size);
+        ByteBuffer region = regions.get(index);
+        if (region == null)
+        {
+            synchronized (regions)
+            {
+                region = regions.get(index);
+                if (region == null)
+                {
+                    final long start = (long) index * region_size;
+                    final long length = Math.min((long)region_size + OVERLAP, size - start);
+                    try
+                    (
+                        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    )
+                    {
+                        region = channel.map(MapMode.READ_ONLY, start, length);
+                    }
+                    regions.set(index, region);
+                }
+            }
+        }
+        return region;
+    }
+
+    /** @param offset Offset in file
+     *  @return Index within the region that contains the offset
+     */
+    private int index(final long offset)
+    {
+        return (int) (offset % region_size);
+    }
+
+    byte get(final long offset) throws IOException
+    {
+        return getRegion(offset, 1).get(index(offset));
+    }
+
+    short getShort(final long offset) throws IOException
+    {
+        return getRegion(offset, 2).getShort(index(offset));
+    }
+
+    int getInt(final long offset) throws IOException
+    {
+        return getRegion(offset, 4).getInt(index(offset));
+    }
+
+    float getFloat(final long offset) throws IOException
+    {
+        return getRegion(offset, 4).getFloat(index(offset));
+    }
+
+    double getDouble(final long offset) throws IOException
+    {
+        return getRegion(offset, 8).getDouble(index(offset));
+    }
+
+    /** Read bytes, which may span regions
+     *  @param offset Offset in file
+     *  @param dst Buffer to fill
+     *  @throws IOException on error
+     */
+    void get(long offset, final byte[] dst) throws IOException
+    {
+        int pos = 0;
+        while (pos < dst.length)
+        {
+            final int chunk = Math.min(dst.length - pos, OVERLAP);
+            final ByteBuffer region = getRegion(offset, chunk).duplicate();
+            region.position(index(offset));
+            region.get(dst, pos, chunk);
+            pos += chunk;
+            offset += chunk;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Mapped " + file + " (" + size + " bytes)";
+    }
+}
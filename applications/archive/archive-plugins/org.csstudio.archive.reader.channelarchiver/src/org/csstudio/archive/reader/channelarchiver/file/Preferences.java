@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IPreferencesService;
+
+/** Access to preferences for the Channel Archiver data file reader.
+ *
+ *  <p>See preferences.ini for explanation of settings.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class Preferences
+{
+    /** Plugin ID */
+    final public static String ID = "org.csstudio.archive.reader.channelarchiver";
+
+    final public static String MEMORY_MAPPED = "memory_mapped";
+    final public static String CACHE_SIZE = "cache_size";
+
+    /** @return Use memory-mapped file access? */
+    public static boolean isMemoryMapped()
+    {
+        boolean memory_mapped = true;
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return memory_mapped;
+        return prefs.getBoolean(ID, MEMORY_MAPPED, memory_mapped, null);
+    }
+
+    /** @return Number of RTree nodes and data headers to cache */
+    public static int getCacheSize()
+    {
+        int cache_size = 10000;
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return cache_size;
+        return prefs.getInt(ID, CACHE_SIZE, cache_size, null);
+    }
+}
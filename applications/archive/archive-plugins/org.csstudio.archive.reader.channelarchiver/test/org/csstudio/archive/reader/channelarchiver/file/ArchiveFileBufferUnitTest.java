@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link ArchiveFileBuffer}, {@link MappedArchiveFile}
+ *  and {@link ArchiveFileCache}
+ *
+ *  <p>Uses a generated file with a known pattern of values.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ArchiveFileBufferUnitTest
+{
+    /** Number of 'records' in the test file */
+    private static final int RECORDS = 100000;
+
+    /** Size of one record: int, short, short, float, double, 4 name bytes */
+    private static final int RECORD_SIZE = 4 + 2 + 2 + 4 + 8 + 4;
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception
+    {
+        file = File.createTempFile("archive", ".data");
+        try
+        (
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        )
+        {
+            for (int i=0; i<RECORDS; ++i)
+            {
+                out.writeInt(i);
+                out.writeShort((short) i);
+                out.writeShort(-1);
+                out.writeFloat(i / 2.0f);
+                out.writeDouble(i * 1.5);
+                out.writeBytes(String.format("%04d", i % 10000));
+            }
+        }
+    }
+
+    @After
+    public void cleanup()
+    {
+        file.delete();
+    }
+
+    /** @param buffer Buffer to check, reading record i */
+    private void checkRecord(final ArchiveFileBuffer buffer, final int i) throws Exception
+    {
+        buffer.offset((long) i * RECORD_SIZE);
+        assertEquals(i, buffer.getInt());
+        assertEquals((short) i, buffer.getShort());
+        assertEquals(0xFFFF, buffer.getShort() & 0xFFFF);
+        assertEquals(i / 2.0f, buffer.getFloat(), 0.0f);
+        assertEquals(i * 1.5, buffer.getDouble(), 0.0);
+        final byte[] name = new byte[4];
+        buffer.get(name);
+        assertEquals(String.format("%04d", i % 10000), new String(name));
+    }
+
+    @Test
+    public void testHeapAndMapped() throws Exception
+    {
+        try
+        (
+            ArchiveFileBuffer heap = new ArchiveFileBuffer(file, false);
+            ArchiveFileBuffer mapped = new ArchiveFileBuffer(file, true);
+        )
+        {
+            assertTrue(mapped.isMemoryMapped());
+            // Sequential
+            for (int i=0; i<RECORDS; ++i)
+            {
+                checkRecord(heap, i);
+                checkRecord(mapped, i);
+            }
+            // Random, backwards
+            for (int i=RECORDS-1; i>=0; i-=997)
+            {
+                checkRecord(heap, i);
+                checkRecord(mapped, i);
+            }
+            // Both compute the same offsets
+            heap.offset(RECORD_SIZE);
+            mapped.offset(RECORD_SIZE);
+            heap.skip(6);
+            mapped.skip(6);
+            assertEquals(RECORD_SIZE + 6, heap.offset());
+            assertEquals(heap.offset(), mapped.offset());
+            assertEquals(heap.getUnsignedInt(), mapped.getUnsignedInt());
+            // Interpreted as EPICS time stamp
+            final Instant time = mapped.getEpicsTime();
+            heap.getEpicsTime();
+            System.out.println(mapped + ": " + time);
+        }
+    }
+
+    @Test
+    public void testRegions() throws Exception
+    {
+        // Small regions that don't align with the records,
+        // so values and names cross region boundaries
+        final MappedArchiveFile mapped = new MappedArchiveFile(file, 1000);
+        final byte[] all = new byte[RECORD_SIZE * 1000];
+        mapped.get(0, all);
+        for (int i=0; i<1000; ++i)
+        {
+            final long offset = (long) i * RECORD_SIZE;
+            assertEquals(i, mapped.getInt(offset));
+            assertEquals(i * 1.5, mapped.getDouble(offset + 12), 0.0);
+            final byte[] name = new byte[4];
+            mapped.get(offset + 20, name);
+            assertEquals(String.format("%04d", i), new String(name));
+            assertEquals(all[(int) offset + 20], name[0]);
+        }
+    }
+
+    @Test
+    public void testSharedMapping() throws Exception
+    {
+        final int threads = 4;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<Integer>> results = new ArrayList<>();
+        for (int t=0; t<threads; ++t)
+        {
+            final int start = t;
+            results.add(pool.submit(() ->
+            {
+                // Each thread has its own buffer, all using the same mapping
+                try
+                (
+                    ArchiveFileBuffer buffer = new ArchiveFileBuffer(file, true);
+                )
+                {
+                    int checked = 0;
+                    for (int i=start; i<RECORDS; i+=threads)
+                    {
+                        checkRecord(buffer, i);
+                        ++checked;
+                    }
+                    return checked;
+                }
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results)
+            total += result.get();
+        pool.shutdown();
+        assertEquals(RECORDS, total);
+
+        final MappedArchiveFile a = MappedArchiveFile.acquire(file);
+        final MappedArchiveFile b = MappedArchiveFile.acquire(file);
+        assertSame(a, b);
+        a.release();
+        b.release();
+    }
+
+    @Test
+    public void testCache() throws Exception
+    {
+        final ArchiveFileCache cache = new ArchiveFileCache(10);
+        try
+        (
+            ArchiveFileBuffer buffer = new ArchiveFileBuffer(file, true);
+        )
+        {
+            // Treat the file as RTree nodes with M=1, 1 + 4 + 20 bytes each
+            final RTreeNode node = cache.getRTreeNode(buffer, 0, 1);
+            assertSame(node, cache.getRTreeNode(buffer, 0, 1));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            // Least recently used entries are dropped
+            for (int i=1; i<=20; ++i)
+                cache.getRTreeNode(buffer, i * 25, 1);
+            assertEquals(10, cache.size());
+            assertTrue(node != cache.getRTreeNode(buffer, 0, 1));
+
+            // Same offset, different file version is a different entry
+            final RTreeNode cached = cache.getRTreeNode(buffer, 0, 1);
+            file.setLastModified(file.lastModified() - 10000);
+            buffer.close();
+            buffer.setFile(file);
+            assertTrue(cached != cache.getRTreeNode(buffer, 0, 1));
+            System.out.println(cache);
+        }
+    }
+}
@@ -12,6 +12,7 @@ package org.csstudio.archive.reader.influxdb;
 //import java.sql.ResultSet;
 //import java.sql.Statement;
 import java.time.Instant;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.csstudio.archive.influxdb.InfluxDBArchivePreferences;
@@ -23,6 +24,7 @@ import org.csstudio.archive.influxdb.InfluxDBUtil;
 import org.csstudio.archive.influxdb.InfluxDBUtil.ConnectionInfo;
 import org.csstudio.archive.reader.ArchiveInfo;
 import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ConcurrentFetch;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.reader.influxdb.raw.ConnectionCache;
@@ -292,6 +294,30 @@ public class InfluxDBArchiveReader implements ArchiveReader
         }
     }
 
+    /** {@inheritDoc}
+     *
+     *  <p>Queries for the channels are sent concurrently.
+     */
+    @Override
+    public List<ValueIterator> getRawValues(final int key, final List<String> names,
+            final Instant start, final Instant end) throws UnknownChannelException, Exception
+    {
+        return ConcurrentFetch.getDefault().fetch(names, (index, name) -> getRawValues(name, start, end));
+    }
+
+    /** {@inheritDoc}
+     *
+     *  <p>Queries for the channels are sent concurrently.
+     */
+    @Override
+    public List<ValueIterator> getOptimizedValues(final int key, final List<String> names,
+            final Instant start, final Instant end, final int count) throws UnknownChannelException, Exception
+    {
+        if (count <= 1)
+            throw new Exception("Count must be > 1");
+        return ConcurrentFetch.getDefault().fetch(names, (index, name) -> getOptimizedValues(name, start, end, count));
+    }
+
     //TODO: this comes from in-memory configuration object now
     /** @param name Channel name
      *  @return Numeric channel ID
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.rdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.apputil.test.TestProperties;
+import org.csstudio.archive.rdb.RDBArchivePreferences;
+import org.csstudio.archive.rdb.RDBConnectionPool;
+import org.csstudio.archive.reader.ValueIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link RDBConnectionPool} as used by the {@link RDBArchiveReader}
+ *  <p>
+ *  Will only work when suitable archived data is available.
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ConnectionPoolTest
+{
+    private String url, user, password, schema, name;
+
+    @Before
+    public void setup() throws Exception
+    {
+        final TestProperties settings = new TestProperties();
+        url = settings.getString("archive_rdb_url");
+        user = settings.getString("archive_rdb_user");
+        password = settings.getString("archive_rdb_password");
+        schema = settings.getString("archive_rdb_schema");
+        name = settings.getString("archive_channel");
+        if (url == null  ||  user == null  ||  password == null  ||  name == null)
+            System.out.println("Skipping test, no archive_rdb_url, user, password, name");
+    }
+
+    /** Readers use separate connections, re-used with their statements */
+    @Test
+    public void testConcurrentReaders() throws Exception
+    {
+        if (url == null  ||  user == null  ||  password == null  ||  name == null)
+            return;
+        final int readers = 4;
+        final ExecutorService pool = Executors.newFixedThreadPool(readers);
+        final List<Future<Integer>> results = new ArrayList<>();
+        for (int i=0; i<3*readers; ++i)
+            results.add(pool.submit(() ->
+            {
+                final RDBArchiveReader reader = new RDBArchiveReader(url, user, password, schema, "");
+                try
+                {
+                    final Instant end = Instant.now();
+                    final ValueIterator values = reader.getRawValues(0, name, end.minus(Duration.ofMinutes(10)), end);
+                    int count = 0;
+                    while (values.hasNext())
+                    {
+                        values.next();
+                        ++count;
+                    }
+                    values.close();
+                    return count;
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }));
+        for (Future<Integer> result : results)
+            System.out.println(result.get() + " samples");
+        pool.shutdown();
+
+        final RDBConnectionPool connections = RDBConnectionPool.getPool(url, user, password, true);
+        System.out.println(connections);
+        assertEquals(0, connections.getActiveCount());
+        assertTrue(connections.getIdleCount() <= readers);
+        assertTrue(connections.getStatementHits() > 0);
+    }
+
+    /** Once all pooled connections are held by open readers,
+     *  another reader waits until one of them is closed
+     */
+    @Test
+    public void testMoreReadersThanPool() throws Exception
+    {
+        if (url == null  ||  user == null  ||  password == null  ||  name == null)
+            return;
+        final int pool_size = RDBArchivePreferences.getPoolSize();
+        final RDBConnectionPool connections = RDBConnectionPool.getPool(url, user, password, true);
+        final List<RDBArchiveReader> readers = new ArrayList<>();
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+        try
+        {
+            for (int i=0; i<pool_size; ++i)
+                readers.add(new RDBArchiveReader(url, user, password, schema, ""));
+            assertEquals(pool_size, connections.getActiveCount());
+            final long waits = connections.getWaitCount();
+
+            // One more reader needs to wait
+            final Future<RDBArchiveReader> extra = pool.submit(() -> new RDBArchiveReader(url, user, password, schema, ""));
+            TimeUnit.SECONDS.sleep(1);
+            assertTrue(! extra.isDone());
+
+            // .. until a reader is closed
+            readers.remove(0).close();
+            readers.add(extra.get(10, TimeUnit.SECONDS));
+            System.out.println(connections);
+            assertEquals(pool_size, connections.getActiveCount());
+            assertEquals(waits + 1, connections.getWaitCount());
+        }
+        finally
+        {
+            pool.shutdown();
+            for (RDBArchiveReader reader : readers)
+                reader.close();
+        }
+        assertEquals(0, connections.getActiveCount());
+    }
+}
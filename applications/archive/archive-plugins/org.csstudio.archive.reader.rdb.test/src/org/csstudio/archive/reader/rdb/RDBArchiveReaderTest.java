@@ -266,6 +266,99 @@ public class RDBArchiveReaderTest
         values.close();
     }
 
+    /** Get optimized data for scalar, using the server-side {@link BucketedValueIterator} */
+    @Test
+    public void testBucketedScalarData() throws Exception
+    {
+        if (reader == null)
+            return;
+        final int channel_id = reader.getChannelID(name);
+        System.out.println("Optimized samples for " + name + " (" + channel_id + "):");
+        System.out.println("-- SQL buckets --");
+
+        final Instant end = Instant.now();
+        final Instant start = end.minus(TIMERANGE);
+        final BucketedValueIterator values = new BucketedValueIterator(reader, channel_id, start, end, BUCKETS);
+        if (! values.isBucketed())
+            System.out.println("Not a numeric channel");
+        while (values.hasNext())
+        {
+            final VType value = values.next();
+            System.out.println(value);
+        }
+        values.close();
+    }
+
+    /** Compare rows transferred and time for server-side buckets vs. client-side averaging */
+    @Test
+    public void benchmarkBucketedScalarData() throws Exception
+    {
+        if (reader == null)
+            return;
+        final int channel_id = reader.getChannelID(name);
+        final Instant end = Instant.now();
+        final Instant start = end.minus(TIMERANGE);
+        final double seconds = TimeDuration.toSecondsDouble(Duration.between(start, end)) / BUCKETS;
+
+        // Client-side: Every raw sample is transferred
+        BenchmarkTimer timer = new BenchmarkTimer();
+        final CountingIterator raw = new CountingIterator(reader.getRawValues(0, name, start, end));
+        ValueIterator values = new AveragedValueIterator(raw, seconds);
+        int samples = 0;
+        while (values.hasNext())
+        {
+            values.next();
+            ++samples;
+        }
+        values.close();
+        timer.stop();
+        System.out.println("Client-side averaging: " + raw.count + " rows, " + samples + " samples in " + timer);
+
+        // Server-side: Only buckets are transferred
+        timer = new BenchmarkTimer();
+        final BucketedValueIterator buckets = new BucketedValueIterator(reader, channel_id, start, end, BUCKETS);
+        samples = 0;
+        while (buckets.hasNext())
+        {
+            buckets.next();
+            ++samples;
+        }
+        buckets.close();
+        timer.stop();
+        System.out.println("SQL buckets          : " + buckets.getRowCount() + " rows, " + samples + " samples in " + timer);
+    }
+
+    /** Iterator that counts the samples it passes on */
+    private static class CountingIterator implements ValueIterator
+    {
+        final private ValueIterator base;
+        int count = 0;
+
+        CountingIterator(final ValueIterator base)
+        {
+            this.base = base;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return base.hasNext();
+        }
+
+        @Override
+        public VType next() throws Exception
+        {
+            ++count;
+            return base.next();
+        }
+
+        @Override
+        public void close()
+        {
+            base.close();
+        }
+    }
+
     /** Get optimized data for scalar, using the server-side {@link StoredProcedureValueIterator} */
     @Test
     public void testStoredProcedure() throws Exception
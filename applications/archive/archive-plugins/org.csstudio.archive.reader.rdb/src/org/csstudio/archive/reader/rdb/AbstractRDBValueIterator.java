@@ -7,8 +7,6 @@
  ******************************************************************************/
 package org.csstudio.archive.reader.rdb;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -17,12 +15,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.csstudio.archive.rdb.ArrayBlobCodec;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.ArchiveVEnum;
 import org.csstudio.archive.vtype.ArchiveVNumber;
 import org.csstudio.archive.vtype.ArchiveVNumberArray;
 import org.csstudio.archive.vtype.ArchiveVString;
 import org.csstudio.archive.vtype.TimestampHelper;
+import org.diirt.util.array.ArrayDouble;
+import org.diirt.util.array.ListNumber;
 import org.diirt.util.text.NumberFormats;
 import org.diirt.vtype.AlarmSeverity;
 import org.diirt.vtype.Display;
@@ -42,6 +43,9 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
     protected Display display = null;
     protected List<String> labels = null;
 
+    /** Was numeric meta data found for the channel? */
+    protected boolean numeric_meta = false;
+
     /** SELECT ... for the array samples. */
     private PreparedStatement sel_array_samples = null;
 
@@ -73,6 +77,7 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
         try
         {
             this.display = determineDisplay();
+            this.numeric_meta = display != null;
             this.labels = determineLabels();
         }
         catch (final Exception ex)
@@ -94,31 +99,35 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
     {
         // Try numeric meta data
         final PreparedStatement statement =
-            reader.getConnection().prepareStatement(reader.getSQL().numeric_meta_sel_by_channel);
+            reader.prepareStatement(reader.getSQL().numeric_meta_sel_by_channel);
         try
         {
             statement.setInt(1, channel_id);
-            final ResultSet result = statement.executeQuery();
-            if (result.next())
+            try
+            (
+                final ResultSet result = statement.executeQuery();
+            )
             {
-                final NumberFormat format = NumberFormats.format(result.getInt(7));   // prec
-                return ValueFactory.newDisplay(
-                        result.getDouble(1),  // lowerDisplayLimit
-                        result.getDouble(5),  // lowerAlarmLimit
-                        result.getDouble(3),  // lowerWarningLimit
-                        result.getString(8),   // units
-                        format,               // numberFormat
-                        result.getDouble(4),  // upperWarningLimit
-                        result.getDouble(6),  // upperAlarmLimit
-                        result.getDouble(2),  // upperDisplayLimit
-                        result.getDouble(1),  // lowerCtrlLimit
-                        result.getDouble(2)); // upperCtrlLimit
-
+                if (result.next())
+                {
+                    final NumberFormat format = NumberFormats.format(result.getInt(7));   // prec
+                    return ValueFactory.newDisplay(
+                            result.getDouble(1),  // lowerDisplayLimit
+                            result.getDouble(5),  // lowerAlarmLimit
+                            result.getDouble(3),  // lowerWarningLimit
+                            result.getString(8),   // units
+                            format,               // numberFormat
+                            result.getDouble(4),  // upperWarningLimit
+                            result.getDouble(6),  // upperAlarmLimit
+                            result.getDouble(2),  // upperDisplayLimit
+                            result.getDouble(1),  // lowerCtrlLimit
+                            result.getDouble(2)); // upperCtrlLimit
+                }
             }
         }
         finally
         {
-            statement.close();
+            reader.releaseStatement(statement);
         }
         // No numeric display meta data
         return null;
@@ -131,31 +140,36 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
     {
         // Try enumerated meta data
         List<String> labels = null;
-        final PreparedStatement statement = reader.getConnection().prepareStatement(
+        final PreparedStatement statement = reader.prepareStatement(
                                 reader.getSQL().enum_sel_num_val_by_channel);
         try
         {
             statement.setInt(1, channel_id);
-            final ResultSet result = statement.executeQuery();
-            if (result.next())
+            try
+            (
+                final ResultSet result = statement.executeQuery();
+            )
             {
-                labels = new ArrayList<String>();
-                do
+                if (result.next())
                 {
-                    final int id = result.getInt(1);
-                    final String val = result.getString(2);
-                    // Expect vals for ids 0, 1, 2, ...
-                    if (id != labels.size())
-                        throw new Exception("Enum IDs for channel with ID "
-                                + channel_id + " not in sequential order");
-                    labels.add(val);
+                    labels = new ArrayList<String>();
+                    do
+                    {
+                        final int id = result.getInt(1);
+                        final String val = result.getString(2);
+                        // Expect vals for ids 0, 1, 2, ...
+                        if (id != labels.size())
+                            throw new Exception("Enum IDs for channel with ID "
+                                    + channel_id + " not in sequential order");
+                        labels.add(val);
+                    }
+                    while (result.next());
                 }
-                while (result.next());
             }
         }
         finally
         {
-            statement.close();
+            reader.releaseStatement(statement);
         }
         // Anything found?
         if (labels == null  ||  labels.size() <= 0)
@@ -195,11 +209,11 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
             // Double data.
             if (handle_array)
             {   // Get array elements - if any.
-                final double data[] = reader.useArrayBlob()
+                final ListNumber data = reader.useArrayBlob()
                     ? readBlobArrayElements(dbl0, result)
-                    : readArrayElements(time, dbl0, severity);
-                if (data.length == 1)
-                    return new ArchiveVNumber(time, severity, status, display, data[0]);
+                    : new ArrayDouble(readArrayElements(time, dbl0, severity));
+                if (data.size() == 1)
+                    return new ArchiveVNumber(time, severity, status, display, data.getDouble(0));
                 else
                     return new ArchiveVNumberArray(time, severity, status, display, data);
             }
@@ -303,7 +317,7 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
      *  @return Array with given element and maybe more.
      *  @throws Exception on error, including 'cancel'
      */
-    private double[] readBlobArrayElements(final double dbl0, final ResultSet result) throws Exception
+    private ListNumber readBlobArrayElements(final double dbl0, final ResultSet result) throws Exception
     {
         final String datatype;
         if (reader.isOracle())
@@ -312,27 +326,12 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
             datatype = result.getString(8);
 
         // ' ' or NULL indicate: Scalar, not an array
-        if (datatype == null || " ".equals(datatype) || result.wasNull())
-            return new double [] { dbl0 };
+        if (datatype == null || ArrayBlobCodec.SCALAR.equals(datatype) || result.wasNull())
+            return new ArrayDouble(dbl0);
 
         // Decode BLOB
         final byte[] bytes = result.getBytes(reader.isOracle() ? 8 : 9);
-        final ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
-        final DataInputStream data = new DataInputStream(stream);
-        if ("d".equals(datatype))
-        {    // Read Double typed array elements
-            final int nelm = data.readInt();
-            final double[] array = new double[nelm];
-            for (int i = 0; i < nelm; i++)
-                array[i] = data.readDouble();
-            data.close();
-            return array;
-        }
-        // TODO Decode 'l' Long and 'i' Integer?
-        else
-        {
-            throw new Exception("Sample BLOBs of type '" + datatype + "' are not decoded");
-        }
+        return ArrayBlobCodec.decode(datatype, bytes);
     }
 
     /** @param result ResultSet positioned on row to dump to console
@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.rdb;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.TimestampHelper;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+
+/** Value Iterator that provides 'optimized' data by
+ *  computing min/max/average per time bucket in the RDB server.
+ *
+ *  <p>Uses plain SQL that is supported by MySQL, PostgreSQL and Oracle,
+ *  so no stored procedure needs to be installed.
+ *  Only the buckets are transferred, not the raw samples.
+ *
+ *  <p>Like the {@link AveragedValueIterator}, samples that indicate
+ *  'no value' (archive off, disconnected, ..) are passed on,
+ *  and the bucket keeps the highest severity.
+ *  Only numeric channels are handled, see {@link #isBucketed()}.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class BucketedValueIterator extends AbstractRDBValueIterator
+{
+    /** Values received from the RDB */
+    private List<VType> values = null;
+
+    /** Iteration index into <code>values</code>, points to what
+     *  <code>next()</code> will return or -1
+     */
+    private int index = -1;
+
+    /** Number of rows read from the RDB */
+    private int rows = 0;
+
+    /** Initialize
+     *  @param reader RDBArchiveReader
+     *  @param channel_id ID of channel
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Desired value count
+     *  @throws Exception on error
+     */
+    public BucketedValueIterator(final RDBArchiveReader reader,
+            final int channel_id, final Instant start, final Instant end,
+            final int count) throws Exception
+    {
+        super(reader, channel_id);
+        if (isBucketed())
+            executeQuery(start, end, count);
+    }
+
+    /** @return <code>true</code> if the channel is numeric and was read in buckets.
+     *          Otherwise, caller needs to use a different iterator.
+     */
+    public boolean isBucketed()
+    {
+        return numeric_meta  &&  labels == null;
+    }
+
+    /** @return Number of rows read from the RDB */
+    public int getRowCount()
+    {
+        return rows;
+    }
+
+    /** Read buckets from RDB
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Desired value count
+     *  @throws Exception on error
+     */
+    private void executeQuery(final Instant start, final Instant end, final int count) throws Exception
+    {
+        // Buckets are counted from the full second of the start time
+        final Instant origin = Instant.ofEpochSecond(start.getEpochSecond());
+        final double seconds = Math.max(0.001,
+                Duration.between(origin, end).toMillis() / 1000.0 / count);
+
+        final PreparedStatement statement = reader.prepareStatement(
+                reader.getSQL().sample_sel_buckets_by_id_start_end);
+        reader.addForCancellation(statement);
+        try
+        {
+            statement.setFetchSize(Preferences.getFetchSize());
+            statement.setTimestamp(1, TimestampHelper.toSQLTimestamp(origin));
+            statement.setDouble(2, seconds);
+            statement.setInt(3, channel_id);
+            statement.setTimestamp(4, TimestampHelper.toSQLTimestamp(start));
+            statement.setTimestamp(5, TimestampHelper.toSQLTimestamp(end));
+            try
+            (
+                final ResultSet result = statement.executeQuery();
+            )
+            {
+                values = decodeBuckets(result, origin, seconds, end);
+            }
+            if (values.size() > 0)
+                index = 0;
+            // else: No data, leave as -1
+        }
+        catch (Exception ex)
+        {
+            if (! RDBArchiveReader.isCancellation(ex))
+                throw ex;
+            // Else: Not a real error; return empty iterator
+            Logger.getLogger(getClass().getName()).log(Level.FINE,
+                    "Bucket query cancelled", ex);
+        }
+        finally
+        {
+            reader.removeFromCancellation(statement);
+            reader.releaseStatement(statement);
+        }
+    }
+
+    /** Min/max/average accumulated over the rows of one bucket */
+    private static class Bucket
+    {
+        long bucket = Long.MIN_VALUE;
+        Instant first_time;
+        AlarmSeverity severity;
+        String status;
+        int n = 0;
+        double min, max, sum, sum_squares;
+
+        void reset(final long bucket)
+        {
+            this.bucket = bucket;
+            first_time = null;
+            severity = null;
+            status = null;
+            n = 0;
+        }
+
+        void add(final Instant time, final AlarmSeverity severity, final String status,
+                 final double min, final double max, final double avg, final double stddev, final int cnt)
+        {
+            if (n == 0)
+            {
+                first_time = time;
+                this.min = min;
+                this.max = max;
+                sum = sum_squares = 0.0;
+            }
+            else
+            {
+                if (time.isBefore(first_time))
+                    first_time = time;
+                this.min = Math.min(this.min, min);
+                this.max = Math.max(this.max, max);
+            }
+            // Maximize the severity
+            if (this.severity == null  ||  severity.ordinal() > this.severity.ordinal())
+            {
+                this.severity = severity;
+                this.status = status;
+            }
+            n += cnt;
+            sum += avg * cnt;
+            sum_squares += (stddev * stddev + avg * avg) * cnt;
+        }
+    }
+
+    /** Decode buckets
+     *  @param result Rows with bucket, severity_id, status_id, time, min, max, avg, stddev, count, str_val
+     *  @param origin Start of the first bucket
+     *  @param seconds Bucket size
+     *  @param end End time
+     *  @return Samples, sorted by time
+     *  @throws Exception on error
+     */
+    private List<VType> decodeBuckets(final ResultSet result, final Instant origin,
+                                      final double seconds, final Instant end) throws Exception
+    {
+        final List<VType> values = new ArrayList<>();
+        // Samples in the current bucket
+        final List<VType> bucket_values = new ArrayList<>();
+        final Bucket bucket = new Bucket();
+        while (result.next())
+        {
+            ++rows;
+            final long nr = result.getLong(1);
+            if (nr != bucket.bucket)
+            {
+                flush(bucket, origin, seconds, end, bucket_values, values);
+                bucket.reset(nr);
+            }
+            final String status = reader.getStatus(result.getInt(3));
+            final AlarmSeverity severity = filterSeverity(reader.getSeverity(result.getInt(2)), status);
+            final Instant time = TimestampHelper.fromSQLTimestamp(result.getTimestamp(4));
+            final int cnt = result.getInt(9);
+            if (severity == AlarmSeverity.UNDEFINED  ||  cnt <= 0)
+            {   // Pass 'no value' or string sample on,
+                // using the first time stamp of those samples in the bucket
+                final String text = result.getString(10);
+                bucket_values.add(new ArchiveVString(time, severity, status, text == null ? status : text));
+            }
+            else
+                bucket.add(time, severity, status,
+                           result.getDouble(5), result.getDouble(6), result.getDouble(7), result.getDouble(8), cnt);
+        }
+        flush(bucket, origin, seconds, end, bucket_values, values);
+        return values;
+    }
+
+    /** Add samples for a bucket to values
+     *  @param bucket Accumulated min/max/average
+     *  @param origin Start of the first bucket
+     *  @param seconds Bucket size
+     *  @param end End time
+     *  @param bucket_values Other samples in the bucket, will be cleared
+     *  @param values Values to which bucket is added
+     */
+    private void flush(final Bucket bucket, final Instant origin, final double seconds, final Instant end,
+                       final List<VType> bucket_values, final List<VType> values)
+    {
+        if (bucket.n == 1)
+            bucket_values.add(new ArchiveVNumber(bucket.first_time, bucket.severity, bucket.status, display, bucket.sum));
+        else if (bucket.n > 1)
+        {   // Time stamp in center of bucket
+            Instant time = origin.plusNanos(Math.round((bucket.bucket + 0.5) * seconds * 1e9));
+            if (time.isAfter(end))
+                time = end;
+            final double avg = bucket.sum / bucket.n;
+            final double stddev = Math.sqrt(Math.max(0.0, bucket.sum_squares / bucket.n - avg*avg));
+            bucket_values.add(new ArchiveVStatistics(time, bucket.severity, bucket.status, display,
+                                                     avg, bucket.min, bucket.max, stddev, bucket.n));
+        }
+        if (bucket_values.size() > 1)
+            bucket_values.sort(Comparator.comparing(VTypeHelper::getTimestamp));
+        values.addAll(bucket_values);
+        bucket_values.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext()
+    {
+        return index >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VType next() throws Exception
+    {
+        final VType result = values.get(index);
+        ++index;
+        if (index >= values.size())
+            index = -1;
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+    {
+        super.close();
+        index = -1;
+        values = null;
+    }
+}
@@ -8,23 +8,24 @@
 package org.csstudio.archive.reader.rdb;
 
 import java.sql.Connection;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.sql.PreparedStatement;
 
-import org.csstudio.platform.utility.rdb.RDBUtil;
+import org.csstudio.archive.rdb.RDBConnectionPool;
+import org.csstudio.archive.rdb.RDBConnectionPool.PooledConnection;
 import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 
 /** RDB Connection cache.
  *
  *  <p>RDBArchiveReaders tend to be created in bursts as data for all channels
  *  in a plot is updated.
- *  This helper caches the connection so that only the first reader will
- *  actually connect. Other 'concurrent' readers re-use the same connection,
- *  and finally the connection is closed as all readers release it.
+ *  Each reader borrows a connection from the {@link RDBConnectionPool}
+ *  for exclusive use, so readers can query the database concurrently.
+ *  Connections are returned to the pool as readers release them,
+ *  and re-used by the next reader, including their prepared statements.
+ *
+ *  <p>Readers hold their connection until they are closed.
+ *  When all pooled connections are in use, a new reader waits
+ *  for one to be returned, up to the pool's wait timeout.
  *
  *  <p>Connections are marked read-only which helps at least MySQL.
  *
@@ -32,48 +33,16 @@ import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
  */
 public class ConnectionCache
 {
-    private static final Logger logger = Logger.getLogger(ConnectionCache.class.getName());
-
-    /** Connection identifier */
-    private static class ID
-    {
-        private final String url, user, password;
-
-        ID(final String url, final String user, final String password)
-        {
-            this.url = Objects.requireNonNull(url);
-            this.user = Objects.requireNonNull(user);
-            this.password = password;
-        }
-
-        @Override
-        public boolean equals(final Object obj)
-        {
-            if (! (obj instanceof ID))
-                return false;
-            final ID other = (ID) obj;
-            return url.equals(other.url)   &&
-                   user.equals(other.user) &&
-                   Objects.equals(password, other.password);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(url,user,password);
-        }
-    }
-
-    /** Cached RDB connection with reference count */
+    /** Connection borrowed from the pool */
     public static class Entry
     {
-        private final ID id;
-        private final AtomicInteger references = new AtomicInteger(1);
-        private final RDBUtil rdb;
+        private final RDBConnectionPool pool;
+        private final PooledConnection connection;
 
-        Entry(final ID id, final RDBUtil rdb)
+        Entry(final RDBConnectionPool pool, final PooledConnection connection)
         {
-            this.id = id;
-            this.rdb = rdb;
+            this.pool = pool;
+            this.connection = connection;
         }
 
         /** @return JDBC connection, MUST NOT BE CLOSED
@@ -81,88 +50,82 @@ public class ConnectionCache
          */
         public Connection getConnection() throws Exception
         {
-            return rdb.getConnection();
+            return connection.getConnection();
         }
 
         /** @return RDB Dialect */
         public Dialect getDialect()
         {
-            return rdb.getDialect();
+            return connection.getDialect();
         }
-    }
 
-    /** Cache */
-    // Expecting only very few entries, so list & linear search good enough
-    private final static List<Entry> cache = new ArrayList<>();
+        /** @param sql SQL
+         *  @return Cached or new statement, MUST NOT BE CLOSED but released
+         *  @throws Exception on error
+         *  @see #releaseStatement(PreparedStatement)
+         */
+        public PreparedStatement prepareStatement(final String sql) throws Exception
+        {
+            return connection.prepareStatement(sql);
+        }
 
-    /** Find entry
-     *  @param id ID
-     *  @return Existing entry with added reference or <code>null</code>
-     */
-    private static Entry find(final ID id)
-    {
-        for (Entry entry : cache)
-            if (entry.id.equals(id))
-            {
-                entry.references.incrementAndGet();
-                return entry;
-            }
-        return null;
+        /** @param statement Statement obtained from {@link #prepareStatement(String)} */
+        public void releaseStatement(final PreparedStatement statement)
+        {
+            connection.releaseStatement(statement);
+        }
+
+        /** @return Pool that provided the connection */
+        public RDBConnectionPool getPool()
+        {
+            return pool;
+        }
     }
 
-    /** Get a cached RDB connection
+    /** Get a connection
      *  @param url Database URL
      *  @param user .. user
      *  @param password .. password
      *  @return {@link Entry}
-     *  @throws Exception on error
+     *  @throws Exception on error, or when no pooled connection became available in time
      *  @see #release(Entry)
      */
     public static Entry get(final String url, final String user, final String password) throws Exception
     {
-        final ID id = new ID(url, user, password);
-        synchronized (cache)
-        {
-            Entry entry = find(id);
-            if (entry == null)
-            {
-                logger.log(Level.FINE, "Connecting to {0}", url);
-                entry = new Entry(id, RDBUtil.connect(url, user, password, false));
-                // Read-only allows MySQL to use load balancing
-                entry.getConnection().setReadOnly(true);
-                // Avoid caching for PostgreSQL
-                if(entry.getDialect() != RDBUtil.Dialect.PostgreSQL)
-                {
-                    cache.add(entry);
-                }
-            }
-            return entry;
-        }
+        final RDBConnectionPool pool = RDBConnectionPool.getPool(url, user, password, true);
+        return new Entry(pool, pool.borrow());
     }
 
-    /** Release cache entry when no longer used
+    /** Get an additional connection if one is available without waiting
+     *
+     *  <p>Used by readers that can use more than one connection,
+     *  for example to fetch several channels concurrently.
+     *
+     *  @param entry Existing entry for the database
+     *  @return New {@link Entry} with same URL and user, or <code>null</code>
+     *  @throws Exception on error
+     *  @see #release(Entry)
+     */
+    public static Entry connect(final Entry entry) throws Exception
+    {
+        final PooledConnection connection = entry.pool.tryBorrow();
+        if (connection == null)
+            return null;
+        return new Entry(entry.pool, connection);
+    }
+
+    /** Release connection when no longer used
      *  @param entry Entry to release
      */
     public static void release(final Entry entry)
     {
-        synchronized (cache)
-        {
-            if (entry.references.decrementAndGet() > 0)
-                return; // Still in use
-            cache.remove(entry);
-        }
-        entry.rdb.close();
-        logger.log(Level.FINE, "Closed {0}", entry.id.url);
+        entry.connection.close();
     }
 
-    /**
-     * Clear cache content
-     */
+    /** Close idle connections */
     public static void clean()
     {
-        synchronized (cache)
-        {
-            cache.clear();
-        }
+        for (RDBConnectionPool pool : RDBConnectionPool.getPools())
+            pool.closeIdle(0);
     }
 }
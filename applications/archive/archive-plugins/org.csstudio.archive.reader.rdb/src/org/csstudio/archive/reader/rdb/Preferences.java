@@ -25,6 +25,8 @@ public class Preferences
     final public static String FETCH_SIZE = "fetch_size";
     final public static String STORED_PROCEDURE = "use_stored_procedure";
     final public static String STARTTIME_FUNCTION = "use_starttime_function";
+    final public static String FETCH_CONNECTIONS = "fetch_connections";
+    final public static String SERVER_SIDE_OPTIMIZATION = "server_side_optimization";
 
     public static int getFetchSize()
     {
@@ -35,6 +37,25 @@ public class Preferences
         return prefs.getInt(Activator.ID, FETCH_SIZE, fetch_size, null);
     }
 
+    /** @return Number of connections used to fetch several channels */
+    public static int getFetchConnections()
+    {
+        int connections = 4;
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return connections;
+        return prefs.getInt(Activator.ID, FETCH_CONNECTIONS, connections, null);
+    }
+
+    /** @return Compute 'optimized' data in the RDB server when there is no stored procedure? */
+    public static boolean useServerSideOptimization()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return true;
+        return prefs.getBoolean(Activator.ID, SERVER_SIDE_OPTIMIZATION, true, null);
+    }
+
     public static String getStoredProcedure()
     {
         return getString(STORED_PROCEDURE, "");
@@ -15,12 +15,16 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.csstudio.archive.rdb.RDBArchivePreferences;
 import org.csstudio.archive.reader.ArchiveInfo;
 import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ConcurrentFetch;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
@@ -61,12 +65,21 @@ public class RDBArchiveReader implements ArchiveReader
     final private HashMap<Integer, String> stati;
 
     /** Map of severity IDs to Severities */
-    final private HashMap<Integer, AlarmSeverity> severities;
+    final private Map<Integer, AlarmSeverity> severities;
 
     /** List of statements to cancel in cancel() */
     private ArrayList<Statement> cancellable_statements =
         new ArrayList<Statement>();
 
+    /** Readers that use additional connections to fetch several channels.
+     *  Created as needed, closed with this reader.
+     *  Synchronize on access.
+     */
+    final private List<RDBArchiveReader> fetch_readers = new ArrayList<>();
+
+    /** Maximum number of names in one "WHERE name IN (...)" */
+    final private static int MAX_NAMES_PER_QUERY = 1000;
+
     private boolean concurrency = false;
 
     /** Initialize
@@ -132,7 +145,27 @@ public class RDBArchiveReader implements ArchiveReader
         }
         sql = new SQL(dialect, schema);
         stati = getStatusValues();
-        severities = getSeverityValues();
+        severities = new ConcurrentHashMap<>(getSeverityValues());
+    }
+
+    /** Initialize reader that uses an additional connection
+     *  @param reader Reader with the original connection
+     *  @param rdb Additional connection
+     */
+    private RDBArchiveReader(final RDBArchiveReader reader, final ConnectionCache.Entry rdb)
+    {
+        this.url = reader.url;
+        this.user = reader.user;
+        this.password = reader.password;
+        this.use_array_blob = reader.use_array_blob;
+        this.timeout = reader.timeout;
+        this.stored_procedure = reader.stored_procedure;
+        this.rdb = rdb;
+        this.sql = reader.sql;
+        this.is_oracle = reader.is_oracle;
+        this.stati = reader.stati;
+        this.severities = reader.severities;
+        this.concurrency = reader.concurrency;
     }
 
     /** @return <code>true</code> when using Oracle, i.e. no 'nanosec'
@@ -229,6 +262,22 @@ public class RDBArchiveReader implements ArchiveReader
         return rdb.getDialect();
     }
 
+    /** @param sql SQL
+     *  @return Prepared statement, cached per connection.
+     *          MUST NOT BE CLOSED, call {@link #releaseStatement(PreparedStatement)}
+     *  @throws Exception on error
+     */
+    PreparedStatement prepareStatement(final String sql) throws Exception
+    {
+        return rdb.prepareStatement(sql);
+    }
+
+    /** @param statement Statement from {@link #prepareStatement(String)}, no longer used */
+    void releaseStatement(final PreparedStatement statement)
+    {
+        rdb.releaseStatement(statement);
+    }
+
     /** @return SQL statements */
     SQL getSQL()
     {
@@ -385,39 +434,178 @@ public class RDBArchiveReader implements ArchiveReader
         if (count <= 1)
             throw new Exception("Count must be > 1");
         final int channel_id = getChannelID(name);
+        return getOptimizedValues(channel_id, start, end, count);
+    }
 
+    /** Fetch optimized samples
+     *  @param channel_id Channel ID in RDB
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @return {@link ValueIterator} for optimized samples
+     *  @throws Exception on error
+     */
+    private ValueIterator getOptimizedValues(final int channel_id,
+            final Instant start, final Instant end, int count) throws Exception
+    {
         // Use stored procedure in RDB server?
         if (stored_procedure.length() > 0)
             return new StoredProcedureValueIterator(this, stored_procedure, channel_id, start, end, count);
 
         // Else: Determine how many samples there are
         final int counted;
+        final PreparedStatement count_samples = prepareStatement(sql.sample_count_by_id_start_end);
         try
-        (
-            final PreparedStatement count_samples = rdb.getConnection().prepareStatement(
-                    sql.sample_count_by_id_start_end);
-        )
         {
             count_samples.setInt(1, channel_id);
             count_samples.setTimestamp(2, TimestampHelper.toSQLTimestamp(start));
             count_samples.setTimestamp(3, TimestampHelper.toSQLTimestamp(end));
-            final ResultSet result = count_samples.executeQuery();
-            if (! result.next())
-                throw new Exception("Cannot count samples");
-            counted = result.getInt(1);
+            try
+            (
+                final ResultSet result = count_samples.executeQuery();
+            )
+            {
+                if (! result.next())
+                    throw new Exception("Cannot count samples");
+                counted = result.getInt(1);
+            }
         }
-        // Fetch raw data and perform averaging
-        final ValueIterator raw_data = getRawValues(channel_id, start, end);
-
-        // If there weren't that many, that's it
+        finally
+        {
+            releaseStatement(count_samples);
+        }
+        // If there weren't that many, return raw data
         if (counted < count)
-            return raw_data;
+            return getRawValues(channel_id, start, end);
+
+        // Compute min/max/average in RDB server?
+        if (Preferences.useServerSideOptimization())
+        {
+            final BucketedValueIterator buckets = new BucketedValueIterator(this, channel_id, start, end, count);
+            if (buckets.isBucketed())
+                return buckets;
+            // Not numeric, fall back to client-side
+            buckets.close();
+        }
 
-        // Else: Perform averaging to reduce sample count
+        // Else: Fetch raw data and perform averaging to reduce sample count
+        final ValueIterator raw_data = getRawValues(channel_id, start, end);
         final double seconds = TimeDuration.toSecondsDouble(Duration.between(start, end)) / count;
         return new AveragedValueIterator(raw_data, seconds);
     }
 
+    /** {@inheritDoc}
+     *
+     *  <p>Looks up all channel IDs in one query,
+     *  then fetches the channels concurrently,
+     *  using up to 'fetch_connections' database connections.
+     */
+    @Override
+    public List<ValueIterator> getRawValues(final int key, final List<String> names,
+            final Instant start, final Instant end) throws UnknownChannelException, Exception
+    {
+        final Map<String, Integer> ids = getChannelIDs(names);
+        final List<RDBArchiveReader> readers = getFetchReaders(names.size());
+        return ConcurrentFetch.getDefault().fetch(names, (index, name) ->
+        {
+            final RDBArchiveReader reader = readers.get(index % readers.size());
+            // Channels that share a connection are started one by one
+            synchronized (reader)
+            {
+                return reader.getRawValues(ids.get(name), start, end);
+            }
+        });
+    }
+
+    /** {@inheritDoc}
+     *
+     *  <p>Looks up all channel IDs in one query,
+     *  then fetches the channels concurrently,
+     *  using up to 'fetch_connections' database connections.
+     */
+    @Override
+    public List<ValueIterator> getOptimizedValues(final int key, final List<String> names,
+            final Instant start, final Instant end, final int count) throws UnknownChannelException, Exception
+    {
+        if (count <= 1)
+            throw new Exception("Count must be > 1");
+        final Map<String, Integer> ids = getChannelIDs(names);
+        final List<RDBArchiveReader> readers = getFetchReaders(names.size());
+        return ConcurrentFetch.getDefault().fetch(names, (index, name) ->
+        {
+            final RDBArchiveReader reader = readers.get(index % readers.size());
+            synchronized (reader)
+            {
+                return reader.getOptimizedValues(ids.get(name), start, end, count);
+            }
+        });
+    }
+
+    /** Get readers for fetching channels
+     *
+     *  <p>Returns this reader and, if configured,
+     *  readers that use additional connections.
+     *
+     *  @param channels Number of channels to fetch
+     *  @return Readers, at least one
+     *  @throws Exception on error
+     */
+    private List<RDBArchiveReader> getFetchReaders(final int channels) throws Exception
+    {
+        int needed = Math.min(channels, Preferences.getFetchConnections()) - 1;
+        final List<RDBArchiveReader> readers = new ArrayList<>();
+        readers.add(this);
+        synchronized (fetch_readers)
+        {
+            // Use additional connections that are available right now,
+            // don't wait for other readers to release theirs
+            while (fetch_readers.size() < needed)
+            {
+                final ConnectionCache.Entry connection = ConnectionCache.connect(rdb);
+                if (connection == null)
+                    break;
+                fetch_readers.add(new RDBArchiveReader(this, connection));
+            }
+            needed = Math.min(needed, fetch_readers.size());
+            for (int i=0; i<needed; ++i)
+                readers.add(fetch_readers.get(i));
+        }
+        return readers;
+    }
+
+    /** @param names Channel names
+     *  @return Map of channel names to numeric channel IDs
+     *  @throws UnknownChannelException when a channel is not known
+     *  @throws Exception on error
+     */
+    // Allow access from 'package' for tests
+    Map<String, Integer> getChannelIDs(final List<String> names) throws UnknownChannelException, Exception
+    {
+        final Map<String, Integer> ids = new HashMap<>();
+        for (int first=0; first<names.size(); first += MAX_NAMES_PER_QUERY)
+        {
+            final List<String> batch = names.subList(first, Math.min(names.size(), first + MAX_NAMES_PER_QUERY));
+            try
+            (
+                final PreparedStatement statement =
+                    rdb.getConnection().prepareStatement(sql.channelSelByNames(batch.size()));
+            )
+            {
+                if (timeout > 0)
+                    statement.setQueryTimeout(timeout);
+                for (int i=0; i<batch.size(); ++i)
+                    statement.setString(i+1, batch.get(i));
+                final ResultSet result = statement.executeQuery();
+                while (result.next())
+                    ids.put(result.getString(1), result.getInt(2));
+            }
+        }
+        for (String name : names)
+            if (! ids.containsKey(name))
+                throw new UnknownChannelException(name);
+        return ids;
+    }
+
     /** @param name Channel name
      *  @return Numeric channel ID
      *  @throws UnknownChannelException when channel not known
@@ -426,19 +614,25 @@ public class RDBArchiveReader implements ArchiveReader
     // Allow access from 'package' for tests
     int getChannelID(final String name) throws UnknownChannelException, Exception
     {
+        final PreparedStatement statement = prepareStatement(sql.channel_sel_by_name);
         try
-        (
-            final PreparedStatement statement =
-                rdb.getConnection().prepareStatement(sql.channel_sel_by_name);
-        )
         {
             if (timeout > 0)
                 statement.setQueryTimeout(timeout);
             statement.setString(1, name);
-            final ResultSet result = statement.executeQuery();
-            if (!result.next())
-                throw new UnknownChannelException(name);
-            return result.getInt(1);
+            try
+            (
+                final ResultSet result = statement.executeQuery();
+            )
+            {
+                if (!result.next())
+                    throw new UnknownChannelException(name);
+                return result.getInt(1);
+            }
+        }
+        finally
+        {
+            releaseStatement(statement);
         }
     }
 
@@ -493,6 +687,11 @@ public class RDBArchiveReader implements ArchiveReader
     @Override
     public void cancel()
     {
+        synchronized (fetch_readers)
+        {
+            for (RDBArchiveReader reader : fetch_readers)
+                reader.cancel();
+        }
         synchronized (cancellable_statements)
         {
             for (Statement statement : cancellable_statements)
@@ -534,6 +733,12 @@ public class RDBArchiveReader implements ArchiveReader
                 "Attempt to cleanup connection failed with Exception", ex); //$NON-NLS-1$
         }
         ConnectionCache.release(rdb);
+        synchronized (fetch_readers)
+        {
+            for (RDBArchiveReader reader : fetch_readers)
+                reader.close();
+            fetch_readers.clear();
+        }
     }
 
     @Override
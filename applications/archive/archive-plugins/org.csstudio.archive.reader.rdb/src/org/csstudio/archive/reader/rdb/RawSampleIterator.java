@@ -25,6 +25,9 @@ public class RawSampleIterator extends AbstractRDBValueIterator
     /** SELECT ... for the start .. end samples. */
     private PreparedStatement sel_samples = null;
 
+    /** Was <code>sel_samples</code> obtained from the reader's statement cache? */
+    private boolean cached_sel_samples = false;
+
     /** Result of <code>sel_samples</code> */
     private ResultSet result_set = null;
 
@@ -86,15 +89,13 @@ public class RawSampleIterator extends AbstractRDBValueIterator
 
         // Get time of initial sample
         final PreparedStatement statement =
-            reader.getConnection().prepareStatement(reader.getSQL().sample_sel_initial_time);
+            reader.prepareStatement(reader.getSQL().sample_sel_initial_time);
         reader.addForCancellation(statement);
         try
+        (
+            final ResultSet result = executeInitialTimeQuery(statement, start_stamp, end_stamp);
+        )
         {
-            statement.setInt(1, channel_id);
-            statement.setTimestamp(2, start_stamp);
-            if (statement.getParameterMetaData().getParameterCount() == 3)
-                statement.setTimestamp(3, end_stamp);
-            final ResultSet result = statement.executeQuery();
             if (result.next())
             {
                 // System.out.print("Start time corrected from " + start_stamp);
@@ -112,7 +113,7 @@ public class RawSampleIterator extends AbstractRDBValueIterator
         finally
         {
             reader.removeFromCancellation(statement);
-            statement.close();
+            reader.releaseStatement(statement);
         }
 
         boolean autoCommit = reader.getConnection().getAutoCommit();
@@ -127,16 +128,18 @@ public class RawSampleIterator extends AbstractRDBValueIterator
                 sel_samples = reader.getConnection().prepareStatement(
                         reader.getSQL().sample_sel_by_id_start_end_with_blob, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
             } else {
-                sel_samples = reader.getConnection().prepareStatement(
+                sel_samples = reader.prepareStatement(
                         reader.getSQL().sample_sel_by_id_start_end_with_blob);
+                cached_sel_samples = true;
             }
         } else {
             if (concurrency && reader.getDialect() == Dialect.PostgreSQL) {
                 sel_samples = reader.getConnection().prepareStatement(
                         reader.getSQL().sample_sel_by_id_start_end, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY);
             } else {
-                sel_samples = reader.getConnection().prepareStatement(
+                sel_samples = reader.prepareStatement(
                         reader.getSQL().sample_sel_by_id_start_end);
+                cached_sel_samples = true;
             }
         }
         sel_samples.setFetchDirection(ResultSet.FETCH_FORWARD);
@@ -163,6 +166,22 @@ public class RawSampleIterator extends AbstractRDBValueIterator
         // else leave value null to indicate end of samples
     }
 
+    /** @param statement Statement for the initial sample time
+     *  @param start_stamp Start time
+     *  @param end_stamp End time
+     *  @return Result of the query
+     *  @throws Exception on error
+     */
+    private ResultSet executeInitialTimeQuery(final PreparedStatement statement,
+            final java.sql.Timestamp start_stamp, final java.sql.Timestamp end_stamp) throws Exception
+    {
+        statement.setInt(1, channel_id);
+        statement.setTimestamp(2, start_stamp);
+        if (statement.getParameterMetaData().getParameterCount() == 3)
+            statement.setTimestamp(3, end_stamp);
+        return statement.executeQuery();
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean hasNext()
@@ -222,13 +241,18 @@ public class RawSampleIterator extends AbstractRDBValueIterator
         if (sel_samples != null)
         {
             reader.removeFromCancellation(sel_samples);
-            try
-            {
-                sel_samples.close();
-            }
-            catch (Exception ex)
+            if (cached_sel_samples)
+                reader.releaseStatement(sel_samples);
+            else
             {
-                // Ignore
+                try
+                {
+                    sel_samples.close();
+                }
+                catch (Exception ex)
+                {
+                    // Ignore
+                }
             }
             sel_samples = null;
         }
@@ -31,6 +31,8 @@ public class SQL
     final public String channel_sel_by_like;
     final public String channel_sel_by_reg_exp;
     final public String channel_sel_by_name;
+    /** Start of "SELECT name, channel_id .. WHERE name IN (" for several channels */
+    final public String channel_sel_by_names;
 
     // 'sample' table
     final public String sample_sel_initial_time;
@@ -38,6 +40,10 @@ public class SQL
     final public String sample_sel_by_id_start_end_with_blob;
     final public String sample_sel_array_vals;
     final public String sample_count_by_id_start_end;
+    /** Min/max/average per time bucket.
+     *  Parameters: Bucket origin, bucket size in seconds, channel_id, start, end
+     */
+    final public String sample_sel_buckets_by_id_start_end;
 
     /** Initialize SQL statements
      *  @param dialect RDB dialect
@@ -83,6 +89,7 @@ public class SQL
         }
 
         channel_sel_by_name = "SELECT channel_id FROM " + prefix + "channel WHERE name=?";
+        channel_sel_by_names = "SELECT name, channel_id FROM " + prefix + "channel WHERE name IN (";
 
         // 'sample' table
         if (dialect == RDBUtil.Dialect.Oracle)
@@ -131,5 +138,36 @@ public class SQL
         // Rough count, ignoring nanosecs for the non-Oracle dialects
         sample_count_by_id_start_end = "SELECT COUNT(*) FROM " + prefix + "sample" +
           "   WHERE channel_id=? AND smpl_time BETWEEN ? AND ?";
+
+        // Seconds between sample time and the bucket origin.
+        // Origin is a full second, nanosecs column is ignored.
+        final String seconds;
+        if (dialect == RDBUtil.Dialect.Oracle)
+            seconds = "(CAST(smpl_time AS DATE) - CAST(? AS DATE)) * 86400 + MOD(EXTRACT(SECOND FROM smpl_time), 1)";
+        else if (dialect == RDBUtil.Dialect.PostgreSQL)
+            seconds = "EXTRACT(EPOCH FROM (smpl_time - CAST(? AS TIMESTAMP)))";
+        else
+            seconds = "TIMESTAMPDIFF(MICROSECOND, ?, smpl_time) / 1000000.0";
+        // Samples of different severity/status are in separate rows of the same bucket
+        sample_sel_buckets_by_id_start_end =
+            "SELECT bucket, severity_id, status_id, MIN(smpl_time)," +
+            "       MIN(val), MAX(val), AVG(val), STDDEV_POP(val), COUNT(val), MIN(str_val)" +
+            "  FROM (SELECT FLOOR(" + seconds + " / ?) AS bucket," +
+            "               smpl_time, severity_id, status_id, COALESCE(float_val, num_val) AS val, str_val" +
+            "          FROM " + prefix + "sample" +
+            "         WHERE channel_id=? AND smpl_time>=? AND smpl_time<=?) buckets" +
+            " GROUP BY bucket, severity_id, status_id" +
+            " ORDER BY bucket";
+    }
+
+    /** @param count Number of channel names
+     *  @return SELECT name, channel_id for that many names
+     */
+    public String channelSelByNames(final int count)
+    {
+        final StringBuilder buf = new StringBuilder(channel_sel_by_names);
+        for (int i=0; i<count; ++i)
+            buf.append(i > 0 ? ", ?" : "?");
+        return buf.append(")").toString();
     }
 }
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.csstudio.archive.reader.ConcurrentFetch;
+import org.csstudio.archive.reader.UnknownChannelException;
+import org.csstudio.archive.reader.ValueIterator;
+import org.diirt.vtype.VString;
+import org.junit.Test;
+
+/** JUnit test of the {@link ConcurrentFetch}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ConcurrentFetchUnitTest
+{
+    final private static List<String> names = Arrays.asList("A", "B", "C", "D");
+
+    /** Results are in the order of the names, fetched concurrently */
+    @Test
+    public void testOrderAndConcurrency() throws Exception
+    {
+        final ConcurrentFetch fetch = new ConcurrentFetch(names.size());
+        // Each fetch waits until all fetches have started,
+        // which only completes when they run concurrently
+        final CountDownLatch started = new CountDownLatch(names.size());
+        final List<ValueIterator> iterators = fetch.fetch(names, (index, name) ->
+        {
+            started.countDown();
+            if (! started.await(10, TimeUnit.SECONDS))
+                throw new Exception("Fetches did not run concurrently");
+            // Later channels complete first
+            Thread.sleep(100 * (names.size() - index));
+            return DemoDataIterator.forStrings(name);
+        });
+
+        assertThat(iterators.size(), equalTo(names.size()));
+        for (int i=0; i<names.size(); ++i)
+        {
+            final ValueIterator iter = iterators.get(i);
+            final String value = ((VString) iter.next()).getValue();
+            System.out.println(value);
+            assertThat(value, equalTo(names.get(i) + " 1"));
+            iter.close();
+        }
+    }
+
+    /** Error in one fetch closes the iterators of the other fetches */
+    @Test
+    public void testError() throws Exception
+    {
+        final ConcurrentFetch fetch = new ConcurrentFetch(2);
+        final List<DemoDataIterator> fetched = new ArrayList<>();
+        try
+        {
+            fetch.fetch(names, (index, name) ->
+            {
+                if (name.equals("C"))
+                    throw new UnknownChannelException(name);
+                final DemoDataIterator iter = DemoDataIterator.forStrings(name);
+                synchronized (fetched)
+                {
+                    fetched.add(iter);
+                }
+                return iter;
+            });
+            fail("Fetched unknown channel");
+        }
+        catch (UnknownChannelException ex)
+        {
+            System.out.println("Expected: " + ex);
+        }
+        assertThat(fetched.size(), equalTo(names.size() - 1));
+        for (DemoDataIterator iter : fetched)
+            assertThat(iter.isOpen(), equalTo(false));
+    }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.OutputStream;
+import java.time.Instant;
+
+import org.csstudio.archive.reader.BinarySpreadsheetSink;
+import org.csstudio.archive.reader.MergingValueIterator;
+import org.csstudio.archive.reader.SpreadsheetIterator;
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit-based benchmark of the merging and spreadsheet iterators
+ *
+ *  <p>Not a test, compares rows per second for many channels
+ *  with the previous implementation that scanned all channels
+ *  for each sample and allocated a new array per spreadsheet line.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class SpreadsheetBenchmarkDemo
+{
+    final private static int CHANNELS = 200;
+    final private static int SAMPLES = 2000;
+    final private static int RUNS = 3;
+
+    /** @return Iterators where each channel has samples at different times */
+    private static ValueIterator[] createIterators()
+    {
+        final ValueIterator[] iters = new ValueIterator[CHANNELS];
+        for (int c=0; c<CHANNELS; ++c)
+        {
+            final VType[] values = new VType[SAMPLES];
+            for (int i=0; i<SAMPLES; ++i)
+                values[i] = new ArchiveVNumber(Instant.ofEpochSecond(1 + i*CHANNELS + c), AlarmSeverity.NONE, "OK", null, i);
+            iters[c] = new DemoDataIterator(values);
+        }
+        return iters;
+    }
+
+    /** Previous {@link SpreadsheetIterator}: Linear scan, one array per line */
+    private static long legacySpreadsheet(final ValueIterator[] iters) throws Exception
+    {
+        final VType[] raw_data = new VType[iters.length];
+        VType[] values = new VType[iters.length];
+        for (int i=0; i<iters.length; ++i)
+            raw_data[i] = iters[i].hasNext() ? iters[i].next() : null;
+        long lines = 0;
+        while (true)
+        {
+            Instant time = null;
+            for (int i=0; i<raw_data.length; ++i)
+            {
+                if (raw_data[i] == null)
+                    continue;
+                final Instant sample_time = VTypeHelper.getTimestamp(raw_data[i]);
+                if (time == null  ||  sample_time.compareTo(time) < 0)
+                    time = sample_time;
+            }
+            if (time == null)
+                return lines;
+            for (int i=0; i<raw_data.length; ++i)
+            {
+                if (raw_data[i] == null)
+                    continue;
+                if (VTypeHelper.getTimestamp(raw_data[i]).compareTo(time) <= 0)
+                {
+                    values[i] = raw_data[i];
+                    raw_data[i] = iters[i].hasNext() ? iters[i].next() : null;
+                }
+            }
+            values = values.clone();
+            ++lines;
+        }
+    }
+
+    private static long spreadsheet(final ValueIterator[] iters) throws Exception
+    {
+        final SpreadsheetIterator sheet = new SpreadsheetIterator(iters);
+        final VType[] line = new VType[iters.length];
+        long lines = 0;
+        while (sheet.hasNext())
+        {
+            sheet.next(line);
+            ++lines;
+        }
+        return lines;
+    }
+
+    private static long merge(final ValueIterator[] iters) throws Exception
+    {
+        final ValueIterator merge = new MergingValueIterator(iters);
+        long samples = 0;
+        while (merge.hasNext())
+        {
+            merge.next();
+            ++samples;
+        }
+        return samples;
+    }
+
+    private static long binaryExport(final ValueIterator[] iters) throws Exception
+    {
+        final SpreadsheetIterator sheet = new SpreadsheetIterator(iters);
+        final BinarySpreadsheetSink sink = new BinarySpreadsheetSink(new OutputStream()
+        {
+            @Override
+            public void write(final int b)
+            {
+                // Discard
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len)
+            {
+                // Discard
+            }
+        });
+        final long lines = sheet.writeTo(sink);
+        sink.close();
+        return lines;
+    }
+
+    private interface Benchmark
+    {
+        long run(ValueIterator[] iters) throws Exception;
+    }
+
+    private static void measure(final String title, final Benchmark benchmark) throws Exception
+    {
+        for (int run=0; run<RUNS; ++run)
+        {
+            final ValueIterator[] iters = createIterators();
+            final long start = System.nanoTime();
+            final long rows = benchmark.run(iters);
+            final double secs = (System.nanoTime() - start) / 1e9;
+            assertThat(rows, equalTo((long) CHANNELS * SAMPLES));
+            System.out.format("%-25s: %8d rows, %8.3f s, %10.0f rows/sec\n", title, rows, secs, rows/secs);
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception
+    {
+        System.out.println(CHANNELS + " channels, " + SAMPLES + " samples each");
+        measure("Legacy spreadsheet", SpreadsheetBenchmarkDemo::legacySpreadsheet);
+        measure("SpreadsheetIterator", SpreadsheetBenchmarkDemo::spreadsheet);
+        measure("MergingValueIterator", SpreadsheetBenchmarkDemo::merge);
+        measure("Binary spreadsheet export", SpreadsheetBenchmarkDemo::binaryExport);
+    }
+}
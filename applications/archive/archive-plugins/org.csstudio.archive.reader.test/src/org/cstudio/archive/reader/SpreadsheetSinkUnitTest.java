@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.StringWriter;
+import java.time.Instant;
+
+import org.csstudio.archive.reader.BinarySpreadsheetSink;
+import org.csstudio.archive.reader.CSVSpreadsheetSink;
+import org.csstudio.archive.reader.SpreadsheetIterator;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.DefaultVTypeFormat;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link CSVSpreadsheetSink} and {@link BinarySpreadsheetSink}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class SpreadsheetSinkUnitTest
+{
+    /** Numbers 1, 2, 3 at given seconds */
+    private static DemoDataIterator createNumbers(final int... seconds)
+    {
+        final VType[] values = new VType[seconds.length];
+        for (int i=0; i<values.length; ++i)
+            values[i] = new ArchiveVNumber(Instant.ofEpochSecond(seconds[i]), AlarmSeverity.NONE, "OK", null, i+1);
+        return new DemoDataIterator(values);
+    }
+
+    /** Re-used line must match the copied lines */
+    @Test
+    public void testReusedLine() throws Exception
+    {
+        final SpreadsheetIterator copy = new SpreadsheetIterator(DemoDataIterator.forStrings("A"), DemoDataIterator.forStrings("B", 5));
+        final SpreadsheetIterator reuse = new SpreadsheetIterator(DemoDataIterator.forStrings("A"), DemoDataIterator.forStrings("B", 5));
+        final VType[] line = new VType[2];
+        int count = 0;
+        while (copy.hasNext())
+        {
+            assertThat(reuse.hasNext(), equalTo(true));
+            assertThat(reuse.getTime(), equalTo(copy.getTime()));
+            final VType[] expected = copy.next();
+            assertThat(reuse.next(line), equalTo(line));
+            assertThat(line[0], equalTo(expected[0]));
+            assertThat(line[1], equalTo(expected[1]));
+            ++count;
+        }
+        assertThat(reuse.hasNext(), equalTo(false));
+        assertThat(count, equalTo(15));
+        copy.close();
+        reuse.close();
+    }
+
+    @Test
+    public void testCSV() throws Exception
+    {
+        final SpreadsheetIterator sheet = new SpreadsheetIterator(createNumbers(1, 2, 3), createNumbers(2, 4));
+        final StringWriter text = new StringWriter();
+        final CSVSpreadsheetSink sink = new CSVSpreadsheetSink(text, new DefaultVTypeFormat(), ",");
+        sink.writeHeader("x", "y");
+        assertThat(sheet.writeTo(sink), equalTo(4L));
+        sink.close();
+        sheet.close();
+        final String[] lines = text.toString().split("\n");
+        System.out.println(text);
+        assertThat(lines.length, equalTo(5));
+        assertThat(lines[0], equalTo("# Time,x,y"));
+        assertThat(lines[1].endsWith(",1.0,"), equalTo(true));
+        assertThat(lines[2].endsWith(",2.0,1.0"), equalTo(true));
+        assertThat(lines[3].endsWith(",3.0,1.0"), equalTo(true));
+        assertThat(lines[4].endsWith(",3.0,2.0"), equalTo(true));
+    }
+
+    @Test
+    public void testBinary() throws Exception
+    {
+        final SpreadsheetIterator sheet = new SpreadsheetIterator(createNumbers(1, 2, 3), createNumbers(2, 4));
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final BinarySpreadsheetSink sink = new BinarySpreadsheetSink(buf);
+        sink.writeHeader("x", "y");
+        assertThat(sheet.writeTo(sink), equalTo(4L));
+        sink.close();
+        sheet.close();
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf.toByteArray()));
+        assertThat(in.readInt(), equalTo(BinarySpreadsheetSink.MAGIC));
+        assertThat(in.readInt(), equalTo(2));
+        assertThat(in.readUTF(), equalTo("x"));
+        assertThat(in.readUTF(), equalTo("y"));
+        final long[] seconds = { 1, 2, 3, 4 };
+        final double[] x = { 1, 2, 3, 3 };
+        final double[] y = { Double.NaN, 1, 1, 2 };
+        for (int i=0; i<seconds.length; ++i)
+        {
+            assertThat(in.readLong(), equalTo(seconds[i]));
+            assertThat(in.readInt(), equalTo(0));
+            assertThat(in.readByte(), equalTo((byte) AlarmSeverity.NONE.ordinal()));
+            assertThat(in.readDouble(), equalTo(x[i]));
+            assertThat(in.readByte(), equalTo(Double.isNaN(y[i]) ? (byte) -1 : (byte) AlarmSeverity.NONE.ordinal()));
+            assertThat(in.readDouble(), equalTo(y[i]));
+        }
+        assertThat(in.available(), equalTo(0));
+    }
+}
@@ -9,6 +9,8 @@ package org.csstudio.archive.reader;
 
 import java.io.Closeable;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 /** Interface to archive data retrieval.
  *  <p>
@@ -165,6 +167,77 @@ public interface ArchiveReader extends Closeable
     public ValueIterator getOptimizedValues(int key, String name,
         Instant start, Instant end, int count) throws UnknownChannelException, Exception;
 
+    /** Read original, raw samples for several channels.
+     *  <p>
+     *  Implementations should fetch the channels concurrently
+     *  or use a multi-channel query of the archive.
+     *  The default implementation calls
+     *  {@link #getRawValues(int, String, Instant, Instant)} for one
+     *  channel after the other.
+     *
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @return ValueIterators for the 'raw' samples, one per channel in the order of the names
+     *  @throws UnknownChannelException when a channel is not known
+     *  @throws Exception on error
+     *  @see ConcurrentFetch
+     */
+    public default List<ValueIterator> getRawValues(final int key, final List<String> names,
+            final Instant start, final Instant end) throws UnknownChannelException, Exception
+    {
+        final List<ValueIterator> iterators = new ArrayList<>(names.size());
+        try
+        {
+            for (String name : names)
+                iterators.add(getRawValues(key, name, start, end));
+        }
+        catch (Exception ex)
+        {
+            for (ValueIterator iterator : iterators)
+                iterator.close();
+            throw ex;
+        }
+        return iterators;
+    }
+
+    /** Read optimized samples for several channels.
+     *  <p>
+     *  Implementations should fetch the channels concurrently
+     *  or use a multi-channel query of the archive.
+     *  The default implementation calls
+     *  {@link #getOptimizedValues(int, String, Instant, Instant, int)} for one
+     *  channel after the other.
+     *
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values per channel
+     *  @return ValueIterators, one per channel in the order of the names
+     *  @throws UnknownChannelException when a channel is not known
+     *  @throws Exception on error
+     *  @see ConcurrentFetch
+     */
+    public default List<ValueIterator> getOptimizedValues(final int key, final List<String> names,
+            final Instant start, final Instant end, final int count) throws UnknownChannelException, Exception
+    {
+        final List<ValueIterator> iterators = new ArrayList<>(names.size());
+        try
+        {
+            for (String name : names)
+                iterators.add(getOptimizedValues(key, name, start, end, count));
+        }
+        catch (Exception ex)
+        {
+            for (ValueIterator iterator : iterators)
+                iterator.close();
+            throw ex;
+        }
+        return iterators;
+    }
+
     /** Cancel an ongoing archive query.
      *  It's up to the implementation to support this for all queries,
      *  or only 'getSamples', or not at all.
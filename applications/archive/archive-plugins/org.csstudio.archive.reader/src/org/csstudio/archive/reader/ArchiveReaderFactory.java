@@ -18,4 +18,13 @@ public interface ArchiveReaderFactory
      *  @throws Exception on error
      */
     public ArchiveReader getArchiveReader(String url) throws Exception;
+
+    /** @return <code>true</code> if the factory caches readers and returns
+     *          the same reader to every caller for a URL.
+     *          Callers must then not close the reader.
+     */
+    public default boolean isSharingReaders()
+    {
+        return false;
+    }
 }
@@ -95,8 +95,33 @@ public class ArchiveRepository
      *  @param url Archive URL
      *  @return ArchiveReader for given URL
      *  @throws Exception on error (no suitable reader, or internal error)
+     *  @see #isSharedReader(String)
      */
     public ArchiveReader getArchiveReader(final String url) throws Exception
+    {
+        return getFactory(url).getArchiveReader(url);
+    }
+
+    /** Check if the reader for a URL is shared
+     *
+     *  <p>Readers that are not shared must be closed by the caller.
+     *  Shared readers must be left open, since closing them
+     *  would abort requests of other callers.
+     *
+     *  @param url Archive URL
+     *  @return <code>true</code> if the reader for the URL is shared
+     *  @throws Exception on error (no suitable reader)
+     */
+    public boolean isSharedReader(final String url) throws Exception
+    {
+        return getFactory(url).isSharingReaders();
+    }
+
+    /** @param url Archive URL
+     *  @return {@link ArchiveReaderFactory} for the URL
+     *  @throws Exception on error (no suitable reader)
+     */
+    private ArchiveReaderFactory getFactory(final String url) throws Exception
     {
         // Determine prefix
         final int delim = url.indexOf(':');
@@ -108,6 +133,6 @@ public class ArchiveRepository
         final ArchiveReaderFactory factory = reader_factories.get(prefix);
         if (factory == null)
             throw new Exception("Unknown archive reader URL " + url);
-        return factory.getArchiveReader(url);
+        return factory;
     }
 }
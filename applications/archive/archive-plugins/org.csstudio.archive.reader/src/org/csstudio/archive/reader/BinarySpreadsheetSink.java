@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.VType;
+
+/** {@link SpreadsheetSink} that writes a compact binary file
+ *
+ *  <p>Big-endian layout as written by {@link DataOutputStream}:
+ *  <pre>
+ *  int     MAGIC
+ *  int     channel count N
+ *  UTF     channel name, N times
+ *  Lines until end of file:
+ *  long    epoch seconds
+ *  int     nanoseconds
+ *  N times:
+ *    byte    alarm severity ordinal, -1 if channel has no value
+ *    double  value, NaN if channel has no value or value is not numeric
+ *  </pre>
+ *
+ *  @author Kay Kasemir
+ */
+public class BinarySpreadsheetSink implements SpreadsheetSink
+{
+    /** Start of the file, "CSSS" */
+    final public static int MAGIC = 0x43535353;
+
+    final private DataOutputStream out;
+
+    /** @param out Stream for output, will be buffered and closed by the sink */
+    public BinarySpreadsheetSink(final OutputStream out)
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64*1024));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeHeader(final String... channels) throws Exception
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(channels.length);
+        for (String channel : channels)
+            out.writeUTF(channel);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeLine(final Instant time, final VType[] values) throws Exception
+    {
+        out.writeLong(time.getEpochSecond());
+        out.writeInt(time.getNano());
+        for (VType value : values)
+        {
+            if (value == null)
+            {
+                out.writeByte(-1);
+                out.writeDouble(Double.NaN);
+            }
+            else
+            {
+                out.writeByte(VTypeHelper.getSeverity(value).ordinal());
+                out.writeDouble(VTypeHelper.toDouble(value));
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws Exception
+    {
+        out.close();
+    }
+}
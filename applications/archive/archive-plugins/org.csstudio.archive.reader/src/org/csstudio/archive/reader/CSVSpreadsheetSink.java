@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.io.BufferedWriter;
+import java.io.Writer;
+import java.time.Instant;
+
+import org.csstudio.archive.vtype.TimestampHelper;
+import org.csstudio.archive.vtype.VTypeFormat;
+import org.diirt.vtype.VType;
+
+/** {@link SpreadsheetSink} that writes text lines with delimited columns
+ *
+ *  <p>Each line is formatted into one re-used buffer
+ *  and then written to a buffered writer.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class CSVSpreadsheetSink implements SpreadsheetSink
+{
+    final private Writer out;
+    final private VTypeFormat format;
+    final private String delimiter;
+    final private StringBuilder line = new StringBuilder(1024);
+
+    /** @param out Writer for output, will be buffered and closed by the sink
+     *  @param format Format for the values
+     *  @param delimiter Column delimiter, for example "," or "\t"
+     */
+    public CSVSpreadsheetSink(final Writer out, final VTypeFormat format, final String delimiter)
+    {
+        this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out, 64*1024);
+        this.format = format;
+        this.delimiter = delimiter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeHeader(final String... channels) throws Exception
+    {
+        line.setLength(0);
+        line.append("# Time");
+        for (String channel : channels)
+            line.append(delimiter).append(channel);
+        line.append('\n');
+        out.append(line);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeLine(final Instant time, final VType[] values) throws Exception
+    {
+        line.setLength(0);
+        line.append(TimestampHelper.format(time));
+        for (VType value : values)
+        {
+            line.append(delimiter);
+            if (value != null)
+                format.format(value, line);
+        }
+        line.append('\n');
+        out.append(line);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws Exception
+    {
+        out.close();
+    }
+}
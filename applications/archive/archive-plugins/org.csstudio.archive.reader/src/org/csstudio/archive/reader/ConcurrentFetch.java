@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Helper for fetching several channels concurrently.
+ *
+ *  <p>Runs the per-channel fetch on a bounded pool of threads
+ *  and returns the resulting {@link ValueIterator}s in the
+ *  order of the requested channel names.
+ *
+ *  <p>Used by {@link ArchiveReader} implementations for
+ *  {@link ArchiveReader#getRawValues(int, List, java.time.Instant, java.time.Instant)}
+ *  and
+ *  {@link ArchiveReader#getOptimizedValues(int, List, java.time.Instant, java.time.Instant, int)}
+ *  when their single-channel calls are thread-safe.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ConcurrentFetch
+{
+    /** Fetch for one channel */
+    @FunctionalInterface
+    public static interface ChannelFetch
+    {
+        /** @param index Index of the channel in the list of requested names
+         *  @param name Channel name
+         *  @return {@link ValueIterator} for the channel
+         *  @throws Exception on error
+         */
+        public ValueIterator fetch(int index, String name) throws Exception;
+    }
+
+    /** Default number of fetch threads */
+    final public static int DEFAULT_THREADS = 8;
+
+    private static ConcurrentFetch instance = null;
+
+    final private ThreadPoolExecutor executor;
+
+    /** @return Shared instance with {@link #DEFAULT_THREADS} */
+    public static synchronized ConcurrentFetch getDefault()
+    {
+        if (instance == null)
+            instance = new ConcurrentFetch(DEFAULT_THREADS);
+        return instance;
+    }
+
+    /** @param threads Maximum number of concurrent fetches */
+    public ConcurrentFetch(final int threads)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        final ThreadFactory factory = runnable ->
+        {
+            final Thread thread = new Thread(runnable, "ArchiveFetch " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                                          new LinkedBlockingQueue<>(), factory);
+        // Idle threads exit, so an unused helper costs nothing
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Fetch channels concurrently
+     *
+     *  <p>Blocks until all channels have been fetched.
+     *  If any fetch fails, the iterators of the other channels are closed
+     *  and the first error is thrown.
+     *
+     *  @param names Channel names
+     *  @param fetch Fetch for one channel
+     *  @return {@link ValueIterator}s, one per name, in the order of the names
+     *  @throws UnknownChannelException when a channel is not known
+     *  @throws Exception on error
+     */
+    public List<ValueIterator> fetch(final List<String> names, final ChannelFetch fetch) throws UnknownChannelException, Exception
+    {
+        final int N = names.size();
+        final List<ValueIterator> iterators = new ArrayList<>(N);
+        // Single channel: Skip the thread hand-off
+        if (N == 1)
+        {
+            iterators.add(fetch.fetch(0, names.get(0)));
+            return iterators;
+        }
+
+        final List<Future<ValueIterator>> results = new ArrayList<>(N);
+        for (int i=0; i<N; ++i)
+        {
+            final int index = i;
+            final String name = names.get(i);
+            results.add(executor.submit(() -> fetch.fetch(index, name)));
+        }
+
+        Exception error = null;
+        boolean interrupted = false;
+        for (Future<ValueIterator> result : results)
+        {
+            if (result.isCancelled())
+                continue;
+            try
+            {
+                iterators.add(result.get());
+            }
+            catch (ExecutionException ex)
+            {
+                if (error == null)
+                    error = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            }
+            catch (InterruptedException ex)
+            {
+                interrupted = true;
+                if (error == null)
+                    error = ex;
+                // Drop fetches that have not started.
+                // Fetches in progress complete so their iterators can be closed
+                for (Future<ValueIterator> other : results)
+                    other.cancel(false);
+            }
+        }
+        if (error != null)
+        {
+            for (ValueIterator iterator : iterators)
+                if (iterator != null)
+                    iterator.close();
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            throw error;
+        }
+        return iterators;
+    }
+
+    /** @return Number of fetches that are queued or active */
+    public int getPendingCount()
+    {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+}
@@ -7,21 +7,19 @@
  ******************************************************************************/
 package org.csstudio.archive.reader;
 
-import java.time.Instant;
-
-import org.csstudio.archive.vtype.VTypeHelper;
 import org.diirt.vtype.VType;
 
 /** Merge values from several <code>ValueIterator</code> based on time stamps
+ *  <p>
+ *  Keeps the current sample of each base iterator in a heap
+ *  ordered by time stamp, so each value costs O(log K) for K iterators.
+ *  Samples with the same time stamp are returned in the order of the iterators.
  *  @author Kay Kasemir
  */
 public class MergingValueIterator implements ValueIterator
 {
-    /** The iterators for the individual channels. */
-    final private ValueIterator iters[];
-
-    /** The 'current' values of each <code>iter</code>. */
-    private VType raw_data[];
+    /** The 'current' values of each base iterator, ordered by time */
+    final private SampleHeap heap;
 
     private VType value;
 
@@ -31,12 +29,7 @@ public class MergingValueIterator implements ValueIterator
      */
     public MergingValueIterator(final ValueIterator... iters) throws Exception
     {
-        this.iters = iters;
-
-        // Get first sample from each base iterator
-        raw_data = new VType[iters.length];
-        for (int i=0; i<iters.length; ++i)
-            raw_data[i] = iters[i].hasNext() ? iters[i].next() :  null;
+        heap = new SampleHeap(iters);
         fetchNext();
     }
 
@@ -45,35 +38,20 @@ public class MergingValueIterator implements ValueIterator
      */
     private void fetchNext() throws Exception
     {
-        // Find oldest time stamp
-        Instant time = null;
-        int index = -1;
-        for (int i=0; i<raw_data.length; ++i)
-        {
-            if (raw_data[i] == null)
-                continue;
-            final Instant sample_time = VTypeHelper.getTimestamp(raw_data[i]);
-            if (time == null  ||  sample_time.compareTo(time) < 0)
-            {
-                time = sample_time;
-                index = i;
-            }
-        }
-        if (time == null)
+        if (heap.isEmpty())
         {   // No channel left with any data.
-            raw_data = null;
             value = null;
             return;
         }
-        value = raw_data[index];
-        raw_data[index] = iters[index].hasNext() ? iters[index].next() :  null;
+        value = heap.getSample(heap.peek());
+        heap.advance();
     }
 
     /** {@inheritDoc} */
     @Override
     public boolean hasNext()
     {
-        return raw_data != null;
+        return value != null;
     }
 
     /** {@inheritDoc} */
@@ -91,7 +69,6 @@ public class MergingValueIterator implements ValueIterator
     @Override
     public void close()
     {
-        for (ValueIterator iter : iters)
-            iter.close();
+        heap.close();
     }
 }
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.time.Instant;
+
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.VType;
+
+/** Current samples of several <code>ValueIterator</code> instances,
+ *  ordered by time stamp.
+ *  <p>
+ *  Binary min-heap of channel indices, keyed by the time stamp of the
+ *  channel's current sample and then by channel index,
+ *  so channels with the same time stamp are handled in their original order.
+ *  Finding the oldest sample is O(1), advancing a channel is O(log K)
+ *  for K channels, and no objects are allocated per sample.
+ *
+ *  @author Kay Kasemir
+ */
+class SampleHeap
+{
+    /** The iterators for the individual channels. */
+    final private ValueIterator iters[];
+
+    /** The 'current' value of each channel, <code>null</code> when done */
+    final private VType samples[];
+
+    /** Time stamp of each <code>samples</code> entry */
+    final private Instant times[];
+
+    /** Heap of channel indices */
+    final private int heap[];
+
+    /** Number of channels in <code>heap</code> */
+    private int size = 0;
+
+    /** Constructor.
+     *  @param iters The 'base' iterators.
+     *  @throws Exception on error in archive access
+     */
+    public SampleHeap(final ValueIterator... iters) throws Exception
+    {
+        this.iters = iters;
+        samples = new VType[iters.length];
+        times = new Instant[iters.length];
+        heap = new int[iters.length];
+        // Get first sample from each base iterator
+        for (int i=0; i<iters.length; ++i)
+            fetch(i);
+    }
+
+    /** @return <code>true</code> if no channel has any more data */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /** @return Index of channel with the oldest sample.
+     *          Only valid if not <code>isEmpty()</code>
+     */
+    public int peek()
+    {
+        return heap[0];
+    }
+
+    /** @return Time stamp of the oldest sample, <code>null</code> if empty */
+    public Instant peekTime()
+    {
+        return size > 0 ? times[heap[0]] : null;
+    }
+
+    /** @param channel Channel index
+     *  @return Current sample of that channel
+     */
+    public VType getSample(final int channel)
+    {
+        return samples[channel];
+    }
+
+    /** Remove the channel with the oldest sample from the heap.
+     *  <p>
+     *  Its sample remains available via <code>getSample</code>
+     *  until <code>fetch</code> is called for the channel.
+     *  @return Index of channel with the oldest sample
+     */
+    public int poll()
+    {
+        final int channel = heap[0];
+        --size;
+        if (size > 0)
+        {
+            heap[0] = heap[size];
+            siftDown(0);
+        }
+        return channel;
+    }
+
+    /** Read the next sample of a channel that is not in the heap,
+     *  adding it to the heap if there is one
+     *  @param channel Channel index
+     *  @throws Exception on error in archive access
+     */
+    public void fetch(final int channel) throws Exception
+    {
+        if (! read(channel))
+            return;
+        heap[size] = channel;
+        siftUp(size++);
+    }
+
+    /** Replace the oldest sample with the next sample of that channel
+     *  @throws Exception on error in archive access
+     */
+    public void advance() throws Exception
+    {
+        if (read(heap[0]))
+            siftDown(0);
+        else
+            poll();
+    }
+
+    /** @param channel Channel index
+     *  @return <code>true</code> if channel has a new sample
+     *  @throws Exception on error in archive access
+     */
+    private boolean read(final int channel) throws Exception
+    {
+        if (! iters[channel].hasNext())
+        {
+            samples[channel] = null;
+            times[channel] = null;
+            return false;
+        }
+        samples[channel] = iters[channel].next();
+        times[channel] = VTypeHelper.getTimestamp(samples[channel]);
+        return true;
+    }
+
+    /** @return <code>true</code> if channel <code>a</code> is ordered before <code>b</code> */
+    private boolean isBefore(final int a, final int b)
+    {
+        final int cmp = times[a].compareTo(times[b]);
+        return cmp < 0  ||  (cmp == 0  &&  a < b);
+    }
+
+    private void siftUp(int pos)
+    {
+        final int channel = heap[pos];
+        while (pos > 0)
+        {
+            final int parent = (pos - 1) >>> 1;
+            if (! isBefore(channel, heap[parent]))
+                break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = channel;
+    }
+
+    private void siftDown(int pos)
+    {
+        final int channel = heap[pos];
+        final int half = size >>> 1;
+        while (pos < half)
+        {
+            int child = 2*pos + 1;
+            if (child + 1 < size  &&  isBefore(heap[child + 1], heap[child]))
+                ++child;
+            if (! isBefore(heap[child], channel))
+                break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = channel;
+    }
+
+    /** Close all base iterators */
+    public void close()
+    {
+        for (ValueIterator iter : iters)
+            iter.close();
+    }
+}
@@ -18,6 +18,9 @@ import org.diirt.vtype.VType;
  *  It uses staircase interpolation, basically keeping the last value
  *  of a channel until all channels reach a new timestamp.
  *  <p>
+ *  The current samples of all channels are kept in a heap ordered by time,
+ *  so each line only touches the channels that change in that line.
+ *  <p>
  *  While it uses the common Java <code>Iterator</code> idea with
  *  <code>hasNext()/next()</code> for the values, pay attention to
  *  the comments for <code>getTime()</code>!
@@ -28,14 +31,14 @@ public class SpreadsheetIterator
 {
     final private static boolean debug = false;
 
-    /** The iterators for the individual channels. */
-    final private ValueIterator iters[];
-
-    /** The 'current' values of each <code>iter</code>.
-     *  This is usually the 'next' value, stamped after <code>time</code>.
+    /** The 'current' values of each base iterator, ordered by time.
+     *  These are usually the 'next' values, stamped after <code>time</code>.
      *  @see #values
      */
-    private VType raw_data[];
+    final private SampleHeap heap;
+
+    /** Channels that were used for the current line, need to fetch their next sample */
+    final private int used[];
 
     /** The timestamp for the current spreadsheet 'line'. */
     private Instant time;
@@ -50,17 +53,13 @@ public class SpreadsheetIterator
     @SuppressWarnings("nls")
     public SpreadsheetIterator(final ValueIterator... iters) throws Exception
     {
-        this.iters = iters;
-
         // Get first sample from each base iterator
-        raw_data = new VType[iters.length];
+        heap = new SampleHeap(iters);
+        used = new int[iters.length];
         values = new VType[iters.length];
-        for (int i=0; i<iters.length; ++i)
-        {
-            raw_data[i] = iters[i].hasNext()  ?  iters[i].next()  :  null;
-            if (debug)
-                System.out.println("Initial " + i + ": " + VTypeHelper.toString(raw_data[i]));
-        }
+        if (debug)
+            for (int i=0; i<iters.length; ++i)
+                System.out.println("Initial " + i + ": " + VTypeHelper.toString(heap.getSample(i)));
         getNextSpreadsheetLine();
     }
 
@@ -121,6 +120,44 @@ public class SpreadsheetIterator
         return result;
     }
 
+    /** Get the next set of values into a caller-provided line,
+     *  and move iterator to the following line.
+     *  <p>
+     *  Same as <code>next()</code>, but allows re-using one
+     *  line array for the complete spreadsheet instead of
+     *  allocating a new array per line.
+     *
+     *  @param line Array for one sample per channel, size must match number of channels
+     *  @return <code>line</code>, filled with the next spreadsheet line
+     *  @throws Exception on error
+     *  @see #next()
+     */
+    public VType[] next(final VType[] line) throws Exception
+    {
+        assert hasNext();
+        System.arraycopy(values, 0, line, 0, values.length);
+        getNextSpreadsheetLine();
+        return line;
+    }
+
+    /** Write all remaining spreadsheet lines to a sink
+     *  @param sink {@link SpreadsheetSink}
+     *  @return Number of lines written
+     *  @throws Exception on error
+     */
+    public long writeTo(final SpreadsheetSink sink) throws Exception
+    {
+        final VType[] line = new VType[used.length];
+        long count = 0;
+        while (hasNext())
+        {
+            final Instant line_time = time;
+            sink.writeLine(line_time, next(line));
+            ++count;
+        }
+        return count;
+    }
+
     /** Fill <code>time</code> and <code>values</code> with the next
      *  spreadsheet line.
      *  @throws Exception on error
@@ -128,15 +165,7 @@ public class SpreadsheetIterator
     private void getNextSpreadsheetLine() throws Exception
     {
         // Find oldest timestamp
-        time = null;
-        for (int i=0; i<raw_data.length; ++i)
-        {
-            if (raw_data[i] == null)
-                continue;
-            final Instant sample_time = VTypeHelper.getTimestamp(raw_data[i]);
-            if (time == null  ||  sample_time.compareTo(time) < 0)
-                time = sample_time;
-        }
+        time = heap.peekTime();
         if (time == null)
         {   // No channel left with any data.
             values = null;
@@ -147,29 +176,26 @@ public class SpreadsheetIterator
             System.out.println("Next time stamp: " + time.toString()); //$NON-NLS-1$
 
         // 'time' now defines the current spreadsheet line.
-        for (int i=0; i<raw_data.length; ++i)
+        // Channels with samples at 'time' use them for this line.
+        // Channels without new data, or with data stamped after 'time',
+        // remain at their last known value[i] until 'time' catches up.
+        // This also covers the initial values[i] == null case.
+        int count = 0;
+        while (! heap.isEmpty()  &&  heap.peekTime().compareTo(time) <= 0)
         {
-            // Channel has no new data? Leave at last known value[i].
-            if (raw_data[i] == null)
-                continue;
-            // Channel has data.
-            if (VTypeHelper.getTimestamp(raw_data[i]).compareTo(time) <= 0)
-            {   // 'raw_data' is still valid, so use it ....
-                values[i] = raw_data[i];
-                // and get next sample in preparation for next()
-                raw_data[i] = iters[i].hasNext()  ?  iters[i].next()  :  null;
-            }
-            // else: raw_data.time is already > time,
-            // so leave values[i] as is until 'time' catches up
-            // with raw_data.time.
-            // This also covers the initial values[i] == null case.
+            final int channel = heap.poll();
+            values[channel] = heap.getSample(channel);
+            used[count++] = channel;
         }
+        // Get next sample in preparation for next().
+        // Only now, after polling, so channel provides at most one sample per line
+        for (int i=0; i<count; ++i)
+            heap.fetch(used[i]);
     }
 
     /** Must be called to release resources */
     public void close()
     {
-        for (ValueIterator iter : iters)
-            iter.close();
+        heap.close();
     }
 }
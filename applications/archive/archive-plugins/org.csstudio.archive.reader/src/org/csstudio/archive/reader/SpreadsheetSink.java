@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.time.Instant;
+
+import org.diirt.vtype.VType;
+
+/** Receiver of spreadsheet lines
+ *
+ *  <p>Lines are passed on as they are read from the {@link SpreadsheetIterator},
+ *  without keeping the complete spreadsheet in memory.
+ *  The <code>values</code> array may be re-used for the following line,
+ *  so a sink must not keep a reference to it.
+ *
+ *  @author Kay Kasemir
+ */
+public interface SpreadsheetSink extends AutoCloseable
+{
+    /** Write header, called once before the first line
+     *  @param channels Names of the channels, one per spreadsheet column
+     *  @throws Exception on error
+     */
+    public void writeHeader(String... channels) throws Exception;
+
+    /** Write one spreadsheet line
+     *  @param time Time stamp of the line
+     *  @param values Value for each channel, may contain <code>null</code>
+     *  @throws Exception on error
+     */
+    public void writeLine(Instant time, VType[] values) throws Exception;
+
+    /** Flush and close the output
+     *  @throws Exception on error
+     */
+    @Override
+    public void close() throws Exception;
+}
@@ -0,0 +1,480 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.csstudio.archive.rdb.ArrayBlobCodec;
+import org.postgresql.PGConnection;
+
+/** Buffer for samples that are written to PostgreSQL via binary COPY
+ *
+ *  <p>Samples of all types are encoded right away into one
+ *  re-used buffer in the PostgreSQL binary COPY format,
+ *  without creating per-sample JDBC parameters or text.
+ *  {@link #copy(Connection)} then streams the buffer to the sample table.
+ *
+ *  <p>The binary format requires the exact column types,
+ *  which are read from the database since for example
+ *  the partitioning setup uses REAL instead of DOUBLE PRECISION
+ *  for the float_val column.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class PGCopySampleBuffer
+{
+    /** Columns of the sample table, in the order used for COPY */
+    final private static String[] COLUMNS =
+    {
+        "channel_id", "smpl_time", "nanosecs", "severity_id", "status_id",
+        "num_val", "float_val", "str_val", "datatype", "array_val"
+    };
+
+    /** Signature of the binary COPY format */
+    final private static byte[] SIGNATURE =
+    {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0
+    };
+
+    /** Seconds from 1970-01-01 to the PostgreSQL epoch 2000-01-01 */
+    final private static long PG_EPOCH_SECS = 946684800L;
+
+    /** Binary representation of 'datatype' for scalars */
+    final private static byte[] SCALAR_DATATYPE = " ".getBytes(StandardCharsets.US_ASCII);
+
+    /** Binary representation of 'datatype' for double arrays */
+    final private static byte[] DOUBLE_ARRAY_DATATYPE = ArrayBlobCodec.DOUBLE.getBytes(StandardCharsets.US_ASCII);
+
+    /** Binary representation of 'datatype' for columnar arrays */
+    final private static byte[] COLUMNAR_ARRAY_DATATYPE = ArrayBlobCodec.COLUMNAR.getBytes(StandardCharsets.US_ASCII);
+
+    /** Supported column types */
+    enum ColumnType
+    {
+        INT2, INT4, INT8, FLOAT4, FLOAT8, TIMESTAMP, TIMESTAMPTZ, TEXT, BYTEA;
+
+        /** @param pg_type PostgreSQL type name
+         *  @return {@link ColumnType}
+         *  @throws Exception when type is not supported
+         */
+        static ColumnType fromPostgres(final String pg_type) throws Exception
+        {
+            switch (pg_type.toLowerCase())
+            {
+            case "int2":        return INT2;
+            case "int4":        return INT4;
+            case "int8":        return INT8;
+            case "float4":      return FLOAT4;
+            case "float8":      return FLOAT8;
+            case "timestamp":   return TIMESTAMP;
+            case "timestamptz": return TIMESTAMPTZ;
+            case "varchar":
+            case "bpchar":
+            case "text":        return TEXT;
+            case "bytea":       return BYTEA;
+            default:
+                throw new Exception("Unsupported column type " + pg_type);
+            }
+        }
+    }
+
+    /** Byte buffer that allows reading the data without a copy */
+    private static class Buffer extends ByteArrayOutputStream
+    {
+        Buffer()
+        {
+            super(64*1024);
+        }
+
+        ByteArrayInputStream getInput()
+        {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+
+        /** @param size Size to which the buffer is truncated */
+        void truncate(final int size)
+        {
+            count = size;
+        }
+    }
+
+    /** "COPY .. FROM STDIN" statement */
+    final private String copy_statement;
+
+    /** Types of the {@link #COLUMNS} */
+    final private ColumnType channel_type, time_type, nanosecs_type, severity_type, status_type,
+                             num_type, float_type;
+
+    /** Time zone used for TIMESTAMP without time zone, matching the JDBC setTimestamp() */
+    final private ZoneId zone = ZoneId.systemDefault();
+
+    /** Encoded samples */
+    final private Buffer buffer = new Buffer();
+
+    /** Output for encoding into the buffer */
+    final private DataOutputStream out = new DataOutputStream(buffer);
+
+    /** Number of samples in buffer */
+    private int rows = 0;
+
+    /** Initialize
+     *  @param connection Connection used to determine the column types
+     *  @param schema Schema, may be <code>null</code> or empty
+     *  @param table Sample table
+     *  @throws Exception on error, including unsupported column types
+     */
+    public PGCopySampleBuffer(final Connection connection, final String schema, final String table) throws Exception
+    {
+        this(readColumnTypes(connection, schema, table),
+             (schema == null || schema.isEmpty()) ? table : schema + "." + table);
+    }
+
+    /** Initialize
+     *  @param types Types of the {@link #COLUMNS}
+     *  @param table Sample table, including schema prefix
+     *  @throws Exception on error, including unsupported column types
+     */
+    PGCopySampleBuffer(final ColumnType[] types, final String table) throws Exception
+    {
+        channel_type = checkInteger(types[0]);
+        time_type = types[1];
+        if (time_type != ColumnType.TIMESTAMP  &&  time_type != ColumnType.TIMESTAMPTZ)
+            throw new Exception("Unsupported smpl_time type " + time_type);
+        nanosecs_type = checkInteger(types[2]);
+        severity_type = checkInteger(types[3]);
+        status_type = checkInteger(types[4]);
+        num_type = checkInteger(types[5]);
+        float_type = types[6];
+        if (float_type != ColumnType.FLOAT4  &&  float_type != ColumnType.FLOAT8)
+            throw new Exception("Unsupported float_val type " + float_type);
+        if (types[7] != ColumnType.TEXT  ||  types[8] != ColumnType.TEXT)
+            throw new Exception("Unsupported str_val, datatype types " + types[7] + ", " + types[8]);
+        if (types[9] != ColumnType.BYTEA)
+            throw new Exception("Unsupported array_val type " + types[9]);
+
+        copy_statement = "COPY " + table + " (" + String.join(", ", COLUMNS) + ") FROM STDIN WITH (FORMAT binary)";
+        clear();
+    }
+
+    /** @param connection Connection
+     *  @param schema Schema, may be <code>null</code> or empty
+     *  @param table Sample table
+     *  @return Types of the {@link #COLUMNS}
+     *  @throws Exception on error
+     */
+    private static ColumnType[] readColumnTypes(final Connection connection, final String schema, final String table) throws Exception
+    {
+        final ColumnType[] types = new ColumnType[COLUMNS.length];
+        final DatabaseMetaData meta = connection.getMetaData();
+        try
+        (
+            final ResultSet result = meta.getColumns(connection.getCatalog(),
+                                                     (schema == null || schema.isEmpty()) ? null : schema.toLowerCase(),
+                                                     table.toLowerCase(), null);
+        )
+        {
+            while (result.next())
+            {
+                final String column = result.getString("COLUMN_NAME");
+                for (int i=0; i<COLUMNS.length; ++i)
+                    if (COLUMNS[i].equalsIgnoreCase(column))
+                        types[i] = ColumnType.fromPostgres(result.getString("TYPE_NAME"));
+            }
+        }
+        for (int i=0; i<COLUMNS.length; ++i)
+            if (types[i] == null)
+                throw new Exception("Cannot locate column " + COLUMNS[i] + " of table " + table);
+        return types;
+    }
+
+    private static ColumnType checkInteger(final ColumnType type) throws Exception
+    {
+        if (type != ColumnType.INT2  &&  type != ColumnType.INT4  &&  type != ColumnType.INT8)
+            throw new Exception("Expected integer column, got " + type);
+        return type;
+    }
+
+    /** @return Number of samples in buffer */
+    public int size()
+    {
+        return rows;
+    }
+
+    /** @return Number of bytes in buffer */
+    public int getByteCount()
+    {
+        return buffer.size();
+    }
+
+    /** Add double sample
+     *  @param channel_id Channel ID
+     *  @param time Time stamp
+     *  @param severity Severity ID
+     *  @param status Status ID
+     *  @param value Value
+     *  @param array Array elements as used for array_val, or <code>null</code>
+     *  @throws Exception on error
+     */
+    public void addDouble(final int channel_id, final Instant time, final int severity, final int status,
+                          final double value, final byte[] array) throws Exception
+    {
+        addDouble(channel_id, time, severity, status, value, ArrayBlobCodec.DOUBLE, array);
+    }
+
+    /** Add double sample
+     *  @param channel_id Channel ID
+     *  @param time Time stamp
+     *  @param severity Severity ID
+     *  @param status Status ID
+     *  @param value Value
+     *  @param datatype {@link ArrayBlobCodec} datatype of the array elements
+     *  @param array Array elements as used for array_val, or <code>null</code>
+     *  @throws Exception on error
+     */
+    public void addDouble(final int channel_id, final Instant time, final int severity, final int status,
+                          final double value, final String datatype, final byte[] array) throws Exception
+    {
+        final int row_start = startRow(channel_id, time, severity, status);
+        try
+        {
+            writeNull();                                    // num_val
+            if (float_type == ColumnType.FLOAT4)
+            {
+                out.writeInt(4);
+                out.writeFloat((float) value);
+            }
+            else
+            {
+                out.writeInt(8);
+                out.writeDouble(value);
+            }
+            writeNull();                                    // str_val
+            if (array == null)
+            {
+                writeBytes(SCALAR_DATATYPE);
+                writeNull();
+            }
+            else
+            {
+                writeBytes(ArrayBlobCodec.COLUMNAR.equals(datatype)
+                           ? COLUMNAR_ARRAY_DATATYPE
+                           : DOUBLE_ARRAY_DATATYPE);
+                writeBytes(array);
+            }
+        }
+        catch (Exception ex)
+        {
+            buffer.truncate(row_start);
+            throw ex;
+        }
+        ++rows;
+    }
+
+    /** Add integer sample
+     *  @param channel_id Channel ID
+     *  @param time Time stamp
+     *  @param severity Severity ID
+     *  @param status Status ID
+     *  @param value Value
+     *  @return <code>false</code> if the value does not fit into the num_val column,
+     *          in which case nothing was added
+     *  @throws Exception on error
+     */
+    public boolean addLong(final int channel_id, final Instant time, final int severity, final int status,
+                           final long value) throws Exception
+    {
+        if (! fits(num_type, value))
+            return false;
+        final int row_start = startRow(channel_id, time, severity, status);
+        try
+        {
+            writeInteger(num_type, value);
+            writeNull();                                    // float_val
+            writeNull();                                    // str_val
+            writeBytes(SCALAR_DATATYPE);
+            writeNull();                                    // array_val
+        }
+        catch (Exception ex)
+        {
+            buffer.truncate(row_start);
+            throw ex;
+        }
+        ++rows;
+        return true;
+    }
+
+    /** Add text sample
+     *  @param channel_id Channel ID
+     *  @param time Time stamp
+     *  @param severity Severity ID
+     *  @param status Status ID
+     *  @param value Value
+     *  @throws Exception on error
+     */
+    public void addText(final int channel_id, final Instant time, final int severity, final int status,
+                        final String value) throws Exception
+    {
+        final int row_start = startRow(channel_id, time, severity, status);
+        try
+        {
+            writeNull();                                    // num_val
+            writeNull();                                    // float_val
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            writeBytes(SCALAR_DATATYPE);
+            writeNull();                                    // array_val
+        }
+        catch (Exception ex)
+        {
+            buffer.truncate(row_start);
+            throw ex;
+        }
+        ++rows;
+    }
+
+    /** Write the columns common to all samples
+     *
+     *  <p>When a column of the row cannot be encoded,
+     *  the caller must truncate the buffer to the start of the row
+     *  to keep the COPY data valid.
+     *
+     *  @return Start of the row in the buffer
+     */
+    private int startRow(final int channel_id, final Instant time, final int severity, final int status) throws Exception
+    {
+        final int row_start = buffer.size();
+        try
+        {
+            out.writeShort(COLUMNS.length);
+            writeInteger(channel_type, channel_id);
+            // Like the batched inserts, place seconds into smpl_time and nanoseconds into nanosecs
+            final long seconds = time_type == ColumnType.TIMESTAMP
+                               ? time.atZone(zone).toLocalDateTime().toEpochSecond(ZoneOffset.UTC)
+                               : time.getEpochSecond();
+            out.writeInt(8);
+            out.writeLong((seconds - PG_EPOCH_SECS) * 1000000L);
+            writeInteger(nanosecs_type, time.getNano());
+            writeInteger(severity_type, severity);
+            writeInteger(status_type, status);
+        }
+        catch (Exception ex)
+        {
+            buffer.truncate(row_start);
+            throw ex;
+        }
+        return row_start;
+    }
+
+    private static boolean fits(final ColumnType type, final long value)
+    {
+        switch (type)
+        {
+        case INT2: return value >= Short.MIN_VALUE  &&  value <= Short.MAX_VALUE;
+        case INT4: return value >= Integer.MIN_VALUE  &&  value <= Integer.MAX_VALUE;
+        default:   return true;
+        }
+    }
+
+    private void writeInteger(final ColumnType type, final long value) throws IOException
+    {
+        if (! fits(type, value))
+            throw new IOException("Value " + value + " exceeds " + type);
+        switch (type)
+        {
+        case INT2:
+            out.writeInt(2);
+            out.writeShort((int) value);
+            break;
+        case INT4:
+            out.writeInt(4);
+            out.writeInt((int) value);
+            break;
+        default:
+            out.writeInt(8);
+            out.writeLong(value);
+        }
+    }
+
+    private void writeBytes(final byte[] bytes) throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeNull() throws IOException
+    {
+        out.writeInt(-1);
+    }
+
+    /** @return Buffered data, including the COPY trailer. For tests. */
+    byte[] toByteArray() throws IOException
+    {
+        final byte[] data = buffer.toByteArray();
+        final byte[] result = new byte[data.length + 2];
+        System.arraycopy(data, 0, result, 0, data.length);
+        result[data.length] = (byte) 0xFF;
+        result[data.length+1] = (byte) 0xFF;
+        return result;
+    }
+
+    /** Stream buffered samples to the database, then clear the buffer
+     *
+     *  <p>Caller needs to commit.
+     *  On error, the buffer is also cleared and the caller needs
+     *  to roll back.
+     *
+     *  @param connection Connection to PostgreSQL
+     *  @return Number of rows written
+     *  @throws Exception on error
+     */
+    public long copy(final Connection connection) throws Exception
+    {
+        if (rows <= 0)
+            return 0;
+        try
+        {
+            // File trailer
+            out.writeShort(-1);
+            out.flush();
+            return connection.unwrap(PGConnection.class)
+                             .getCopyAPI()
+                             .copyIn(copy_statement, buffer.getInput());
+        }
+        finally
+        {
+            clear();
+        }
+    }
+
+    /** Clear the buffer */
+    public void clear()
+    {
+        buffer.reset();
+        rows = 0;
+        try
+        {   // File header: Signature, flags, header extension length
+            out.write(SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+        catch (IOException ex)
+        {   // ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -7,14 +7,13 @@
  ******************************************************************************/
 package org.csstudio.archive.writer.rdb;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -22,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
+import org.csstudio.archive.rdb.ArrayBlobCodec;
 import org.csstudio.archive.rdb.RDBArchivePreferences;
 import org.csstudio.archive.vtype.MetaDataHelper;
 import org.csstudio.archive.vtype.TimestampHelper;
@@ -57,6 +57,12 @@ public class RDBArchiveWriter implements ArchiveWriter
 
     final private boolean use_array_blob;
 
+    /** SAMPLE.DATATYPE for array BLOBs, see {@link ArrayBlobCodec} */
+    final private String array_datatype;
+
+    /** Compress columnar array BLOBs? */
+    final private boolean compress_array_blob;
+
     /** RDB connection */
     final private RDBUtil rdb;
 
@@ -96,6 +102,16 @@ public class RDBArchiveWriter implements ArchiveWriter
     /** Counter for accumulated samples in 'String' batch */
     private int batched_txt_inserts = 0;
 
+    /** Buffer for samples written via PostgreSQL COPY, or <code>null</code> when using batched inserts */
+    private PGCopySampleBuffer copy_samples = null;
+
+    /** Number of consecutive COPY failures */
+    private int copy_failures = 0;
+
+    /** Copy of samples in <code>copy_samples</code>, used to fall back to batched inserts */
+    private final List<RDBWriteChannel> copied_channel = new ArrayList<RDBWriteChannel>();
+    private final List<VType> copied_samples = new ArrayList<VType>();
+
     /** Copy of batched samples, used to display batch errors */
     private final List<RDBWriteChannel> batched_channel = new ArrayList<RDBWriteChannel>();
     private final List<VType> batched_samples = new ArrayList<VType>();
@@ -122,8 +138,27 @@ public class RDBArchiveWriter implements ArchiveWriter
      */
     public RDBArchiveWriter(final String url, final String user, final String password,
             final String schema, boolean use_array_blob) throws Exception
+    {
+        this(url, user, password, schema, use_array_blob, Preferences.isUsePostgresCopy());
+    }
+
+    /** Initialize
+     *  @param url RDB URL
+     *  @param user .. user name
+     *  @param password .. password
+     *  @param schema Schema/table prefix, not including ".". May be empty
+     *  @param use_array_blob Use BLOB for array elements?
+     *  @param use_postgres_copy Use COPY instead of INSERT for PostgreSQL?
+     *  @throws Exception on error, for example RDB connection error
+     */
+    public RDBArchiveWriter(final String url, final String user, final String password,
+            final String schema, boolean use_array_blob, final boolean use_postgres_copy) throws Exception
     {
         this.use_array_blob = use_array_blob;
+        array_datatype = RDBArchivePreferences.useColumnarArrayBlob()
+                       ? ArrayBlobCodec.COLUMNAR
+                       : ArrayBlobCodec.DOUBLE;
+        compress_array_blob = RDBArchivePreferences.compressArrayBlob();
         rdb = RDBUtil.connect(url, user, password, false);
         sql = new SQL(rdb.getDialect(), schema);
         severities = new SeverityCache(rdb, sql);
@@ -136,6 +171,18 @@ public class RDBArchiveWriter implements ArchiveWriter
         // auto-commit is off, then enables it briefly as needed,
         // and otherwise commits/rolls back.
         rdb.getConnection().setAutoCommit(false);
+
+        if (use_postgres_copy  &&  rdb.getDialect() == Dialect.PostgreSQL)
+        {
+            try
+            {
+                copy_samples = new PGCopySampleBuffer(rdb.getConnection(), schema, Preferences.getWriteSampleTable());
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Cannot use COPY, falling back to INSERT", ex);
+            }
+        }
     }
 
     @Override
@@ -174,9 +221,17 @@ public class RDBArchiveWriter implements ArchiveWriter
     {
         final RDBWriteChannel rdb_channel = (RDBWriteChannel) channel;
         writeMetaData(rdb_channel, sample);
-        batchSample(rdb_channel, sample);
-        batched_channel.add(rdb_channel);
-        batched_samples.add(sample);
+        if (copy_samples != null  &&  copySample(rdb_channel, sample))
+        {
+            copied_channel.add(rdb_channel);
+            copied_samples.add(sample);
+        }
+        else
+        {
+            batchSample(rdb_channel, sample);
+            batched_channel.add(rdb_channel);
+            batched_samples.add(sample);
+        }
     }
 
     /** Write meta data if it was never written or has changed
@@ -219,27 +274,73 @@ public class RDBArchiveWriter implements ArchiveWriter
         }
     }
 
-    /**
-     * Create a new prepared statement. For PostgreSQL connections, this method
-     * create a PGCopyPreparedStatement to improve insert speed using COPY
-     * insetad of INSERT.
-     *
-     * @param sqlQuery
-     * @return
-     * @throws SQLException
-     * @throws Exception
+    /** Add sample to the PostgreSQL COPY buffer.
+     *  <p>Needs eventual flush()
+     *  @param channel Channel
+     *  @param sample Sample to insert
+     *  @return <code>false</code> if sample cannot be handled via COPY and requires batched insert
+     *  @throws Exception on error
      */
-    @SuppressWarnings("resource")
-    private PreparedStatement createInsertPrepareStatement(String sqlQuery)
-            throws SQLException, Exception {
-        PreparedStatement statement = null;
-        if (rdb.getDialect() == Dialect.PostgreSQL
-                && Preferences.isUsePostgresCopy()) {
-            statement = new PGCopyPreparedStatement(rdb.getConnection(),
-                    sqlQuery);
-        } else {
-            statement = rdb.getConnection().prepareStatement(sqlQuery);
+    private boolean copySample(final RDBWriteChannel channel, final VType sample) throws Exception
+    {
+        // Arrays without BLOB use the array_val table
+        if (sample instanceof VNumberArray  &&  !use_array_blob)
+            return false;
+
+        final Instant time = VTypeHelper.getTimestamp(sample);
+        final int severity = severities.findOrCreate(VTypeHelper.getSeverity(sample));
+        final Status status = stati.findOrCreate(VTypeHelper.getMessage(sample));
+
+        // Severity/status cache may enable auto-commit
+        if (rdb.getConnection().getAutoCommit() == true)
+            rdb.getConnection().setAutoCommit(false);
+
+        if (sample instanceof VDouble)
+            copyDoubleSample(channel, time, severity, status, ((VDouble)sample).getValue(), ArrayBlobCodec.SCALAR, null);
+        else if (sample instanceof VNumber)
+        {    // Write as double or integer?
+            final Number number = ((VNumber)sample).getValue();
+            if (number instanceof Double)
+                copyDoubleSample(channel, time, severity, status, number.doubleValue(), ArrayBlobCodec.SCALAR, null);
+            else
+                return copy_samples.addLong(channel.getId(), time, severity, status.getId(), number.longValue());
+        }
+        else if (sample instanceof VNumberArray)
+        {
+            final ListNumber data = ((VNumberArray)sample).getData();
+            copyDoubleSample(channel, time, severity, status,
+                             data.size() > 0 ? data.getDouble(0) : Double.NaN, array_datatype, encodeArrayBlob(data));
+        }
+        else if (sample instanceof VEnum)
+            return copy_samples.addLong(channel.getId(), time, severity, status.getId(), ((VEnum)sample).getIndex());
+        else if (sample instanceof VString)
+            copy_samples.addText(channel.getId(), time, severity, status.getId(), limitText(channel, ((VString)sample).getValue()));
+        else // Handle possible other types as strings
+            copy_samples.addText(channel.getId(), time, severity, status.getId(), limitText(channel, sample.toString()));
+        return true;
+    }
+
+    /** Helper for copySample: Add double sample to COPY buffer, patching NaN */
+    private void copyDoubleSample(final RDBWriteChannel channel, final Instant time, int severity,
+                                  Status status, double dbl, final String datatype, final byte[] array) throws Exception
+    {
+        if (Double.isNaN(dbl))
+        {
+            dbl = 0.0;
+            severity = severities.findOrCreate(AlarmSeverity.UNDEFINED);
+            status = stati.findOrCreate(NOT_A_NUMBER_STATUS);
         }
+        copy_samples.addDouble(channel.getId(), time, severity, status.getId(), dbl, datatype, array);
+    }
+
+    /** Create a new prepared statement
+     *  @param sqlQuery SQL
+     *  @return {@link PreparedStatement}
+     *  @throws Exception on error
+     */
+    private PreparedStatement createInsertPrepareStatement(String sqlQuery) throws Exception
+    {
+        final PreparedStatement statement = rdb.getConnection().prepareStatement(sqlQuery);
         if (SQL_TIMEOUT_SECS > 0)
             statement.setQueryTimeout(SQL_TIMEOUT_SECS);
         return statement;
@@ -342,24 +443,15 @@ public class RDBArchiveWriter implements ArchiveWriter
         }
         else
         {   // More array elements
-            final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-            final DataOutputStream dout = new DataOutputStream(bout);
-            // Indicate 'Double' as data type
-            final int N = additional.size();
-            dout.writeInt(N);
-            // Write binary data for array elements
-            for (int i=0; i<N; ++i)
-                dout.writeDouble(additional.getDouble(i));
-            dout.close();
-            final byte[] asBytes = bout.toByteArray();
+            final byte[] asBytes = encodeArrayBlob(additional);
             if (rdb.getDialect() == Dialect.Oracle)
             {
-                insert_double_sample.setString(6, "d");
+                insert_double_sample.setString(6, array_datatype);
                 insert_double_sample.setBytes(7, asBytes);
             }
             else
             {
-                insert_double_sample.setString(7, "d");
+                insert_double_sample.setString(7, array_datatype);
                 insert_double_sample.setBytes(8, asBytes);
             }
         }
@@ -368,6 +460,16 @@ public class RDBArchiveWriter implements ArchiveWriter
         ++batched_double_inserts;
     }
 
+    /** @param data Array elements
+     *  @return BLOB for array_val column, encoded for <code>array_datatype</code>
+     */
+    private byte[] encodeArrayBlob(final ListNumber data)
+    {
+        if (ArrayBlobCodec.COLUMNAR.equals(array_datatype))
+            return ArrayBlobCodec.encodeColumnar(data, compress_array_blob);
+        return ArrayBlobCodec.encodeDouble(data);
+    }
+
     /** Add 'insert' for double samples to batch, handling arrays
      *  via the original array_val table
      */
@@ -451,18 +553,25 @@ public class RDBArchiveWriter implements ArchiveWriter
         {
             insert_txt_sample = createInsertPrepareStatement(sql.sample_insert_string);
         }
-        if (txt.length() > MAX_TEXT_SAMPLE_LENGTH)
-        {
-            Activator.getLogger().log(Level.INFO,
-                "Value of {0} exceeds {1} chars: {2}",
-                new Object[] { channel.getName(), MAX_TEXT_SAMPLE_LENGTH, txt });
-            txt = txt.substring(0, MAX_TEXT_SAMPLE_LENGTH);
-        }
-        insert_txt_sample.setString(5, txt);
+        insert_txt_sample.setString(5, limitText(channel, txt));
         completeAndBatchInsert(insert_txt_sample, channel, stamp, severity, status);
         ++batched_txt_inserts;
     }
 
+    /** @param channel Channel
+     *  @param txt Text sample
+     *  @return Text truncated to maximum length
+     */
+    private String limitText(final RDBWriteChannel channel, final String txt)
+    {
+        if (txt.length() <= MAX_TEXT_SAMPLE_LENGTH)
+            return txt;
+        Activator.getLogger().log(Level.INFO,
+            "Value of {0} exceeds {1} chars: {2}",
+            new Object[] { channel.getName(), MAX_TEXT_SAMPLE_LENGTH, txt });
+        return txt.substring(0, MAX_TEXT_SAMPLE_LENGTH);
+    }
+
     /** Helper for batchSample:
      *  Set the parameters common to all insert statements, add to batch.
      */
@@ -493,61 +602,44 @@ public class RDBArchiveWriter implements ArchiveWriter
     }
 
     /** {@inheritDoc}
-     *  RDB implementation completes pending batches
+     *  RDB implementation completes pending batches.
+     *
+     *  <p>COPY and all batches are committed as one transaction.
+     *  When the flush fails, nothing is committed,
+     *  so the caller can write all samples of the flush again.
      */
     @Override
     public void flush() throws Exception
     {
         try
         {
+            flushCopy();
+            // In principle executeBatch could return update counts for
+            // each batched insert, but Oracle 10g and 11g just throw
+            // an exception
             if (batched_double_inserts > 0)
-            {
-                try
-                {
-                    checkBatchExecution(insert_double_sample);
-                }
-                finally
-                {
-                    batched_double_inserts = 0;
-                }
-            }
+                insert_double_sample.executeBatch();
             if (batched_long_inserts > 0)
-            {
-                try
-                {
-                    checkBatchExecution(insert_long_sample);
-                }
-                finally
-                {
-                    batched_long_inserts = 0;
-                }
-            }
+                insert_long_sample.executeBatch();
             if (batched_txt_inserts > 0)
-            {
-                try
-                {
-                    checkBatchExecution(insert_txt_sample);
-                }
-                finally
-                {
-                    batched_txt_inserts = 0;
-                }
-            }
+                insert_txt_sample.executeBatch();
             if (batched_double_array_inserts > 0)
-            {
-                try
-                {
-                    checkBatchExecution(insert_array_sample);
-                }
-                finally
-                {
-                    batched_double_array_inserts = 0;
-                }
-            }
+                insert_array_sample.executeBatch();
+            rdb.getConnection().commit();
         }
         catch (final Exception ex)
         {
-            if (ex.getMessage().contains("unique"))
+            try
+            {   // With Oracle 10g, the BatchUpdateException doesn't
+                // indicate which of the batched commands faulted,
+                // so roll back all of them
+                rdb.getConnection().rollback();
+            }
+            catch (Exception nested)
+            {
+                Activator.getLogger().log(Level.WARNING, "rollback() error after batch issue", nested);
+            }
+            if (ex.getMessage() != null  &&  ex.getMessage().contains("unique"))
             {
                 System.out.println(new Date().toString() + " Unique constraint error in these samples: " + ex.getMessage()); //$NON-NLS-1$
                 if (batched_samples.size() != batched_channel.size())
@@ -560,42 +652,80 @@ public class RDBArchiveWriter implements ArchiveWriter
         }
         finally
         {
+            // Drop batches that were not executed because of an error
+            batched_double_inserts = clearBatch(insert_double_sample, batched_double_inserts);
+            batched_long_inserts = clearBatch(insert_long_sample, batched_long_inserts);
+            batched_txt_inserts = clearBatch(insert_txt_sample, batched_txt_inserts);
+            batched_double_array_inserts = clearBatch(insert_array_sample, batched_double_array_inserts);
             batched_channel.clear();
             batched_samples.clear();
         }
     }
 
-    /** Submit and clear the batch, or roll back on error */
-    private void checkBatchExecution(final PreparedStatement insert) throws Exception
+    /** Add samples in COPY buffer to the current transaction.
+     *  On error, fall back to batched inserts for these samples.
+     *  The next flush will again try COPY, for example after the
+     *  connection was re-established.
+     */
+    private void flushCopy() throws Exception
     {
+        if (copy_samples == null  ||  copy_samples.size() <= 0)
+            return;
         try
-        {   // Try to perform the inserts
-            // In principle this could return update counts for
-            // each batched insert, but Oracle 10g and 11g just throw
-            // an exception
-            insert.executeBatch();
-            rdb.getConnection().commit();
+        {
+            copy_samples.copy(rdb.getConnection());
+            if (copy_failures > 0)
+            {
+                Activator.getLogger().log(Level.INFO, "COPY succeeded after " + copy_failures + " failures");
+                copy_failures = 0;
+            }
         }
-        catch (final Exception ex)
+        catch (Exception ex)
+        {
+            // Log the first of consecutive failures as warning
+            Activator.getLogger().log(copy_failures++ == 0 ? Level.WARNING : Level.FINE,
+                                      "COPY failed, falling back to INSERT", ex);
+            try
+            {   // Failed COPY aborted the transaction, which so far only held the COPY
+                rdb.getConnection().rollback();
+            }
+            catch (Exception nested)
+            {
+                Activator.getLogger().log(Level.WARNING, "rollback() error after COPY issue", nested);
+            }
+            // Re-submit as batched inserts
+            for (int i=0; i<copied_samples.size(); ++i)
+            {
+                batchSample(copied_channel.get(i), copied_samples.get(i));
+                batched_channel.add(copied_channel.get(i));
+                batched_samples.add(copied_samples.get(i));
+            }
+        }
+        finally
+        {
+            copied_channel.clear();
+            copied_samples.clear();
+        }
+    }
+
+    /** @param insert Statement with batch to clear, may be <code>null</code>
+     *  @param count Number of batched inserts
+     *  @return 0 for the cleared count
+     */
+    private int clearBatch(final PreparedStatement insert, final int count)
+    {
+        if (insert != null  &&  count > 0)
         {
             try
             {
-                // On failure, roll back.
-                // With Oracle 10g, the BatchUpdateException doesn't
-                // indicate which of the batched commands faulted...
                 insert.clearBatch();
-                // Still: Commit what's committable.
-                // Unfortunately no way to know what failed,
-                // and no way to re-submit the 'remaining' inserts.
-                rdb.getConnection().commit();
             }
-            catch (Exception nested)
+            catch (Exception ex)
             {
-                Activator.getLogger().log(Level.WARNING,
-                        "clearBatch(), commit() error after batch issue", nested);
+                Activator.getLogger().log(Level.WARNING, "clearBatch() error", ex);
             }
-            throw ex;
         }
+        return 0;
     }
 
     /** The batched insert failed, so try to insert this channel's sample
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+import org.csstudio.archive.rdb.ArrayBlobCodec;
+import org.diirt.util.array.ArrayByte;
+import org.diirt.util.array.ArrayDouble;
+import org.diirt.util.array.ArrayFloat;
+import org.diirt.util.array.ArrayInt;
+import org.diirt.util.array.ArrayLong;
+import org.diirt.util.array.ArrayShort;
+import org.diirt.util.array.ListNumber;
+import org.junit.Test;
+
+/** JUnit test of the {@link ArrayBlobCodec}
+ *
+ *  <p>Checks the BLOB encodings without a database,
+ *  and benchmarks the decoding of waveforms.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ArrayBlobCodecUnitTest
+{
+    /** @param N Number of elements
+     *  @return Slowly changing waveform
+     */
+    private static double[] createWaveform(final int N)
+    {
+        final double[] data = new double[N];
+        for (int i=0; i<N; ++i)
+            data[i] = Math.round(1000.0 * Math.sin(i * 2 * Math.PI / N)) / 100.0;
+        return data;
+    }
+
+    private static void checkEquals(final ListNumber expected, final ListNumber actual)
+    {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); ++i)
+            assertEquals(expected.getDouble(i), actual.getDouble(i), 0.0);
+    }
+
+    /** Original 'd' encoding: int count, doubles */
+    @Test
+    public void testDoubleEncoding() throws Exception
+    {
+        final byte[] blob = ArrayBlobCodec.encodeDouble(new ArrayDouble(0.0, 1.0));
+        assertArrayEquals(new byte[]
+        {
+            0, 0, 0, 2,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0x3F, (byte) 0xF0, 0, 0, 0, 0, 0, 0
+        }, blob);
+
+        // Integer arrays are written as double
+        final ListNumber data = ArrayBlobCodec.decode(ArrayBlobCodec.DOUBLE,
+                                                      ArrayBlobCodec.encodeDouble(new ArrayInt(1, 2, 3)));
+        checkEquals(new ArrayDouble(1.0, 2.0, 3.0), data);
+    }
+
+    /** Columnar encoding keeps element type */
+    @Test
+    public void testColumnarEncoding() throws Exception
+    {
+        final ListNumber[] arrays =
+        {
+            new ArrayDouble(createWaveform(100)),
+            new ArrayDouble(-1.0, Double.NaN, Double.NEGATIVE_INFINITY, Double.MAX_VALUE),
+            new ArrayFloat(3.14f, -2.0f, 1e-20f),
+            new ArrayLong(Long.MIN_VALUE, 0, Long.MAX_VALUE, 42),
+            new ArrayInt(Integer.MAX_VALUE, Integer.MIN_VALUE, 1, 2, 3),
+            new ArrayShort(Short.MIN_VALUE, (short)0, Short.MAX_VALUE),
+            new ArrayByte((byte)-128, (byte)0, (byte)127, (byte)1),
+            new ArrayDouble(new double[0]),
+        };
+        for (ListNumber data : arrays)
+            for (boolean compress : new boolean[] { false, true })
+            {
+                final byte[] blob = ArrayBlobCodec.encodeColumnar(data, compress);
+                checkEquals(data, ArrayBlobCodec.decode(ArrayBlobCodec.COLUMNAR, blob));
+            }
+
+        // Header, then 2 bytes per short
+        final byte[] blob = ArrayBlobCodec.encodeColumnar(new ArrayShort((short)1, (short)2), false);
+        assertArrayEquals(new byte[] { 's', 0, 0, 0, 0, 2, 0, 1, 0, 2 }, blob);
+    }
+
+    /** @param datatype SAMPLE.DATATYPE
+     *  @param blob Invalid BLOB
+     *  @return Message of the exception thrown by the decoder
+     */
+    private static String decodeInvalid(final String datatype, final byte[] blob)
+    {
+        try
+        {
+            ArrayBlobCodec.decode(datatype, blob);
+        }
+        catch (Exception ex)
+        {
+            assertEquals(Exception.class, ex.getClass());
+            return ex.getMessage();
+        }
+        fail("Decoded invalid BLOB");
+        return null;
+    }
+
+    /** Invalid BLOBs are reported before allocating arrays for their elements */
+    @Test
+    public void testInvalidBlobs() throws Exception
+    {
+        // Unknown element type, compressed or not
+        for (byte flags : new byte[] { 0, ArrayBlobCodec.DEFLATE })
+            assertTrue(decodeInvalid(ArrayBlobCodec.COLUMNAR, new byte[] { 'x', flags, 0, 0, 0, 2, 0, 0 })
+                       .contains("unknown element type"));
+
+        // Element count exceeds what the BLOB can hold
+        assertTrue(decodeInvalid(ArrayBlobCodec.COLUMNAR, new byte[] { 'd', 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0 })
+                   .contains("exceeds"));
+        assertTrue(decodeInvalid(ArrayBlobCodec.COLUMNAR, new byte[] { 'd', ArrayBlobCodec.DEFLATE, 0x7F, 0, 0, 0, 1, 2, 3 })
+                   .contains("exceeds"));
+        assertTrue(decodeInvalid(ArrayBlobCodec.COLUMNAR, new byte[] { 'i', 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF })
+                   .contains("exceeds"));
+        assertTrue(decodeInvalid(ArrayBlobCodec.DOUBLE, new byte[] { 0x7F, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 })
+                   .contains("exceeds"));
+    }
+
+    /** Compression of slowly changing waveform */
+    @Test
+    public void testCompression() throws Exception
+    {
+        final int[] ramp = new int[4000];
+        for (int i=0; i<ramp.length; ++i)
+            ramp[i] = i;
+        final ListNumber data = new ArrayInt(ramp);
+        final byte[] plain = ArrayBlobCodec.encodeColumnar(data, false);
+        final byte[] compressed = ArrayBlobCodec.encodeColumnar(data, true);
+        System.out.println("Int ramp: " + plain.length + " bytes, compressed " + compressed.length);
+        assertTrue(compressed.length < plain.length / 10);
+        checkEquals(data, ArrayBlobCodec.decode(ArrayBlobCodec.COLUMNAR, compressed));
+
+        final ListNumber wave = new ArrayDouble(createWaveform(4000));
+        System.out.println("Waveform: " + ArrayBlobCodec.encodeColumnar(wave, false).length +
+                           " bytes, compressed " + ArrayBlobCodec.encodeColumnar(wave, true).length);
+    }
+
+    /** Decode 4k element waveform, compared to the previous DataInputStream implementation */
+    @Test
+    public void testDecodingSpeed() throws Exception
+    {
+        final byte[] blob = ArrayBlobCodec.encodeDouble(new ArrayDouble(createWaveform(4000)));
+        final int runs = 20000;
+        double sum = 0.0;
+        for (int pass=0; pass<2; ++pass)
+        {
+            long start = System.nanoTime();
+            for (int run=0; run<runs; ++run)
+            {
+                final DataInputStream data = new DataInputStream(new ByteArrayInputStream(blob));
+                final int nelm = data.readInt();
+                final double[] array = new double[nelm];
+                for (int i = 0; i < nelm; i++)
+                    array[i] = data.readDouble();
+                data.close();
+                sum += array[1];
+            }
+            final double stream_ms = (System.nanoTime() - start) / 1e6 / runs;
+
+            start = System.nanoTime();
+            for (int run=0; run<runs; ++run)
+                sum += ArrayBlobCodec.decode(ArrayBlobCodec.DOUBLE, blob).getDouble(1);
+            final double codec_ms = (System.nanoTime() - start) / 1e6 / runs;
+            System.out.format("4k waveform: DataInputStream %.4f ms, ArrayBlobCodec %.4f ms\n", stream_ms, codec_ms);
+        }
+        assertTrue(sum > 0);
+    }
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+/** JUnit-based demo of the {@link PGCopySampleBuffer} encoding speed
+ *
+ *  <p>Not a test, runs for several seconds to determine
+ *  the upper limit for samples/sec without the database.
+ *  Compare with testWriteSpeed* in {@link RDBArchiveWriterTest}.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class PGCopySampleBufferDemo
+{
+    /** About 1.3 million samples/sec on a Linux VM, including the Instant.now() calls */
+    @Test
+    public void demoEncodingSpeed() throws Exception
+    {
+        final PGCopySampleBuffer buffer = new PGCopySampleBuffer(PGCopySampleBufferUnitTest.SCHEMA, "sample");
+        final int batch = 500;
+        long count = 0;
+        final long start = System.currentTimeMillis();
+        final long end = start + 5000;
+        while (System.currentTimeMillis() < end)
+        {
+            for (int i=0; i<batch; ++i)
+                buffer.addDouble(1, Instant.now(), 2, 3, i, null);
+            count += buffer.size();
+            buffer.clear();
+        }
+        final double secs = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format("Encoded %d samples in %.1f secs = %.1f samples/sec\n", count, secs, count / secs);
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.csstudio.archive.writer.rdb.PGCopySampleBuffer.ColumnType;
+import org.junit.Test;
+
+/** JUnit test of the {@link PGCopySampleBuffer} encoding
+ *
+ *  <p>Checks the binary COPY format without a database.
+ *  @see PGCopySampleBufferDemo
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class PGCopySampleBufferUnitTest
+{
+    /** Column types as in postgres_schema.txt */
+    final static ColumnType[] SCHEMA =
+    {
+        ColumnType.INT8, ColumnType.TIMESTAMP, ColumnType.INT8, ColumnType.INT8, ColumnType.INT8,
+        ColumnType.INT4, ColumnType.FLOAT8, ColumnType.TEXT, ColumnType.TEXT, ColumnType.BYTEA
+    };
+
+    @Test
+    public void testEncoding() throws Exception
+    {
+        final PGCopySampleBuffer buffer = new PGCopySampleBuffer(SCHEMA, "sample");
+        final Instant time = Instant.ofEpochSecond(1500000000L, 42);
+        buffer.addDouble(1, time, 2, 3, 3.14, null);
+        assertTrue(buffer.addLong(1, time, 2, 3, 42));
+        buffer.addText(1, time, 2, 3, "Hello");
+        // Doesn't fit into INT4 num_val
+        assertTrue(! buffer.addLong(1, time, 2, 3, Long.MAX_VALUE));
+        assertEquals(3, buffer.size());
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        // Header
+        final byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals(new byte[] { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 }, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        // Double row
+        checkCommonColumns(in);
+        assertEquals(-1, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(3.14, in.readDouble(), 0.001);
+        assertEquals(-1, in.readInt());
+        assertEquals(" ", readText(in));
+        assertEquals(-1, in.readInt());
+
+        // Long row
+        checkCommonColumns(in);
+        assertEquals(4, in.readInt());
+        assertEquals(42, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals(" ", readText(in));
+        assertEquals(-1, in.readInt());
+
+        // Text row
+        checkCommonColumns(in);
+        assertEquals(-1, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals("Hello", readText(in));
+        assertEquals(" ", readText(in));
+        assertEquals(-1, in.readInt());
+
+        // Trailer
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    private void checkCommonColumns(final DataInputStream in) throws Exception
+    {
+        assertEquals(10, in.readShort());
+        assertEquals(8, in.readInt());
+        assertEquals(1, in.readLong());
+        assertEquals(8, in.readInt());
+        final long micros = in.readLong();
+        // Whole seconds, nanoseconds are in separate column
+        assertEquals(0, micros % 1000000L);
+        assertEquals(8, in.readInt());
+        assertEquals(42, in.readLong());
+        assertEquals(8, in.readInt());
+        assertEquals(2, in.readLong());
+        assertEquals(8, in.readInt());
+        assertEquals(3, in.readLong());
+    }
+
+    private String readText(final DataInputStream in) throws Exception
+    {
+        final byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFloat4Schema() throws Exception
+    {
+        // postgres_partitioning.txt uses REAL for float_val
+        final ColumnType[] types = SCHEMA.clone();
+        types[6] = ColumnType.FLOAT4;
+        final PGCopySampleBuffer buffer = new PGCopySampleBuffer(types, "sample");
+        buffer.addDouble(1, Instant.now(), 2, 3, 3.14, null);
+        final int header = 11 + 4 + 4;
+        // Row: count, 5 common columns, num_val, float_val, str_val, datatype, array_val
+        final int row = 2 + (4 + 8)*5 + 4 + (4 + 4) + 4 + (4 + 1) + 4;
+        assertEquals(header + row, buffer.getByteCount());
+    }
+
+    @Test
+    public void testFailedRow() throws Exception
+    {
+        // Severity column that only holds INT2
+        final ColumnType[] types = SCHEMA.clone();
+        types[3] = ColumnType.INT2;
+        final PGCopySampleBuffer buffer = new PGCopySampleBuffer(types, "sample");
+        final Instant time = Instant.ofEpochSecond(1500000000L, 42);
+        buffer.addDouble(1, time, 2, 3, 3.14, null);
+        final byte[] valid = buffer.toByteArray();
+
+        // Rows that fail half way must not leave partial data in the buffer
+        try
+        {
+            buffer.addDouble(1, time, 100000, 3, 3.14, null);
+            fail("Severity exceeds INT2");
+        }
+        catch (Exception ex)
+        {
+            // Expected
+        }
+        try
+        {
+            buffer.addText(1, time, 2, 3, null);
+            fail("Cannot encode null text");
+        }
+        catch (Exception ex)
+        {
+            // Expected
+        }
+        assertEquals(1, buffer.size());
+        assertArrayEquals(valid, buffer.toByteArray());
+    }
+}
@@ -43,16 +43,16 @@ public class RDBArchiveWriterTest
 {
     final Display display = ValueFactory.newDisplay(0.0, 1.0, 2.0, "a.u.", NumberFormats.format(2), 8.0, 9.0, 10.0, 0.0, 10.0);
     private RDBArchiveWriter writer = null;
-    private String name, array_name;
+    private String url, user, password, schema, name, array_name;
 
     @Before
     public void connect() throws Exception
     {
         final TestProperties settings = new TestProperties();
-        final String url = settings.getString("archive_rdb_url");
-        final String user = settings.getString("archive_rdb_user");
-        final String password = settings.getString("archive_rdb_password");
-        final String schema = settings.getString("archive_rdb_schema");
+        url = settings.getString("archive_rdb_url");
+        user = settings.getString("archive_rdb_user");
+        password = settings.getString("archive_rdb_password");
+        schema = settings.getString("archive_rdb_schema");
         name = settings.getString("archive_channel");
         array_name = settings.getString("archive_array_channel");
         if (url == null  ||  user == null  ||  password == null  ||  name == null)
@@ -191,4 +191,48 @@ public class RDBArchiveWriterTest
         System.out.println("Wrote " + count + " samples, i.e. "
                          + ((double)count / TEST_DURATION_SECS) + " samples/sec.");
     }
+
+    /** Compare batched INSERT with COPY
+     *
+     *  <p>Only runs for a PostgreSQL archive_rdb_url,
+     *  typically a local test database.
+     */
+    @Test
+    public void testWriteSpeedCopy() throws Exception
+    {
+        if (writer == null  ||  !url.startsWith("jdbc:postgresql"))
+            return;
+        final double insert_rate = writeSpeed(new RDBArchiveWriter(url, user, password, schema, true, false));
+        final double copy_rate = writeSpeed(new RDBArchiveWriter(url, user, password, schema, true, true));
+        System.out.format("INSERT: %.1f samples/sec, COPY: %.1f samples/sec, i.e. %.1f times faster\n",
+                          insert_rate, copy_rate, copy_rate / insert_rate);
+    }
+
+    /** @param test_writer Writer to test, will be closed
+     *  @return Samples/sec
+     */
+    private double writeSpeed(final RDBArchiveWriter test_writer) throws Exception
+    {
+        try
+        {
+            final WriteChannel channel = test_writer.getChannel(name);
+            long count = 0;
+            final long start = System.currentTimeMillis();
+            final long end = start + TEST_DURATION_SECS*1000L/2;
+            do
+            {
+                ++count;
+                test_writer.addSample(channel, new ArchiveVNumber(Instant.now(), AlarmSeverity.NONE, "OK", display, 3.14));
+                if (count % FLUSH_COUNT == 0)
+                    test_writer.flush();
+            }
+            while (System.currentTimeMillis() < end);
+            test_writer.flush();
+            return count * 1000.0 / (System.currentTimeMillis() - start);
+        }
+        finally
+        {
+            test_writer.close();
+        }
+    }
 }
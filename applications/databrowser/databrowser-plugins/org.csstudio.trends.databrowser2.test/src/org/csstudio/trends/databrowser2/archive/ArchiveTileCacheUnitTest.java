@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.archive;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.csstudio.archive.reader.ArchiveInfo;
+import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.trends.databrowser2.archive.ArchiveTileCache.TileKey;
+import org.csstudio.trends.databrowser2.model.RequestType;
+import org.diirt.util.text.NumberFormats;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueFactory;
+import org.junit.Test;
+
+/** JUnit test of the {@link ArchiveTileCache}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ArchiveTileCacheUnitTest
+{
+    final private static Instant START = Instant.parse("2014-01-01T00:00:00Z");
+
+    final private static Duration MARGIN = Duration.ofMinutes(10);
+
+    final private static Display DISPLAY = ValueFactory.newDisplay(0.0, 1.0, 2.0, "mm", NumberFormats.format(3),
+                                                                   8.0, 9.0, 10.0, 0.0, 10.0);
+
+    /** Archive reader with one or more samples per second, counting requests */
+    private static class DemoReader implements ArchiveReader
+    {
+        final int per_second;
+        int requests = 0;
+
+        DemoReader()
+        {
+            this(1);
+        }
+
+        DemoReader(final int per_second)
+        {
+            this.per_second = per_second;
+        }
+
+        @Override
+        public String getServerName()
+        {
+            return "Demo";
+        }
+
+        @Override
+        public String getURL()
+        {
+            return "demo://";
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "Demo";
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 1;
+        }
+
+        @Override
+        public ArchiveInfo[] getArchiveInfos()
+        {
+            return new ArchiveInfo[0];
+        }
+
+        @Override
+        public String[] getNamesByPattern(final int key, final String glob_pattern) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public ValueIterator getRawValues(final int key, final String name, final Instant start, final Instant end)
+                throws Exception
+        {
+            ++requests;
+            // Like most archives, start with the last sample before the start time
+            final long[] sample = { (start.getEpochSecond() - 1) * per_second };
+            return new ValueIterator()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    return sample[0] / per_second <= end.getEpochSecond();
+                }
+
+                @Override
+                public VType next() throws Exception
+                {
+                    final long s = sample[0]++ / per_second;
+                    return new ArchiveVNumber(Instant.ofEpochSecond(s), AlarmSeverity.NONE, "OK", DISPLAY, (int) (s % 100));
+                }
+
+                @Override
+                public void close()
+                {
+                    // NOP
+                }
+            };
+        }
+
+        @Override
+        public ValueIterator getOptimizedValues(final int key, final String name, final Instant start, final Instant end,
+                                                final int count) throws Exception
+        {
+            return getRawValues(key, name, start, end);
+        }
+
+        @Override
+        public void cancel()
+        {
+            // NOP
+        }
+
+        @Override
+        public void close()
+        {
+            // NOP
+        }
+    }
+
+    private static List<TileKey> getTiles(final Instant start, final Duration range)
+    {
+        return ArchiveTileCache.getTiles("demo://", 1, "test", RequestType.RAW, start, start.plus(range), 100);
+    }
+
+    /** Check that samples are in order and without duplicates */
+    private static void checkSamples(final List<VType> samples, final Instant start, final Instant end)
+    {
+        assertTrue(! VTypeHelper.getTimestamp(samples.get(0)).isAfter(start));
+        assertTrue(! VTypeHelper.getTimestamp(samples.get(samples.size()-1)).isBefore(end));
+        for (int i=1; i<samples.size(); ++i)
+            assertThat(VTypeHelper.getTimestamp(samples.get(i)),
+                       equalTo(VTypeHelper.getTimestamp(samples.get(i-1)).plusSeconds(1)));
+    }
+
+    @Test
+    public void testTiles()
+    {
+        List<TileKey> tiles = getTiles(START, Duration.ofHours(1));
+        assertTrue(tiles.size() >= 4  &&  tiles.size() <= 9);
+        assertTrue(! tiles.get(0).getStart().isAfter(START));
+        assertTrue(! tiles.get(tiles.size()-1).getEnd().isBefore(START.plus(Duration.ofHours(1))));
+        for (int i=1; i<tiles.size(); ++i)
+            assertThat(tiles.get(i).getStart(), equalTo(tiles.get(i-1).getEnd()));
+
+        // Panning by a little results in mostly the same tiles
+        final List<TileKey> panned = getTiles(START.plus(Duration.ofMinutes(10)), Duration.ofHours(1));
+        assertThat(panned.get(0), equalTo(tiles.get(1)));
+
+        // Optimized tiles are based on bin size
+        tiles = ArchiveTileCache.getTiles("demo://", 1, "test", RequestType.OPTIMIZED,
+                                          START, START.plus(Duration.ofDays(10)), 1000);
+        final long bin = tiles.get(0).getEnd().toEpochMilli() - tiles.get(0).getStart().toEpochMilli();
+        assertTrue(bin / ArchiveTileCache.TILE_BINS <= Duration.ofDays(10).toMillis() / 1000);
+        assertTrue(tiles.size() <= 2 * 1000 / ArchiveTileCache.TILE_BINS + 2);
+    }
+
+    @Test
+    public void testPanning() throws Exception
+    {
+        final ArchiveTileCache cache = new ArchiveTileCache(10*1024*1024, null, MARGIN);
+        final DemoReader reader = new DemoReader();
+
+        final Duration range = Duration.ofHours(1);
+        List<VType> samples = cache.getSamples(reader, getTiles(START, range));
+        checkSamples(samples, START, START.plus(range));
+        assertThat(reader.requests, equalTo(1));
+
+        // Same range: Nothing fetched
+        samples = cache.getSamples(reader, getTiles(START, range));
+        checkSamples(samples, START, START.plus(range));
+        assertThat(reader.requests, equalTo(1));
+
+        // Pan right: Only fetch the missing tiles, in one request
+        final Instant later = START.plus(Duration.ofMinutes(45));
+        samples = cache.getSamples(reader, getTiles(later, range));
+        checkSamples(samples, later, later.plus(range));
+        assertThat(reader.requests, equalTo(2));
+
+        // Pan back: Nothing fetched
+        samples = cache.getSamples(reader, getTiles(START, range));
+        checkSamples(samples, START, START.plus(range));
+        assertThat(reader.requests, equalTo(2));
+        System.out.println(cache);
+    }
+
+    @Test
+    public void testCurrentTile() throws Exception
+    {
+        final ArchiveTileCache cache = new ArchiveTileCache(10*1024*1024, null, MARGIN);
+        final DemoReader reader = new DemoReader();
+        final Instant start = Instant.now().minus(Duration.ofMinutes(5));
+        final List<TileKey> tiles = getTiles(start, Duration.ofMinutes(10));
+        cache.getSamples(reader, tiles);
+        cache.getSamples(reader, tiles);
+        // Tiles that extend into the future are always fetched
+        assertThat(reader.requests, equalTo(2));
+        assertTrue(cache.getTileCount() < tiles.size());
+    }
+
+    @Test
+    public void testMargin() throws Exception
+    {
+        // Tiles that ended a little while ago
+        final Duration range = Duration.ofMinutes(1);
+        final Instant start = Instant.now().minus(Duration.ofMinutes(5));
+        final List<TileKey> tiles = getTiles(start, range);
+        assertTrue(tiles.get(tiles.size()-1).getEnd().isBefore(Instant.now()));
+
+        // .. are not cached while the archive might still receive samples
+        ArchiveTileCache cache = new ArchiveTileCache(10*1024*1024, null, MARGIN);
+        DemoReader reader = new DemoReader();
+        cache.getSamples(reader, tiles);
+        cache.getSamples(reader, tiles);
+        assertThat(reader.requests, equalTo(2));
+        assertThat(cache.getTileCount(), equalTo(0));
+
+        // .. but are cached without margin
+        cache = new ArchiveTileCache(10*1024*1024, null, Duration.ZERO);
+        reader = new DemoReader();
+        cache.getSamples(reader, tiles);
+        cache.getSamples(reader, tiles);
+        assertThat(reader.requests, equalTo(1));
+        assertThat(cache.getTileCount(), equalTo(tiles.size()));
+    }
+
+    @Test
+    public void testSameTimestamps() throws Exception
+    {
+        final ArchiveTileCache cache = new ArchiveTileCache(10*1024*1024, null, MARGIN);
+        final DemoReader reader = new DemoReader(2);
+        final Duration range = Duration.ofHours(1);
+
+        // Fetch all tiles in one request, or tiles one by one, so they overlap
+        final List<TileKey> tiles = getTiles(START, range);
+        final List<VType> together = cache.getSamples(reader, tiles);
+        cache.clear();
+        for (TileKey tile : tiles)
+            cache.getSamples(reader, List.of(tile));
+        final List<VType> separate = cache.getSamples(reader, tiles);
+
+        // Pairs of samples with the same time stamp are kept, but no duplicates where tiles overlap
+        for (List<VType> samples : List.of(together, separate))
+        {
+            final long first = VTypeHelper.getTimestamp(samples.get(0)).getEpochSecond();
+            final long last = VTypeHelper.getTimestamp(samples.get(samples.size()-1)).getEpochSecond();
+            assertThat(samples.size(), equalTo(2 * (int) (last - first + 1)));
+            for (int i=1; i<samples.size(); ++i)
+            {
+                final Instant time = VTypeHelper.getTimestamp(samples.get(i));
+                final Instant previous = VTypeHelper.getTimestamp(samples.get(i-1));
+                assertThat(time, equalTo(i % 2 == 0 ? previous.plusSeconds(1) : previous));
+            }
+        }
+        assertThat(separate.size(), equalTo(together.size()));
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        // Budget for about one tile
+        final List<TileKey> tiles = getTiles(START, Duration.ofHours(1));
+        final long tile_samples = (tiles.get(0).getEnd().getEpochSecond() - tiles.get(0).getStart().getEpochSecond());
+        final ArchiveTileCache cache = new ArchiveTileCache(tile_samples * ArchiveTileCache.SAMPLE_BYTES * 3 / 2, null, MARGIN);
+        final DemoReader reader = new DemoReader();
+        cache.getSamples(reader, tiles);
+        System.out.println(cache);
+        assertThat(cache.getTileCount(), equalTo(1));
+        // Most recently added tile is kept
+        assertThat(cache.get(tiles.get(tiles.size()-1)) != null, equalTo(true));
+        assertThat(cache.get(tiles.get(0)) == null, equalTo(true));
+    }
+
+    @Test
+    public void testPersistence() throws Exception
+    {
+        final File directory = Files.createTempDirectory("tiles").toFile();
+        try
+        {
+            final DemoReader reader = new DemoReader();
+            final List<TileKey> tiles = getTiles(START, Duration.ofHours(1));
+            final List<VType> original = new ArchiveTileCache(10*1024*1024, directory, MARGIN).getSamples(reader, tiles);
+            assertThat(reader.requests, equalTo(1));
+
+            // New cache, for example after restart, reads tiles from files
+            final ArchiveTileCache cache = new ArchiveTileCache(10*1024*1024, directory, MARGIN);
+            final List<VType> samples = cache.getSamples(reader, tiles);
+            assertThat(reader.requests, equalTo(1));
+            assertThat(samples.size(), equalTo(original.size()));
+            for (int i=0; i<samples.size(); ++i)
+            {
+                final VNumber sample = (VNumber) samples.get(i);
+                assertThat(VTypeHelper.getTimestamp(sample), equalTo(VTypeHelper.getTimestamp(original.get(i))));
+                assertThat(sample.getValue(), equalTo(((VNumber) original.get(i)).getValue()));
+                assertThat(sample.getUnits(), equalTo("mm"));
+                assertThat(sample.getUpperAlarmLimit(), equalTo(9.0));
+                assertThat(sample.getFormat().getMaximumFractionDigits(), equalTo(3));
+            }
+        }
+        finally
+        {
+            for (File file : directory.listFiles())
+                file.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testPersistenceOfTypeAndKey() throws Exception
+    {
+        final File directory = Files.createTempDirectory("tiles").toFile();
+        try
+        {
+            // Tiles with the same level and index, differing only in key or request type
+            final int level = 10;
+            final long index = START.toEpochMilli() / new TileKey("demo://", 1, "test", RequestType.OPTIMIZED, level, 0).getMillis();
+            final List<TileKey> raw = List.of(new TileKey("demo://", 1, "test", RequestType.RAW, level, index));
+            final List<TileKey> other_key = List.of(new TileKey("demo://", 2, "test", RequestType.RAW, level, index));
+            final List<TileKey> optimized = List.of(new TileKey("demo://", 1, "test", RequestType.OPTIMIZED, level, index));
+            final DemoReader reader = new DemoReader();
+            final ArchiveTileCache original = new ArchiveTileCache(10*1024*1024, directory, MARGIN);
+            for (List<TileKey> tiles : List.of(raw, other_key, optimized))
+                original.getSamples(reader, tiles);
+            assertThat(reader.requests, equalTo(3));
+
+            // Each kind of tile is read from its own file, none was overwritten
+            final ArchiveTileCache cache = new ArchiveTileCache(10*1024*1024, directory, MARGIN);
+            for (List<TileKey> tiles : List.of(raw, other_key, optimized))
+                cache.getSamples(reader, tiles);
+            assertThat(reader.requests, equalTo(3));
+        }
+        finally
+        {
+            for (File file : directory.listFiles())
+                file.delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.export;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link ChunkedValueIterator}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ChunkedValueIteratorUnitTest
+{
+    final private static Instant START = Instant.parse("2014-01-01T00:00:00Z");
+
+    final private AtomicInteger requests = new AtomicInteger();
+
+    /** @return Iterator with one sample per second, starting with the last sample before 'start' */
+    private ValueIterator fetch(final Instant start, final Instant end)
+    {
+        requests.incrementAndGet();
+        final long[] second = { start.getEpochSecond() - 1 };
+        return new ValueIterator()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return second[0] <= end.getEpochSecond();
+            }
+
+            @Override
+            public VType next() throws Exception
+            {
+                final long s = second[0]++;
+                if (s == START.getEpochSecond() + 3000)
+                    throw new Exception("Archive error");
+                return new ArchiveVNumber(Instant.ofEpochSecond(s), AlarmSeverity.NONE, "OK", null, s);
+            }
+
+            @Override
+            public void close()
+            {
+                // NOP
+            }
+        };
+    }
+
+    /** @return Number of samples, checking that they are in order without duplicates */
+    private static int checkSamples(final ValueIterator iter) throws Exception
+    {
+        int count = 0;
+        Instant last = null;
+        while (iter.hasNext())
+        {
+            final Instant time = VTypeHelper.getTimestamp(iter.next());
+            if (last != null)
+                assertThat(time, equalTo(last.plusSeconds(1)));
+            last = time;
+            ++count;
+        }
+        iter.close();
+        return count;
+    }
+
+    @Test
+    public void testChunks() throws Exception
+    {
+        final Instant end = START.plus(Duration.ofMinutes(45));
+        final ValueIterator iter = new ChunkedValueIterator(this::fetch, START, end, Duration.ofMinutes(10));
+        // One request per chunk
+        assertThat(requests.get(), equalTo(1));
+        // Sample before START, then one per second up to and including the end
+        assertThat(checkSamples(iter), equalTo(45*60 + 2));
+        assertThat(requests.get(), equalTo(5));
+    }
+
+    @Test
+    public void testError() throws Exception
+    {
+        // Error is reported after the samples that were read
+        final ValueIterator iter = new ChunkedValueIterator(this::fetch, START, START.plus(Duration.ofHours(1)), Duration.ofMinutes(10));
+        int count = 0;
+        try
+        {
+            while (iter.hasNext())
+            {
+                iter.next();
+                ++count;
+            }
+            fail("Didn't get error");
+        }
+        catch (Exception ex)
+        {
+            assertThat(ex.getMessage(), equalTo("Archive error"));
+        }
+        iter.close();
+        assertThat(count, equalTo(3001));
+        // No more requests after the chunk with the error
+        assertThat(requests.get(), equalTo(5));
+    }
+
+    @Test
+    public void testSameTimestamps() throws Exception
+    {
+        // One sample per second, three samples with the time stamp of a chunk boundary,
+        // and two samples with the time stamp of the last sample before the next chunk boundary
+        final List<VType> samples = new ArrayList<>();
+        for (long s=-1; s<=30; ++s)
+        {
+            if (s == 20)
+                continue;
+            final int copies = (s == 10) ? 3 : (s == 19 ? 2 : 1);
+            for (int i=0; i<copies; ++i)
+                samples.add(new ArchiveVNumber(START.plusSeconds(s), AlarmSeverity.NONE, "OK", null, 100*s + i));
+        }
+
+        // Like an archive, return samples in the time range and the last sample before the start
+        final ChunkedValueIterator.ChunkFetch fetch = (start, end) ->
+        {
+            final List<VType> result = new ArrayList<>();
+            for (VType sample : samples)
+            {
+                final Instant time = VTypeHelper.getTimestamp(sample);
+                if (time.isBefore(start))
+                {
+                    result.clear();
+                    result.add(sample);
+                }
+                else if (! time.isAfter(end))
+                    result.add(sample);
+            }
+            return new ValueIterator()
+            {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return index < result.size();
+                }
+
+                @Override
+                public VType next() throws Exception
+                {
+                    return result.get(index++);
+                }
+
+                @Override
+                public void close()
+                {
+                    // NOP
+                }
+            };
+        };
+
+        // Chunks end on the samples at 10 seconds and after the samples at 19 seconds
+        ValueIterator iter = new ChunkedValueIterator(fetch, START, START.plusSeconds(30), Duration.ofSeconds(10));
+        final List<VType> received = new ArrayList<>();
+        while (iter.hasNext())
+            received.add(iter.next());
+        iter.close();
+        assertThat(received, equalTo(samples));
+
+        // Another sample with the time stamp of the first chunk's end
+        // is written after the first chunk has been fetched
+        final VType late = new ArchiveVNumber(START.plusSeconds(10), AlarmSeverity.NONE, "OK", null, 1003);
+        iter = new ChunkedValueIterator(fetch, START, START.plusSeconds(30), Duration.ofSeconds(10));
+        samples.add(samples.indexOf(received.get(14)), late);
+        received.clear();
+        while (iter.hasNext())
+            received.add(iter.next());
+        iter.close();
+        assertThat(received, equalTo(samples));
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.export;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.After;
+import org.junit.Test;
+
+/** JUnit test of the {@link PrefetchValueIterator}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class PrefetchValueIteratorUnitTest
+{
+    final private static Instant START = Instant.parse("2014-01-01T00:00:00Z");
+
+    final private ExecutorService executor = Executors.newCachedThreadPool();
+
+    /** Number of samples read from the source */
+    final private AtomicInteger reads = new AtomicInteger();
+
+    /** Set when source is closed */
+    final private AtomicBoolean source_closed = new AtomicBoolean();
+
+    /** @param count Number of samples
+     *  @param error Index of sample that fails, -1 for none
+     *  @return Iterator with one sample per second
+     */
+    private ValueIterator createSource(final int count, final int error)
+    {
+        return new ValueIterator()
+        {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return index < count;
+            }
+
+            @Override
+            public VType next() throws Exception
+            {
+                reads.incrementAndGet();
+                final int i = index++;
+                if (i == error)
+                    throw new Exception("Archive error");
+                return new ArchiveVNumber(START.plusSeconds(i), AlarmSeverity.NONE, "OK", null, i);
+            }
+
+            @Override
+            public void close()
+            {
+                source_closed.set(true);
+            }
+        };
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    @Test(timeout=10000)
+    public void testPrefetch() throws Exception
+    {
+        final ValueIterator iter = new PrefetchValueIterator(createSource(10000, -1), 100, executor);
+        int count = 0;
+        while (iter.hasNext())
+        {
+            assertThat(VTypeHelper.getTimestamp(iter.next()), equalTo(START.plusSeconds(count)));
+            ++count;
+        }
+        iter.close();
+        assertThat(count, equalTo(10000));
+        assertThat(source_closed.get(), equalTo(true));
+    }
+
+    @Test(timeout=10000)
+    public void testCloseEarly() throws Exception
+    {
+        // Closing early stops the prefetch
+        final ValueIterator iter = new PrefetchValueIterator(createSource(10000, -1), 100, executor);
+        iter.next();
+        iter.close();
+        assertThat(source_closed.get(), equalTo(true));
+        System.out.println("Read " + reads.get() + " samples before close");
+        assertTrue(reads.get() < 10000);
+    }
+
+    @Test(timeout=10000)
+    public void testError() throws Exception
+    {
+        // Error is reported after the samples that were read
+        final ValueIterator iter = new PrefetchValueIterator(createSource(10000, 3000), 100, executor);
+        int count = 0;
+        try
+        {
+            while (iter.hasNext())
+            {
+                iter.next();
+                ++count;
+            }
+            fail("Didn't get error");
+        }
+        catch (Exception ex)
+        {
+            assertThat(ex.getMessage(), equalTo("Archive error"));
+        }
+        iter.close();
+        assertThat(count, equalTo(3000));
+        assertThat(reads.get(), equalTo(3001));
+    }
+
+    @Test(timeout=10000)
+    public void testCloseDuringFetch() throws Exception
+    {
+        // Source that takes a long time to fetch its first sample
+        final ValueIterator slow = new ValueIterator()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return true;
+            }
+
+            @Override
+            public VType next() throws Exception
+            {
+                TimeUnit.MINUTES.sleep(1);
+                return null;
+            }
+
+            @Override
+            public void close()
+            {
+                source_closed.set(true);
+            }
+        };
+        final ValueIterator iter = new PrefetchValueIterator(slow, 100, executor);
+        // Let the background thread start the fetch
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // Closing doesn't wait for the fetch to finish
+        final long start = System.currentTimeMillis();
+        iter.close();
+        final long millis = System.currentTimeMillis() - start;
+        System.out.println("Closed within " + millis + " ms");
+        assertTrue(millis < 5000);
+        assertThat(source_closed.get(), equalTo(true));
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.trends.databrowser2.model.FormulaItemUnitTest.TestItem;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit-based benchmark of the {@link FormulaItem}
+ *
+ *  <p>Not a test, prints the time for computing a formula
+ *  with 4 inputs and a total of 1M historic samples,
+ *  then for updates as live samples arrive.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class FormulaItemBenchmarkDemo
+{
+    final private static int SAMPLES = 250000;
+    final private static int INPUTS = 4;
+    final private static int UPDATES = 100;
+
+    @Test
+    public void benchmark() throws Exception
+    {
+        final TestItem items[] = new TestItem[INPUTS];
+        final FormulaInput inputs[] = new FormulaInput[INPUTS];
+        for (int i=0; i<INPUTS; ++i)
+        {
+            items[i] = new TestItem("x" + i);
+            // Interleaved time stamps, so each input sample results in a formula sample
+            final int offset = i;
+            final List<VType> values = new ArrayList<>(SAMPLES);
+            for (int s=0; s<SAMPLES; ++s)
+                values.add(new ArchiveVNumber(Instant.ofEpochSecond(1 + s*INPUTS + offset),
+                                              AlarmSeverity.NONE, "OK", null, Math.sin(s * 0.01)));
+            items[i].samples.mergeArchivedData("Test", values);
+            inputs[i] = new FormulaInput(items[i], "x" + i);
+        }
+
+        long start = System.nanoTime();
+        final FormulaItem formula = new FormulaItem("f", "x0 + 2*x1 - sqrt(x2*x2) + max(x3, 0)", inputs);
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.format("Initial computation of %d samples: %.3f s\n", formula.getSamples().size(), secs);
+
+        final int end = 1 + SAMPLES * INPUTS;
+        start = System.nanoTime();
+        for (int update=0; update<UPDATES; ++update)
+        {
+            items[update % INPUTS].addLive(end + update, update);
+            formula.reevaluate();
+        }
+        secs = (System.nanoTime() - start) / 1e9;
+        System.out.format("Incremental update for live sample: %.3f ms\n", secs * 1000 / UPDATES);
+    }
+}
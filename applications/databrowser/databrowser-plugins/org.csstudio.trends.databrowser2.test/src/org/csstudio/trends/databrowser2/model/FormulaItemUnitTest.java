@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link FormulaItem} computation
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class FormulaItemUnitTest
+{
+    /** Model item with historic and live samples */
+    static class TestItem extends ModelItem
+    {
+        final PVSamples samples = new PVSamples(new AtomicInteger());
+
+        TestItem(final String name)
+        {
+            super(name);
+        }
+
+        void addHistory(final int start, final int end, final double offset)
+        {
+            final List<VType> values = new ArrayList<>();
+            for (int i=start; i<end; ++i)
+                values.add(new ArchiveVNumber(Instant.ofEpochSecond(i), AlarmSeverity.NONE, "OK", null, i + offset));
+            samples.mergeArchivedData("Test", values);
+        }
+
+        void addLive(final int second, final double value)
+        {
+            samples.addLiveSample(new ArchiveVNumber(Instant.ofEpochSecond(second), AlarmSeverity.NONE, "OK", null, value));
+        }
+
+        @Override
+        public PlotSamples getSamples()
+        {
+            return samples;
+        }
+
+        @Override
+        public void write(final PrintWriter writer)
+        {
+            // NOP
+        }
+    }
+
+    /** Compare samples of an incrementally updated formula with a new formula */
+    private static void checkSamples(final FormulaItem formula, final String expression, final FormulaInput[] inputs)
+            throws Exception
+    {
+        final FormulaItem full = new FormulaItem("full", expression, inputs);
+        final PlotSamples expected = full.getSamples();
+        final PlotSamples actual = formula.getSamples();
+        // Continuation of each input's samples to 'now' is not compared
+        assertThat(actual.size(), equalTo(expected.size()));
+        for (int i=0; i<expected.size()-inputs.length; ++i)
+        {
+            assertThat(actual.get(i).getPosition(), equalTo(expected.get(i).getPosition()));
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), 0.0);
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception
+    {
+        final TestItem a = new TestItem("a"), b = new TestItem("b");
+        a.addHistory(1, 100, 0);
+        b.addHistory(1, 100, 1000);
+        final FormulaInput[] inputs = { new FormulaInput(a, "a"), new FormulaInput(b, "b") };
+        final String expression = "a+b";
+        final FormulaItem formula = new FormulaItem("f", expression, inputs);
+        checkSamples(formula, expression, inputs);
+        assertEquals(2 + 1000, formula.getSamples().get(0).getValue(), 0.0);
+
+        // Add live samples, alternating between inputs
+        final int revision = formula.getSamples().getRevision();
+        for (int i=100; i<200; ++i)
+        {
+            if (i % 2 == 0)
+                a.addLive(i, i);
+            else
+                b.addLive(i, 1000 + i);
+            assertThat(formula.reevaluate(), equalTo(true));
+            checkSamples(formula, expression, inputs);
+        }
+        // .. which was handled without full re-computation
+        assertThat(formula.getSamples().getRevision(), equalTo(revision));
+
+        // Change of historic data requires full re-computation
+        a.addHistory(50, 60, 10);
+        assertThat(formula.reevaluate(), equalTo(true));
+        checkSamples(formula, expression, inputs);
+        assertThat(formula.getSamples().getRevision(), equalTo(revision + 1));
+    }
+}
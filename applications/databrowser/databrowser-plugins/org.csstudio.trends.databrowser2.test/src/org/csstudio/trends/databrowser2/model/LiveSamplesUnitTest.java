@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of {@link LiveSamples}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class LiveSamplesUnitTest
+{
+    private static VType makeValue(final long i)
+    {
+        return new ArchiveVNumber(Instant.ofEpochSecond(i), AlarmSeverity.NONE, "OK", null, i);
+    }
+
+    @Test
+    public void testRing()
+    {
+        final LiveSamples samples = new LiveSamples(new AtomicInteger(), 10);
+
+        // Initial UNDEFINED value is skipped
+        assertThat(samples.add(new ArchiveVNumber(Instant.ofEpochSecond(0), AlarmSeverity.UNDEFINED, "Disconnected", null, 0)),
+                   equalTo(false));
+
+        // Samples are only visible once published
+        for (int i=0; i<25; ++i)
+            samples.add(makeValue(i));
+        assertThat(samples.size(), equalTo(0));
+        assertThat(samples.publish(), equalTo(true));
+        assertThat(samples.publish(), equalTo(false));
+
+        // Ring keeps the newest samples
+        assertThat(samples.size(), equalTo(10));
+        for (int i=0; i<10; ++i)
+            assertThat(samples.get(i).getValue(), equalTo(15.0 + i));
+
+        // Preserve newest samples when shrinking
+        samples.add(makeValue(25));
+        assertTrue(samples.hasPendingSamples());
+        samples.publish();
+        assertThat(samples.get(0).getValue(), equalTo(16.0));
+        try
+        {
+            samples.setCapacity(12);
+        }
+        catch (Exception ex)
+        {
+            throw new AssertionError(ex);
+        }
+        assertThat(samples.size(), equalTo(10));
+        for (int i=26; i<28; ++i)
+            samples.add(makeValue(i));
+        samples.publish();
+        assertThat(samples.size(), equalTo(12));
+        for (int i=0; i<12; ++i)
+            assertThat(samples.get(i).getValue(), equalTo(16.0 + i));
+
+        samples.clear();
+        assertThat(samples.size(), equalTo(0));
+        samples.add(makeValue(30));
+        samples.publish();
+        assertThat(samples.size(), equalTo(1));
+        assertThat(samples.get(0).getValue(), equalTo(30.0));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final int N = 1000000;
+        final LiveSamples samples = new LiveSamples(new AtomicInteger(), 1000);
+        final Thread writer = new Thread(() ->
+        {
+            for (int i=0; i<N; ++i)
+                samples.add(makeValue(i));
+        });
+        writer.start();
+
+        // Reader always sees consecutive samples
+        int publications = 0;
+        double last = -1;
+        while (last < N-1)
+        {
+            if (! samples.publish())
+                continue;
+            ++publications;
+            final int size = samples.size();
+            assertTrue(size <= 1000);
+            double value = samples.get(0).getValue();
+            assertTrue(value >= last - 1000);
+            for (int i=1; i<size; ++i)
+            {
+                final double next = samples.get(i).getValue();
+                assertThat(next, equalTo(value + 1));
+                value = next;
+            }
+            assertTrue(value >= last);
+            last = value;
+        }
+        writer.join();
+        System.out.println(N + " samples, " + publications + " publications");
+    }
+}
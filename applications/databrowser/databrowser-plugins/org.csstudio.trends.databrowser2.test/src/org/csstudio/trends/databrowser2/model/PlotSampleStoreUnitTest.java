@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test for {@link PlotSampleStore}
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class PlotSampleStoreUnitTest
+{
+    final private AtomicInteger index = new AtomicInteger(0);
+
+    private static List<VType> makeValues(final int start, final int end)
+    {
+        final List<VType> values = new ArrayList<>();
+        for (int i=start; i<end; ++i)
+            values.add(new ArchiveVNumber(Instant.ofEpochSecond(i, 500), AlarmSeverity.MINOR, "LOW", null, i));
+        return values;
+    }
+
+    private static void checkValues(final PlotSampleStore store, final int... expected)
+    {
+        final AtomicInteger index = new AtomicInteger(0);
+        assertThat(store.size(), equalTo(expected.length));
+        for (int i=0; i<expected.length; ++i)
+        {
+            final PlotSample sample = store.get(i, index);
+            assertThat(sample.getPosition(), equalTo(Instant.ofEpochSecond(expected[i], 500)));
+            assertEquals(expected[i], sample.getValue(), 0.0);
+        }
+    }
+
+    @Test
+    public void testSamples()
+    {
+        final List<VType> values = new ArrayList<>();
+        final Instant now = Instant.now();
+        values.add(new ArchiveVNumber(now, AlarmSeverity.NONE, "OK", null, 3.14));
+        values.add(new ArchiveVNumber(now.plusSeconds(1), AlarmSeverity.MAJOR, "HIHI", null, 42));
+        values.add(new ArchiveVStatistics(now.plusSeconds(2), AlarmSeverity.MINOR, "HIGH", null, 2.0, 1.0, 3.0, 0.5, 10));
+        values.add(new ArchiveVString(now.plusSeconds(3), AlarmSeverity.INVALID, "Disconnected", "Text"));
+        final PlotSampleStore store = PlotSampleStore.of("Test", values);
+        assertThat(store.size(), equalTo(4));
+
+        PlotSample sample = store.get(0, index);
+        assertThat(sample.getSource(), equalTo("Test"));
+        assertThat(sample.getPosition(), equalTo(now));
+        assertEquals(3.14, sample.getValue(), 0.0);
+        assertEquals(Double.NaN, sample.getMin(), 0.0);
+        assertThat(sample.getVType(), equalTo(values.get(0)));
+
+        // Number type is preserved
+        sample = store.get(1, index);
+        assertThat(((VNumber) sample.getVType()).getValue(), instanceOf(Integer.class));
+        assertThat(sample.getVType(), equalTo(values.get(1)));
+
+        sample = store.get(2, index);
+        assertEquals(2.0, sample.getValue(), 0.0);
+        assertEquals(1.0, sample.getMin(), 0.0);
+        assertEquals(3.0, sample.getMax(), 0.0);
+        assertEquals(0.5, sample.getStdDev(), 0.0);
+        assertThat(sample.getVType(), equalTo(values.get(2)));
+
+        // String is kept as is
+        sample = store.get(3, index);
+        assertThat(sample.getVType(), equalTo(values.get(3)));
+        assertEquals(Double.NaN, sample.getValue(), 0.0);
+
+        // Scalars have no element 1
+        index.set(1);
+        assertEquals(Double.NaN, store.get(0, index).getValue(), 0.0);
+        assertEquals(Double.NaN, store.get(2, index).getMin(), 0.0);
+    }
+
+    @Test
+    public void testMerge()
+    {
+        final PlotSampleStore old = PlotSampleStore.of("Old", makeValues(10, 20));
+        // Before
+        checkValues(PlotSampleMerger.merge(old, PlotSampleStore.of("New", makeValues(0, 5))),
+                    0, 1, 2, 3, 4, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        // Overlapping start
+        checkValues(PlotSampleMerger.merge(old, PlotSampleStore.of("New", makeValues(5, 12))),
+                    5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        // Inside
+        checkValues(PlotSampleMerger.merge(old, PlotSampleStore.of("New", makeValues(13, 15))),
+                    10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        // After
+        checkValues(PlotSampleMerger.merge(old, PlotSampleStore.of("New", makeValues(25, 27))),
+                    10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 25, 26);
+        // Complete replacement
+        final PlotSampleStore merged = PlotSampleMerger.merge(old, PlotSampleStore.of("New", makeValues(0, 30)));
+        checkValues(merged, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29);
+        assertThat(merged.get(15, index).getSource(), equalTo("New"));
+
+        // Statistics merged with plain numbers
+        final List<VType> stats = new ArrayList<>();
+        stats.add(new ArchiveVStatistics(Instant.ofEpochSecond(30, 500), AlarmSeverity.NONE, "OK", null, 30.0, 29.0, 31.0, 0.5, 3));
+        final PlotSampleStore mixed = PlotSampleMerger.merge(old, PlotSampleStore.of("Stats", stats));
+        checkValues(mixed, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 30);
+        assertEquals(Double.NaN, mixed.get(0, index).getMin(), 0.0);
+        assertEquals(29.0, mixed.get(10, index).getMin(), 0.0);
+    }
+
+    @Test
+    public void testSearch()
+    {
+        final PlotSampleStore store = PlotSampleStore.of("Test", makeValues(10, 20));
+        assertThat(store.findSampleLessThan(Instant.ofEpochSecond(10, 500)), equalTo(-1));
+        assertThat(store.findSampleLessThan(Instant.ofEpochSecond(15)), equalTo(4));
+        assertThat(store.findSampleGreaterThan(Instant.ofEpochSecond(15, 500)), equalTo(6));
+        assertThat(store.findSampleGreaterThan(Instant.ofEpochSecond(19, 500)), equalTo(-1));
+    }
+
+    private static long usedMemory()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i=0; i<3; ++i)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Compare heap usage of PlotSample[] and PlotSampleStore */
+    @Test
+    public void testMemory()
+    {
+        final int N = 1000000;
+        long before = usedMemory();
+        PlotSample[] samples = new PlotSample[N];
+        for (int i=0; i<N; ++i)
+            samples[i] = new PlotSample(index, "Test",
+                    new ArchiveVNumber(Instant.ofEpochSecond(i, 500), AlarmSeverity.NONE, "OK", null, Math.sin(i)));
+        final long array_bytes = usedMemory() - before;
+        assertThat(samples.length, equalTo(N));
+        samples = null;
+
+        before = usedMemory();
+        List<VType> values = new ArrayList<>(N);
+        for (int i=0; i<N; ++i)
+            values.add(new ArchiveVNumber(Instant.ofEpochSecond(i, 500), AlarmSeverity.NONE, "OK", null, Math.sin(i)));
+        final PlotSampleStore store = PlotSampleStore.of("Test", values);
+        values = null;
+        final long store_bytes = usedMemory() - before;
+        System.out.format("PlotSample[]: %.1f bytes/sample, PlotSampleStore: %.1f bytes/sample\n",
+                          (double)array_bytes / N, (double)store_bytes / N);
+        assertThat(store.size(), equalTo(N));
+    }
+}
@@ -18,12 +18,11 @@ import org.csstudio.apputil.time.BenchmarkTimer;
 import org.csstudio.archive.reader.ArchiveReader;
 import org.csstudio.archive.reader.ArchiveRepository;
 import org.csstudio.archive.reader.UnknownChannelException;
-import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.trends.databrowser2.Activator;
 import org.csstudio.trends.databrowser2.Messages;
+import org.csstudio.trends.databrowser2.archive.ArchiveTileCache.TileKey;
 import org.csstudio.trends.databrowser2.model.ArchiveDataSource;
 import org.csstudio.trends.databrowser2.model.PVItem;
-import org.csstudio.trends.databrowser2.model.RequestType;
 import org.csstudio.trends.databrowser2.model.TimeHelper;
 import org.csstudio.trends.databrowser2.preferences.Preferences;
 import org.diirt.vtype.VType;
@@ -131,15 +130,13 @@ public class ArchiveFetchJob extends Job
                         the_reader = reader = ArchiveRepository.getInstance().getArchiveReader(url);
                     }
                     the_reader.enableConcurrency(concurrency);
-                    final ValueIterator value_iter;
+                    // Get samples from cached time tiles, only fetching missing tiles
+                    final List<VType> result;
                     try
                     {
-                        if (item.getRequestType() == RequestType.RAW)
-                            value_iter = the_reader.getRawValues(archive.getKey(), item.getResolvedName(),
-                                                                 start, end);
-                        else
-                            value_iter = the_reader.getOptimizedValues(archive.getKey(), item.getResolvedName(),
-                                                                       start, end, bins);
+                        final List<TileKey> tiles = ArchiveTileCache.getTiles(url, archive.getKey(), item.getResolvedName(),
+                                                                              item.getRequestType(), start, end, bins);
+                        result = ArchiveTileCache.getInstance().getSamples(the_reader, tiles);
                     }
                     catch (UnknownChannelException e)
                     {
@@ -148,15 +145,10 @@ public class ArchiveFetchJob extends Job
                         sourcesWhereChannelDoesntExist.add(archives[i]);
                         continue;
                     }
-                    // Get samples into array
-                    final List<VType> result = new ArrayList<VType>();
-                    while (value_iter.hasNext())
-                        result.add(value_iter.next());
                     samples += result.size();
                     item.mergeArchivedSamples(the_reader.getServerName(), result);
                     if (cancelled)
                         break;
-                    value_iter.close();
                 }
                 catch (Exception ex)
                 {   // Tell listener unless it's the result of a 'cancel'?
@@ -184,8 +176,8 @@ public class ArchiveFetchJob extends Job
             if (!cancelled)
                 listener.fetchCompleted(ArchiveFetchJob.this);
             Activator.getLogger().log(Level.FINE,
-                    "Ended {0} with {1} samples in {2}",
-                    new Object[] { ArchiveFetchJob.this, samples, timer });
+                    "Ended {0} with {1} samples in {2}, {3}",
+                    new Object[] { ArchiveFetchJob.this, samples, timer, ArchiveTileCache.getInstance() });
         }
 
         @Override
@@ -0,0 +1,614 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.UnknownChannelException;
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.trends.databrowser2.Activator;
+import org.csstudio.trends.databrowser2.model.RequestType;
+import org.csstudio.trends.databrowser2.preferences.Preferences;
+import org.diirt.util.text.NumberFormats;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VStatistics;
+import org.diirt.vtype.VString;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueFactory;
+
+/** Cache of archived samples, organized in time tiles
+ *
+ *  <p>Time is divided into tiles aligned to multiples of the tile duration.
+ *  For optimized requests, a tile holds {@link #TILE_BINS} bins
+ *  of a power-of-two number of milliseconds,
+ *  so that zoom levels of similar resolution share the same tiles.
+ *  For raw requests, the tile duration is a power-of-two number
+ *  of milliseconds such that the requested time range spans a few tiles.
+ *
+ *  <p>When the user pans back and forth, or re-opens a plot,
+ *  only tiles that are not already cached are fetched from the archive.
+ *  Cached tiles are kept in memory, removing the least recently
+ *  used tiles when exceeding the memory budget, and optionally
+ *  written to a directory.
+ *  Tiles that end within a margin before the current time are never cached,
+ *  since the archive is likely to receive more samples for them:
+ *  Archive engines write samples in batches,
+ *  and spooled samples may be written much later.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class ArchiveTileCache
+{
+    /** Number of bins in a tile of optimized samples */
+    final public static int TILE_BINS = 1024;
+
+    /** Minimum number of tiles for the time range of a raw request */
+    final private static int RAW_TILES = 4;
+
+    /** Largest tile level, 2^40 ms is about 35 years */
+    final private static int MAX_LEVEL = 40;
+
+    /** Estimated memory used by one sample in bytes */
+    final static int SAMPLE_BYTES = 120;
+
+    /** Start of tile files, "DBTC" */
+    final private static int MAGIC = 0x44425443;
+
+    // Sample types in tile file
+    final private static byte NUMBER = 0, STATISTICS = 1, STRING = 2;
+
+    /** Key of one tile */
+    public static class TileKey
+    {
+        final private String url;
+        final private int key;
+        final private String channel;
+        final private RequestType type;
+        final private int level;
+        final private long index;
+
+        TileKey(final String url, final int key, final String channel, final RequestType type,
+                final int level, final long index)
+        {
+            this.url = url;
+            this.key = key;
+            this.channel = channel;
+            this.type = type;
+            this.level = level;
+            this.index = index;
+        }
+
+        /** @return Duration of tile in milliseconds */
+        public long getMillis()
+        {
+            return type == RequestType.RAW ? 1L << level : TILE_BINS * (1L << level);
+        }
+
+        /** @return Start time of tile */
+        public Instant getStart()
+        {
+            return Instant.ofEpochMilli(index * getMillis());
+        }
+
+        /** @return End time of tile */
+        public Instant getEnd()
+        {
+            return Instant.ofEpochMilli((index+1) * getMillis());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            final int prime = 31;
+            int result = url.hashCode();
+            result = prime * result + key;
+            result = prime * result + channel.hashCode();
+            result = prime * result + type.hashCode();
+            result = prime * result + level;
+            result = prime * result + (int) (index ^ (index >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (! (obj instanceof TileKey))
+                return false;
+            final TileKey other = (TileKey) obj;
+            return index == other.index  &&  level == other.level  &&
+                   key == other.key  &&  type == other.type  &&
+                   channel.equals(other.channel)  &&  url.equals(other.url);
+        }
+
+        @Override
+        public String toString()
+        {
+            return channel + " " + type + " from " + url + " (" + key + "), level " + level + ", tile " + index;
+        }
+    }
+
+    /** Singleton instance */
+    private static ArchiveTileCache instance = null;
+
+    /** Memory budget in bytes */
+    final private long budget;
+
+    /** Directory for tile files or <code>null</code> */
+    final private File directory;
+
+    /** Only tiles that end at least this long before 'now' are cached */
+    final private Duration margin;
+
+    /** Tiles in order of access, eldest first. Synchronize on 'this' */
+    final private Map<TileKey, List<VType>> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Estimated memory used by tiles. Synchronize on 'this' */
+    private long bytes = 0;
+
+    /** Statistics. Synchronize on 'this' */
+    private long hits = 0, misses = 0;
+
+    /** @return Cache configured via preferences */
+    public static synchronized ArchiveTileCache getInstance()
+    {
+        if (instance == null)
+        {
+            final String dir = Preferences.getArchiveCacheDirectory();
+            instance = new ArchiveTileCache(Preferences.getArchiveCacheSize() * 1024L * 1024L,
+                                            dir.isEmpty() ? null : new File(dir),
+                                            Preferences.getArchiveCacheMargin());
+        }
+        return instance;
+    }
+
+    /** @param budget Memory budget in bytes. 0 to disable the memory cache
+     *  @param directory Directory for tile files or <code>null</code>
+     *  @param margin Only cache tiles that end at least this long before 'now'
+     */
+    public ArchiveTileCache(final long budget, final File directory, final Duration margin)
+    {
+        this.budget = budget;
+        this.directory = directory;
+        this.margin = margin;
+        if (directory != null)
+            directory.mkdirs();
+    }
+
+    /** Determine tiles for a request
+     *  @param url Archive URL
+     *  @param key Archive key
+     *  @param channel Channel name
+     *  @param type Request type
+     *  @param start Start of the requested time range
+     *  @param end End of the requested time range
+     *  @param bins Number of bins requested for optimized data
+     *  @return Tiles that cover the time range
+     */
+    public static List<TileKey> getTiles(final String url, final int key, final String channel,
+                                         final RequestType type, final Instant start, final Instant end,
+                                         final int bins)
+    {
+        final long start_ms = start.toEpochMilli(), end_ms = Math.max(start_ms, end.toEpochMilli());
+        final long range = Math.max(1, end_ms - start_ms);
+        final long unit = type == RequestType.RAW ? range / RAW_TILES : range / Math.max(1, bins);
+        final int level = Math.min(MAX_LEVEL, 63 - Long.numberOfLeadingZeros(Math.max(1, unit)));
+
+        final List<TileKey> result = new ArrayList<>();
+        final long millis = new TileKey(url, key, channel, type, level, 0).getMillis();
+        final long last = Math.floorDiv(end_ms, millis);
+        for (long index = Math.floorDiv(start_ms, millis); index <= last; ++index)
+            result.add(new TileKey(url, key, channel, type, level, index));
+        return result;
+    }
+
+    /** Get samples, using cached tiles and fetching missing tiles from the archive
+     *
+     *  @param reader Archive reader for the archive of the tiles
+     *  @param tiles Consecutive tiles as obtained from {@link #getTiles}
+     *  @return Samples for all tiles
+     *  @throws UnknownChannelException when channel is not known
+     *  @throws Exception on error
+     */
+    public List<VType> getSamples(final ArchiveReader reader, final List<TileKey> tiles) throws UnknownChannelException, Exception
+    {
+        final int N = tiles.size();
+        @SuppressWarnings("unchecked")
+        final List<VType>[] data = new List[N];
+        for (int i=0; i<N; ++i)
+            data[i] = get(tiles.get(i));
+
+        // Fetch each run of missing tiles with one request
+        int i = 0;
+        while (i < N)
+        {
+            if (data[i] != null)
+            {
+                ++i;
+                continue;
+            }
+            int end = i;
+            while (end+1 < N  &&  data[end+1] == null)
+                ++end;
+            fetch(reader, tiles, data, i, end);
+            i = end + 1;
+        }
+
+        // Combine tiles.
+        // Tiles that were fetched separately overlap:
+        // A tile may end with samples at the end time, which are also in the next tile,
+        // and a tile may start with the last sample before its start time,
+        // which is already in the previous tile.
+        // Other samples, including samples with the same time stamp, are kept.
+        final List<VType> result = new ArrayList<>();
+        for (i=0; i<N; ++i)
+        {
+            if (data[i].isEmpty())
+                continue;
+            final Instant start = tiles.get(i).getStart();
+            while (! result.isEmpty()  &&
+                   ! VTypeHelper.getTimestamp(result.get(result.size()-1)).isBefore(start))
+                result.remove(result.size()-1);
+            final Instant last = result.isEmpty() ? null : VTypeHelper.getTimestamp(result.get(result.size()-1));
+            int s = 0;
+            while (last != null  &&  s < data[i].size())
+            {
+                final Instant time = VTypeHelper.getTimestamp(data[i].get(s));
+                if (time.isBefore(start)  &&  time.compareTo(last) <= 0)
+                    ++s;
+                else
+                    break;
+            }
+            result.addAll(data[i].subList(s, data[i].size()));
+        }
+        return result;
+    }
+
+    /** Fetch tiles from archive, split samples into tiles and cache them
+     *  @param reader Archive reader
+     *  @param tiles Tile keys
+     *  @param data Samples for each tile, updated for the fetched tiles
+     *  @param first Index of first tile to fetch
+     *  @param last Index of last tile to fetch
+     *  @throws Exception on error
+     */
+    private void fetch(final ArchiveReader reader, final List<TileKey> tiles, final List<VType>[] data,
+                       final int first, final int last) throws Exception
+    {
+        final TileKey tile = tiles.get(first);
+        final int count = last - first + 1;
+        final ValueIterator values;
+        if (tile.type == RequestType.RAW)
+            values = reader.getRawValues(tile.key, tile.channel, tile.getStart(), tiles.get(last).getEnd());
+        else
+            values = reader.getOptimizedValues(tile.key, tile.channel, tile.getStart(), tiles.get(last).getEnd(),
+                                               count * TILE_BINS);
+        try
+        {
+            for (int i=first; i<=last; ++i)
+                data[i] = new ArrayList<>();
+            final long millis = tile.getMillis();
+            while (values.hasNext())
+            {
+                final VType value = values.next();
+                // Sample before the start time goes into first tile
+                final long offset = Math.floorDiv(VTypeHelper.getTimestamp(value).toEpochMilli(), millis) - tile.index;
+                data[first + (int) Math.max(0, Math.min(count-1, offset))].add(value);
+            }
+        }
+        finally
+        {
+            values.close();
+        }
+        for (int i=first; i<=last; ++i)
+            put(tiles.get(i), data[i]);
+    }
+
+    /** @param tile Tile key
+     *  @return Cached samples of tile or <code>null</code>
+     */
+    public List<VType> get(final TileKey tile)
+    {
+        synchronized (this)
+        {
+            final List<VType> samples = tiles.get(tile);
+            if (samples != null)
+            {
+                ++hits;
+                return samples;
+            }
+        }
+        final List<VType> samples = read(tile);
+        synchronized (this)
+        {
+            if (samples == null)
+                ++misses;
+            else
+            {
+                ++hits;
+                remember(tile, samples);
+            }
+        }
+        return samples;
+    }
+
+    /** @param tile Tile key
+     *  @param samples Samples of that tile. Ignored for tiles that end within the margin before 'now'
+     */
+    public void put(final TileKey tile, final List<VType> samples)
+    {
+        if (tile.getEnd().isAfter(Instant.now().minus(margin)))
+            return;
+        synchronized (this)
+        {
+            remember(tile, samples);
+        }
+        write(tile, samples);
+    }
+
+    /** Add tile to memory cache, removing least recently used tiles when over budget
+     *  Caller must synchronize
+     */
+    private void remember(final TileKey tile, final List<VType> samples)
+    {
+        final List<VType> previous = tiles.put(tile, samples);
+        if (previous != null)
+            bytes -= getBytes(previous);
+        bytes += getBytes(samples);
+        final Iterator<List<VType>> eldest = tiles.values().iterator();
+        while (bytes > budget  &&  eldest.hasNext())
+        {
+            bytes -= getBytes(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long getBytes(final List<VType> samples)
+    {
+        return 100 + samples.size() * (long) SAMPLE_BYTES;
+    }
+
+    /** @return Number of tiles in memory */
+    public synchronized int getTileCount()
+    {
+        return tiles.size();
+    }
+
+    /** @return Estimated memory used by tiles in bytes */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    /** Remove all tiles from memory */
+    public synchronized void clear()
+    {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "ArchiveTileCache: " + tiles.size() + " tiles, about " + bytes/1024 + " kB, " +
+               hits + " hits, " + misses + " misses";
+    }
+
+    /** @param tile Tile key
+     *  @return File for tile
+     */
+    private File getFile(final TileKey tile)
+    {
+        return new File(directory, String.format("%08x_%d_%s_%d_%d.tile", tile.url.hashCode() * 31 + tile.channel.hashCode(),
+                                                 tile.key, tile.type.name(), tile.level, tile.index));
+    }
+
+    /** @param tile Tile key
+     *  @return Samples read from tile file or <code>null</code>
+     */
+    private List<VType> read(final TileKey tile)
+    {
+        if (directory == null)
+            return null;
+        final File file = getFile(tile);
+        if (! file.canRead())
+            return null;
+        try
+        (
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        )
+        {
+            if (in.readInt() != MAGIC  ||  ! tile.toString().equals(in.readUTF()))
+                return null;
+            final int count = in.readInt();
+            final List<VType> samples = new ArrayList<>(count);
+            for (int i=0; i<count; ++i)
+            {
+                final byte type = in.readByte();
+                final Instant time = Instant.ofEpochSecond(in.readLong(), in.readInt());
+                final AlarmSeverity severity = AlarmSeverity.values()[in.readByte()];
+                final String status = in.readUTF();
+                if (type == STRING)
+                    samples.add(new ArchiveVString(time, severity, status, in.readUTF()));
+                else
+                {
+                    final Display display = readDisplay(in);
+                    if (type == STATISTICS)
+                        samples.add(new ArchiveVStatistics(time, severity, status, display,
+                                in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(), in.readInt()));
+                    else
+                        samples.add(new ArchiveVNumber(time, severity, status, display, readNumber(in)));
+                }
+            }
+            return samples;
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Cannot read " + file, ex);
+            return null;
+        }
+    }
+
+    /** Write tile to file, unless it contains samples that cannot be persisted
+     *  @param tile Tile key
+     *  @param samples Samples of the tile
+     */
+    private void write(final TileKey tile, final List<VType> samples)
+    {
+        if (directory == null)
+            return;
+        for (VType sample : samples)
+            if (! (sample instanceof VStatistics  ||  sample instanceof VNumber  ||  sample instanceof VString))
+                return;
+        final File file = getFile(tile);
+        final File tmp = new File(directory, file.getName() + ".tmp");
+        try
+        {
+            try
+            (
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            )
+            {
+                out.writeInt(MAGIC);
+                out.writeUTF(tile.toString());
+                out.writeInt(samples.size());
+                for (VType sample : samples)
+                {
+                    out.writeByte(sample instanceof VString ? STRING : (sample instanceof VStatistics ? STATISTICS : NUMBER));
+                    final Instant time = VTypeHelper.getTimestamp(sample);
+                    out.writeLong(time.getEpochSecond());
+                    out.writeInt(time.getNano());
+                    out.writeByte(VTypeHelper.getSeverity(sample).ordinal());
+                    out.writeUTF(VTypeHelper.getMessage(sample));
+                    if (sample instanceof VString)
+                        out.writeUTF(((VString) sample).getValue());
+                    else if (sample instanceof VStatistics)
+                    {
+                        final VStatistics stats = (VStatistics) sample;
+                        writeDisplay(out, stats);
+                        out.writeDouble(stats.getAverage());
+                        out.writeDouble(stats.getMin());
+                        out.writeDouble(stats.getMax());
+                        out.writeDouble(stats.getStdDev());
+                        out.writeInt(stats.getNSamples());
+                    }
+                    else
+                    {
+                        final VNumber number = (VNumber) sample;
+                        writeDisplay(out, number);
+                        writeNumber(out, number.getValue());
+                    }
+                }
+            }
+            if (! tmp.renameTo(file))
+            {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Cannot write " + file, ex);
+            tmp.delete();
+        }
+    }
+
+    private static void writeDisplay(final DataOutputStream out, final Display display) throws Exception
+    {
+        out.writeUTF(display.getUnits() == null ? "" : display.getUnits());
+        final NumberFormat format = display.getFormat();
+        out.writeInt(format == null ? -1 : format.getMaximumFractionDigits());
+        writeDouble(out, display.getLowerDisplayLimit());
+        writeDouble(out, display.getLowerAlarmLimit());
+        writeDouble(out, display.getLowerWarningLimit());
+        writeDouble(out, display.getUpperWarningLimit());
+        writeDouble(out, display.getUpperAlarmLimit());
+        writeDouble(out, display.getUpperDisplayLimit());
+        writeDouble(out, display.getLowerCtrlLimit());
+        writeDouble(out, display.getUpperCtrlLimit());
+    }
+
+    private static void writeDouble(final DataOutputStream out, final Double value) throws Exception
+    {
+        out.writeDouble(value == null ? Double.NaN : value);
+    }
+
+    private static Display readDisplay(final DataInputStream in) throws Exception
+    {
+        final String units = in.readUTF();
+        final int precision = in.readInt();
+        final NumberFormat format = precision < 0 ? NumberFormats.toStringFormat() : NumberFormats.format(precision);
+        final double lower_disp = in.readDouble(), lower_alarm = in.readDouble(), lower_warn = in.readDouble(),
+                     upper_warn = in.readDouble(), upper_alarm = in.readDouble(), upper_disp = in.readDouble(),
+                     lower_ctrl = in.readDouble(), upper_ctrl = in.readDouble();
+        return ValueFactory.newDisplay(lower_disp, lower_alarm, lower_warn, units, format,
+                                       upper_warn, upper_alarm, upper_disp, lower_ctrl, upper_ctrl);
+    }
+
+    /** Write number, preserving its type */
+    private static void writeNumber(final DataOutputStream out, final Number number) throws Exception
+    {
+        if (number instanceof Integer  ||  number instanceof Short  ||  number instanceof Byte)
+        {
+            out.writeByte('I');
+            out.writeInt(number.intValue());
+        }
+        else if (number instanceof Long)
+        {
+            out.writeByte('L');
+            out.writeLong(number.longValue());
+        }
+        else if (number instanceof Float)
+        {
+            out.writeByte('F');
+            out.writeFloat(number.floatValue());
+        }
+        else
+        {
+            out.writeByte('D');
+            out.writeDouble(number.doubleValue());
+        }
+    }
+
+    private static Number readNumber(final DataInputStream in) throws Exception
+    {
+        switch (in.readByte())
+        {
+        case 'I':
+            return in.readInt();
+        case 'L':
+            return in.readLong();
+        case 'F':
+            return in.readFloat();
+        default:
+            return in.readDouble();
+        }
+    }
+}
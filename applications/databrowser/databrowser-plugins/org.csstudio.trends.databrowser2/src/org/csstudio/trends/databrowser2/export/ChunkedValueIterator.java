@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.export;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.NoSuchElementException;
+
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.VType;
+
+/** Iterator that fetches samples in consecutive chunks of time
+ *
+ *  <p>Instead of one request for the complete time range,
+ *  which can take a long time or fail for example when
+ *  exporting raw data for a year,
+ *  samples are requested one chunk at a time as the iteration progresses.
+ *
+ *  <p>Archives typically start each request with the last sample
+ *  before the start time, which was already returned as part of
+ *  the previous chunk. Such repeated samples are skipped.
+ *  Samples that share the time stamp of the last sample of the previous chunk
+ *  are only skipped up to the number of samples with that time stamp
+ *  which the previous chunk returned, so samples with equal time stamps
+ *  are kept.
+ *
+ *  <p>An error while fetching a chunk is thrown by <code>next</code>
+ *  after all samples read before the error have been returned.
+ *
+ *  @author Kay Kasemir
+ */
+public class ChunkedValueIterator implements ValueIterator
+{
+    /** Fetch samples for one chunk */
+    @FunctionalInterface
+    public static interface ChunkFetch
+    {
+        /** @param start Start time of chunk
+         *  @param end End time of chunk
+         *  @return {@link ValueIterator} for the chunk
+         *  @throws Exception on error
+         */
+        public ValueIterator fetch(Instant start, Instant end) throws Exception;
+    }
+
+    final private ChunkFetch fetch;
+    final private Instant end;
+    final private Duration chunk;
+
+    /** End time of the current chunk */
+    private Instant chunk_end;
+
+    /** Iterator for current chunk, <code>null</code> when done */
+    private ValueIterator iter;
+
+    /** Time stamp of the last sample of the previous chunk, <code>null</code> when not skipping */
+    private Instant skip_until = null;
+
+    /** Number of samples at <code>skip_until</code> to skip */
+    private int skip_count;
+
+    /** Time stamp of the most recent sample */
+    private Instant last_time = null;
+
+    /** Number of samples returned with <code>last_time</code> */
+    private int last_count = 0;
+
+    /** Value to return from <code>next</code>, <code>null</code> when done */
+    private VType value;
+
+    /** Error to throw from <code>next</code> after the last value */
+    private Exception error = null;
+
+    /** Initialize, fetching the first chunk
+     *  @param fetch Fetch for one chunk
+     *  @param start Start time
+     *  @param end End time
+     *  @param chunk Duration of each chunk
+     *  @throws Exception on error
+     */
+    public ChunkedValueIterator(final ChunkFetch fetch, final Instant start, final Instant end,
+                                final Duration chunk) throws Exception
+    {
+        this.fetch = fetch;
+        this.end = end;
+        this.chunk = chunk;
+        chunk_end = getChunkEnd(start);
+        iter = fetch.fetch(start, chunk_end);
+        value = fetchNext();
+    }
+
+    private Instant getChunkEnd(final Instant chunk_start)
+    {
+        final Instant chunk_end = chunk_start.plus(chunk);
+        return chunk_end.isBefore(end) ? chunk_end : end;
+    }
+
+    /** @return Next sample or <code>null</code>
+     *  @throws Exception on error
+     */
+    private VType fetchNext() throws Exception
+    {
+        while (iter != null)
+        {
+            while (iter.hasNext())
+            {
+                final VType sample = iter.next();
+                final Instant time = VTypeHelper.getTimestamp(sample);
+                if (skip_until != null)
+                {   // Skip samples that were already returned by the previous chunk
+                    final int cmp = time.compareTo(skip_until);
+                    if (cmp < 0)
+                        continue;
+                    if (cmp == 0  &&  skip_count > 0)
+                    {
+                        --skip_count;
+                        continue;
+                    }
+                    skip_until = null;
+                }
+                if (time.equals(last_time))
+                    ++last_count;
+                else
+                {
+                    last_time = time;
+                    last_count = 1;
+                }
+                return sample;
+            }
+            iter.close();
+            iter = null;
+            if (! chunk_end.isBefore(end))
+                break;
+            final Instant chunk_start = chunk_end;
+            chunk_end = getChunkEnd(chunk_start);
+            skip_until = last_time;
+            skip_count = last_count;
+            iter = fetch.fetch(chunk_start, chunk_end);
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext()
+    {
+        return value != null  ||  error != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VType next() throws Exception
+    {
+        if (value == null)
+        {
+            if (error == null)
+                throw new NoSuchElementException();
+            final Exception ex = error;
+            error = null;
+            throw ex;
+        }
+        final VType result = value;
+        try
+        {
+            value = fetchNext();
+        }
+        catch (Exception ex)
+        {
+            value = null;
+            error = ex;
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+    {
+        if (iter != null)
+        {
+            iter.close();
+            iter = null;
+        }
+        value = null;
+        error = null;
+    }
+}
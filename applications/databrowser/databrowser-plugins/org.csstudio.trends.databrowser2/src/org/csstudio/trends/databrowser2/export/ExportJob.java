@@ -7,7 +7,14 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.export;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,14 +40,32 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
 
 /** Base for Eclipse Job for exporting data from Model to file
+ *
+ *  <p>Archived samples are streamed from the archive to the file.
+ *  Raw data is requested in chunks of {@link #FETCH_CHUNK},
+ *  and each channel is read ahead in a background thread
+ *  by up to {@link #PREFETCH_SAMPLES}.
+ *  Memory use is thus independent of the exported time range.
+ *
  *  @author Kay Kasemir
  */
 @SuppressWarnings("nls")
 abstract public class ExportJob extends Job
 {
     final protected static int PROGRESS_UPDATE_LINES = 1000;
+
+    /** Time range of each raw data request */
+    final protected static Duration FETCH_CHUNK = Duration.ofDays(1);
+
+    /** Number of samples per channel to fetch ahead */
+    final protected static int PREFETCH_SAMPLES = 10000;
+
+    /** Size of the file buffer */
+    final private static int FILE_BUFFER = 256*1024;
+
     final protected String comment;
     final protected Model model;
     final protected Instant start, end;
@@ -51,6 +76,21 @@ abstract public class ExportJob extends Job
     /** Active readers, used to cancel and close them */
     final private CopyOnWriteArrayList<ArchiveReader> archive_readers = new CopyOnWriteArrayList<ArchiveReader>();
 
+    /** Start of the export and number of exported samples, used to compute throughput */
+    private long start_ms, sample_count;
+
+    /** Export of the samples for one model item */
+    @FunctionalInterface
+    protected static interface ItemExport
+    {
+        /** @param index Index of the item
+         *  @param item ModelItem
+         *  @param values Samples of the item
+         *  @throws Exception on error
+         */
+        public void export(int index, ModelItem item, ValueIterator values) throws Exception;
+    }
+
     /** Thread that polls a progress monitor and cancels active archive readers
      *  if the user requests the export job to end via the progress monitor
      */
@@ -121,38 +161,76 @@ abstract public class ExportJob extends Job
     final protected IStatus run(final IProgressMonitor monitor)
     {
         monitor.beginTask("Data Export", IProgressMonitor.UNKNOWN);
+        start_ms = System.currentTimeMillis();
+        sample_count = 0;
+        // Start thread that checks monitor to cancels readers when
+        // user tries to abort the export job
+        final CancellationPoll cancel_poll = new CancellationPoll(monitor);
+        final Future<?> done = Activator.getThreadPool().submit(cancel_poll);
         try
         {
-            final PrintStream out;
             if (filename != null)
             {
-                out = new PrintStream(filename);
-                printExportInfo(out);
+                try
+                (
+                    final FileChannel file = FileChannel.open(Paths.get(filename),
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    final PrintStream out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(file), FILE_BUFFER));
+                )
+                {
+                    printExportInfo(out);
+                    performExport(monitor, out);
+                    // PrintStream does not throw exceptions
+                    out.flush();
+                    if (out.checkError())
+                        throw new IOException("Error writing " + filename);
+                }
             }
             else
-                out = null;
-            // Start thread that checks monitor to cancels readers when
-            // user tries to abort the export job
-            final CancellationPoll cancel_poll = new CancellationPoll(monitor);
-            final Future<?> done = Activator.getThreadPool().submit(cancel_poll);
-            performExport(monitor, out);
-            // ask thread to exit
-            cancel_poll.exit = true;
-            if (out != null)
-                out.close();
-            // Wait for poller to quit
-            done.get();
+                performExport(monitor, null);
+            final double secs = (System.currentTimeMillis() - start_ms) / 1000.0;
+            Logger.getLogger(getClass().getName()).log(Level.INFO,
+                    String.format("Exported %d samples in %.1f seconds, %.0f samples/sec",
+                                  sample_count, secs, sample_count / Math.max(secs, 0.001)));
         }
         catch (final Exception ex)
         {
             error_handler.handleExportError(ex);
         }
+        // ask thread to exit
+        cancel_poll.exit = true;
         for (ArchiveReader reader : archive_readers)
             reader.close();
+        // Wait for poller to quit
+        try
+        {
+            done.get();
+        }
+        catch (Exception ex)
+        {
+            // Ignore
+        }
         monitor.done();
         return Status.OK_STATUS;
     }
 
+    /** Count an exported sample, periodically updating the progress monitor
+     *  @param monitor Progress monitor
+     *  @param name Name of exported item or <code>null</code>
+     *  @param count Number of samples exported for the item
+     */
+    protected void updateProgress(final IProgressMonitor monitor, final String name, final long count)
+    {
+        ++sample_count;
+        if (count % PROGRESS_UPDATE_LINES != 0)
+            return;
+        final long rate = sample_count * 1000 / Math.max(1, System.currentTimeMillis() - start_ms);
+        if (name == null)
+            monitor.subTask(NLS.bind("Wrote {0} samples, {1} samples/sec", count, rate));
+        else
+            monitor.subTask(NLS.bind("{0}: Wrote {1} samples, {2} samples/sec", new Object[] { name, count, rate }));
+    }
+
     /** Print file header, gets invoked before <code>performExport</code> */
     protected void printExportInfo(final PrintStream out)
     {
@@ -199,7 +277,74 @@ abstract public class ExportJob extends Job
         out.println(comment);
     }
 
-    /** @param item ModelItem
+    /** Export the samples of all model items, one item after the other
+     *
+     *  <p>While one item is exported, samples for the next item
+     *  are already fetched in the background.
+     *  The iterators for the samples are closed when done.
+     *
+     *  @param monitor Progress monitor
+     *  @param export Export for one item
+     *  @throws Exception on error
+     */
+    protected void exportItems(final IProgressMonitor monitor, final ItemExport export) throws Exception
+    {
+        final List<ModelItem> items = new ArrayList<>();
+        for (ModelItem item : model.getItems())
+            items.add(item);
+        ValueIterator next = null;
+        Exception next_error = null;
+        try
+        {
+            for (int i=0; i<items.size()  &&  !monitor.isCanceled(); ++i)
+            {
+                final ModelItem item = items.get(i);
+                if (next_error != null)
+                    throw next_error;
+                final ValueIterator values;
+                if (next != null)
+                    values = next;
+                else
+                {
+                    monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
+                    values = createValueIterator(item);
+                }
+                next = null;
+                try
+                {
+                    // Start fetching the following item
+                    if (i+1 < items.size())
+                    {
+                        try
+                        {
+                            next = createValueIterator(items.get(i+1));
+                        }
+                        catch (Exception ex)
+                        {   // Report once this item has been exported
+                            next_error = ex;
+                        }
+                    }
+                    export.export(i, item, values);
+                }
+                finally
+                {
+                    values.close();
+                }
+            }
+        }
+        finally
+        {
+            if (next != null)
+                next.close();
+        }
+    }
+
+    /** Create iterator for the samples of an item
+     *
+     *  <p>Archived samples are fetched in a background thread.
+     *  Caller must close the iterator.
+     *
+     *  @param item ModelItem
      *  @return ValueIterator for samples in the item
      *  @throws Exception on error
      */
@@ -225,8 +370,10 @@ abstract public class ExportJob extends Job
                     iter = reader.getOptimizedValues(archive.getKey(),
                             item.getResolvedName(), start, end, (int)optimize_parameter);
                 else
-                {
-                    iter = reader.getRawValues(archive.getKey(), item.getResolvedName(), start, end);
+                {   // Fetch raw data in chunks
+                    iter = new ChunkedValueIterator((chunk_start, chunk_end) ->
+                        reader.getRawValues(archive.getKey(), item.getResolvedName(), chunk_start, chunk_end),
+                        start, end, FETCH_CHUNK);
                     if (source == Source.LINEAR_INTERPOLATION && optimize_parameter >= 1)
                         iter = new LinearValueIterator(iter, TimeDuration.ofSeconds(optimize_parameter));
                 }
@@ -243,7 +390,8 @@ abstract public class ExportJob extends Job
         // If none of the iterators work out, report the first error that we found
         if (iters.isEmpty()  &&  error != null)
             throw error;
-        // Return a merging iterator
-        return new MergingValueIterator(iters.toArray(new ValueIterator[iters.size()]));
+        // Return a merging iterator, fetching ahead in background thread
+        final ValueIterator merged = new MergingValueIterator(iters.toArray(new ValueIterator[iters.size()]));
+        return new PrefetchValueIterator(merged, PREFETCH_SAMPLES, Activator.getThreadPool());
     }
 }
@@ -12,15 +12,12 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.csstudio.archive.vtype.VTypeHelper;
 import org.csstudio.trends.databrowser2.model.Model;
-import org.csstudio.trends.databrowser2.model.ModelItem;
 import org.diirt.vtype.AlarmSeverity;
 import org.diirt.vtype.VType;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.osgi.util.NLS;
 
 import com.jmatio.io.MatFileIncrementalWriter;
 import com.jmatio.types.MLCell;
@@ -55,11 +52,8 @@ public class MatlabFileExportJob extends ExportJob
             throw new IllegalStateException();
 
         final MatFileIncrementalWriter writer = new MatFileIncrementalWriter(filename);
-        int i = 0;
-        for (ModelItem item : model.getItems())
-        {   // Get data
-            monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
-            final ValueIterator iter = createValueIterator(item);
+        exportItems(monitor, (i, item, iter) ->
+        {   // Matlab file needs all samples of the channel
             final List<Instant> times = new ArrayList<Instant>();
             final List<Double> values = new ArrayList<Double>();
             final List<AlarmSeverity> severities = new ArrayList<AlarmSeverity>();
@@ -69,13 +63,12 @@ public class MatlabFileExportJob extends ExportJob
                 times.add(VTypeHelper.getTimestamp(value));
                 values.add(VTypeHelper.toDouble(value));
                 severities.add(VTypeHelper.getSeverity(value));
-                if (values.size() % PROGRESS_UPDATE_LINES == 0)
-                    monitor.subTask(NLS.bind("{0}: Obtained {1} samples", item.getResolvedName(), values.size()));
+                updateProgress(monitor, item.getResolvedName(), values.size());
             }
             // Add to Matlab file
-            final MLStructure struct = createMLStruct(i++, item.getResolvedName(), times, values, severities);
+            final MLStructure struct = createMLStruct(i, item.getResolvedName(), times, values, severities);
             writer.write(struct);
-        }
+        });
 
         writer.close();
     }
@@ -13,13 +13,10 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 
-import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.VTypeHelper;
 import org.csstudio.trends.databrowser2.model.Model;
-import org.csstudio.trends.databrowser2.model.ModelItem;
 import org.diirt.vtype.VType;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.osgi.util.NLS;
 
 /** Eclipse Job for exporting data from Model to Matlab-format file.
  *  @author Kay Kasemir
@@ -56,16 +53,14 @@ public class MatlabScriptExportJob extends ExportJob
                                  final PrintStream out) throws Exception
     {
         final DateFormat date_format = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSS");
-        int count = 0;
-        for (ModelItem item : model.getItems())
+        // Number of exported channels
+        final int[] channels = { 0 };
+        exportItems(monitor, (count, item, values) ->
         {
             // Item header
             if (count > 0)
                 out.println();
             printItemInfo(out, item);
-            // Get data
-            monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
-            final ValueIterator values = createValueIterator(item);
             // Dump all values
             MatlabQualityHelper qualities = new MatlabQualityHelper();
             long line_count = 0;
@@ -87,8 +82,7 @@ public class MatlabScriptExportJob extends ExportJob
                     out.println("v(" + line_count + ")=" + num +";");
                 // q(1)=0;
                 out.println("q(" + line_count + ")=" + qualities.getQualityCode(VTypeHelper.getSeverity(value), VTypeHelper.getMessage(value)) +";");
-                if (line_count % PROGRESS_UPDATE_LINES == 0)
-                    monitor.subTask(NLS.bind("{0}: Wrote {1} samples", item.getResolvedName(), line_count));
+                updateProgress(monitor, item.getResolvedName(), line_count);
             }
 
             out.println(comment + "Convert time stamps into 'date numbers'");
@@ -116,12 +110,12 @@ public class MatlabScriptExportJob extends ExportJob
             out.println(" };");
 
             out.println();
-            ++count;
-        }
+            channels[0] = count + 1;
+        });
         out.println(comment + "Example for plotting the data");
-        for (int i=0; i<count; ++i)
+        for (int i=0; i<channels[0]; ++i)
         {
-            out.println("subplot(1, " + count + ", " + (i+1) + ");");
+            out.println("subplot(1, " + channels[0] + ", " + (i+1) + ");");
             out.println("plot(channel" + i + ");");
         }
     }
@@ -10,15 +10,12 @@ package org.csstudio.trends.databrowser2.export;
 import java.io.PrintStream;
 import java.time.Instant;
 
-import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.csstudio.archive.vtype.VTypeHelper;
 import org.csstudio.trends.databrowser2.Messages;
 import org.csstudio.trends.databrowser2.model.Model;
-import org.csstudio.trends.databrowser2.model.ModelItem;
 import org.diirt.vtype.VType;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.osgi.util.NLS;
 
 /** Eclipse Job for exporting data from Model to file
  *  @author Kay Kasemir
@@ -54,15 +51,11 @@ public class PlainExportJob extends ExportJob
     protected void performExport(final IProgressMonitor monitor,
                                  final PrintStream out) throws Exception
     {
-        int count = 0;
-        for (ModelItem item : model.getItems())
+        exportItems(monitor, (count, item, values) ->
         {   // Item header
             if (count > 0)
                 out.println();
             printItemInfo(out, item);
-            // Get data
-            monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
-            final ValueIterator values = createValueIterator(item);
             // Dump all values
             out.println(comment + Messages.TimeColumn + Messages.Export_Delimiter + formatter.getHeader());
             long line_count = 0;
@@ -72,11 +65,8 @@ public class PlainExportJob extends ExportJob
 
                 final String time = TimestampHelper.format(VTypeHelper.getTimestamp(value));
                 out.println(time + Messages.Export_Delimiter + formatter.format(value));
-                ++line_count;
-                if (++line_count % PROGRESS_UPDATE_LINES == 0)
-                    monitor.subTask(NLS.bind("{0}: Wrote {1} samples", item.getResolvedName(), line_count));
+                updateProgress(monitor, item.getResolvedName(), ++line_count);
             }
-            ++count;
-        }
+        });
     }
 }
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.export;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.csstudio.archive.reader.ValueIterator;
+import org.diirt.vtype.VType;
+
+/** Iterator that reads samples from another iterator in a background thread
+ *
+ *  <p>Samples are handed over through a bounded queue.
+ *  The background thread fetches ahead while the caller
+ *  processes samples, for example writing them to a file,
+ *  but memory use is limited by the capacity of the queue,
+ *  independent of the number of samples.
+ *
+ *  <p>An error of the original iterator is thrown by
+ *  <code>next</code> after all samples read before the error
+ *  have been returned.
+ *
+ *  <p>Closing the iterator interrupts a pending fetch.
+ *  If the source does not react within a few seconds,
+ *  the background thread closes it once the fetch returns.
+ *
+ *  @author Kay Kasemir
+ */
+@SuppressWarnings("nls")
+public class PrefetchValueIterator implements ValueIterator
+{
+    /** Marks the end of samples in the queue */
+    final private static VType END = new VType() {};
+
+    /** Seconds to wait for the background thread when closing */
+    final private static long CLOSE_TIMEOUT_SECS = 5;
+
+    final private ValueIterator source;
+
+    final private BlockingQueue<VType> queue;
+
+    final private Future<?> producer;
+
+    /** Background thread while it reads the source, interrupted by <code>close</code>.
+     *  SYNC on this
+     */
+    private Thread thread = null;
+
+    /** Set when the consumer is done */
+    private volatile boolean closed = false;
+
+    /** Error of the source, returned when reaching the end of the queue */
+    private volatile Exception error = null;
+
+    /** Value to return from <code>next</code>, <code>null</code> if not known, {@link #END} when done */
+    private VType value = null;
+
+    /** Initialize
+     *  @param source Iterator to read in the background, will be closed by this iterator
+     *  @param capacity Number of samples to fetch ahead
+     *  @param executor Executor for the background thread
+     */
+    public PrefetchValueIterator(final ValueIterator source, final int capacity, final ExecutorService executor)
+    {
+        this.source = source;
+        queue = new ArrayBlockingQueue<>(capacity);
+        producer = executor.submit(this::produce);
+    }
+
+    /** Read samples from source into queue */
+    private void produce()
+    {
+        synchronized (this)
+        {
+            thread = Thread.currentThread();
+        }
+        try
+        {
+            while (! closed  &&  source.hasNext())
+                put(source.next());
+        }
+        catch (Exception ex)
+        {
+            error = ex;
+        }
+        finally
+        {
+            synchronized (this)
+            {   // Clear interrupt from close(), thread is returned to executor
+                thread = null;
+                Thread.interrupted();
+            }
+            source.close();
+            try
+            {
+                put(END);
+            }
+            catch (InterruptedException ex)
+            {
+                // Ignore, closing
+            }
+        }
+    }
+
+    /** @param sample Sample to add to queue, waiting for space unless closed
+     *  @throws InterruptedException on interruption
+     */
+    private void put(final VType sample) throws InterruptedException
+    {
+        while (! closed)
+            if (queue.offer(sample, 100, TimeUnit.MILLISECONDS))
+                return;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext()
+    {
+        if (value == null)
+        {
+            try
+            {
+                value = queue.take();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                error = ex;
+                value = END;
+            }
+        }
+        // Report error from next()
+        return value != END  ||  error != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public VType next() throws Exception
+    {
+        if (! hasNext())
+            throw new NoSuchElementException();
+        if (value == END)
+        {
+            final Exception ex = error;
+            error = null;
+            throw ex;
+        }
+        final VType result = value;
+        value = null;
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close()
+    {
+        closed = true;
+        queue.clear();
+        // Abort a pending fetch
+        synchronized (this)
+        {
+            if (thread != null)
+                thread.interrupt();
+        }
+        // Wait for background thread to close the source
+        try
+        {
+            producer.get(CLOSE_TIMEOUT_SECS, TimeUnit.SECONDS);
+        }
+        catch (TimeoutException ex)
+        {
+            Logger.getLogger(getClass().getName()).log(Level.WARNING,
+                "Prefetch still busy after " + CLOSE_TIMEOUT_SECS + " seconds, will close when fetch returns");
+        }
+        catch (Exception ex)
+        {
+            Logger.getLogger(getClass().getName()).log(Level.WARNING, "Cannot close prefetch", ex);
+        }
+    }
+}
@@ -54,29 +54,46 @@ public class SpreadsheetExportJob extends PlainExportJob
 
         // Create speadsheet interpolation
         final List<ValueIterator> iters = new ArrayList<>();
-        for (ModelItem item : model.getItems())
+        try
         {
-            monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
-            iters.add(createValueIterator(item));
+            for (ModelItem item : model.getItems())
+            {
+                monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
+                iters.add(createValueIterator(item));
+            }
         }
-        final SpreadsheetIterator sheet = new SpreadsheetIterator(iters.toArray(new ValueIterator[iters.size()]));
-        // Dump the spreadsheet lines
-        long line_count = 0;
-
-        while (sheet.hasNext()  &&  !monitor.isCanceled())
+        catch (Exception ex)
+        {
+            for (ValueIterator iter : iters)
+                iter.close();
+            throw ex;
+        }
+        try
         {
-            final Instant time = sheet.getTime();
-            final VType line[] = sheet.next();
-            out.print(TimestampHelper.format(time));
+            // Channels are fetched in parallel, merged by time
+            final SpreadsheetIterator sheet = new SpreadsheetIterator(iters.toArray(new ValueIterator[iters.size()]));
+            // Dump the spreadsheet lines, re-using one line of values and text
+            final VType line[] = new VType[iters.size()];
+            final StringBuilder buf = new StringBuilder();
+            long line_count = 0;
 
-            for (int i=0; i<line.length; ++i)
-                out.print(Messages.Export_Delimiter + formatter.format(line[i]));
-            out.println();
-            ++line_count;
-            if ((line_count % PROGRESS_UPDATE_LINES) == 0)
-                monitor.subTask(NLS.bind("Wrote {0} samples", line_count));
-            if (monitor.isCanceled())
-                break;
+            while (sheet.hasNext()  &&  !monitor.isCanceled())
+            {
+                final Instant time = sheet.getTime();
+                sheet.next(line);
+                buf.setLength(0);
+                buf.append(TimestampHelper.format(time));
+                for (int i=0; i<line.length; ++i)
+                    buf.append(Messages.Export_Delimiter).append(formatter.format(line[i]));
+                buf.append(System.lineSeparator());
+                out.append(buf);
+                updateProgress(monitor, null, ++line_count);
+            }
+        }
+        finally
+        {
+            for (ValueIterator iter : iters)
+                iter.close();
         }
     }
 }
@@ -623,6 +623,8 @@ public class ExportView extends DataBrowserAwareView implements ExportErrorHandl
                 export = new PlainExportJob(model, start_time, end_time, source,
                         optimize_parameter, formatter, filename, this);
         }
+        // Show progress and throughput
+        export.setUser(true);
         export.schedule();
     }
 
@@ -92,6 +92,13 @@ public class ImportArchiveReaderFactory implements ArchiveReaderFactory
         return reader;
     }
 
+    /** Readers are cached by URL */
+    @Override
+    public boolean isSharingReaders()
+    {
+        return true;
+    }
+
     /** Removed cached data for given archive data sources
      *  @param sources {@link ArchiveDataSource}[]
      */
@@ -7,6 +7,11 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.model;
 
+import java.time.Instant;
+import java.util.Objects;
+
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.swt.rtplot.data.TimeDataSearch;
 import org.diirt.vtype.VType;
 
 /** One input to the formula: Model item that provides data, Variable name
@@ -95,6 +100,96 @@ public class FormulaInput
         return result;
     }
 
+    /** Position the sample iterator after a previously returned sample
+     *
+     *  <p>Locates the sample by its time stamp,
+     *  since the oldest samples may have been removed from a ring buffer.
+     *
+     *  @param sample Sample that {@link #next()} returned earlier,
+     *                <code>null</code> to position on the first sample
+     *  @return <code>true</code> if {@link #next()} will now return the sample after the given one,
+     *          <code>false</code> if the sample is no longer available
+     */
+    public boolean seek(final VType sample)
+    {
+        final PlotSamples samples = item.getSamples();
+        samples.getLock().lock();
+        try
+        {
+            if (sample == null)
+            {
+                index = samples.size() > 0 ? 0 : -1;
+                return true;
+            }
+            final Instant time = VTypeHelper.getTimestamp(sample);
+            int i = new TimeDataSearch().findSampleLessOrEqual(samples, time);
+            while (i >= 0  &&  samples.get(i).getPosition().equals(time))
+            {
+                final VType candidate = samples.get(i).getVType();
+                if (candidate == sample  ||  Objects.equals(candidate, sample))
+                {
+                    index = i+1;
+                    return true;
+                }
+                --i;
+            }
+            return false;
+        }
+        finally
+        {
+            samples.getLock().unlock();
+        }
+    }
+
+    /** @return Time stamp of the first sample or <code>null</code> */
+    public Instant getStart()
+    {
+        final PlotSamples samples = item.getSamples();
+        samples.getLock().lock();
+        try
+        {
+            return samples.size() > 0 ? samples.get(0).getPosition() : null;
+        }
+        finally
+        {
+            samples.getLock().unlock();
+        }
+    }
+
+    /** Get end of the stable samples
+     *
+     *  <p>The last sample may still change.
+     *  For example, {@link PVSamples} extend the last sample to 'now',
+     *  and that continuation is replaced when a new sample arrives.
+     *
+     *  @return Time stamp of the sample before the last sample,
+     *          of the only sample, or <code>null</code> when there are no samples
+     */
+    public Instant getStableEnd()
+    {
+        final PlotSamples samples = item.getSamples();
+        samples.getLock().lock();
+        try
+        {
+            final int size = samples.size();
+            if (size <= 0)
+                return null;
+            return samples.get(Math.max(0, size-2)).getPosition();
+        }
+        finally
+        {
+            samples.getLock().unlock();
+        }
+    }
+
+    /** @return Revision of the input's samples
+     *  @see PlotSamples#getRevision()
+     */
+    public int getRevision()
+    {
+        return item.getSamples().getRevision();
+    }
+
     /** Check for new samples.
      *  Note that this will not reset the new-sample flag,
      *  so its use has to be coordinated with the overall mechanism
@@ -67,6 +67,48 @@ public class FormulaItem extends ModelItem
      *  Access must synchronize on samples (done inside PlotSampleArray) */
     private PlotSampleArray samples = new PlotSampleArray();
 
+    /** State of the computation at the last stable spreadsheet line
+     *
+     *  <p>Samples of the formula up to this line will not change
+     *  as long as the inputs only receive new samples,
+     *  so computation can continue from here.
+     */
+    private static class Checkpoint
+    {
+        /** Revision of each input's samples */
+        final int revisions[];
+
+        /** Last sample used from each input, <code>null</code> if none */
+        final VType used[];
+
+        /** Numeric min/val/max of each input */
+        final double min[], val[], max[];
+
+        /** Time of the first line that's not stable */
+        final Instant time;
+
+        /** Number of stable formula samples */
+        int lines;
+
+        Checkpoint(final int revisions[], final VType used[],
+                   final double min[], final double val[], final double max[],
+                   final Instant time, final int lines)
+        {
+            this.revisions = revisions;
+            this.used = used.clone();
+            this.min = min.clone();
+            this.val = val.clone();
+            this.max = max.clone();
+            this.time = time;
+            this.lines = lines;
+        }
+    }
+
+    /** Checkpoint for continuing the computation, <code>null</code> to compute all
+     *  @see #formula for synchronization
+     */
+    private Checkpoint checkpoint = null;
+
     /** Initialize formula
      *  @param name Name of the Formula item
      *  @param expression Expression to evaluate
@@ -122,6 +164,7 @@ public class FormulaItem extends ModelItem
             for (int i=0; i<variables.length; ++i)
                 variables[i] = new VariableNode(inputs[i].getVariableName());
             this.formula = new Formula(expression, variables);
+            checkpoint = null;
         }
         fireItemLookChanged();
     }
@@ -131,6 +174,9 @@ public class FormulaItem extends ModelItem
      *  Iterates over the input samples in a manner of spreadsheet or
      *  staircase-interpolation: An input with a time stamp is valid
      *  until there's a sample with a greater time stamp.
+     *  <p>
+     *  When possible, continues from the last {@link Checkpoint},
+     *  only evaluating the formula for new input samples.
      */
     private void compute()
     {
@@ -144,23 +190,48 @@ public class FormulaItem extends ModelItem
             // value
             final VType values[] = new VType[inputs.length];
 
+            // Last sample used from each input, before values[] moved on
+            final VType used[] = new VType[inputs.length];
+
             // 'Current' numeric min/val/max of values
             final double min[] = new double[inputs.length];
             final double val[] = new double[inputs.length];
             final double max[] = new double[inputs.length];
 
-            // Determine first sample for each input
+            // Revision of inputs before reading their samples
+            final int revisions[] = new int[inputs.length];
+            for (int i = 0; i < inputs.length; i++)
+                revisions[i] = inputs[i].getRevision();
+
+            // Resume from checkpoint, or determine first sample for each input
+            final Checkpoint resumed = resume(revisions, values, used, min, val, max);
             boolean more_input = false;
             for (int i = 0; i < values.length; i++)
             {
-                // Initially, none have any data
-                min[i] = val[i] = max[i] = Double.NaN;
-                // Is there an initial value for any input?
-                values[i] = inputs[i].first();
+                if (resumed == null)
+                {
+                    // Initially, none have any data
+                    min[i] = val[i] = max[i] = Double.NaN;
+                    used[i] = null;
+                    values[i] = inputs[i].first();
+                }
+                // Is there a value for any input?
                 if (values[i] != null)
                     more_input = true;
             }
 
+            // The last sample of each input might still change,
+            // for example a live sample that's extended to 'now'.
+            // Lines before the oldest stable end of all inputs are stable.
+            Instant stable_end = null;
+            for (int i = 0; i < inputs.length; i++)
+            {
+                final Instant end = inputs[i].getStableEnd();
+                if (end != null  &&  (stable_end == null  ||  end.compareTo(stable_end) < 0))
+                    stable_end = end;
+            }
+            checkpoint = null;
+
             // Compute result for each 'line in the spreadsheet'
             Instant time;
             while (more_input)
@@ -180,6 +251,10 @@ public class FormulaItem extends ModelItem
                     break;
                 }
 
+                if (checkpoint == null  &&  stable_end != null  &&  time.compareTo(stable_end) >= 0)
+                    checkpoint = new Checkpoint(revisions, used, min, val, max, stable_end,
+                                                (resumed == null ? 0 : resumed.lines) + result.size());
+
                 // 'time' now defines the current spreadsheet line.
                 // Set min/max/val to sample from each input for that time.
                 // This might move values[i] resp. the inputs' iterators
@@ -211,6 +286,7 @@ public class FormulaItem extends ModelItem
                             have_min_max = false;
                         }
                         // Move to next input sample
+                        used[i] = values[i];
                         values[i] = inputs[i].next();
                     }
                     else
@@ -252,9 +328,57 @@ public class FormulaItem extends ModelItem
                 }
                 result.add(new PlotSample(Messages.Formula, value));
             }
+
+            // Update PlotSamples
+            if (resumed == null)
+                samples.set(result);
+            else
+            {   // Keep stable lines, but not those before the start of all inputs
+                Instant start = null;
+                for (FormulaInput input : inputs)
+                {
+                    final Instant input_start = input.getStart();
+                    if (input_start != null  &&  (start == null  ||  input_start.compareTo(start) < 0))
+                        start = input_start;
+                }
+                final int dropped = samples.update(start, resumed.lines, result);
+                if (checkpoint != null)
+                    checkpoint.lines -= dropped;
+            }
+        }
+    }
+
+    /** Try to resume computation from the last {@link Checkpoint}
+     *  @param revisions Current revision of each input
+     *  @param values Next value of each input, set when resuming
+     *  @param used Last value used from each input, set when resuming
+     *  @param min Set to input's min at checkpoint
+     *  @param val .. value
+     *  @param max .. max
+     *  @return Checkpoint or <code>null</code> when a full computation is required
+     */
+    private Checkpoint resume(final int revisions[], final VType values[], final VType used[],
+                              final double min[], final double val[], final double max[])
+    {
+        final Checkpoint resumed = checkpoint;
+        if (resumed == null  ||  resumed.used.length != inputs.length)
+            return null;
+        for (int i = 0; i < inputs.length; i++)
+        {   // Only new samples were added to the input?
+            if (revisions[i] != resumed.revisions[i]  ||
+                ! inputs[i].seek(resumed.used[i]))
+                return null;
+            values[i] = inputs[i].next();
+            // Must not have new samples before the checkpoint
+            if (values[i] != null  &&
+                VTypeHelper.getTimestamp(values[i]).compareTo(resumed.time) < 0)
+                return null;
         }
-        // Update PlotSamples
-        samples.set(result);
+        System.arraycopy(resumed.used, 0, used, 0, used.length);
+        System.arraycopy(resumed.min, 0, min, 0, min.length);
+        System.arraycopy(resumed.val, 0, val, 0, val.length);
+        System.arraycopy(resumed.max, 0, max, 0, max.length);
+        return resumed;
     }
 
     /** Re-evaluate the formula in case some of the input samples changed.
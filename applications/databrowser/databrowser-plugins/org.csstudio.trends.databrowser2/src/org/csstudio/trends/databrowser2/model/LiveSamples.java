@@ -7,42 +7,97 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.model;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
 
-import org.csstudio.apputil.ringbuffer.RingBuffer;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.trends.databrowser2.Messages;
 import org.csstudio.trends.databrowser2.preferences.Preferences;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
 
 /** Ring buffer for 'live' samples.
  *  <p>
  *  New samples are always added to the end of a ring buffer.
+ *  <p>
+ *  PV updates add samples without taking the lock of the {@link PVSamples},
+ *  so they are not delayed by readers that for example paint the plot.
+ *  Received values are placed in pre-allocated arrays,
+ *  indexed by the sequence number of the sample modulo the capacity.
+ *  No {@link PlotSample} is created at that time.
+ *  <p>
+ *  Readers access the 'visible' samples via {@link PVSamples}.
+ *  Samples become visible when {@link PVSamples} calls {@link #publish()},
+ *  which copies the samples added since the previous call
+ *  with an optimistic read of the ring, validated by
+ *  the sequence stamp of its {@link StampedLock}.
  *
  *  @author Kay Kasemir
  *  @author Takashi Nakamoto changed LiveSamples to handle waveform index.
  */
 public class LiveSamples extends PlotSamples
 {
-    // No locking in here, all access is via PVSamples
-
-    private RingBuffer<PlotSample> samples =
-        new RingBuffer<PlotSample>(Preferences.getLiveSampleBufferSize());
+    /** Optimistic attempts to copy new samples before blocking writers */
+    final private static int OPTIMISTIC_ATTEMPTS = 3;
 
     /** Waveform index */
     final private AtomicInteger waveform_index;
 
+    /** Lock for the ring.
+     *  Writers hold the write lock, {@link #publish()} reads optimistically.
+     */
+    final private StampedLock ring_lock = new StampedLock();
+
+    /** Received values */
+    private VType[] values;
+
+    /** Received samples, <code>null</code> where only the value was received */
+    private PlotSample[] received;
+
+    /** Sequence numbers of oldest sample and next sample in the ring */
+    private long ring_start = 0, ring_end = 0;
+
+    /** Set when samples were added that are not visible */
+    final private AtomicBoolean pending = new AtomicBoolean();
+
+    // Visible samples are only accessed via PVSamples,
+    // holding its lock for reading or, in publish(), writing
+
+    /** Visible samples, using the same index as the ring */
+    private PlotSample[] visible;
+
+    /** Sequence numbers of oldest visible sample and next visible sample */
+    private long visible_start = 0, visible_end = 0;
+
+    /** Ring entries copied by publish() before they are made visible */
+    private VType[] copied_values = new VType[0];
+    private PlotSample[] copied_received = new PlotSample[0];
+
     LiveSamples(final AtomicInteger waveform_index)
+    {
+        this(waveform_index, Preferences.getLiveSampleBufferSize());
+    }
+
+    LiveSamples(final AtomicInteger waveform_index, final int capacity)
     {
         this.waveform_index = waveform_index;
+        values = new VType[capacity];
+        received = new PlotSample[capacity];
+        visible = new PlotSample[capacity];
     }
 
     /** @return Maximum number of samples in ring buffer */
     public int getCapacity()
     {
-        return samples.getCapacity();
+        return visible.length;
     }
 
     /** Set new capacity.
      *  <p>
      *  Tries to preserve the newest samples.
+     *  Caller must hold the write lock of the {@link PVSamples}.
      *  @param new_capacity New sample count capacity
      *  @throws Exception on out-of-memory error
      */
@@ -50,33 +105,213 @@ public class LiveSamples extends PlotSamples
     {
         if (new_capacity < 10)
             new_capacity = 10;
-        samples.setCapacity(new_capacity);
+        final long stamp = ring_lock.writeLock();
+        try
+        {
+            final VType[] new_values = new VType[new_capacity];
+            final PlotSample[] new_received = new PlotSample[new_capacity];
+            final PlotSample[] new_visible = new PlotSample[new_capacity];
+            ring_start = Math.max(ring_start, ring_end - new_capacity);
+            for (long seq=ring_start; seq<ring_end; ++seq)
+            {
+                final int slot = (int) (seq % values.length), new_slot = (int) (seq % new_capacity);
+                new_values[new_slot] = values[slot];
+                new_received[new_slot] = received[slot];
+            }
+            visible_start = Math.max(visible_start, visible_end - new_capacity);
+            for (long seq=visible_start; seq<visible_end; ++seq)
+                new_visible[(int) (seq % new_capacity)] = visible[(int) (seq % visible.length)];
+            values = new_values;
+            received = new_received;
+            visible = new_visible;
+        }
+        catch (OutOfMemoryError err)
+        {
+            throw new Exception("Out of memory: " + err.getMessage()); //$NON-NLS-1$
+        }
+        finally
+        {
+            ring_lock.unlockWrite(stamp);
+        }
+        have_new_samples.set(true);
     }
 
-    /** @param sample Sample to add to ring buffer */
-    void add(final PlotSample sample)
+    /** Add value to ring buffer.
+     *
+     *  <p>Does not wait for readers of the visible samples.
+     *
+     *  @param value Value to add
+     *  @return <code>false</code> if the initial UNDEFINED/Disconnected value was skipped
+     */
+    boolean add(final VType value)
+    {
+        return append(value, null);
+    }
+
+    /** Add sample to ring buffer.
+     *
+     *  <p>Does not wait for readers of the visible samples.
+     *
+     *  @param sample Sample to add
+     *  @return <code>false</code> if the initial UNDEFINED/Disconnected sample was skipped
+     */
+    boolean add(final PlotSample sample)
     {
         sample.setWaveformIndex(waveform_index);
-        samples.add(sample);
+        return append(sample.getVType(), sample);
+    }
+
+    /** @param value Value to add
+     *  @param sample Sample for the value or <code>null</code>
+     *  @return <code>false</code> if the value was skipped
+     */
+    private boolean append(final VType value, final PlotSample sample)
+    {
+        final long stamp = ring_lock.writeLock();
+        try
+        {
+            // Skip the initial UNDEFINED/Disconnected sample sent by PVManager
+            if (ring_end == ring_start  &&
+                VTypeHelper.getSeverity(value) == AlarmSeverity.UNDEFINED)
+                return false;
+            final int slot = (int) (ring_end % values.length);
+            values[slot] = value;
+            received[slot] = sample;
+            ++ring_end;
+            if (ring_end - ring_start > values.length)
+                ring_start = ring_end - values.length;
+        }
+        finally
+        {
+            ring_lock.unlockWrite(stamp);
+        }
+        pending.set(true);
         have_new_samples.set(true);
+        return true;
+    }
+
+    /** @return <code>true</code> if samples were added that are not visible */
+    boolean hasPendingSamples()
+    {
+        return pending.get();
+    }
+
+    /** Make samples that were added since the last call visible.
+     *
+     *  <p>Caller must hold the write lock of the {@link PVSamples}.
+     *
+     *  @return <code>true</code> if the visible samples changed
+     */
+    boolean publish()
+    {
+        pending.set(false);
+        for (int attempt=0; attempt<OPTIMISTIC_ATTEMPTS; ++attempt)
+        {
+            final long stamp = ring_lock.tryOptimisticRead();
+            final long start = ring_start, end = ring_end;
+            // Copy may be inconsistent when a writer modified the ring,
+            // so only use it once the stamp is validated
+            if (stamp != 0  &&  copy(start, end)  &&  ring_lock.validate(stamp))
+                return setVisible(start, end);
+        }
+        // Writers keep changing the ring: Block them for the copy
+        final long stamp = ring_lock.readLock();
+        try
+        {
+            copy(ring_start, ring_end);
+            return setVisible(ring_start, ring_end);
+        }
+        finally
+        {
+            ring_lock.unlockRead(stamp);
+        }
     }
 
+    /** Copy ring entries that are not already visible into scratch arrays
+     *  @param start Sequence number of oldest sample in ring
+     *  @param end Sequence number of next sample in ring
+     *  @return <code>false</code> if start, end are inconsistent
+     */
+    private boolean copy(final long start, final long end)
+    {
+        final int capacity = values.length;
+        final long first = Math.max(start, visible_end);
+        if (first > end  ||  end - first > capacity)
+            return false;
+        final int count = (int) (end - first);
+        if (copied_values.length < count)
+        {
+            copied_values = new VType[capacity];
+            copied_received = new PlotSample[capacity];
+        }
+        for (int i=0; i<count; ++i)
+        {
+            final int slot = (int) ((first + i) % capacity);
+            copied_values[i] = values[slot];
+            copied_received[i] = received[slot];
+        }
+        return true;
+    }
+
+    /** Update visible samples from scratch arrays
+     *  @param start Sequence number of oldest visible sample
+     *  @param end Sequence number of next visible sample
+     *  @return <code>true</code> if the visible samples changed
+     */
+    private boolean setVisible(final long start, final long end)
+    {
+        if (visible_start == start  &&  visible_end == end)
+            return false;
+        final int capacity = visible.length;
+        final long first = Math.max(start, visible_end);
+        for (int i=0; i<end-first; ++i)
+        {
+            final PlotSample sample = copied_received[i];
+            visible[(int) ((first + i) % capacity)] = sample != null
+                ? sample
+                : new PlotSample(waveform_index, Messages.LiveData, copied_values[i]);
+            copied_values[i] = null;
+            copied_received[i] = null;
+        }
+        visible_start = start;
+        visible_end = end;
+        return true;
+    }
+
+    /** {@inheritDoc} */
     @Override
     public int size()
     {
-        return samples.size();
+        return (int) (visible_end - visible_start);
     }
 
+    /** {@inheritDoc} */
     @Override
     public PlotSample get(final int i)
     {
-        return samples.get(i);
+        if (i < 0  ||  i >= size())
+            throw new ArrayIndexOutOfBoundsException(i);
+        return visible[(int) ((visible_start + i) % visible.length)];
     }
 
-    /** Delete all samples */
+    /** Delete all samples
+     *  <p>
+     *  Caller must hold the write lock of the {@link PVSamples}.
+     */
     public void clear()
     {
-        samples.clear();
+        final long stamp = ring_lock.writeLock();
+        try
+        {
+            Arrays.fill(values, null);
+            Arrays.fill(received, null);
+            Arrays.fill(visible, null);
+            ring_start = visible_start = visible_end = ring_end;
+        }
+        finally
+        {
+            ring_lock.unlockWrite(stamp);
+        }
         have_new_samples.set(true);
     }
 }
@@ -10,10 +10,12 @@ package org.csstudio.trends.databrowser2.model;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 
 import org.csstudio.archive.vtype.VTypeHelper;
-import org.csstudio.trends.databrowser2.Messages;
 import org.diirt.vtype.AlarmSeverity;
 import org.diirt.vtype.VType;
 import org.diirt.vtype.ValueUtil;
@@ -41,8 +43,14 @@ public class PVSamples extends PlotSamples
      * and caller should take the PVSamples lock.
      *
      * Write access goes via
-     * PVSamples.add*(), PVSamples.mergeArchivedData(),
+     * PVSamples.mergeArchivedData(), PVSamples.clear(),
      * which take the write lock.
+     *
+     * PVSamples.addLiveSample() does not take the lock.
+     * It adds to the ring of the LiveSamples,
+     * and those samples are published, i.e. become visible
+     * in PVSamples.size() and PVSamples.get(),
+     * when the lock is next taken.
      */
     /** Historic samples */
     final private HistoricSamples history;
@@ -53,6 +61,50 @@ public class PVSamples extends PlotSamples
     private boolean emptyHistoryOnAdd = false;
     private int samplesAddedSinceLastRefresh = 0;
 
+    /** Read lock that first publishes pending live samples */
+    final private Lock read_lock = new Lock()
+    {
+        @Override
+        public void lock()
+        {
+            tryPublishLiveSamples();
+            PVSamples.super.getLock().lock();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException
+        {
+            tryPublishLiveSamples();
+            PVSamples.super.getLock().lockInterruptibly();
+        }
+
+        @Override
+        public boolean tryLock()
+        {
+            tryPublishLiveSamples();
+            return PVSamples.super.getLock().tryLock();
+        }
+
+        @Override
+        public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException
+        {
+            tryPublishLiveSamples();
+            return PVSamples.super.getLock().tryLock(time, unit);
+        }
+
+        @Override
+        public void unlock()
+        {
+            PVSamples.super.getLock().unlock();
+        }
+
+        @Override
+        public Condition newCondition()
+        {
+            return PVSamples.super.getLock().newCondition();
+        }
+    };
+
     PVSamples(final AtomicInteger waveform_index)
     {
         history = new HistoricSamples(waveform_index);
@@ -72,7 +124,69 @@ public class PVSamples extends PlotSamples
      */
     public void setLiveCapacity(final int new_capacity) throws Exception
     {
-        live.setCapacity(new_capacity);
+        lockForWriting();
+        try
+        {
+            live.setCapacity(new_capacity);
+        }
+        finally
+        {
+            unlockForWriting();
+        }
+    }
+
+    /** {@inheritDoc}
+     *  <p>
+     *  Live samples that were added since the lock was last taken
+     *  are published unless that requires waiting for other readers.
+     */
+    @Override
+    public Lock getLock()
+    {
+        return read_lock;
+    }
+
+    /** {@inheritDoc}
+     *  <p>
+     *  Publishes live samples that were added since the lock was last taken.
+     */
+    @Override
+    public void lockForWriting()
+    {
+        super.lockForWriting();
+        publishLiveSamples();
+    }
+
+    /** Publish live samples unless that requires waiting for other threads */
+    private void tryPublishLiveSamples()
+    {
+        if (! live.hasPendingSamples()  ||  ! tryLockForWriting())
+            return;
+        try
+        {
+            publishLiveSamples();
+        }
+        finally
+        {
+            unlockForWriting();
+        }
+    }
+
+    /** Make live samples visible that were added since the last call.
+     *  Caller must hold the write lock.
+     */
+    private void publishLiveSamples()
+    {
+        if (! live.publish()  ||  live.size() <= 0)
+            return;
+        // History ends before the start of 'live' samples.
+        // New live samples might have moved the ring buffer,
+        // so need to update whenever live data is extended.
+        final int history_size = history.size();
+        history.setBorderTime(Optional.of(live.get(0).getPosition()));
+        // Revealing or hiding historic samples is not a simple addition
+        if (history.size() != history_size)
+            revision.incrementAndGet();
     }
 
     /** @return Combined count of historic and live samples */
@@ -142,6 +256,12 @@ public class PVSamples extends PlotSamples
     @Override
     public boolean testAndClearNewSamplesFlag()
     {
+        // Publish live samples, waiting for readers if necessary
+        if (live.hasPendingSamples())
+        {
+            lockForWriting();
+            unlockForWriting();
+        }
         // Must check & __clear__ both subsections!
         // return hist.test() | live.test() would skip
         // the live.test if hist.test() was already true!
@@ -166,6 +286,7 @@ public class PVSamples extends PlotSamples
                 history.clear();
             }
             history.mergeArchivedData(source, result);
+            revision.incrementAndGet();
         }
         finally
         {
@@ -174,38 +295,39 @@ public class PVSamples extends PlotSamples
     }
 
     /** Add another 'live' sample
+     *
+     *  <p>Does not wait for readers of the samples.
+     *  The sample becomes visible when the lock is next taken.
+     *
      *  @param value 'Live' sample
      */
     public void addLiveSample(VType value)
     {
         if (! ValueUtil.timeOf(value).isTimeValid())
             value = VTypeHelper.transformTimestampToNow(value);
-        addLiveSample(new PlotSample(Messages.LiveData, value));
+        if (live.add(value))
+            samplesAddedSinceLastRefresh++;
     }
 
     /** Add another 'live' sample
-     *  @param value 'Live' sample
+     *
+     *  <p>Does not wait for readers of the samples.
+     *  The sample becomes visible when the lock is next taken.
+     *
+     *  @param sample 'Live' sample
      */
     public void addLiveSample(final PlotSample sample)
     {
-        lockForWriting();
-        try
-        {
-            // Skip the initial UNDEFINED/Disconnected sample sent by PVManager
-            if (live.size() == 0  &&
-                VTypeHelper.getSeverity(sample.getVType()) == AlarmSeverity.UNDEFINED)
-                return;
-            live.add(sample);
-            // History ends before the start of 'live' samples.
-            // Adding a live sample might have moved the ring buffer,
-            // so need to update whenever live data is extended.
-            history.setBorderTime(Optional.of(live.get(0).getPosition()));
-        }
-        finally
-        {
-            unlockForWriting();
-        }
-        samplesAddedSinceLastRefresh++;
+        if (live.add(sample))
+            samplesAddedSinceLastRefresh++;
+    }
+
+    /** Values of existing samples changed,
+     *  for example because a different waveform element is used
+     */
+    void valuesChanged()
+    {
+        revision.incrementAndGet();
     }
 
     /** Delete all samples */
@@ -216,6 +338,7 @@ public class PVSamples extends PlotSamples
         {
             history.clear();
             live.clear();
+            revision.incrementAndGet();
         }
         finally
         {
@@ -7,6 +7,8 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.model;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -15,12 +17,40 @@ import java.util.List;
  */
 public class PlotSampleArray extends PlotSamples
 {
-    private List<PlotSample> samples = Collections.emptyList();
+    private volatile List<PlotSample> samples = Collections.emptyList();
 
     /** @param samples Samples <u>which are NOT copied</u> */
     public void set(final List<PlotSample> samples)
     {
         this.samples = samples;
+        revision.incrementAndGet();
+    }
+
+    /** Add samples, replacing the newest ones
+     *
+     *  <p>Does not change the revision:
+     *  Samples up to <code>keep</code> remain as they were,
+     *  only the newest samples are replaced as for example
+     *  the continuation of {@link PVSamples} to 'now'.
+     *
+     *  @param start Oldest samples before this time are removed, <code>null</code> to keep them
+     *  @param keep Number of current samples to keep, the remaining ones are replaced
+     *  @param additions Samples <u>which are NOT copied</u> to add after those kept
+     *  @return Number of oldest samples that were removed
+     */
+    public int update(final Instant start, final int keep, final List<PlotSample> additions)
+    {
+        final List<PlotSample> current = samples;
+        int drop = 0;
+        if (start != null)
+            while (drop < keep  &&  current.get(drop).getPosition().compareTo(start) < 0)
+                ++drop;
+        // Copy to new list instead of modifying the one that readers might access
+        final List<PlotSample> updated = new ArrayList<>(keep - drop + additions.size());
+        updated.addAll(current.subList(drop, keep));
+        updated.addAll(additions);
+        samples = updated;
+        return drop;
     }
 
     /** {@inheritDoc} */
@@ -98,4 +98,59 @@ public class PlotSampleMerger
 
         throw new Error("Cannot handle this case");  //$NON-NLS-1$
     }
+
+    /** Add newly received samples to existing columnar samples.
+     *  <p>
+     *  Same as {@link #merge(PlotSample[], PlotSample[])},
+     *  but copying sections of the primitive sample columns.
+     *  @param old Existing data
+     *  @param add Newly received data
+     *  @return Store that combines new and old data
+     */
+    static public PlotSampleStore merge(final PlotSampleStore old, final PlotSampleStore add)
+    {
+        // If one is empty, return the other as is:
+        if (old == null  ||  old.size() <= 0)
+            return add;
+        if (add == null  ||  add.size() <= 0)
+            return old;
+        final int No = old.size();
+        final int Na = add.size();
+        final Instant old_start = old.getTime(0);
+        final Instant add_start = add.getTime(0);
+        final Instant add_end = add.getTime(Na-1);
+
+        // All new samples are before the old samples
+        if (add_end.compareTo(old_start) < 0)
+        {
+            final PlotSampleStore result = PlotSampleStore.allocate(Na + No, add, old);
+            result.copy(0, add, 0, Na);
+            result.copy(Na, old, 0, No);
+            return result;
+        }
+        // New samples start before old samples, maybe overlap
+        if (add_start.compareTo(old_start) <= 0)
+        {
+            final int x = old.findSampleGreaterThan(add_end);
+            if (x < 0)
+                return add;
+            final int copy_old = No - x;
+            final PlotSampleStore result = PlotSampleStore.allocate(Na + copy_old, add, old);
+            result.copy(0, add, 0, Na);
+            result.copy(Na, old, x, copy_old);
+            return result;
+        }
+        // New samples start within old time range
+        final int l = old.findSampleLessThan(add_start);
+        final int r = old.findSampleGreaterThan(add_end);
+        final int Nl = (l < 0) ? 0 : l + 1;
+        final int Nr = (r < 0) ? 0 : No-r;
+        final PlotSampleStore result = PlotSampleStore.allocate(Nl + Na + Nr, old, add);
+        if (Nl > 0)
+            result.copy(0, old, 0, Nl);
+        result.copy(Nl, add, 0, Na);
+        if (Nr > 0)
+            result.copy(Nl+Na, old, r, Nr);
+        return result;
+    }
 }
@@ -0,0 +1,534 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.Alarm;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.Time;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VStatistics;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueUtil;
+
+/** Columnar storage of plot samples
+ *
+ *  <p>Scalar numbers and statistics, which make up most archived data,
+ *  are kept in parallel primitive arrays for time, value, min/max/stddev and severity.
+ *  Source, alarm status, display info and number type are interned
+ *  into {@link Meta} entries that are shared by many samples.
+ *  Min/max/stddev are only allocated once a statistics sample is stored.
+ *
+ *  <p>Samples that cannot be decomposed, like arrays, enums or strings,
+ *  are kept as the original {@link VType}.
+ *
+ *  <p>{@link #get(int, AtomicInteger)} presents a sample as a {@link PlotSample}
+ *  that reads the columns, and only creates a {@link VType} when asked for one.
+ *
+ *  <p>Instances are immutable, merging creates a new store by copying
+ *  array sections.
+ *
+ *  @author Kay Kasemir
+ */
+public class PlotSampleStore
+{
+    /** Empty store */
+    final public static PlotSampleStore EMPTY = new PlotSampleStore(0, false, false);
+
+    /** Number type of a scalar sample */
+    private static enum Kind
+    {
+        DOUBLE, FLOAT, LONG, INTEGER, SHORT, BYTE, STATISTICS
+    }
+
+    /** Largest long that is represented exactly as a double */
+    final private static long MAX_EXACT_LONG = 1L << 53;
+
+    /** Info shared by many samples */
+    final private static class Meta
+    {
+        final String source;
+        final String status;
+        final Kind kind;
+        final Display display;
+
+        Meta(final String source, final String status, final Kind kind, final Display display)
+        {
+            this.source = source;
+            this.status = status;
+            this.kind = kind;
+            this.display = display;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(source, status, kind, display == null ? null : display.getUnits());
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (! (obj instanceof Meta))
+                return false;
+            final Meta other = (Meta) obj;
+            return kind == other.kind  &&
+                   Objects.equals(source, other.source)  &&
+                   Objects.equals(status, other.status)  &&
+                   isSameDisplay(display, other.display);
+        }
+    }
+
+    /** Size */
+    final private int size;
+
+    /** Time stamps, nanoseconds since epoch */
+    final private long[] times;
+
+    /** Value, average for statistics */
+    final private double[] values;
+
+    /** Statistics or <code>null</code> */
+    final private double[] mins, maxs, stddevs;
+
+    /** Statistics sample count or <code>null</code> */
+    final private int[] counts;
+
+    /** Alarm severity ordinals */
+    final private byte[] severities;
+
+    /** Shared info for each sample */
+    final private Meta[] metas;
+
+    /** Original value for samples that are not decomposed, or <code>null</code> */
+    final private VType[] originals;
+
+    private PlotSampleStore(final int size, final boolean statistics, final boolean originals)
+    {
+        this.size = size;
+        times = new long[size];
+        values = new double[size];
+        severities = new byte[size];
+        metas = new Meta[size];
+        if (statistics)
+        {
+            mins = new double[size];
+            maxs = new double[size];
+            stddevs = new double[size];
+            counts = new int[size];
+        }
+        else
+        {
+            mins = maxs = stddevs = null;
+            counts = null;
+        }
+        this.originals = originals ? new VType[size] : null;
+    }
+
+    /** Create store for archived samples
+     *  @param source Info about the source of the samples
+     *  @param samples Samples, ordered by time
+     *  @return {@link PlotSampleStore}
+     */
+    public static PlotSampleStore of(final String source, final List<VType> samples)
+    {
+        final int N = samples.size();
+        if (N <= 0)
+            return EMPTY;
+        // Determine which columns are needed
+        boolean statistics = false, originals = false;
+        final Kind[] kinds = new Kind[N];
+        for (int i=0; i<N; ++i)
+        {
+            final VType value = samples.get(i);
+            kinds[i] = getKind(value);
+            if (kinds[i] == null)
+                originals = true;
+            else if (kinds[i] == Kind.STATISTICS)
+                statistics = true;
+        }
+
+        final PlotSampleStore store = new PlotSampleStore(N, statistics, originals);
+        final Map<Meta, Meta> interned = new HashMap<>();
+        Meta last = null;
+        for (int i=0; i<N; ++i)
+        {
+            final VType value = samples.get(i);
+            store.times[i] = toNanos(getTime(value));
+            store.severities[i] = (byte) VTypeHelper.getSeverity(value).ordinal();
+            if (kinds[i] == null)
+            {
+                store.values[i] = VTypeHelper.toDouble(value);
+                store.originals[i] = value;
+                // Still intern the source
+                final Meta meta = new Meta(source, null, null, null);
+                store.metas[i] = last = intern(interned, last, meta);
+                continue;
+            }
+            if (kinds[i] == Kind.STATISTICS)
+            {
+                final VStatistics stats = (VStatistics) value;
+                store.values[i] = stats.getAverage();
+                store.mins[i] = stats.getMin();
+                store.maxs[i] = stats.getMax();
+                store.stddevs[i] = stats.getStdDev();
+                store.counts[i] = stats.getNSamples();
+            }
+            else
+            {
+                store.values[i] = ((VNumber) value).getValue().doubleValue();
+                if (statistics)
+                {
+                    store.mins[i] = store.maxs[i] = store.stddevs[i] = Double.NaN;
+                    store.counts[i] = 0;
+                }
+            }
+            final Alarm alarm = ValueUtil.alarmOf(value);
+            final Meta meta = new Meta(source, alarm == null ? "" : alarm.getAlarmName(), kinds[i], ValueUtil.displayOf(value));
+            store.metas[i] = last = intern(interned, last, meta);
+        }
+        return store;
+    }
+
+    /** @return Previous meta if it matches, otherwise interned meta */
+    private static Meta intern(final Map<Meta, Meta> interned, final Meta last, final Meta meta)
+    {
+        if (meta.equals(last))
+            return last;
+        final Meta existing = interned.putIfAbsent(meta, meta);
+        return existing == null ? meta : existing;
+    }
+
+    /** @param value Sample
+     *  @return {@link Kind} or <code>null</code> if sample can't be decomposed
+     */
+    private static Kind getKind(final VType value)
+    {
+        if (! (value instanceof Time  &&  value instanceof Alarm))
+            return null;
+        if (value instanceof VStatistics)
+            return Kind.STATISTICS;
+        if (! (value instanceof VNumber))
+            return null;
+        final Number number = ((VNumber) value).getValue();
+        if (number instanceof Double)
+            return Kind.DOUBLE;
+        if (number instanceof Float)
+            return Kind.FLOAT;
+        if (number instanceof Integer)
+            return Kind.INTEGER;
+        if (number instanceof Short)
+            return Kind.SHORT;
+        if (number instanceof Byte)
+            return Kind.BYTE;
+        if (number instanceof Long  &&  Math.abs(number.longValue()) <= MAX_EXACT_LONG)
+            return Kind.LONG;
+        return null;
+    }
+
+    /** @param a Display
+     *  @param b Other display
+     *  @return <code>true</code> if both have the same units, format and limits
+     */
+    private static boolean isSameDisplay(final Display a, final Display b)
+    {
+        if (a == b)
+            return true;
+        if (a == null  ||  b == null)
+            return false;
+        return Objects.equals(a.getUnits(), b.getUnits())  &&
+               Objects.equals(a.getFormat(), b.getFormat())  &&
+               Objects.equals(a.getLowerDisplayLimit(), b.getLowerDisplayLimit())  &&
+               Objects.equals(a.getUpperDisplayLimit(), b.getUpperDisplayLimit())  &&
+               Objects.equals(a.getLowerAlarmLimit(), b.getLowerAlarmLimit())  &&
+               Objects.equals(a.getUpperAlarmLimit(), b.getUpperAlarmLimit())  &&
+               Objects.equals(a.getLowerWarningLimit(), b.getLowerWarningLimit())  &&
+               Objects.equals(a.getUpperWarningLimit(), b.getUpperWarningLimit())  &&
+               Objects.equals(a.getLowerCtrlLimit(), b.getLowerCtrlLimit())  &&
+               Objects.equals(a.getUpperCtrlLimit(), b.getUpperCtrlLimit());
+    }
+
+    /** @param value Sample
+     *  @return Time stamp, NOT checking if it's valid, same as {@link PlotSample}
+     */
+    private static Instant getTime(final VType value)
+    {
+        if (value instanceof Time)
+            return ((Time) value).getTimestamp();
+        return Instant.now();
+    }
+
+    private static long toNanos(final Instant time)
+    {
+        return time.getEpochSecond() * 1000000000L + time.getNano();
+    }
+
+    private static Instant toInstant(final long nanos)
+    {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1000000000L), Math.floorMod(nanos, 1000000000L));
+    }
+
+    /** @return Number of samples */
+    public int size()
+    {
+        return size;
+    }
+
+    /** @param i Sample index
+     *  @return Time stamp of sample
+     */
+    public Instant getTime(final int i)
+    {
+        return toInstant(times[i]);
+    }
+
+    /** @param i Sample index
+     *  @param waveform_index Waveform index to plot
+     *  @return Sample presented as {@link PlotSample}
+     */
+    public PlotSample get(final int i, final AtomicInteger waveform_index)
+    {
+        if (i < 0  ||  i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " of " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        return new ColumnSample(this, i, waveform_index);
+    }
+
+    /** @param i Sample index
+     *  @return {@link VType} for the sample
+     */
+    VType getVType(final int i)
+    {
+        if (originals != null  &&  originals[i] != null)
+            return originals[i];
+        final Meta meta = metas[i];
+        final Instant time = getTime(i);
+        final AlarmSeverity severity = AlarmSeverity.values()[severities[i]];
+        if (meta.kind == Kind.STATISTICS)
+            return new ArchiveVStatistics(time, severity, meta.status, meta.display,
+                                          values[i], mins[i], maxs[i], stddevs[i], counts[i]);
+        final Number number;
+        switch (meta.kind)
+        {
+        case FLOAT:   number = Float.valueOf((float) values[i]);   break;
+        case LONG:    number = Long.valueOf((long) values[i]);     break;
+        case INTEGER: number = Integer.valueOf((int) values[i]);   break;
+        case SHORT:   number = Short.valueOf((short) values[i]);   break;
+        case BYTE:    number = Byte.valueOf((byte) values[i]);     break;
+        default:      number = Double.valueOf(values[i]);
+        }
+        return new ArchiveVNumber(time, severity, meta.status, meta.display, number);
+    }
+
+    /** @param i Sample index
+     *  @param waveform_index Waveform index
+     *  @return Value to plot
+     */
+    double getValue(final int i, final int waveform_index)
+    {
+        if (originals != null  &&  originals[i] != null)
+            return VTypeHelper.toDouble(originals[i], waveform_index);
+        // Scalar value only has element 0
+        return waveform_index == 0 ? values[i] : Double.NaN;
+    }
+
+    /** @param column Min, max or stddev
+     *  @param i Sample index
+     *  @param waveform_index Waveform index
+     *  @return Statistics value or NaN
+     */
+    private double getStats(final double[] column, final int i, final int waveform_index)
+    {
+        // See PlotSample.getStats()
+        if (column == null  ||  waveform_index != 0  ||  metas[i].kind != Kind.STATISTICS)
+            return Double.NaN;
+        return column[i];
+    }
+
+    /** @return Source of sample */
+    String getSource(final int i)
+    {
+        return metas[i].source;
+    }
+
+    /** @param time Time stamp
+     *  @return Index of last sample with time stamp before the given time, or -1
+     *  @see PlotSampleSearch#findSampleLessThan
+     */
+    public int findSampleLessThan(final Instant time)
+    {
+        final long nanos = toNanos(time);
+        int low = 0, high = size-1;
+        int result = -1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] < nanos)
+            {
+                result = mid;
+                low = mid + 1;
+            }
+            else
+                high = mid - 1;
+        }
+        return result;
+    }
+
+    /** @param time Time stamp
+     *  @return Index of first sample with time stamp after the given time, or -1
+     *  @see PlotSampleSearch#findSampleGreaterThan
+     */
+    public int findSampleGreaterThan(final Instant time)
+    {
+        final long nanos = toNanos(time);
+        int low = 0, high = size-1;
+        int result = -1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] > nanos)
+            {
+                result = mid;
+                high = mid - 1;
+            }
+            else
+                low = mid + 1;
+        }
+        return result;
+    }
+
+    /** Allocate store for merging other stores
+     *  @param size Number of samples
+     *  @param sources Stores that will be copied into the new store
+     *  @return Store with the columns needed by the sources
+     *  @see #copy(int, PlotSampleStore, int, int)
+     */
+    static PlotSampleStore allocate(final int size, final PlotSampleStore... sources)
+    {
+        boolean statistics = false, originals = false;
+        for (PlotSampleStore source : sources)
+        {
+            statistics |= source.mins != null;
+            originals |= source.originals != null;
+        }
+        return new PlotSampleStore(size, statistics, originals);
+    }
+
+    /** Copy samples into a store that was just allocated
+     *  @param pos Position in this store
+     *  @param source Store to copy
+     *  @param start Index of first sample to copy
+     *  @param count Number of samples to copy
+     *  @see #allocate(int, PlotSampleStore...)
+     */
+    void copy(final int pos, final PlotSampleStore source, final int start, final int count)
+    {
+        System.arraycopy(source.times, start, times, pos, count);
+        System.arraycopy(source.values, start, values, pos, count);
+        System.arraycopy(source.severities, start, severities, pos, count);
+        System.arraycopy(source.metas, start, metas, pos, count);
+        if (source.mins != null)
+        {
+            System.arraycopy(source.mins, start, mins, pos, count);
+            System.arraycopy(source.maxs, start, maxs, pos, count);
+            System.arraycopy(source.stddevs, start, stddevs, pos, count);
+            System.arraycopy(source.counts, start, counts, pos, count);
+        }
+        else if (mins != null)
+        {
+            Arrays.fill(mins, pos, pos+count, Double.NaN);
+            Arrays.fill(maxs, pos, pos+count, Double.NaN);
+            Arrays.fill(stddevs, pos, pos+count, Double.NaN);
+        }
+        if (source.originals != null)
+            System.arraycopy(source.originals, start, originals, pos, count);
+    }
+
+    /** Sample of a {@link PlotSampleStore} */
+    private static class ColumnSample extends PlotSample
+    {
+        final private PlotSampleStore store;
+        final private int index;
+        final private AtomicInteger waveform_index;
+        private VType value = null;
+
+        ColumnSample(final PlotSampleStore store, final int index, final AtomicInteger waveform_index)
+        {
+            super(waveform_index, null, null, null);
+            this.store = store;
+            this.index = index;
+            this.waveform_index = waveform_index;
+        }
+
+        @Override
+        public String getSource()
+        {
+            return store.getSource(index);
+        }
+
+        @Override
+        public VType getVType()
+        {
+            if (value == null)
+                value = store.getVType(index);
+            return value;
+        }
+
+        @Override
+        public Instant getPosition()
+        {
+            return store.getTime(index);
+        }
+
+        @Override
+        public double getValue()
+        {
+            return store.getValue(index, waveform_index.get());
+        }
+
+        @Override
+        public double getStdDev()
+        {
+            return store.getStats(store.stddevs, index, waveform_index.get());
+        }
+
+        @Override
+        public double getMin()
+        {
+            return store.getStats(store.mins, index, waveform_index.get());
+        }
+
+        @Override
+        public double getMax()
+        {
+            return store.getStats(store.maxs, index, waveform_index.get());
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return toString();
+        }
+
+        @Override
+        public String toString()
+        {
+            return VTypeHelper.toString(getVType());
+        }
+    }
+}
@@ -9,6 +9,7 @@ package org.csstudio.trends.databrowser2.model;
 
 import java.time.Instant;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -29,12 +30,26 @@ abstract public class PlotSamples implements PlotDataProvider<Instant>
      */
     final protected AtomicBoolean have_new_samples = new AtomicBoolean();
 
+    /** To be incremented when existing samples are replaced or removed,
+     *  but not when samples are only added at the end
+     *  @see #getRevision()
+     */
+    final protected AtomicInteger revision = new AtomicInteger();
+
     /** Lock for writing */
     public void lockForWriting()
     {
         lock.writeLock().lock();
     }
 
+    /** Lock for writing unless that requires waiting for other threads
+     *  @return <code>true</code> if locked, caller must then {@link #unlockForWriting()}
+     */
+    public boolean tryLockForWriting()
+    {
+        return lock.writeLock().tryLock();
+    }
+
     /** Un-lock after writing */
     public void unlockForWriting()
     {
@@ -74,6 +89,23 @@ abstract public class PlotSamples implements PlotDataProvider<Instant>
         return have_new_samples.getAndSet(false);
     }
 
+    /** Revision of the samples
+     *
+     *  <p>Users that process the samples incrementally
+     *  can check the revision to determine if they
+     *  need to start over.
+     *  Adding samples at the end does not change the revision,
+     *  and neither does removing the oldest samples from a ring buffer.
+     *  Any other change, like merging archived data, does.
+     *
+     *  @return Revision of the samples
+     */
+    @Override
+    public int getRevision()
+    {
+        return revision.get();
+    }
+
     /** @return Info text about PlotSamples for debugging */
     @SuppressWarnings("nls")
     @Override
@@ -54,7 +54,11 @@ public class Preferences
             OPACITY = "opacity",
             TRACE_TYPE = "trace_type",
             ARCHIVE_FETCH_DELAY = "archive_fetch_delay",
-            PLOT_BINS = "plot_bins", URLS = "urls", ARCHIVES = "archives",
+            PLOT_BINS = "plot_bins",
+            ARCHIVE_CACHE_SIZE = "archive_cache_size",
+            ARCHIVE_CACHE_DIRECTORY = "archive_cache_directory",
+            ARCHIVE_CACHE_MARGIN = "archive_cache_margin",
+            URLS = "urls", ARCHIVES = "archives",
             USE_DEFAULT_ARCHIVES = "use_default_archives",
             PROMPT_FOR_ERRORS = "prompt_for_errors",
             ARCHIVE_RESCALE = "archive_rescale",
@@ -169,6 +173,33 @@ public class Preferences
         return prefs.getInt(Activator.PLUGIN_ID, PLOT_BINS, 800, null);
     }
 
+    /** @return Memory budget of the archive tile cache in MB, 0 to disable */
+    public static int getArchiveCacheSize()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null) // Allow some JUnit tests without prefs
+            return 64;
+        return prefs.getInt(Activator.PLUGIN_ID, ARCHIVE_CACHE_SIZE, 64, null);
+    }
+
+    /** @return Directory for archive tile cache files, empty to only cache in memory */
+    public static String getArchiveCacheDirectory()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null) // Allow some JUnit tests without prefs
+            return "";
+        return prefs.getString(Activator.PLUGIN_ID, ARCHIVE_CACHE_DIRECTORY, "", null).trim();
+    }
+
+    /** @return Time before 'now' for which archived data is not cached */
+    public static Duration getArchiveCacheMargin()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null) // Allow some JUnit tests without prefs
+            return Duration.ofHours(1);
+        return Duration.ofSeconds(Math.max(0, prefs.getInt(Activator.PLUGIN_ID, ARCHIVE_CACHE_MARGIN, 3600, null)));
+    }
+
     public static ArchiveServerURL[] getArchiveServerURLs()
     {
         final IPreferencesService prefs = Platform.getPreferencesService();